@@ -0,0 +1,204 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.aws;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// token bucket shared by every caller of an API, the calls are never blocking:
+// they are queued until an in-flight slot is free and then delayed until a token is available.
+// the rate adapts to the throttling responses (AIMD): it is halved when the service throttles
+// and grows back by ~1 TPS per second while the calls succeed, up to the configured quota.
+// throttled and transient errors are retried with exponential backoff and full jitter
+public class AdaptiveRateLimiter {
+    private static final Logger logger = LogManager.getLogger(AdaptiveRateLimiter.class);
+
+    private static final double MIN_RATE = 0.5;
+    private static final long BASE_BACKOFF_MILLIS = 200;
+    private static final long MAX_BACKOFF_MILLIS = 20_000;
+    // consecutive throttles within this window are considered the same congestion event
+    private static final long DECREASE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String name;
+    private final double maxRate;
+    private final int maxInFlight;
+    private final int maxAttempts;
+
+    // guarded by this
+    private double rate;
+    private long nextTokenNanos = System.nanoTime();
+    private long lastDecreaseNanos = System.nanoTime() - DECREASE_WINDOW_NANOS;
+    private int inFlight = 0;
+    private final Deque<Runnable> waiting = new ArrayDeque<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong throttles = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    public AdaptiveRateLimiter(String name, double maxRate, int maxInFlight, int maxAttempts) {
+        this.name = name;
+        this.maxRate = Math.max(maxRate, MIN_RATE);
+        this.maxInFlight = Math.max(maxInFlight, 1);
+        this.maxAttempts = Math.max(maxAttempts, 1);
+        this.rate = this.maxRate;
+    }
+
+    // the returned future completes with the first successful result or the last error
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        this.attempt(call, result, 1);
+
+        return result;
+    }
+
+    public synchronized double getRate() {
+        return this.rate;
+    }
+
+    private <T> void attempt(Supplier<CompletableFuture<T>> call, CompletableFuture<T> result, int attempt) {
+        this.whenPermitted(() -> {
+            CompletableFuture<T> response;
+
+            this.requests.incrementAndGet();
+
+            try {
+                response = call.get();
+            } catch (Exception ex) {
+                response = CompletableFuture.failedFuture(ex);
+            }
+
+            response.whenComplete((value, error) -> {
+                this.release();
+
+                if (error == null) {
+                    this.onSuccess();
+                    result.complete(value);
+
+                    return;
+                }
+
+                Throwable cause = unwrap(error);
+                boolean throttled = cause instanceof SdkServiceException ex && ex.isThrottlingException();
+
+                if (throttled) {
+                    this.onThrottle();
+                }
+
+                if ((throttled || isTransient(cause)) && attempt < this.maxAttempts) {
+                    long backoff = ThreadLocalRandom.current().nextLong(Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt, 20)) + 1);
+
+                    logger.debug("{} call failed (attempt {}), retrying in {} ms: {}", this.name, attempt, backoff, cause.getMessage());
+                    this.retries.incrementAndGet();
+
+                    CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS)
+                            .execute(() -> this.attempt(call, result, attempt + 1));
+                } else {
+                    result.completeExceptionally(cause);
+                }
+            });
+        });
+    }
+
+    // runs the task once an in-flight slot is free and a token is available
+    private void whenPermitted(Runnable task) {
+        synchronized (this) {
+            if (this.inFlight >= this.maxInFlight) {
+                this.waiting.add(task);
+
+                return;
+            }
+
+            this.inFlight++;
+        }
+
+        this.schedule(task);
+    }
+
+    private void release() {
+        Runnable next;
+
+        synchronized (this) {
+            next = this.waiting.poll();
+
+            // the slot is handed over to the next waiting task
+            if (next == null) {
+                this.inFlight--;
+
+                return;
+            }
+        }
+
+        this.schedule(next);
+    }
+
+    private void schedule(Runnable task) {
+        long delay = this.reserveToken();
+
+        if (delay <= 0) {
+            ForkJoinPool.commonPool().execute(task);
+        } else {
+            CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(task);
+        }
+    }
+
+    // nanoseconds to wait before the reserved token can be used
+    private synchronized long reserveToken() {
+        long now = System.nanoTime();
+        long start = Math.max(now, this.nextTokenNanos);
+
+        this.nextTokenNanos = start + (long) (TimeUnit.SECONDS.toNanos(1) / this.rate);
+
+        return start - now;
+    }
+
+    private synchronized void onSuccess() {
+        this.rate = Math.min(this.maxRate, this.rate + 1 / this.rate);
+    }
+
+    private synchronized void onThrottle() {
+        this.throttles.incrementAndGet();
+
+        long now = System.nanoTime();
+
+        if (now - this.lastDecreaseNanos >= DECREASE_WINDOW_NANOS) {
+            this.rate = Math.max(MIN_RATE, this.rate / 2);
+            this.lastDecreaseNanos = now;
+
+            logger.info("{} throttled, reducing the rate to {} TPS", this.name, String.format("%.2f", this.rate));
+        }
+    }
+
+    private static boolean isTransient(Throwable cause) {
+        return cause instanceof SdkClientException || (cause instanceof SdkServiceException ex && ex.statusCode() >= 500);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{rate=%.2f, maxRate=%.2f, requests=%d, throttles=%d, retries=%d}",
+                this.name, this.getRate(), this.maxRate, this.requests.get(), this.throttles.get(), this.retries.get());
+    }
+}
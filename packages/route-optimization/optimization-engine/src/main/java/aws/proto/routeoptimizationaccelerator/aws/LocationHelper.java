@@ -5,124 +5,277 @@
 package aws.proto.routeoptimizationaccelerator.aws;
 
 import aws.proto.routeoptimizationaccelerator.common.Position;
-import org.apache.commons.lang3.concurrent.TimedSemaphore;
+import aws.proto.routeoptimizationaccelerator.utils.EnvVariables;
+import aws.proto.routeoptimizationaccelerator.utils.Futures;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.awscore.retry.AwsRetryStrategy;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
 import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.location.LocationClient;
+import software.amazon.awssdk.services.location.LocationAsyncClient;
 import software.amazon.awssdk.services.location.model.*;
 
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 public class LocationHelper {
+    private static final Logger logger = LogManager.getLogger(LocationHelper.class);
+
     /*
-        TODO:
-         those limits below are referred to the default TPS for Amazon Location Service
-         the value could be adjusted based on your AWS Account quota.
-         More information: https://docs.aws.amazon.com/general/latest/gr/location.html
+        the limiters are shared by every job running in the worker, the configured TPS should match
+        the Amazon Location Service quota of the AWS Account (defaults are the service default quota)
+        and are reduced automatically when the service throttles (e.g. other workers sharing the quota)
+        More information: https://docs.aws.amazon.com/general/latest/gr/location.html
     */
-    private final TimedSemaphore matrixSemaphore = new TimedSemaphore(1, TimeUnit.SECONDS, 5);
-    private final TimedSemaphore routeSemaphore = new TimedSemaphore(1, TimeUnit.SECONDS, 10);
-    private static final Logger logger = LogManager.getLogger(LocationHelper.class);
+    private static final AdaptiveRateLimiter matrixLimiter = new AdaptiveRateLimiter(
+            "CalculateRouteMatrix",
+            EnvVariables.getLocationMatrixTps(),
+            EnvVariables.getLocationMaxInFlight(),
+            EnvVariables.getLocationMaxAttempts()
+    );
+    private static final AdaptiveRateLimiter routeLimiter = new AdaptiveRateLimiter(
+            "CalculateRoute",
+            EnvVariables.getLocationRouteTps(),
+            EnvVariables.getLocationMaxInFlight(),
+            EnvVariables.getLocationMaxAttempts()
+    );
+
+    // one client per region for the whole lifetime of the worker
+    private static final Map<String, LocationAsyncClient> locationClients = new ConcurrentHashMap<>();
 
-    private final LocationClient locationClient;
+    // route results are kept for the whole lifetime of the worker, one cache per routing profile
+    private static final Map<String, RouteCache> routeCaches = new ConcurrentHashMap<>();
+
+    private final LocationAsyncClient locationClient;
     private final String calculatorName;
     private final Boolean avoidTolls;
+    // null to ignore the traffic conditions (the default of the service)
+    private final Instant departureTime;
+    private final RouteCache routeCache;
 
     public LocationHelper(String region, String calculatorName, boolean avoidTools) {
+        this(region, calculatorName, avoidTools, null);
+    }
+
+    // routes depart at the given time (in the future), e.g. to fetch the travel times of a time bucket
+    public LocationHelper(String region, String calculatorName, boolean avoidTools, Instant departureTime) {
+        this(locationClients.computeIfAbsent(region, t -> LocationAsyncClient.builder()
+                .region(Region.of(t))
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                // retries are handled by the rate limiters so that throttling slows down every caller
+                .overrideConfiguration(ClientOverrideConfiguration.builder()
+                        .retryStrategy(AwsRetryStrategy.doNotRetry())
+                        .build()
+                )
+                .build()
+        ), calculatorName, avoidTools, departureTime);
+    }
+
+    // with a given client, e.g. a stand-in of the service in the tests
+    protected LocationHelper(LocationAsyncClient locationClient, String calculatorName, boolean avoidTools, Instant departureTime) {
         this.avoidTolls = avoidTools;
         this.calculatorName = calculatorName;
-        this.locationClient = LocationClient.builder()
-                .region(Region.of(region))
-                .credentialsProvider(DefaultCredentialsProvider.create())
-                .build();
+        this.departureTime = departureTime;
+        this.locationClient = locationClient;
+        this.routeCache = routeCaches.computeIfAbsent(this.getProfileName(), t -> new RouteCache(
+                EnvVariables.getRouteCacheSize(),
+                EnvVariables.getRouteCachePrecision()
+        ));
+    }
+
+    // identifies the routing options used to compute the routes (e.g. to store them)
+    // (the departure time of the day is part of it, the travel times depend on it)
+    public String getProfileName() {
+        String profileName = profileName(this.calculatorName, this.avoidTolls);
+
+        if (this.departureTime == null) {
+            return profileName;
+        }
+
+        return String.format("%s_depart-%s", profileName, LocalTime.ofInstant(this.departureTime, ZoneOffset.UTC).format(DateTimeFormatter.ofPattern("HHmm")));
+    }
+
+    public static String profileName(String calculatorName, boolean avoidTolls) {
+        return String.format("%s_%s%s", calculatorName, TravelMode.CAR, avoidTolls ? "_avoid-tolls" : "");
+    }
+
+    public RouteCache getRouteCache() {
+        return this.routeCache;
+    }
+
+    public static String getRateLimiterStatistics() {
+        return String.format("%s, %s", matrixLimiter, routeLimiter);
+    }
+
+    // waits for the result, rethrowing the original error instead of the CompletionException
+    public static <T> T await(CompletableFuture<T> future) {
+        return Futures.await(future);
     }
 
     public record DistanceAndTime(Double distance, Double time) {}
     public record DistanceAndTimeMatrix(List<List<Double>> distance, List<List<Double>> time) {}
 
     public DistanceAndTime suggestRoute(Position origin, Position destination) {
-        try {
-            routeSemaphore.acquire();
-            CalculateRouteRequest request = CalculateRouteRequest.builder()
-                    .departurePosition(origin.getLongitude(), origin.getLatitude())
-                    .destinationPosition(destination.getLongitude(), destination.getLatitude())
-                    .calculatorName(this.calculatorName)
-                    .travelMode(TravelMode.CAR)
-                    .carModeOptions(CalculateRouteCarModeOptions.builder()
-                            .avoidTolls(this.avoidTolls)
-                            .avoidFerries(true)
-                            .build()
-                    )
-                    // TODO: departure time?
-                    .distanceUnit("Kilometers")
-                    .build();
-            CalculateRouteResponse response = this.locationClient.calculateRoute(request);
-
-            return new DistanceAndTime(response.summary().distance(), response.summary().durationSeconds());
-        }
-        catch (InterruptedException ex) {
-            logger.error("InterruptedException on suggest route: ", ex);
+        return await(this.suggestRouteAsync(origin, destination));
+    }
+
+    public CompletableFuture<DistanceAndTime> suggestRouteAsync(Position origin, Position destination) {
+        DistanceAndTime cached = this.routeCache.get(origin, destination);
 
-            // this shouldn't happen
-            return null;
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
         }
+
+        CalculateRouteRequest request = CalculateRouteRequest.builder()
+                .departurePosition(origin.getLongitude(), origin.getLatitude())
+                .destinationPosition(destination.getLongitude(), destination.getLatitude())
+                .calculatorName(this.calculatorName)
+                .travelMode(TravelMode.CAR)
+                .carModeOptions(CalculateRouteCarModeOptions.builder()
+                        .avoidTolls(this.avoidTolls)
+                        .avoidFerries(true)
+                        .build()
+                )
+                .departureTime(this.departureTime)
+                .distanceUnit("Kilometers")
+                .build();
+
+        return routeLimiter.submit(() -> this.locationClient.calculateRoute(request))
+                .thenApply(response -> {
+                    DistanceAndTime result = new DistanceAndTime(response.summary().distance(), response.summary().durationSeconds());
+
+                    this.routeCache.put(origin, destination, result);
+
+                    return result;
+                });
     }
 
-    public DistanceAndTimeMatrix distanceDistanceMatrix(Collection<Collection<Double>> departingPositions, Collection<Collection<Double>> arrivalPositions) {
-        try {
-            matrixSemaphore.acquire();
-            CalculateRouteMatrixRequest request = CalculateRouteMatrixRequest.builder()
-                    .calculatorName(this.calculatorName)
-                    .departurePositions(departingPositions)
-                    .destinationPositions(arrivalPositions)
-                    .travelMode(TravelMode.CAR)
-                    .carModeOptions(CalculateRouteCarModeOptions.builder()
-                            .avoidTolls(this.avoidTolls)
-                            .avoidFerries(true)
-                            .build()
-                    )
-                    .distanceUnit("Kilometers")
-                    .build();
-            CalculateRouteMatrixResponse response = this.locationClient.calculateRouteMatrix(request);
-            List<List<Double>> distance = new ArrayList<>();
-            List<List<Double>> time = new ArrayList<>();
-
-            response.routeMatrix().forEach(t -> {
-                List<Double> itemDistance = new ArrayList<>();
-                List<Double> itemTime = new ArrayList<>();
-
-                t.forEach(q -> {
-                    if (q.error() != null) {
-                        logger.debug("Could not calculate the distance/time matrix correctly for an element; {}", q.error());
-                        // highlight the distances that weren't calculated correctly due high
-                        itemDistance.add(-1.0);
-                        itemTime.add(-1.0);
-                    } else {
-                        itemDistance.add(q.distance());
-                        itemTime.add(q.durationSeconds());
+    public CompletableFuture<DistanceAndTimeMatrix> distanceDistanceMatrixAsync(Collection<Collection<Double>> departingPositions, Collection<Collection<Double>> arrivalPositions) {
+        List<Position> departures = departingPositions.stream().map(Position::from).toList();
+        List<Position> arrivals = arrivalPositions.stream().map(Position::from).toList();
+        DistanceAndTime[][] cells = new DistanceAndTime[departures.size()][arrivals.size()];
+
+        for (int i = 0; i < departures.size(); i++) {
+            for (int j = 0; j < arrivals.size(); j++) {
+                cells[i][j] = this.routeCache.get(departures.get(i), arrivals.get(j));
+            }
+        }
+
+        // request only the rows and columns that still have at least one missing cell
+        List<Integer> rows = IntStream.range(0, departures.size())
+                .filter(i -> IntStream.range(0, arrivals.size()).anyMatch(j -> cells[i][j] == null))
+                .boxed()
+                .toList();
+        List<Integer> columns = IntStream.range(0, arrivals.size())
+                .filter(j -> rows.stream().anyMatch(i -> cells[i][j] == null))
+                .boxed()
+                .toList();
+
+        if (rows.isEmpty()) {
+            return CompletableFuture.completedFuture(toDistanceAndTimeMatrix(cells));
+        }
+
+        return this.calculateRouteMatrix(
+                rows.stream().map(departures::get).toList(),
+                columns.stream().map(arrivals::get).toList()
+        ).thenApply(response -> {
+            for (int r = 0; r < rows.size(); r++) {
+                for (int c = 0; c < columns.size(); c++) {
+                    DistanceAndTime cell = new DistanceAndTime(response.distance().get(r).get(c), response.time().get(r).get(c));
+
+                    if (cells[rows.get(r)][columns.get(c)] == null) {
+                        cells[rows.get(r)][columns.get(c)] = cell;
+
+                        // errors are not cached so that they can be retried
+                        if (cell.distance() != -1.0 || cell.time() != -1.0) {
+                            this.routeCache.put(departures.get(rows.get(r)), arrivals.get(columns.get(c)), cell);
+                        }
                     }
-                });
+                }
+            }
 
-                distance.add(itemDistance);
-                time.add(itemTime);
-            });
+            return toDistanceAndTimeMatrix(cells);
+        });
+    }
+
+    private static DistanceAndTimeMatrix toDistanceAndTimeMatrix(DistanceAndTime[][] cells) {
+        List<List<Double>> distance = new ArrayList<>();
+        List<List<Double>> time = new ArrayList<>();
 
-            return new DistanceAndTimeMatrix(distance, time);
-        } catch (InterruptedException ex) {
-            logger.error("InterruptedException on distance matrix: ", ex);
+        for (DistanceAndTime[] row : cells) {
+            List<Double> itemDistance = new ArrayList<>();
+            List<Double> itemTime = new ArrayList<>();
 
-            // this shouldn't happen
-            return null;
-        } catch (Exception ex) {
-            logger.error("Error running the distance matrix: ", ex);
+            for (DistanceAndTime cell : row) {
+                itemDistance.add(cell.distance());
+                itemTime.add(cell.time());
+            }
 
-            throw ex;
+            distance.add(itemDistance);
+            time.add(itemTime);
         }
+
+        return new DistanceAndTimeMatrix(distance, time);
     }
 
+    private CompletableFuture<DistanceAndTimeMatrix> calculateRouteMatrix(List<Position> departures, List<Position> arrivals) {
+        CalculateRouteMatrixRequest request = CalculateRouteMatrixRequest.builder()
+                .calculatorName(this.calculatorName)
+                .departurePositions(departures.stream().map(t -> List.of(t.getLongitude(), t.getLatitude())).toList())
+                .destinationPositions(arrivals.stream().map(t -> List.of(t.getLongitude(), t.getLatitude())).toList())
+                .travelMode(TravelMode.CAR)
+                .carModeOptions(CalculateRouteCarModeOptions.builder()
+                        .avoidTolls(this.avoidTolls)
+                        .avoidFerries(true)
+                        .build()
+                )
+                .departureTime(this.departureTime)
+                .distanceUnit("Kilometers")
+                .build();
+
+        return matrixLimiter.submit(() -> this.locationClient.calculateRouteMatrix(request))
+                .handle((response, error) -> {
+                    if (error != null) {
+                        logger.error("Error running the distance matrix: ", error);
+
+                        throw error instanceof CompletionException ex ? ex : new CompletionException(error);
+                    }
+
+                    List<List<Double>> distance = new ArrayList<>();
+                    List<List<Double>> time = new ArrayList<>();
+
+                    response.routeMatrix().forEach(t -> {
+                        List<Double> itemDistance = new ArrayList<>();
+                        List<Double> itemTime = new ArrayList<>();
+
+                        t.forEach(q -> {
+                            if (q.error() != null) {
+                                logger.debug("Could not calculate the distance/time matrix correctly for an element; {}", q.error());
+                                // highlight the distances that weren't calculated correctly due high
+                                itemDistance.add(-1.0);
+                                itemTime.add(-1.0);
+                            } else {
+                                itemDistance.add(q.distance());
+                                itemTime.add(q.durationSeconds());
+                            }
+                        });
+
+                        distance.add(itemDistance);
+                        time.add(itemTime);
+                    });
+
+                    return new DistanceAndTimeMatrix(distance, time);
+                });
+    }
 }
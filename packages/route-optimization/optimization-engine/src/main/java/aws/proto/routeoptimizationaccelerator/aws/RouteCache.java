@@ -0,0 +1,183 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.aws;
+
+import aws.proto.routeoptimizationaccelerator.common.Position;
+import aws.proto.routeoptimizationaccelerator.solver.geo.cache.RouteCellTable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// bounded in-memory cache of route results keyed by the (rounded) origin and destination
+// the entries are split in independently locked segments so that parallel matrix tiles
+// don't contend on a single lock. Each segment keeps its routes in two primitive tables (no object per entry,
+// the same layout as the road matrix cache): new routes go to the current generation, when it is full the previous
+// generation is dropped and a new one is started. A route read from the previous generation is copied to the current
+// one, so the routes evicted are the least recently used ones (approximately).
+// distances are kept in meters and times in seconds, the precision the matrices are built with
+public class RouteCache {
+    private static final int SEGMENTS = 16;
+
+    // the coordinates are packed in 32 bits each
+    private static final int MAX_PRECISION = 7;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final double scale;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public RouteCache(int maximumSize, int precision) {
+        this.scale = Math.pow(10, Math.min(precision, MAX_PRECISION));
+
+        for (int i = 0; i < SEGMENTS; i++) {
+            this.segments[i] = new Segment(Math.max(1, maximumSize / SEGMENTS));
+        }
+    }
+
+    public LocationHelper.DistanceAndTime get(Position from, Position to) {
+        long fromKey = this.toKey(from);
+        long toKey = this.toKey(to);
+        Segment segment = this.segmentOf(fromKey, toKey);
+        long value;
+
+        synchronized (segment) {
+            value = segment.get(fromKey, toKey);
+        }
+
+        if (RouteCellTable.isEmpty(value)) {
+            this.misses.incrementAndGet();
+
+            return null;
+        }
+
+        this.hits.incrementAndGet();
+
+        return new LocationHelper.DistanceAndTime(RouteCellTable.unpackDistance(value) / 1000.0, (double) RouteCellTable.unpackTime(value));
+    }
+
+    public void put(Position from, Position to, LocationHelper.DistanceAndTime value) {
+        // errors (negative values) are never cached
+        if (value.distance() < 0 || value.time() < 0) {
+            return;
+        }
+
+        long fromKey = this.toKey(from);
+        long toKey = this.toKey(to);
+        Segment segment = this.segmentOf(fromKey, toKey);
+        long packed = RouteCellTable.pack(
+                Math.min(Math.round(value.distance() * 1000), 0xFFFFFFFFL),
+                Math.min(Math.round(value.time()), 0xFFFFFFFFL)
+        );
+
+        synchronized (segment) {
+            segment.put(fromKey, toKey, packed);
+        }
+    }
+
+    // heap taken by a cache holding maximumSize routes (the worker keeps one per routing profile)
+    public static long footprint(int maximumSize) {
+        int segmentSize = Math.max(1, maximumSize / SEGMENTS);
+
+        return SEGMENTS * 2 * RouteCellTable.footprint(Segment.generationSize(segmentSize));
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "[hits=" + this.getHits() + ", misses=" + this.getMisses() + ", evictions=" + this.getEvictions() + "]";
+    }
+
+    private long toKey(Position position) {
+        long latitude = Math.round(position.getLatitude() * this.scale);
+        long longitude = Math.round(position.getLongitude() * this.scale);
+
+        return (latitude << 32) | (longitude & 0xFFFFFFFFL);
+    }
+
+    // the top bits select the segment, the tables use the low bits of their own hash
+    private Segment segmentOf(long fromKey, long toKey) {
+        long hash = (fromKey * 0x9E3779B97F4A7C15L) ^ (toKey * 0xC2B2AE3D27D4EB4FL);
+
+        return this.segments[(int) ((hash ^ (hash >>> 29)) >>> 60) & (SEGMENTS - 1)];
+    }
+
+    private class Segment {
+        private final int maximumSize;
+        private final int generationSize;
+
+        private RouteCellTable current = new RouteCellTable(0);
+        private RouteCellTable previous = new RouteCellTable(0);
+        // routes of the previous generation copied to the current one, they are not evicted with it
+        private int promoted = 0;
+
+        Segment(int maximumSize) {
+            this.maximumSize = maximumSize;
+            this.generationSize = generationSize(maximumSize);
+        }
+
+        static int generationSize(int maximumSize) {
+            return Math.max(1, maximumSize / 2);
+        }
+
+        long get(long fromKey, long toKey) {
+            long value = this.current.get(fromKey, toKey);
+
+            if (!RouteCellTable.isEmpty(value)) {
+                return value;
+            }
+
+            value = this.previous.get(fromKey, toKey);
+
+            if (!RouteCellTable.isEmpty(value)) {
+                this.add(fromKey, toKey, value);
+            }
+
+            return value;
+        }
+
+        void put(long fromKey, long toKey, long value) {
+            if (!RouteCellTable.isEmpty(this.current.get(fromKey, toKey))) {
+                this.current.put(fromKey, toKey, value);
+            } else {
+                this.add(fromKey, toKey, value);
+            }
+        }
+
+        private void add(long fromKey, long toKey, long value) {
+            if (this.current.size() >= this.generationSize) {
+                evictions.addAndGet(this.previous.size() - this.promoted);
+
+                // a segment of a single route has no room for a previous generation
+                if (this.maximumSize >= 2 * this.generationSize) {
+                    this.previous = this.current;
+                } else {
+                    evictions.addAndGet(this.current.size());
+                    this.previous = new RouteCellTable(0);
+                }
+
+                this.current = new RouteCellTable(0);
+                this.promoted = 0;
+            }
+
+            if (!RouteCellTable.isEmpty(this.previous.get(fromKey, toKey))) {
+                this.promoted++;
+            }
+
+            this.current.put(fromKey, toKey, value);
+        }
+    }
+}
@@ -5,6 +5,9 @@
 package aws.proto.routeoptimizationaccelerator.data.input;
 
 import aws.proto.routeoptimizationaccelerator.data.input.enums.DistanceMatrixType;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.MatrixStorage;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.ScoreEngine;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.SolverProfile;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
@@ -23,6 +26,8 @@ import java.time.LocalDateTime;
 public class Configuration {
     private DistanceMatrixType distanceMatrixType;
 
+    private Integer nearestNeighbours;
+
     private Integer maxOrders;
 
     private Integer maxTime;
@@ -39,6 +44,30 @@ public class Configuration {
 
     private Integer maxUnimprovedSolverDuration;
 
+    private Boolean twoStageSolve;
+
+    private MatrixStorage matrixStorage;
+
+    private String matrixFile;
+
+    private Integer locationMergePrecision;
+
+    private Integer timeBuckets;
+
+    private Double[] trafficProfile;
+
+    private Boolean fetchTimeBuckets;
+
+    private Boolean nearbySelection;
+
+    private SolverProfile solverProfile;
+
+    private Integer solverThreadCount;
+
+    private Integer partitionSize;
+
+    private ScoreEngine scoreEngine;
+
     private LocalDateTime vehicleDepartureTime;
 
     private VirtualFleet[] virtualFleet;
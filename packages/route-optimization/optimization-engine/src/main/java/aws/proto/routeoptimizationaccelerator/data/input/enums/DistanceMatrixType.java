@@ -7,4 +7,8 @@ package aws.proto.routeoptimizationaccelerator.data.input.enums;
 public enum DistanceMatrixType {
     AIR_DISTANCE,
     ROAD_DISTANCE,
+    SPARSE_NEAREST,
+    ROAD_GRAPH,
+    LAZY_ROAD,
+    ESTIMATED_ROAD,
 }
@@ -0,0 +1,16 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.data.input.enums;
+
+public enum MatrixStorage {
+    // 64-bit meters, 32-bit seconds (12 bytes per cell)
+    DENSE,
+    // 32-bit meters, 32-bit seconds (8 bytes per cell)
+    COMPACT,
+    // 32-bit meters, 16-bit seconds with a 2 seconds resolution up to ~36 hours (6 bytes per cell)
+    COMPACT_16,
+    // 32-bit meters, 32-bit seconds outside of the heap (8 bytes per cell of direct memory)
+    OFF_HEAP,
+}
@@ -0,0 +1,12 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.data.input.enums;
+
+public enum ScoreEngine {
+    // VehicleRoutingConstraintProvider, with the constraint streams of the solver
+    CONSTRAINT_STREAMS,
+    // VehicleRoutingIncrementalScoreCalculator, the same constraints computed by hand
+    INCREMENTAL,
+}
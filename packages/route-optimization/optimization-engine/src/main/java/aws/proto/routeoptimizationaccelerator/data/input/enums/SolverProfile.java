@@ -0,0 +1,14 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.data.input.enums;
+
+public enum SolverProfile {
+    // first fit construction and cheap moves, stops as soon as the solution stalls (real-time re-plans)
+    FAST,
+    // default phases of the solver
+    BALANCED,
+    // every list move with a wider forager, keeps searching longer before giving up (overnight plans)
+    THOROUGH,
+}
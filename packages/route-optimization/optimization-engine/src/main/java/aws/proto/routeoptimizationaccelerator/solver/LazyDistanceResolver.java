@@ -0,0 +1,238 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver;
+
+import ai.timefold.solver.core.api.solver.Solver;
+import ai.timefold.solver.core.api.solver.change.ProblemChangeDirector;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.LazyDistanceMatrix;
+import aws.proto.routeoptimizationaccelerator.solver.solution.ArrivalTimeUpdatingVariableListener;
+import aws.proto.routeoptimizationaccelerator.solver.solution.VehicleRoutingSolution;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+// resolves the exact road values of a LazyDistanceMatrix while the solver runs:
+//  - every new best solution requests its edges (and the hot pairs detected by the matrix)
+//  - the requests are fetched in batches in the background, one batch at a time
+//  - the fetched values are swapped in with a problem change, i.e. between two solver steps,
+//    the arrival times and the score are then recomputed on the updated matrix
+//  - once the solver is terminated the queued batches are dropped, only the edges of the final solution are fetched
+public class LazyDistanceResolver {
+    private static final Logger logger = LogManager.getLogger(LazyDistanceResolver.class);
+
+    // pairs requested in a single fetch
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private static final String ARRIVAL_TIME_FIELD = "arrivalTime";
+
+    private final Solver<VehicleRoutingSolution> solver;
+    private final LazyDistanceMatrix matrix;
+
+    // guarded by this
+    private final Deque<long[]> pending = new ArrayDeque<>();
+    private boolean fetching = false;
+    private boolean stopped = false;
+
+    public LazyDistanceResolver(Solver<VehicleRoutingSolution> solver, LazyDistanceMatrix matrix) {
+        this.solver = solver;
+        this.matrix = matrix;
+    }
+
+    // the matrix is lazy if the solution has been created with the LAZY_ROAD distance matrix
+    public static LazyDistanceMatrix getLazyMatrix(VehicleRoutingSolution solution) {
+        return solution.getDepots().stream()
+                .map(Visit::getDistanceMatrix)
+                .filter(m -> m instanceof LazyDistanceMatrix)
+                .map(m -> (LazyDistanceMatrix) m)
+                .findFirst()
+                .orElse(null);
+    }
+
+    public void attach() {
+        // best solution events are fired on the solver thread, the matrix can be safely read
+        this.solver.addEventListener(event -> {
+            if (event.isEveryProblemChangeProcessed()) {
+                this.request(event.getNewBestSolution());
+            }
+        });
+    }
+
+    // resolves every edge of the solution still estimated and updates its arrival times,
+    // to be called once the solver is terminated (the score has to be updated afterwards)
+    public void resolveAll(VehicleRoutingSolution solution) {
+        // the background batches would compete with the final fetch for the rate limiter
+        synchronized (this) {
+            this.stopped = true;
+
+            if (!this.pending.isEmpty()) {
+                logger.info("Dropping {} batches of road distances requested while solving", this.pending.size());
+            }
+
+            this.pending.clear();
+        }
+
+        this.matrix.applyResolved();
+
+        long[] edges = this.collectEdges(solution, false);
+
+        if (edges.length > 0) {
+            logger.info("Resolving {} road distances of the final solution", edges.length);
+
+            this.matrix.getFetcher().await(this.fetch(edges));
+        }
+
+        this.matrix.applyResolved();
+
+        solution.getVehicles().forEach(vehicle -> ArrivalTimeUpdatingVariableListener.updateArrivalTimes(vehicle, Customer::setArrivalTime));
+
+        logger.info("Lazy distance matrix: {} exact cells out of {}, detour factor={}, speed={} m/s",
+                this.matrix.getExactCount(),
+                (long) this.matrix.size() * this.matrix.size(),
+                this.matrix.getDetourFactor(),
+                this.matrix.getSpeed()
+        );
+    }
+
+    private void request(VehicleRoutingSolution solution) {
+        long[] edges = this.collectEdges(solution, true);
+        long[] hot = this.matrix.drainHotPairs();
+
+        if (edges.length == 0 && hot.length == 0) {
+            return;
+        }
+
+        synchronized (this) {
+            if (this.stopped) {
+                return;
+            }
+
+            for (int start = 0; start < edges.length; start += MAX_BATCH_SIZE) {
+                this.pending.add(Arrays.copyOfRange(edges, start, Math.min(start + MAX_BATCH_SIZE, edges.length)));
+            }
+            for (int start = 0; start < hot.length; start += MAX_BATCH_SIZE) {
+                this.pending.add(Arrays.copyOfRange(hot, start, Math.min(start + MAX_BATCH_SIZE, hot.length)));
+            }
+        }
+
+        this.fetchNext();
+    }
+
+    private void fetchNext() {
+        long[] batch;
+
+        synchronized (this) {
+            if (this.stopped || this.fetching || this.pending.isEmpty()) {
+                return;
+            }
+
+            batch = this.pending.poll();
+            this.fetching = true;
+        }
+
+        this.fetch(batch).whenComplete((result, error) -> {
+            if (error != null) {
+                // the pairs stay estimated, the edges of the final solution are fetched again by resolveAll()
+                logger.warn("Unable to fetch {} road distances: {}", batch.length, error.getMessage());
+            }
+
+            synchronized (this) {
+                this.fetching = false;
+
+                // the solver is terminated, the values are applied by resolveAll()
+                if (this.stopped) {
+                    return;
+                }
+            }
+
+            this.solver.addProblemChange(this::applyResolved);
+
+            this.fetchNext();
+        });
+    }
+
+    private CompletableFuture<Void> fetch(long[] pairs) {
+        int[] from = new int[pairs.length];
+        int[] to = new int[pairs.length];
+
+        for (int i = 0; i < pairs.length; i++) {
+            from[i] = this.matrix.fromOf(pairs[i]);
+            to[i] = this.matrix.toOf(pairs[i]);
+        }
+
+        return this.matrix.getFetcher().fetch(from, to, this.matrix.getStaging());
+    }
+
+    // runs on the solver thread, on the working solution
+    private void applyResolved(VehicleRoutingSolution workingSolution, ProblemChangeDirector director) {
+        int applied = this.matrix.applyResolved();
+
+        if (applied == 0) {
+            return;
+        }
+
+        logger.debug("Applied {} road distances, {} exact cells", applied, this.matrix.getExactCount());
+
+        // the matrix is recalibrated with the new values, i.e. every estimated cell may have changed:
+        // arrival times are propagated again along every route and every assigned customer is updated
+        // (not only the ones whose arrival time changed) so that the per-customer distances are read again
+        for (Vehicle vehicle : workingSolution.getVehicles()) {
+            ArrivalTimeUpdatingVariableListener.updateArrivalTimes(vehicle, (customer, arrivalTime) ->
+                    director.changeVariable(customer, ARRIVAL_TIME_FIELD, c -> c.setArrivalTime(arrivalTime))
+            );
+
+            for (Customer customer : vehicle.getCustomers()) {
+                director.changeProblemProperty(customer, c -> {});
+            }
+
+            director.changeProblemProperty(vehicle, v -> {});
+        }
+    }
+
+    // edges of the routes (from * size + to), only the ones not exact yet
+    // when marking, the edges already requested are skipped and the others are marked as requested
+    private long[] collectEdges(VehicleRoutingSolution solution, boolean mark) {
+        long[] edges = new long[solution.getCustomers().size() + solution.getVehicles().size()];
+        int count = 0;
+
+        for (Vehicle vehicle : solution.getVehicles()) {
+            if (vehicle.getCustomers().isEmpty()) {
+                continue;
+            }
+
+            Visit previous = vehicle.getDepot();
+
+            for (Customer customer : vehicle.getCustomers()) {
+                count = this.addEdge(edges, count, previous, customer.getVisit(), mark);
+                previous = customer.getVisit();
+            }
+
+            if (vehicle.isBackToOrigin()) {
+                count = this.addEdge(edges, count, previous, vehicle.getDepot(), mark);
+            }
+        }
+
+        return Arrays.copyOf(edges, count);
+    }
+
+    private int addEdge(long[] edges, int count, Visit from, Visit to, boolean mark) {
+        int f = from.getMatrixIndex();
+        int t = to.getMatrixIndex();
+
+        if (mark ? !this.matrix.request(f, t) : this.matrix.isExact(f, t)) {
+            return count;
+        }
+
+        edges[count] = this.matrix.pair(f, t);
+
+        return count + 1;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver;
+
+import ai.timefold.solver.core.api.score.buildin.hardmediumsoftlong.HardMediumSoftLongScore;
+import ai.timefold.solver.core.api.score.stream.ConstraintStreamImplType;
+import ai.timefold.solver.core.api.solver.SolutionManager;
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import ai.timefold.solver.core.config.phase.PhaseConfig;
+import ai.timefold.solver.core.config.score.director.ScoreDirectorFactoryConfig;
+import ai.timefold.solver.core.config.solver.SolverConfig;
+import ai.timefold.solver.core.config.solver.termination.TerminationConfig;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.ScoreEngine;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.SolverProfile;
+import aws.proto.routeoptimizationaccelerator.solver.constraints.VehicleRoutingConstraintProvider;
+import aws.proto.routeoptimizationaccelerator.solver.constraints.VehicleRoutingIncrementalScoreCalculator;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
+import aws.proto.routeoptimizationaccelerator.solver.mapper.DefaultConfigurationValuesProvider;
+import aws.proto.routeoptimizationaccelerator.solver.solution.VehicleRoutingSolution;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// solver factories kept for the lifetime of the worker: creating a factory generates the domain accessors and
+// builds the constraint network, hundreds of milliseconds a small problem would pay on every request.
+// What changes between the requests is not part of the factory:
+//  - the termination is given to every solver with a SolverConfigOverride
+//  - the constraint weights are part of the problem (VehicleRoutingConstraintConfiguration)
+//  - the parallel solvers share the factory of their configuration (they start from different customer orders)
+// the factories differ by their phases (solver profile and nearby moves) and their score engine only, a dozen at most.
+// The factories and the solution managers are thread safe
+public class SolverFactoryCache {
+    private static final Logger logger = LogManager.getLogger(SolverFactoryCache.class);
+
+    private record Key(SolverProfile profile, boolean nearbySelection, ScoreEngine scoreEngine) { }
+
+    private static final Map<Key, SolverFactory<VehicleRoutingSolution>> factories = new ConcurrentHashMap<>();
+
+    private static final Map<SolverFactory<VehicleRoutingSolution>, SolutionManager<VehicleRoutingSolution, HardMediumSoftLongScore>> solutionManagers = new ConcurrentHashMap<>();
+
+    private SolverFactoryCache() {}
+
+    public static SolverFactory<VehicleRoutingSolution> get(SolverProfile profile, boolean nearbySelection, ScoreEngine scoreEngine) {
+        return factories.computeIfAbsent(new Key(profile, nearbySelection, scoreEngine), key -> {
+            logger.info("Creating the solver factory of the {} profile (nearby moves: {}, score engine: {})", profile, nearbySelection, scoreEngine);
+
+            return SolverFactory.create(createConfig(profile, nearbySelection, scoreEngine));
+        });
+    }
+
+    public static SolutionManager<VehicleRoutingSolution, HardMediumSoftLongScore> getSolutionManager(SolverFactory<VehicleRoutingSolution> solverFactory) {
+        return solutionManagers.computeIfAbsent(solverFactory, SolutionManager::create);
+    }
+
+    // the termination of the requests overrides the default one
+    static SolverConfig createConfig(SolverProfile profile, boolean nearbySelection, ScoreEngine scoreEngine) {
+        SolverConfig config = new SolverConfig()
+                .withSolutionClass(VehicleRoutingSolution.class)
+                .withEntityClasses(Vehicle.class, Customer.class)
+                .withConstraintStreamImplType(ConstraintStreamImplType.BAVET)
+                .withScoreDirectorFactory(createScoreDirectorFactoryConfig(scoreEngine))
+                .withTerminationConfig(new TerminationConfig()
+                        .withSpentLimit(Duration.ofSeconds(DefaultConfigurationValuesProvider.MAX_SOLVER_DURATION))
+                        .withUnimprovedSpentLimit(Duration.ofSeconds(SolverProfiles.getUnimprovedMaxDuration(profile)))
+                );
+
+        List<PhaseConfig> phases = SolverProfiles.createPhases(profile, nearbySelection);
+
+        if (!phases.isEmpty()) {
+            config.withPhaseList(phases);
+        }
+
+        return config;
+    }
+
+    public static ScoreDirectorFactoryConfig createScoreDirectorFactoryConfig(ScoreEngine scoreEngine) {
+        ScoreDirectorFactoryConfig config = new ScoreDirectorFactoryConfig().withInitializingScoreTrend("ANY");
+
+        return switch (scoreEngine) {
+            case CONSTRAINT_STREAMS -> config.withConstraintProviderClass(VehicleRoutingConstraintProvider.class);
+            case INCREMENTAL -> config.withIncrementalScoreCalculatorClass(VehicleRoutingIncrementalScoreCalculator.class);
+        };
+    }
+
+    // drops every factory, e.g. in tests
+    public static void clear() {
+        factories.clear();
+        solutionManagers.clear();
+    }
+}
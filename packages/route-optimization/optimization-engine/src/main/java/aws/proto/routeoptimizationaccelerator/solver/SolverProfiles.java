@@ -0,0 +1,108 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver;
+
+import ai.timefold.solver.core.config.constructionheuristic.ConstructionHeuristicPhaseConfig;
+import ai.timefold.solver.core.config.constructionheuristic.decider.forager.ConstructionHeuristicForagerConfig;
+import ai.timefold.solver.core.config.constructionheuristic.decider.forager.ConstructionHeuristicPickEarlyType;
+import ai.timefold.solver.core.config.heuristic.selector.move.MoveSelectorConfig;
+import ai.timefold.solver.core.config.heuristic.selector.move.composite.UnionMoveSelectorConfig;
+import ai.timefold.solver.core.config.heuristic.selector.move.factory.MoveIteratorFactoryConfig;
+import ai.timefold.solver.core.config.heuristic.selector.move.generic.list.ListChangeMoveSelectorConfig;
+import ai.timefold.solver.core.config.heuristic.selector.move.generic.list.ListSwapMoveSelectorConfig;
+import ai.timefold.solver.core.config.heuristic.selector.move.generic.list.SubListChangeMoveSelectorConfig;
+import ai.timefold.solver.core.config.heuristic.selector.move.generic.list.SubListSwapMoveSelectorConfig;
+import ai.timefold.solver.core.config.heuristic.selector.move.generic.list.kopt.KOptListMoveSelectorConfig;
+import ai.timefold.solver.core.config.localsearch.LocalSearchPhaseConfig;
+import ai.timefold.solver.core.config.localsearch.decider.acceptor.LocalSearchAcceptorConfig;
+import ai.timefold.solver.core.config.localsearch.decider.forager.LocalSearchForagerConfig;
+import ai.timefold.solver.core.config.phase.PhaseConfig;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.SolverProfile;
+import aws.proto.routeoptimizationaccelerator.solver.mapper.DefaultConfigurationValuesProvider;
+import aws.proto.routeoptimizationaccelerator.solver.move.NearbyListMoveIteratorFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// phases of the solver for every profile, from the cheapest to the most exhaustive:
+//   FAST: every order is inserted at the first feasible position, then late acceptance on the single order moves
+//         only (1 move evaluated per step), stopped after a short unimproved time
+//   BALANCED: the default phases of the solver (best fit construction, late acceptance on every list move)
+//   THOROUGH: the late acceptance of BALANCED (400 steps, the default size of the solver) on every list move with the
+//             sub lists reversed as well, but picking the best of 4 accepted moves per step (1 by default) and
+//             stopped after a long unimproved time
+// the gap in score and time between the profiles depends on the problem, it has to be measured on the target datasets
+public class SolverProfiles {
+    private SolverProfiles() {}
+
+    // empty to use the default phases of the solver
+    public static List<PhaseConfig> createPhases(SolverProfile profile, boolean nearbySelection) {
+        return switch (profile) {
+            case FAST -> List.of(
+                    new ConstructionHeuristicPhaseConfig()
+                            .withForagerConfig(new ConstructionHeuristicForagerConfig()
+                                    .withPickEarlyType(ConstructionHeuristicPickEarlyType.FIRST_FEASIBLE_SCORE_OR_NON_DETERIORATING_HARD)
+                            ),
+                    new LocalSearchPhaseConfig()
+                            .withAcceptorConfig(new LocalSearchAcceptorConfig().withLateAcceptanceSize(100))
+                            .withForagerConfig(new LocalSearchForagerConfig().withAcceptedCountLimit(1))
+                            .withMoveSelectorConfig(createMoveSelectorConfig(nearbySelection,
+                                    new ListChangeMoveSelectorConfig(),
+                                    new ListSwapMoveSelectorConfig()
+                            ))
+            );
+            case BALANCED -> !nearbySelection ? List.of() : List.of(
+                    new ConstructionHeuristicPhaseConfig(),
+                    new LocalSearchPhaseConfig().withMoveSelectorConfig(createMoveSelectorConfig(true, defaultListMoves()))
+            );
+            case THOROUGH -> List.of(
+                    new ConstructionHeuristicPhaseConfig(),
+                    new LocalSearchPhaseConfig()
+                            .withAcceptorConfig(new LocalSearchAcceptorConfig().withLateAcceptanceSize(400))
+                            .withForagerConfig(new LocalSearchForagerConfig().withAcceptedCountLimit(4))
+                            .withMoveSelectorConfig(createMoveSelectorConfig(nearbySelection, defaultListMoves()))
+            );
+        };
+    }
+
+    // in seconds, when the request does not define it
+    public static int getUnimprovedMaxDuration(SolverProfile profile) {
+        return switch (profile) {
+            case FAST -> DefaultConfigurationValuesProvider.FAST_SOLVER_UNIMPROVED_DURATION;
+            case BALANCED -> DefaultConfigurationValuesProvider.MAX_SOLVER_UNIMPROVED_DURATION;
+            case THOROUGH -> DefaultConfigurationValuesProvider.THOROUGH_SOLVER_UNIMPROVED_DURATION;
+        };
+    }
+
+    private static MoveSelectorConfig<?>[] defaultListMoves() {
+        return new MoveSelectorConfig<?>[] {
+                new ListChangeMoveSelectorConfig(),
+                new ListSwapMoveSelectorConfig(),
+                new SubListChangeMoveSelectorConfig().withSelectReversingMoveToo(true),
+                new SubListSwapMoveSelectorConfig().withSelectReversingMoveToo(true),
+                new KOptListMoveSelectorConfig()
+        };
+    }
+
+    // the nearby moves are picked twice as often as the other moves together
+    private static MoveSelectorConfig<?> createMoveSelectorConfig(boolean nearbySelection, MoveSelectorConfig<?>... moveSelectors) {
+        List<MoveSelectorConfig> selectors = new ArrayList<>();
+
+        for (MoveSelectorConfig<?> moveSelector : moveSelectors) {
+            selectors.add(moveSelector.withFixedProbabilityWeight(1.0));
+        }
+
+        if (nearbySelection) {
+            selectors.add(new MoveIteratorFactoryConfig()
+                    .withMoveIteratorFactoryClass(NearbyListMoveIteratorFactory.class)
+                    .withMoveIteratorFactoryCustomProperties(Map.of("nearbyNeighbours", String.valueOf(DefaultConfigurationValuesProvider.NEARBY_NEIGHBOURS)))
+                    .withFixedProbabilityWeight(2.0 * moveSelectors.length)
+            );
+        }
+
+        return new UnionMoveSelectorConfig().withMoveSelectorList(selectors);
+    }
+}
@@ -6,29 +6,52 @@ package aws.proto.routeoptimizationaccelerator.solver;
 
 import ai.timefold.solver.core.api.score.ScoreExplanation;
 import ai.timefold.solver.core.api.score.buildin.hardmediumsoftlong.HardMediumSoftLongScore;
-import ai.timefold.solver.core.api.score.stream.ConstraintStreamImplType;
 import ai.timefold.solver.core.api.solver.SolutionManager;
+import ai.timefold.solver.core.api.solver.SolutionUpdatePolicy;
 import ai.timefold.solver.core.api.solver.Solver;
+import ai.timefold.solver.core.api.solver.SolverConfigOverride;
 import ai.timefold.solver.core.api.solver.SolverFactory;
-import ai.timefold.solver.core.config.score.director.ScoreDirectorFactoryConfig;
-import ai.timefold.solver.core.config.solver.SolverConfig;
 import ai.timefold.solver.core.config.solver.termination.TerminationConfig;
 import aws.proto.routeoptimizationaccelerator.data.input.Configuration;
 import aws.proto.routeoptimizationaccelerator.data.input.OptimizationRequest;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.DistanceMatrixType;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.ScoreEngine;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.SolverProfile;
 import aws.proto.routeoptimizationaccelerator.data.output.OptimizationResult;
-import aws.proto.routeoptimizationaccelerator.solver.constraints.VehicleRoutingConstraintProvider;
 import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
-import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.geo.DistanceCalculator;
+import aws.proto.routeoptimizationaccelerator.solver.geo.DistanceCalculatorFactory;
+import aws.proto.routeoptimizationaccelerator.solver.geo.HaversineDistance;
+import aws.proto.routeoptimizationaccelerator.solver.geo.MatrixIndexer;
+import aws.proto.routeoptimizationaccelerator.solver.geo.MatrixRequestPlan;
 import aws.proto.routeoptimizationaccelerator.solver.mapper.DefaultConfigurationValuesProvider;
 import aws.proto.routeoptimizationaccelerator.solver.mapper.InputMapper;
 import aws.proto.routeoptimizationaccelerator.solver.mapper.OutputMapper;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.LazyDistanceMatrix;
+import aws.proto.routeoptimizationaccelerator.solver.partition.PartitionedSearch;
+import aws.proto.routeoptimizationaccelerator.solver.solution.ArrivalTimeUpdatingVariableListener;
 import aws.proto.routeoptimizationaccelerator.solver.solution.VehicleRoutingSolution;
+import aws.proto.routeoptimizationaccelerator.utils.CpuQuota;
+import aws.proto.routeoptimizationaccelerator.utils.Futures;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public class SolverRunner {
     private static final Logger logger = LogManager.getLogger(SolverRunner.class);
@@ -45,63 +68,64 @@ public class SolverRunner {
             terminationConfig.withSpentLimit(Duration.ofSeconds(this.getMaxDuration(message.getConfig())));
             terminationConfig.withUnimprovedSpentLimit(Duration.ofSeconds(this.getUnimprovedMaxDuration(message.getConfig())));
 
-            /*ConstructionHeuristicPhaseConfig heuristicConfig = new ConstructionHeuristicPhaseConfig()
-                    .withEntitySorterManner(EntitySorterManner.DECREASING_DIFFICULTY_IF_AVAILABLE)
-                    .withForagerConfig(new ConstructionHeuristicForagerConfig()
-                            .withPickEarlyType(ConstructionHeuristicPickEarlyType.FIRST_FEASIBLE_SCORE_OR_NON_DETERIORATING_HARD)
-                    );
-
+            // the solver factories are shared by the requests, the termination of the request is given to every solver
+            SolverConfigOverride<VehicleRoutingSolution> configOverride = new SolverConfigOverride<VehicleRoutingSolution>().withTerminationConfig(terminationConfig);
+            SolverProfile profile = this.getSolverProfile(message.getConfig());
+            boolean nearbySelection = this.isNearbySelection(message);
+            ScoreEngine scoreEngine = this.getScoreEngine(message.getConfig());
 
-            LocalSearchPhaseConfig localSearchPhaseConfig = new LocalSearchPhaseConfig()
-                    .withAcceptorConfig(new LocalSearchAcceptorConfig()
-                            .withLateAcceptanceSize(400)
-                    )
-                    .withMoveSelectorConfig(new UnionMoveSelectorConfig()
-                            .withMoveSelectors(
-                                    new ListChangeMoveSelectorConfig()
-                                            .withValueSelectorConfig(new ValueSelectorConfig().withId("1"))
-                                    ,
-                                    new ListSwapMoveSelectorConfig()
-                                            .withValueSelectorConfig(new ValueSelectorConfig().withId("2"))
-                                    ,
-                                    new SubListChangeMoveSelectorConfig()
-                                            .withSelectReversingMoveToo(true)
-                                            .withSubListSelectorConfig(new SubListSelectorConfig().withId("3"))
-                                    ,
-                                    new SubListSwapMoveSelectorConfig()
-                                            .withSelectReversingMoveToo(true)
-                                            .withSubListSelectorConfig(new SubListSelectorConfig().withId("4"))
-                                    ,
-                                    new KOptListMoveSelectorConfig()
-                                            .withOriginSelectorConfig(new ValueSelectorConfig().withId("5"))
-                            )
-                    )
-                    .withForagerConfig(new LocalSearchForagerConfig()
-                            .withAcceptedCountLimit(4)
-                    );*/
-
-            SolverConfig config = new SolverConfig()
-                    .withSolutionClass(VehicleRoutingSolution.class)
-                    .withEntityClasses(Vehicle.class, Customer.class)
-                    //.withPhases(heuristicConfig, localSearchPhaseConfig)
-                    .withConstraintStreamImplType(ConstraintStreamImplType.BAVET)
-                    .withScoreDirectorFactory(new ScoreDirectorFactoryConfig()
-                            .withConstraintProviderClass(VehicleRoutingConstraintProvider.class)
-                            .withInitializingScoreTrend("ANY")
-                    ).withTerminationConfig(terminationConfig);
+            logger.info("Using the {} solver profile{} and the {} score engine", profile, nearbySelection ? " with the nearby list moves" : "", scoreEngine);
 
             Instant start = Instant.now();
 
-            SolverFactory<VehicleRoutingSolution> solverFactory = SolverFactory.create(config);
+            SolverFactory<VehicleRoutingSolution> solverFactory = SolverFactoryCache.get(profile, nearbySelection, scoreEngine);
             logger.info("Running solver");
-            Solver<VehicleRoutingSolution> solver = solverFactory.buildSolver();
-            VehicleRoutingSolution solution = solver.solve(InputMapper.convertInputToSolution(message));
+            VehicleRoutingSolution solution;
+
+            if (this.isTwoStageSolve(message.getConfig())) {
+                solution = this.solveInTwoStages(message, solverFactory, configOverride);
+            } else {
+                VehicleRoutingSolution problem = InputMapper.convertInputToSolution(message);
+
+                // with a lazy distance matrix the road distances are fetched while solving, by a single solver
+                LazyDistanceMatrix lazyMatrix = LazyDistanceResolver.getLazyMatrix(problem);
+                int solverThreads = lazyMatrix == null ? this.getSolverThreadCount(message.getConfig()) : 1;
+                int partitionSize = lazyMatrix == null ? this.getPartitionSize(message.getConfig()) : 0;
+
+                if (partitionSize > 0 && problem.getCustomers().size() > partitionSize) {
+                    solution = new PartitionedSearch(solverFactory, partitionSize, this.getPartitionThreadCount(message.getConfig())).solve(
+                            problem,
+                            Duration.ofSeconds(this.getMaxDuration(message.getConfig())),
+                            Duration.ofSeconds(this.getUnimprovedMaxDuration(message.getConfig()))
+                    );
+                } else if (solverThreads > 1) {
+                    solution = this.solveInParallel(solverFactory, configOverride, problem, solverThreads);
+                } else {
+                    Solver<VehicleRoutingSolution> solver = solverFactory.buildSolver(configOverride);
+                    LazyDistanceResolver lazyResolver = lazyMatrix != null ? new LazyDistanceResolver(solver, lazyMatrix) : null;
+
+                    if (lazyResolver != null) {
+                        lazyResolver.attach();
+                    }
+
+                    solution = solver.solve(problem);
+
+                    if (lazyResolver != null) {
+                        lazyResolver.resolveAll(solution);
+                        SolverFactoryCache.getSolutionManager(solverFactory).update(solution, SolutionUpdatePolicy.UPDATE_SCORE_ONLY);
+                    }
+                }
+            }
 
             logger.info("Solution generated correctly, writing in the database the best solution");
             logger.info("Score: {}", solution.getScore());
 
             if (message.getConfig() != null && ObjectUtils.defaultIfNull(message.getConfig().getExplain(), DefaultConfigurationValuesProvider.EXPLAIN)) {
-                SolutionManager<VehicleRoutingSolution, HardMediumSoftLongScore> solutionManager = SolutionManager.create(solverFactory);
+                // the incremental score calculator does not report the constraint matches, the explanation is always
+                // made with the constraint streams (the scores of both engines are the same)
+                SolutionManager<VehicleRoutingSolution, HardMediumSoftLongScore> solutionManager = SolverFactoryCache.getSolutionManager(
+                        SolverFactoryCache.get(profile, nearbySelection, ScoreEngine.CONSTRAINT_STREAMS)
+                );
                 ScoreExplanation<VehicleRoutingSolution, HardMediumSoftLongScore> explanation = solutionManager.explain(solution);
 
                 // TODO: write result on the output (at least getConstraintMatchTotalMap())
@@ -117,6 +141,199 @@ public class SolverRunner {
         }
     }
 
+    // the solver starts right away on the air distance while the road matrix is computed in background,
+    // once the matrix is complete the solver is restarted on the road distances from the best solution found so far:
+    // the overall time is max(matrix, solve) instead of matrix + solve
+    private VehicleRoutingSolution solveInTwoStages(OptimizationRequest message, SolverFactory<VehicleRoutingSolution> solverFactory, SolverConfigOverride<VehicleRoutingSolution> configOverride) {
+        Instant start = Instant.now();
+        DistanceCalculator roadCalculator = this.createRoadCalculator(message);
+        VehicleRoutingSolution problem = InputMapper.convertInputToSolution(message, new HaversineDistance());
+
+        List<Visit> locations = Stream.concat(problem.getDepots().stream(), problem.getVisits().stream()).toList();
+        List<Visit> matrixLocations = MatrixIndexer.indexed(locations);
+        MatrixRequestPlan plan = MatrixRequestPlan.from(matrixLocations, problem.getVehicles(), InputMapper.getMatrixStorage(message.getConfig()));
+
+        // the locations keep the air distance matrix until the air distance solver is terminated
+        ExecutorService matrixExecutor = Executors.newSingleThreadExecutor();
+        CompletableFuture<DistanceMatrix> roadMatrix = CompletableFuture.supplyAsync(
+                () -> roadCalculator.createDistanceAndTimeMatrix(matrixLocations, plan),
+                matrixExecutor
+        );
+
+        try {
+            Solver<VehicleRoutingSolution> airSolver = solverFactory.buildSolver(configOverride);
+
+            // the matrix can be completed before the solver starts, in that case the first best solution stops it
+            roadMatrix.whenComplete((matrix, error) -> airSolver.terminateEarly());
+            airSolver.addEventListener(event -> {
+                if (roadMatrix.isDone()) {
+                    airSolver.terminateEarly();
+                }
+            });
+
+            logger.info("Running solver on air distance while computing the road distance matrix");
+            VehicleRoutingSolution airSolution = airSolver.solve(problem);
+
+            DistanceMatrix matrix = Futures.await(roadMatrix);
+
+            // the solution shares the locations with the problem, arrival times are computed again on the road distances
+            locations.forEach(location -> location.setDistanceMatrix(matrix));
+            airSolution.getVehicles().forEach(vehicle -> ArrivalTimeUpdatingVariableListener.updateArrivalTimes(vehicle, Customer::setArrivalTime));
+
+            Duration elapsed = Duration.between(start, Instant.now()).truncatedTo(ChronoUnit.MILLIS);
+            Duration remaining = Duration.ofSeconds(this.getMaxDuration(message.getConfig())).minus(elapsed);
+            Duration unimproved = Duration.ofSeconds(this.getUnimprovedMaxDuration(message.getConfig()));
+
+            logger.info("Road distance matrix computed in {}, restarting the solver from the air distance solution (score {})", elapsed, airSolution.getScore());
+
+            // maxSolverDuration is the upper bound of the whole solve, the matrix included
+            if (remaining.isNegative() || remaining.isZero()) {
+                logger.warn("Road distance matrix computed after the max solver duration, the air distance solution is only scored on the road distances");
+
+                SolverFactoryCache.getSolutionManager(solverFactory).update(airSolution);
+
+                return airSolution;
+            }
+
+            TerminationConfig roadTermination = new TerminationConfig()
+                    .withSpentLimit(remaining)
+                    .withUnimprovedSpentLimit(unimproved.compareTo(remaining) < 0 ? unimproved : remaining);
+
+            return this.solveOnRoadDistance(solverFactory, airSolution, roadTermination);
+        } finally {
+            matrixExecutor.shutdown();
+        }
+    }
+
+    // road distance calculator of the two stage solve (e.g. replaced by a stub in the tests)
+    DistanceCalculator createRoadCalculator(OptimizationRequest message) {
+        return DistanceCalculatorFactory.create(message.getProblemId(), message.getConfig());
+    }
+
+    // second stage of the two stage solve, the air distance solution is already on the road distances
+    VehicleRoutingSolution solveOnRoadDistance(SolverFactory<VehicleRoutingSolution> solverFactory, VehicleRoutingSolution airSolution, TerminationConfig roadTermination) {
+        return solverFactory
+                .buildSolver(new SolverConfigOverride<VehicleRoutingSolution>().withTerminationConfig(roadTermination))
+                .solve(airSolution);
+    }
+
+    // the multithreaded move evaluation of the solver requires its enterprise edition: one solver per thread
+    // searches from the same problem and the best solution is kept (opt-in, see solverThreadCount). The solvers are
+    // built by the same factory, i.e. with the same random seed: every solver but the first one gets the customers in
+    // a different order, which changes the initial solution of the construction heuristic and then the moves selected
+    // by the local search. Every solver clones the problem when it starts (the planning entities and their shadow
+    // variables are per solver) and shares the problem facts, the distance matrix included, which are only read while solving.
+    // The first solver gets the problem as is, but the solvers share the CPUs and stop on time: it does not reproduce
+    // the search of a single solver, and the best of the solutions is not guaranteed to be as good as a single solver's
+    private VehicleRoutingSolution solveInParallel(SolverFactory<VehicleRoutingSolution> solverFactory, SolverConfigOverride<VehicleRoutingSolution> configOverride, VehicleRoutingSolution problem, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        logger.info("Running {} solvers in parallel", threads);
+
+        try {
+            List<CompletableFuture<VehicleRoutingSolution>> solutions = IntStream.range(0, threads)
+                    .mapToObj(index -> {
+                        Solver<VehicleRoutingSolution> solver = solverFactory.buildSolver(configOverride);
+                        VehicleRoutingSolution start = withShuffledCustomers(problem, index);
+
+                        return CompletableFuture.supplyAsync(() -> solver.solve(start), executor);
+                    })
+                    .toList();
+
+            List<VehicleRoutingSolution> results = solutions.stream().map(Futures::await).toList();
+
+            logger.info("Scores of the parallel solvers: {}", results.stream().map(VehicleRoutingSolution::getScore).toList());
+
+            return results.stream().max(Comparator.comparing(VehicleRoutingSolution::getScore)).orElseThrow();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // shallow copy of the problem with the customers in a different order (the problem itself for the first solver)
+    static VehicleRoutingSolution withShuffledCustomers(VehicleRoutingSolution problem, int index) {
+        if (index == 0) {
+            return problem;
+        }
+
+        List<Customer> customers = new ArrayList<>(problem.getCustomers());
+        Collections.shuffle(customers, new Random(index));
+
+        return VehicleRoutingSolution.builder()
+                .id(problem.getId())
+                .visits(problem.getVisits())
+                .depots(problem.getDepots())
+                .vehicles(problem.getVehicles())
+                .customers(customers)
+                .constraintConfiguration(problem.getConstraintConfiguration())
+                .build();
+    }
+
+    // a single solver unless configured, 0 for one solver per CPU of the container
+    private int getSolverThreadCount(Configuration configuration) {
+        int threads = configuration != null ? ObjectUtils.defaultIfNull(configuration.getSolverThreadCount(), DefaultConfigurationValuesProvider.SOLVER_THREAD_COUNT) : DefaultConfigurationValuesProvider.SOLVER_THREAD_COUNT;
+
+        return threads > 0 ? threads : CpuQuota.availableCpus();
+    }
+
+    // the sectors are solved on one thread per CPU of the container unless configured
+    private int getPartitionThreadCount(Configuration configuration) {
+        if (configuration == null || configuration.getSolverThreadCount() == null) {
+            return CpuQuota.availableCpus();
+        }
+
+        return this.getSolverThreadCount(configuration);
+    }
+
+    private int getPartitionSize(Configuration configuration) {
+        int defaultValue = DefaultConfigurationValuesProvider.PARTITION_SIZE;
+
+        if (configuration == null) {
+            return defaultValue;
+        }
+
+        return ObjectUtils.defaultIfNull(configuration.getPartitionSize(), defaultValue);
+    }
+
+    private boolean isNearbySelection(OptimizationRequest message) {
+        Configuration configuration = message.getConfig();
+        int orders = message.getOrders() != null ? message.getOrders().length : 0;
+        boolean defaultValue = orders >= DefaultConfigurationValuesProvider.NEARBY_SELECTION_MIN_ORDERS;
+        boolean nearbySelection = configuration != null ? ObjectUtils.defaultIfNull(configuration.getNearbySelection(), defaultValue) : defaultValue;
+
+        // the lazy matrix is read by the solver thread only, the neighbours are computed in parallel
+        if (nearbySelection && configuration != null && configuration.getDistanceMatrixType() == DistanceMatrixType.LAZY_ROAD) {
+            logger.info("Nearby list moves are not applicable to the LAZY_ROAD distance matrix");
+
+            return false;
+        }
+
+        return nearbySelection;
+    }
+
+    private boolean isTwoStageSolve(Configuration configuration) {
+        if (configuration == null || !ObjectUtils.defaultIfNull(configuration.getTwoStageSolve(), DefaultConfigurationValuesProvider.TWO_STAGE_SOLVE)) {
+            return false;
+        }
+
+        if (configuration.getMatrixFile() != null && !configuration.getMatrixFile().isBlank()) {
+            logger.info("Two stage solve is not applicable to a precomputed distance matrix");
+
+            return false;
+        }
+
+        DistanceMatrixType matrixType = ObjectUtils.defaultIfNull(configuration.getDistanceMatrixType(), DefaultConfigurationValuesProvider.DISTANCE_MATRIX_TYPE);
+
+        // nothing to wait for: the air distance and the estimate are immediate and the lazy matrix is already computed while solving
+        if (matrixType == DistanceMatrixType.AIR_DISTANCE || matrixType == DistanceMatrixType.ESTIMATED_ROAD || matrixType == DistanceMatrixType.LAZY_ROAD) {
+            logger.info("Two stage solve is not applicable to the {} distance matrix", matrixType);
+
+            return false;
+        }
+
+        return true;
+    }
+
     private int getMaxDuration(Configuration configuration) {
         int defaultValue = DefaultConfigurationValuesProvider.MAX_SOLVER_DURATION;
 
@@ -127,8 +344,28 @@ public class SolverRunner {
         return ObjectUtils.defaultIfNull(configuration.getMaxSolverDuration(), defaultValue);
     }
 
+    private SolverProfile getSolverProfile(Configuration configuration) {
+        SolverProfile defaultValue = DefaultConfigurationValuesProvider.SOLVER_PROFILE;
+
+        if (configuration == null) {
+            return defaultValue;
+        }
+
+        return ObjectUtils.defaultIfNull(configuration.getSolverProfile(), defaultValue);
+    }
+
+    private ScoreEngine getScoreEngine(Configuration configuration) {
+        ScoreEngine defaultValue = DefaultConfigurationValuesProvider.SCORE_ENGINE;
+
+        if (configuration == null) {
+            return defaultValue;
+        }
+
+        return ObjectUtils.defaultIfNull(configuration.getScoreEngine(), defaultValue);
+    }
+
     private int getUnimprovedMaxDuration(Configuration configuration) {
-        int defaultValue = DefaultConfigurationValuesProvider.MAX_SOLVER_UNIMPROVED_DURATION;
+        int defaultValue = SolverProfiles.getUnimprovedMaxDuration(this.getSolverProfile(configuration));
 
         if (configuration == null) {
             return defaultValue;
@@ -0,0 +1,260 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.constraints;
+
+import ai.timefold.solver.core.api.score.buildin.hardmediumsoftlong.HardMediumSoftLongScore;
+import ai.timefold.solver.core.api.score.calculator.IncrementalScoreCalculator;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.solution.VehicleRoutingSolution;
+
+import java.time.LocalDateTime;
+import java.util.DoubleSummaryStatistics;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// the constraints of the VehicleRoutingConstraintProvider computed by hand, the scores of both are the same
+// (VehicleRoutingIncrementalScoreCalculatorTest). The score of every vehicle and customer is kept and only the
+// changed ones are computed again, the vehicles in a single pass over their route (the constraint streams
+// walk the route once per total: driving time, total time, distance, weight and volume).
+// A vehicle is changed by the moves on its route and by the arrival times of its customers (waiting time),
+// a customer by its arrival time and its vehicle
+public class VehicleRoutingIncrementalScoreCalculator implements IncrementalScoreCalculator<VehicleRoutingSolution, HardMediumSoftLongScore> {
+    private VehicleRoutingConstraintConfiguration weights;
+
+    // hard, medium and soft score of every vehicle and customer
+    private final Map<Vehicle, long[]> vehicleScores = new HashMap<>();
+    private final Map<Customer, long[]> customerScores = new HashMap<>();
+
+    private final Set<Vehicle> changedVehicles = new LinkedHashSet<>();
+    private final Set<Customer> changedCustomers = new LinkedHashSet<>();
+
+    private long hardScore;
+    private long mediumScore;
+    private long softScore;
+
+    @Override
+    public void resetWorkingSolution(VehicleRoutingSolution solution) {
+        this.weights = solution.getConstraintConfiguration();
+        this.vehicleScores.clear();
+        this.customerScores.clear();
+        this.changedVehicles.clear();
+        this.changedCustomers.clear();
+        this.hardScore = 0;
+        this.mediumScore = 0;
+        this.softScore = 0;
+
+        this.changedVehicles.addAll(solution.getVehicles());
+        this.changedCustomers.addAll(solution.getCustomers());
+    }
+
+    @Override
+    public void beforeEntityAdded(Object entity) {
+
+    }
+
+    @Override
+    public void afterEntityAdded(Object entity) {
+        this.changed(entity);
+    }
+
+    @Override
+    public void beforeVariableChanged(Object entity, String variableName) {
+        this.changed(entity);
+    }
+
+    @Override
+    public void afterVariableChanged(Object entity, String variableName) {
+        this.changed(entity);
+    }
+
+    @Override
+    public void beforeListVariableElementUnassigned(String variableName, Object element) {
+        this.changed(element);
+    }
+
+    @Override
+    public void afterListVariableElementAssigned(String variableName, Object element) {
+        this.changed(element);
+    }
+
+    @Override
+    public void beforeListVariableChanged(Object entity, String variableName, int fromIndex, int toIndex) {
+        this.changedRange((Vehicle) entity, fromIndex, toIndex);
+    }
+
+    @Override
+    public void afterListVariableChanged(Object entity, String variableName, int fromIndex, int toIndex) {
+        this.changedRange((Vehicle) entity, fromIndex, toIndex);
+    }
+
+    @Override
+    public void beforeEntityRemoved(Object entity) {
+        long[] score = entity instanceof Vehicle vehicle ? this.vehicleScores.remove(vehicle) : this.customerScores.remove((Customer) entity);
+
+        if (score != null) {
+            this.add(score, -1);
+        }
+
+        this.changedVehicles.remove(entity);
+        this.changedCustomers.remove(entity);
+
+        if (entity instanceof Customer customer && customer.getVehicle() != null) {
+            this.changedVehicles.add(customer.getVehicle());
+        }
+    }
+
+    @Override
+    public void afterEntityRemoved(Object entity) {
+
+    }
+
+    @Override
+    public HardMediumSoftLongScore calculateScore() {
+        for (Vehicle vehicle : this.changedVehicles) {
+            this.update(this.vehicleScores, vehicle, this.vehicleScore(vehicle));
+        }
+        for (Customer customer : this.changedCustomers) {
+            this.update(this.customerScores, customer, this.customerScore(customer));
+        }
+
+        this.changedVehicles.clear();
+        this.changedCustomers.clear();
+
+        return HardMediumSoftLongScore.of(this.hardScore, this.mediumScore, this.softScore);
+    }
+
+    private void changed(Object entity) {
+        if (entity instanceof Vehicle vehicle) {
+            this.changedVehicles.add(vehicle);
+        } else if (entity instanceof Customer customer) {
+            this.changedCustomers.add(customer);
+
+            // the waiting time of the customer is part of the total time of its vehicle
+            if (customer.getVehicle() != null) {
+                this.changedVehicles.add(customer.getVehicle());
+            }
+        }
+    }
+
+    private void changedRange(Vehicle vehicle, int fromIndex, int toIndex) {
+        this.changedVehicles.add(vehicle);
+        this.changedCustomers.addAll(vehicle.getCustomers().subList(fromIndex, toIndex));
+    }
+
+    private <T> void update(Map<T, long[]> scores, T entity, long[] score) {
+        long[] previous = scores.put(entity, score);
+
+        if (previous != null) {
+            this.add(previous, -1);
+        }
+
+        this.add(score, 1);
+    }
+
+    private void add(long[] score, int sign) {
+        this.hardScore += sign * score[0];
+        this.mediumScore += sign * score[1];
+        this.softScore += sign * score[2];
+    }
+
+    // the totals of Vehicle in a single pass, with the same arithmetic (e.g. the compensated sum of the weights)
+    private long[] vehicleScore(Vehicle vehicle) {
+        List<Customer> customers = vehicle.getCustomers();
+        long drivingTime = 0;
+        long totalTime = 0;
+        long drivingDistance = 0;
+        long distanceFromPreviousStandstills = 0;
+        DoubleSummaryStatistics weight = new DoubleSummaryStatistics();
+        DoubleSummaryStatistics volume = new DoubleSummaryStatistics();
+
+        if (!customers.isEmpty()) {
+            Visit previousLocation = vehicle.getDepot();
+            boolean timeDependent = vehicle.getDepot().getDistanceMatrix().isTimeDependent();
+            LocalDateTime departureTime = timeDependent ? vehicle.getPreferredDepartureTime() : null;
+
+            for (Customer customer : customers) {
+                long time = previousLocation.getTimeTo(customer.getVisit(), departureTime);
+
+                drivingTime += time;
+                totalTime += time + customer.getServiceDuration().toSeconds() + customer.getWaitingDuration().toSeconds();
+                drivingDistance += previousLocation.getDistanceTo(customer.getVisit());
+
+                if (customer.getWeight() != null) {
+                    weight.accept(customer.getWeight());
+                }
+                if (customer.getVolume() != null) {
+                    volume.accept(customer.getVolume());
+                }
+
+                previousLocation = customer.getVisit();
+                departureTime = timeDependent ? customer.getDepartureTime() : null;
+            }
+
+            // the travel distance constraint sums the distance from the previous standstill of every customer
+            distanceFromPreviousStandstills = drivingDistance;
+
+            if (vehicle.isBackToOrigin()) {
+                long time = previousLocation.getTimeTo(vehicle.getDepot(), departureTime);
+
+                drivingTime += time;
+                totalTime += time;
+                drivingDistance += previousLocation.getDistanceTo(vehicle.getDepot());
+            }
+        }
+
+        long[] score = new long[3];
+
+        penalize(score, this.weights.getMaximumOrders(), excess(customers.size(), vehicle.getMaximumOrders() != null ? (long) vehicle.getMaximumOrders() : null));
+        penalize(score, this.weights.getMaximumTime(), excess(totalTime, vehicle.getMaximumTime()));
+        penalize(score, this.weights.getMaximumDistance(), excess(drivingDistance, vehicle.getMaximumDistance()));
+        penalize(score, this.weights.getVehicleCapacity(), excess(weight.getSum(), vehicle.getMaximumWeight()));
+        penalize(score, this.weights.getVehicleVolume(), excess(volume.getSum(), vehicle.getMaximumVolume()));
+        penalize(score, this.weights.getVirtualVehicle(), !customers.isEmpty() && vehicle.isVirtual() ? 1 : 0);
+        penalize(score, this.weights.getTravelTime(), drivingTime);
+        penalize(score, this.weights.getTravelDistance(), distanceFromPreviousStandstills);
+
+        return score;
+    }
+
+    private long[] customerScore(Customer customer) {
+        long[] score = new long[3];
+
+        penalize(score, this.weights.getOrderRequirements(), customer.getMissingRequirementsCount());
+        penalize(score, this.weights.getLateArrival(), customer.getLateArrivalExcess());
+        penalize(score, this.weights.getEarlyArrival(), customer.getWaitingTime());
+        penalize(score, this.weights.getLateDeparture(), customer.getLateDepartureExcess());
+
+        return score;
+    }
+
+    // as Vehicle.getExcessOrders(), getExcessTime() and getExcessDistance()
+    private static long excess(long total, Long maximum) {
+        if (maximum == null || total < maximum) {
+            return 0L;
+        }
+
+        return total - maximum;
+    }
+
+    // as Vehicle.getExcessWeight() and getExcessVolume(), in hundredths
+    private static long excess(double total, Double maximum) {
+        if (maximum == null || total < maximum) {
+            return 0L;
+        }
+
+        return (long) ((total - maximum) * 100);
+    }
+
+    private static void penalize(long[] score, HardMediumSoftLongScore weight, long matchWeight) {
+        score[0] -= weight.hardScore() * matchWeight;
+        score[1] -= weight.mediumScore() * matchWeight;
+        score[2] -= weight.softScore() * matchWeight;
+    }
+}
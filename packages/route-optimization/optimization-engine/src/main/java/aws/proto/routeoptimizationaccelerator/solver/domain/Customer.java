@@ -155,11 +155,25 @@ public class Customer {
                     "This method must not be called when the shadow variables are not initialized yet.");
         }
 
+        // the departure from the previous standstill matters only with time dependent travel times
+        if (!visit.getDistanceMatrix().isTimeDependent()) {
+            return this.getDrivingTimeFromPreviousStandstill(null);
+        }
+
+        return this.getDrivingTimeFromPreviousStandstill(previousCustomer == null ? vehicle.getPreferredDepartureTime() : previousCustomer.getDepartureTime());
+    }
+
+    public long getDrivingTimeFromPreviousStandstill(LocalDateTime previousDepartureTime) {
+        if (vehicle == null) {
+            throw new IllegalStateException(
+                    "This method must not be called when the shadow variables are not initialized yet.");
+        }
+
         if (previousCustomer == null) {
-            return vehicle.getDepot().getTimeTo(visit);
+            return vehicle.getDepot().getTimeTo(visit, previousDepartureTime);
         }
 
-        return previousCustomer.getVisit().getTimeTo(visit);
+        return previousCustomer.getVisit().getTimeTo(visit, previousDepartureTime);
     }
 
     public long getDistanceFromPreviousStandstill() {
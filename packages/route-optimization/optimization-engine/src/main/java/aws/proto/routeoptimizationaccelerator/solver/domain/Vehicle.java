@@ -54,17 +54,21 @@ public class Vehicle {
 
         long totalTime = 0;
         Visit previousLocation = depot;
+        // tracked only when the travel times depend on the time of the day
+        boolean timeDependent = depot.getDistanceMatrix().isTimeDependent();
+        LocalDateTime departureTime = timeDependent ? preferredDepartureTime : null;
 
         for (Customer customer : customers) {
-            totalTime += previousLocation.getDurationTo(customer.getVisit()).toSeconds();
+            totalTime += previousLocation.getTimeTo(customer.getVisit(), departureTime);
             totalTime += customer.getServiceDuration().toSeconds();
             totalTime += customer.getWaitingDuration().toSeconds();
 
             previousLocation = customer.getVisit();
+            departureTime = timeDependent ? customer.getDepartureTime() : null;
         }
 
         if (this.backToOrigin) {
-            totalTime += previousLocation.getTimeTo(depot);
+            totalTime += previousLocation.getTimeTo(depot, departureTime);
         }
 
         return totalTime;
@@ -77,14 +81,17 @@ public class Vehicle {
 
         long totalTime = 0;
         Visit previousLocation = depot;
+        boolean timeDependent = depot.getDistanceMatrix().isTimeDependent();
+        LocalDateTime departureTime = timeDependent ? preferredDepartureTime : null;
 
         for (Customer customer : customers) {
-            totalTime += previousLocation.getTimeTo(customer.getVisit());
+            totalTime += previousLocation.getTimeTo(customer.getVisit(), departureTime);
             previousLocation = customer.getVisit();
+            departureTime = timeDependent ? customer.getDepartureTime() : null;
         }
 
         if (this.backToOrigin) {
-            totalTime += previousLocation.getTimeTo(depot);
+            totalTime += previousLocation.getTimeTo(depot, departureTime);
         }
 
         return totalTime;
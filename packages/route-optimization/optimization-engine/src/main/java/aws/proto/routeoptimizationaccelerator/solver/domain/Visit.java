@@ -5,34 +5,40 @@
 package aws.proto.routeoptimizationaccelerator.solver.domain;
 
 import aws.proto.routeoptimizationaccelerator.common.Location;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.Setter;
 
-import java.time.Duration;
-import java.util.Map;
+import java.time.LocalDateTime;
 
+@Getter
+@Setter
 public class Visit extends Location {
-    private Map<Visit, Double> drivingDistance;
-    private Map<Visit, Duration> drivingDuration;
+    // position of this visit in the distance matrix rows/columns
+    @JsonIgnore
+    private int matrixIndex;
 
-
-    public void setDrivingDistanceMap(Map<Visit, Double> distanceMap) {
-        this.drivingDistance = distanceMap;
-    }
+    @JsonIgnore
+    private DistanceMatrix distanceMatrix;
 
     public long getDistanceTo(Visit location) {
-        // convert it in meters
-        return (long)(drivingDistance.get(location) * 1000);
-    }
-
-    public void setDrivingDurationMap(Map<Visit, Duration> timeMap) {
-        this.drivingDuration = timeMap;
+        // in meters
+        return distanceMatrix.getDistance(matrixIndex, location.matrixIndex);
     }
 
     public long getTimeTo(Visit location) {
-        return drivingDuration.get(location).toSeconds();
+        // in seconds
+        return distanceMatrix.getTime(matrixIndex, location.matrixIndex);
     }
 
-    public Duration getDurationTo(Visit location) {
-        return drivingDuration.get(location);
+    public long getTimeTo(Visit location, LocalDateTime departureTime) {
+        // in seconds, depending on the time of the day when the matrix is time dependent
+        if (departureTime == null || !distanceMatrix.isTimeDependent()) {
+            return distanceMatrix.getTime(matrixIndex, location.matrixIndex);
+        }
+
+        return distanceMatrix.getTime(matrixIndex, location.matrixIndex, departureTime.toLocalTime().toSecondOfDay());
     }
 
     public static Visit fromLocation(Location l) {
@@ -5,26 +5,45 @@
 package aws.proto.routeoptimizationaccelerator.solver.geo;
 
 import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
 
 import java.time.Duration;
 import java.util.List;
-import java.util.Map;
 
 public interface DistanceCalculator {
     DistanceAndTime calculateDistanceAndTime(Visit from, Visit to);
 
-    DistanceAndTimeMap calculateBulkDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations);
+    // fills the matrix cells [from.matrixIndex][to.matrixIndex] for every from/to pair
+    void calculateBulkDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations, DistanceMatrix matrix);
 
-    default void initDistanceAndTimeMaps(List<Visit> locationList) {
-        DistanceAndTimeMap distanceAndTimeMatrix = this.calculateBulkDistanceAndTime(locationList, locationList);
+    // locations must have their matrix index already assigned (0..size-1)
+    // the matrix is assigned to every location
+    default DistanceMatrix initDistanceAndTimeMatrix(List<Visit> locationList, MatrixRequestPlan plan) {
+        DistanceMatrix matrix = this.createDistanceAndTimeMatrix(locationList, plan);
 
-        locationList.forEach(location -> {
-            location.setDrivingDistanceMap(distanceAndTimeMatrix.distanceMap.get(location));
-            location.setDrivingDurationMap(distanceAndTimeMatrix.timeMap.get(location));
-        });
+        locationList.forEach(location -> location.setDistanceMatrix(matrix));
+
+        return matrix;
     }
 
-    record DistanceAndTime(double distance, Duration time) { }
+    // same as initDistanceAndTimeMatrix() but the locations are left untouched (e.g. still used by a running solver)
+    // only the cells listed by the plan are computed, the others are left to 0
+    default DistanceMatrix createDistanceAndTimeMatrix(List<Visit> locationList, MatrixRequestPlan plan) {
+        DistanceMatrix matrix = plan.createMatrix(locationList.size(), this.isSymmetric());
+
+        this.calculatePlannedDistanceAndTime(plan, matrix);
+
+        return matrix;
+    }
 
-    record DistanceAndTimeMap(Map<Visit, Map<Visit, Double>> distanceMap, Map<Visit, Map<Visit, Duration>> timeMap) { }
+    // true if the distance and time from A to B are always the same as from B to A
+    default boolean isSymmetric() {
+        return false;
+    }
+
+    default void calculatePlannedDistanceAndTime(MatrixRequestPlan plan, DistanceMatrix matrix) {
+        plan.blocks().forEach(block -> this.calculateBulkDistanceAndTime(block.fromLocations(), block.toLocations(), matrix));
+    }
+
+    record DistanceAndTime(double distance, Duration time) { }
 }
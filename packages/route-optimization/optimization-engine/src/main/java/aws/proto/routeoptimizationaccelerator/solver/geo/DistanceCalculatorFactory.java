@@ -7,33 +7,253 @@ package aws.proto.routeoptimizationaccelerator.solver.geo;
 import aws.proto.routeoptimizationaccelerator.data.input.Configuration;
 import aws.proto.routeoptimizationaccelerator.data.input.enums.DistanceMatrixType;
 import aws.proto.routeoptimizationaccelerator.aws.LocationHelper;
+import aws.proto.routeoptimizationaccelerator.solver.geo.cache.FileRoadMatrixCache;
+import aws.proto.routeoptimizationaccelerator.solver.geo.cache.MatrixReuseStore;
+import aws.proto.routeoptimizationaccelerator.solver.geo.cache.NoOpRoadMatrixCache;
+import aws.proto.routeoptimizationaccelerator.solver.geo.cache.RoadMatrixCache;
+import aws.proto.routeoptimizationaccelerator.solver.geo.estimate.DetourModel;
+import aws.proto.routeoptimizationaccelerator.solver.geo.estimate.DetourModelStore;
 import aws.proto.routeoptimizationaccelerator.solver.mapper.DefaultConfigurationValuesProvider;
 import aws.proto.routeoptimizationaccelerator.utils.EnvVariables;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class DistanceCalculatorFactory {
     private static final Logger logger = LogManager.getLogger(DistanceCalculatorFactory.class);
 
-    public static DistanceCalculator create(Configuration commonConfiguration) {
+    public static DistanceCalculator create(String problemId, Configuration commonConfiguration) {
+        DistanceCalculator calculator = createStatic(problemId, commonConfiguration);
+
+        Integer defaultTimeBuckets = DefaultConfigurationValuesProvider.TIME_BUCKETS;
+        int timeBuckets = commonConfiguration != null ? ObjectUtils.defaultIfNull(commonConfiguration.getTimeBuckets(), defaultTimeBuckets) : defaultTimeBuckets;
+
+        if (timeBuckets <= 0) {
+            return calculator;
+        }
+
+        // the lazy matrix is resolved while solving, the travel times stay the same all day
+        if (calculator instanceof LazyRoadDistance) {
+            logger.warn("Time buckets are not supported by the LAZY_ROAD distance matrix, using the same travel times all day");
+
+            return calculator;
+        }
+
+        Boolean defaultFetchTimeBuckets = DefaultConfigurationValuesProvider.FETCH_TIME_BUCKETS;
+        boolean fetchTimeBuckets = commonConfiguration != null ? ObjectUtils.defaultIfNull(commonConfiguration.getFetchTimeBuckets(), defaultFetchTimeBuckets) : defaultFetchTimeBuckets;
+
+        // on request, road distances (ROAD_DISTANCE) are fetched for every bucket: the Amazon Location Service knows the traffic
+        // but the requests are multiplied by the number of buckets, by default the matrix is fetched once with the traffic profile
+        if (fetchTimeBuckets && calculator instanceof IncrementalDistance) {
+            logger.info("Creating the TimeSlicedDistance calculator with {} buckets fetched from Amazon Location Service", timeBuckets);
+
+            // the cells budget of the road matrix cache is shared by the buckets, every bucket has its own cache
+            int bucketCacheCells = Math.max(1, EnvVariables.getRoadMatrixCacheMaxCells() / timeBuckets);
+            String cachePath = EnvVariables.getRoadMatrixCachePath();
+            long cacheBytes = cachePath == null || cachePath.isBlank() ? 0 : timeBuckets * FileRoadMatrixCache.footprint(bucketCacheCells);
+
+            return new TimeSlicedDistance(
+                    calculator,
+                    timeBuckets,
+                    createBucketCalculators(problemId, commonConfiguration, timeBuckets, bucketCacheCells),
+                    null,
+                    cacheBytes
+            );
+        }
+
+        Double[] trafficProfile = commonConfiguration != null ? commonConfiguration.getTrafficProfile() : null;
+
+        if (trafficProfile == null || trafficProfile.length == 0) {
+            logger.warn("No traffic profile configured for the {} time buckets, using the same travel times all day", timeBuckets);
+        } else {
+            logger.info("Creating the TimeSlicedDistance calculator with a traffic profile of {} buckets", timeBuckets);
+        }
+
+        return new TimeSlicedDistance(
+                calculator,
+                timeBuckets,
+                List.of(),
+                trafficProfile == null || trafficProfile.length == 0 ? null : Arrays.stream(trafficProfile).mapToDouble(Double::doubleValue).toArray(),
+                0
+        );
+    }
+
+    private static DistanceCalculator createStatic(String problemId, Configuration commonConfiguration) {
         DistanceMatrixType defaultDistanceMatrix = DefaultConfigurationValuesProvider.DISTANCE_MATRIX_TYPE;
         Boolean defaultAvoidTolls = DefaultConfigurationValuesProvider.AVOID_TOLLS;
 
         DistanceMatrixType matrixType = commonConfiguration != null ? ObjectUtils.defaultIfNull(commonConfiguration.getDistanceMatrixType(), defaultDistanceMatrix) : defaultDistanceMatrix;
         boolean avoidTolls = commonConfiguration != null ? ObjectUtils.defaultIfNull(commonConfiguration.getAvoidTolls(), defaultAvoidTolls) : defaultAvoidTolls;
 
+        String matrixFile = commonConfiguration != null ? commonConfiguration.getMatrixFile() : null;
+
+        if (matrixFile != null && !matrixFile.isBlank()) {
+            logger.info("Creating the PrecomputedDistance calculator");
+
+            return PrecomputedDistance.open(resolveMatrixFile(matrixFile, EnvVariables.getMatrixStorePath()));
+        }
+
         if (matrixType == DistanceMatrixType.AIR_DISTANCE) {
             logger.info("Creating the HaversineDistance calculator");
 
             return new HaversineDistance();
         }
 
+        if (matrixType == DistanceMatrixType.ROAD_GRAPH) {
+            String graphPath = EnvVariables.getRoadGraphPath();
+
+            if (graphPath == null || graphPath.isBlank()) {
+                throw new RuntimeException("ROAD_GRAPH distance matrix requires the ROAD_GRAPH_PATH environment variable");
+            }
+
+            logger.info("Creating the RoadGraphDistance calculator");
+
+            return RoadGraphDistance.open(Path.of(graphPath));
+        }
+
+        if (matrixType == DistanceMatrixType.ESTIMATED_ROAD) {
+            logger.info("Creating the EstimatedDistance calculator");
+
+            return new EstimatedDistance(loadDetourModel(LocationHelper.profileName(EnvVariables.getRouteCalculatorName(), avoidTolls)));
+        }
+
         logger.info("Creating the RoadDistance calculator");
 
         // for road distance we use Amazon Location Service
-        return new RoadDistance(
-                new LocationHelper(EnvVariables.getRegion(), EnvVariables.getRouteCalculatorName(), avoidTolls)
+        LocationHelper locationHelper = new LocationHelper(EnvVariables.getRegion(), EnvVariables.getRouteCalculatorName(), avoidTolls);
+
+        RoadDistance roadDistance = new RoadDistance(
+                locationHelper,
+                createRoadMatrixCache(locationHelper),
+                createRoadMatrixCheckpoint(locationHelper, problemId)
         );
+
+        if (matrixType == DistanceMatrixType.SPARSE_NEAREST) {
+            Integer defaultNearestNeighbours = DefaultConfigurationValuesProvider.NEAREST_NEIGHBOURS;
+            int nearestNeighbours = commonConfiguration != null ? ObjectUtils.defaultIfNull(commonConfiguration.getNearestNeighbours(), defaultNearestNeighbours) : defaultNearestNeighbours;
+
+            logger.info("Creating the SparseNearestDistance calculator with {} nearest neighbours", nearestNeighbours);
+
+            return new SparseNearestDistance(roadDistance, nearestNeighbours);
+        }
+
+        if (matrixType == DistanceMatrixType.LAZY_ROAD) {
+            logger.info("Creating the LazyRoadDistance calculator");
+
+            return new LazyRoadDistance(roadDistance);
+        }
+
+        // consecutive requests compute only the rows/columns of the locations missing from the previous matrix
+        return new IncrementalDistance(roadDistance, createMatrixReuseStore(locationHelper));
+    }
+
+    // one road calculator per bucket departing in the middle of the bucket: the service accepts only
+    // departure times in the future, the next occurrence of the time of the day is used (in UTC, as the vehicle times)
+    private static List<DistanceCalculator> createBucketCalculators(String problemId, Configuration commonConfiguration, int timeBuckets, int cacheCells) {
+        Boolean defaultAvoidTolls = DefaultConfigurationValuesProvider.AVOID_TOLLS;
+        boolean avoidTolls = commonConfiguration != null ? ObjectUtils.defaultIfNull(commonConfiguration.getAvoidTolls(), defaultAvoidTolls) : defaultAvoidTolls;
+        int bucketSeconds = 24 * 60 * 60 / timeBuckets;
+        Instant now = Instant.now();
+        List<DistanceCalculator> calculators = new ArrayList<>();
+
+        for (int bucket = 0; bucket < timeBuckets; bucket++) {
+            Instant departureTime = now.truncatedTo(ChronoUnit.DAYS).plusSeconds((long) bucket * bucketSeconds + bucketSeconds / 2);
+
+            if (!departureTime.isAfter(now)) {
+                departureTime = departureTime.plus(1, ChronoUnit.DAYS);
+            }
+
+            LocationHelper locationHelper = new LocationHelper(EnvVariables.getRegion(), EnvVariables.getRouteCalculatorName(), avoidTolls, departureTime);
+
+            calculators.add(new RoadDistance(
+                    locationHelper,
+                    createRoadMatrixCache(locationHelper, cacheCells),
+                    createRoadMatrixCheckpoint(locationHelper, problemId)
+            ));
+        }
+
+        return calculators;
+    }
+
+    private static MatrixReuseStore createMatrixReuseStore(LocationHelper locationHelper) {
+        String reusePath = EnvVariables.getMatrixReusePath();
+
+        return new MatrixReuseStore(
+                locationHelper.getProfileName(),
+                reusePath == null || reusePath.isBlank() ? null : Path.of(reusePath),
+                Duration.ofMinutes(EnvVariables.getMatrixReuseMaxAgeMinutes())
+        );
+    }
+
+    private static RoadMatrixCache createRoadMatrixCache(LocationHelper locationHelper) {
+        return createRoadMatrixCache(locationHelper, EnvVariables.getRoadMatrixCacheMaxCells());
+    }
+
+    private static RoadMatrixCache createRoadMatrixCache(LocationHelper locationHelper, int maxCells) {
+        String cachePath = EnvVariables.getRoadMatrixCachePath();
+
+        if (cachePath == null || cachePath.isBlank()) {
+            return new NoOpRoadMatrixCache();
+        }
+
+        return FileRoadMatrixCache.open(Path.of(cachePath), locationHelper.getProfileName(), maxCells);
+    }
+
+    // keys are resolved in the matrix store (s3://bucket/key as bucket/key), the request is not trusted:
+    // absolute paths and keys resolved outside of the store (e.g. with "..") are rejected
+    static Path resolveMatrixFile(String matrixFile, String storePath) {
+        if (storePath == null || storePath.isBlank()) {
+            throw new RuntimeException("Matrix file " + matrixFile + " requires the MATRIX_STORE_PATH environment variable");
+        }
+
+        String key = matrixFile.replaceFirst("^s3://", "");
+
+        if (Path.of(key).isAbsolute()) {
+            throw new RuntimeException("Matrix file " + matrixFile + " must be a key of the matrix store, not an absolute path");
+        }
+
+        Path store = Path.of(storePath).toAbsolutePath().normalize();
+        Path resolved = store.resolve(key).normalize();
+
+        if (!resolved.startsWith(store) || resolved.equals(store)) {
+            throw new RuntimeException("Matrix file " + matrixFile + " is outside of the matrix store");
+        }
+
+        return resolved;
+    }
+
+    // the model is fitted again in the background once the road matrix cache changed enough since it was saved
+    private static DetourModel loadDetourModel(String profileName) {
+        String cachePath = EnvVariables.getRoadMatrixCachePath();
+
+        return new DetourModelStore(
+                profileName,
+                Path.of(EnvVariables.getDetourModelPath(profileName)),
+                cachePath != null && !cachePath.isBlank() ? Path.of(cachePath) : null,
+                EnvVariables.getDetourModelRefitCells()
+        ).get();
+    }
+
+    private static RoadMatrixCache createRoadMatrixCheckpoint(LocationHelper locationHelper, String problemId) {
+        if (problemId == null || problemId.isBlank()) {
+            return new NoOpRoadMatrixCache();
+        }
+
+        if (EnvVariables.getRoadMatrixCheckpointPath() == null) {
+            logger.info("Neither ROAD_MATRIX_CHECKPOINT_PATH nor ROAD_MATRIX_CACHE_PATH is set, the road matrix is not checkpointed");
+
+            return new NoOpRoadMatrixCache();
+        }
+
+        // the checkpoint holds the matrix of a single problem, none of its cells is evicted
+        return FileRoadMatrixCache.open(Path.of(EnvVariables.getRoadMatrixCheckpointPath()), locationHelper.getProfileName() + "_" + problemId, FileRoadMatrixCache.MAX_CELLS);
     }
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.geo.estimate.DetourModel;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// road distance and time estimated with a DetourModel fitted on the road matrices fetched so far,
+// no request is sent to the routing service. The error bounds of the bands used by the matrix are logged
+public class EstimatedDistance implements DistanceCalculator {
+    private static final Logger logger = LogManager.getLogger(EstimatedDistance.class);
+
+    private final DetourModel model;
+
+    public EstimatedDistance(DetourModel model) {
+        this.model = model;
+    }
+
+    @Override
+    public DistanceAndTime calculateDistanceAndTime(Visit from, Visit to) {
+        long[] estimate = this.estimate(from, to, null);
+
+        return new DistanceAndTime(estimate[0] / 1000.0, Duration.ofSeconds(estimate[1]));
+    }
+
+    @Override
+    public void calculateBulkDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations, DistanceMatrix matrix) {
+        this.fill(fromLocations, toLocations, matrix);
+    }
+
+    @Override
+    public DistanceMatrix createDistanceAndTimeMatrix(List<Visit> locationList, MatrixRequestPlan plan) {
+        DistanceMatrix matrix = plan.createMatrix(locationList.size(), this.isSymmetric());
+        ErrorBounds bounds = plan.blocks().stream()
+                .map(block -> this.fill(block.fromLocations(), block.toLocations(), matrix))
+                .reduce(new ErrorBounds(), ErrorBounds::add);
+
+        logger.info("Estimated distance matrix for {} locations (model fitted on {} cells), {} cells on default values, " +
+                        "distance error p50={}% p90={}%, time error p50={}% p90={}%",
+                locationList.size(),
+                this.model.getSamples(),
+                bounds.unfitted,
+                percent(bounds.distanceP50 / bounds.fitted),
+                percent(bounds.distanceP90 / bounds.fitted),
+                percent(bounds.timeP50 / bounds.fitted),
+                percent(bounds.timeP90 / bounds.fitted)
+        );
+
+        return matrix;
+    }
+
+    private ErrorBounds fill(List<Visit> fromLocations, List<Visit> toLocations, DistanceMatrix matrix) {
+        // every row writes its own cells, the rows are computed in parallel and their error bounds summed up
+        return IntStream.range(0, fromLocations.size()).parallel().mapToObj(i -> {
+            ErrorBounds bounds = new ErrorBounds();
+            Visit from = fromLocations.get(i);
+
+            for (Visit to : toLocations) {
+                long[] estimate = this.estimate(from, to, bounds);
+
+                matrix.set(from.getMatrixIndex(), to.getMatrixIndex(), estimate[0], estimate[1]);
+            }
+
+            return bounds;
+        }).reduce(new ErrorBounds(), ErrorBounds::add);
+    }
+
+    // distance in meters and time in seconds
+    private long[] estimate(Visit from, Visit to, ErrorBounds bounds) {
+        if (from.getLatitude() == to.getLatitude() && from.getLongitude() == to.getLongitude()) {
+            return new long[] { 0, 0 };
+        }
+
+        double air = DetourModel.airDistance(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+        DetourModel.Band band = this.model.getBand(from.getLatitude(), from.getLongitude(), air);
+        double distance = air * DetourModel.getDetourFactor(band);
+
+        if (bounds != null) {
+            bounds.add(band);
+        }
+
+        return new long[] { (long) distance, (long) (distance / DetourModel.getSpeed(band)) };
+    }
+
+    private static long percent(double ratio) {
+        return Double.isNaN(ratio) ? 0 : Math.round(ratio * 100);
+    }
+
+    // error percentiles of the bands used by the cells, summed up to be averaged over the fitted cells
+    private static class ErrorBounds {
+        private long fitted = 0;
+        private long unfitted = 0;
+        private double distanceP50 = 0;
+        private double distanceP90 = 0;
+        private double timeP50 = 0;
+        private double timeP90 = 0;
+
+        void add(DetourModel.Band band) {
+            if (band == null) {
+                this.unfitted++;
+                return;
+            }
+
+            this.fitted++;
+            this.distanceP50 += band.distanceErrorP50();
+            this.distanceP90 += band.distanceErrorP90();
+            this.timeP50 += band.timeErrorP50();
+            this.timeP90 += band.timeErrorP90();
+        }
+
+        // returns a new instance, both sides are left untouched (the identity of the parallel reductions is shared)
+        ErrorBounds add(ErrorBounds other) {
+            ErrorBounds sum = new ErrorBounds();
+
+            sum.fitted = this.fitted + other.fitted;
+            sum.unfitted = this.unfitted + other.unfitted;
+            sum.distanceP50 = this.distanceP50 + other.distanceP50;
+            sum.distanceP90 = this.distanceP90 + other.distanceP90;
+            sum.timeP50 = this.timeP50 + other.timeP50;
+            sum.timeP90 = this.timeP90 + other.timeP90;
+
+            return sum;
+        }
+    }
+}
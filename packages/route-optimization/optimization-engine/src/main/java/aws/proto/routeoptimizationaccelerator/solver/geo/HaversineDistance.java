@@ -6,10 +6,11 @@ package aws.proto.routeoptimizationaccelerator.solver.geo;
 
 import aws.proto.routeoptimizationaccelerator.common.Position;
 import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
+
 import java.time.Duration;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.stream.IntStream;
 
 public class HaversineDistance implements DistanceCalculator {
     // in Kilometers, refers to the Equatorial radius
@@ -29,26 +30,55 @@ public class HaversineDistance implements DistanceCalculator {
     }
 
     @Override
-    public DistanceAndTimeMap calculateBulkDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations) {
-        Map<Visit, Map<Visit, Double>> distanceMap = new HashMap<>();
-        Map<Visit, Map<Visit, Duration>> timeMap = new HashMap<>();
+    public boolean isSymmetric() {
+        return true;
+    }
+
+    @Override
+    public void calculateBulkDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations, DistanceMatrix matrix) {
+        // radians and cosines are computed once per location instead of once per pair
+        Coordinates from = new Coordinates(fromLocations);
+        Coordinates to = fromLocations == toLocations ? from : new Coordinates(toLocations);
+        // air distance is symmetric: when both axes are the same list only the upper triangle is computed
+        boolean symmetric = from == to;
+
+        // every row writes its own cells (and their mirror), rows can be computed in parallel
+        IntStream.range(0, from.size()).parallel().forEach(i -> {
+            int rowIndex = from.matrixIndexes[i];
 
-        fromLocations.forEach(from -> {
-            Map<Visit, Double> itemDistance = new HashMap<>();
-            Map<Visit, Duration> itemTime = new HashMap<>();
+            if (symmetric) {
+                matrix.set(rowIndex, rowIndex, 0, 0);
+            }
 
-            toLocations.forEach(to -> {
-                DistanceAndTime distanceAndTime = calculateDistanceAndTime(from, to);
+            for (int j = symmetric ? i + 1 : 0; j < to.size(); j++) {
+                int columnIndex = to.matrixIndexes[j];
+                double distanceInKm = getHaversineDistance(from, i, to, j);
+                long meters = (long) (distanceInKm * 1000);
+                long seconds = (long) ((distanceInKm / AVG_SPEED_KMH) * 60 * 60);
 
-                itemDistance.put(to, distanceAndTime.distance());
-                itemTime.put(to, distanceAndTime.time());
-            });
+                matrix.set(rowIndex, columnIndex, meters, seconds);
 
-            distanceMap.put(from, itemDistance);
-            timeMap.put(from, itemTime);
+                if (symmetric) {
+                    matrix.set(columnIndex, rowIndex, meters, seconds);
+                }
+            }
         });
+    }
+
+    private static double getHaversineDistance(Coordinates from, int i, Coordinates to, int j) {
+        double deltaP = to.latitudes[j] - from.latitudes[i];
+        double deltaC = to.longitudes[j] - from.longitudes[i];
+
+        if (deltaP == 0 && deltaC == 0) {
+            return 0;
+        }
+
+        double sinP = Math.sin(deltaP / 2);
+        double sinC = Math.sin(deltaC / 2);
+        double a = (sinP * sinP) + (from.cosines[i] * to.cosines[j] * sinC * sinC);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
 
-        return new DistanceAndTimeMap(distanceMap, timeMap);
+        return c * EARTH_RADIUS;
     }
 
     private double getHaversineDistance(Position from, Position to) {
@@ -64,4 +94,34 @@ public class HaversineDistance implements DistanceCalculator {
 
         return c * EARTH_RADIUS;
     }
+
+    // per location values in primitive arrays, in radians
+    private static class Coordinates {
+        private final int[] matrixIndexes;
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final double[] cosines;
+
+        Coordinates(List<Visit> locations) {
+            int size = locations.size();
+
+            this.matrixIndexes = new int[size];
+            this.latitudes = new double[size];
+            this.longitudes = new double[size];
+            this.cosines = new double[size];
+
+            for (int i = 0; i < size; i++) {
+                Visit location = locations.get(i);
+
+                this.matrixIndexes[i] = location.getMatrixIndex();
+                this.latitudes[i] = Math.toRadians(location.getLatitude());
+                this.longitudes[i] = Math.toRadians(location.getLongitude());
+                this.cosines[i] = Math.cos(this.latitudes[i]);
+            }
+        }
+
+        int size() {
+            return this.matrixIndexes.length;
+        }
+    }
 }
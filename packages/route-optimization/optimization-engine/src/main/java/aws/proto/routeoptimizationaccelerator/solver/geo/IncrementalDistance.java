@@ -0,0 +1,64 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.data.input.enums.MatrixStorage;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.geo.cache.MatrixReuseStore;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrixFactory;
+import lombok.AllArgsConstructor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+
+// the cells between the locations of the previous matrix are copied from it, the base calculator
+// computes only the rows/columns of the new locations (e.g. a re-plan adding 5 orders to 500 computes ~2% of the cells)
+@AllArgsConstructor
+public class IncrementalDistance implements DistanceCalculator {
+    private static final Logger logger = LogManager.getLogger(IncrementalDistance.class);
+
+    private DistanceCalculator base;
+
+    private MatrixReuseStore store;
+
+    @Override
+    public DistanceAndTime calculateDistanceAndTime(Visit from, Visit to) {
+        return this.base.calculateDistanceAndTime(from, to);
+    }
+
+    @Override
+    public void calculateBulkDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations, DistanceMatrix matrix) {
+        this.base.calculateBulkDistanceAndTime(fromLocations, toLocations, matrix);
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return this.base.isSymmetric();
+    }
+
+    @Override
+    public DistanceMatrix createDistanceAndTimeMatrix(List<Visit> locationList, MatrixRequestPlan plan) {
+        // the previous matrix kept in memory and the new one have to fit in the heap together
+        long heapBytes = plan.storage() == MatrixStorage.OFF_HEAP ? 0 : DistanceMatrixFactory.footprint(
+                locationList.size(),
+                plan.storage(),
+                DistanceMatrixFactory.isTriangular(plan.storage(), this.isSymmetric())
+        );
+
+        this.store.reserve(heapBytes);
+
+        DistanceMatrix matrix = plan.createMatrix(locationList.size(), this.isSymmetric());
+        MatrixRequestPlan missing = plan.reusing(this.store.fill(locationList, plan, matrix));
+
+        logger.info("Computing {} of {} planned cells", missing.cellCount(), plan.cellCount());
+
+        this.base.calculatePlannedDistanceAndTime(missing, matrix);
+        this.store.save(locationList, plan, matrix, heapBytes);
+
+        return matrix;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.common.Position;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// static 2d-tree over a list of positions to find the nearest neighbours of a position
+// coordinates are projected on a plane (equirectangular) which is accurate enough
+// to rank neighbours at city/region scale
+public class KdTree {
+    private final double[] x;
+    private final double[] y;
+
+    // implicit balanced tree: the median of every range [from, to) is the node of that subtree
+    private final int[] nodes;
+
+    private final double longitudeScale;
+
+    public KdTree(List<? extends Position> positions) {
+        this(
+                positions.stream().mapToDouble(Position::getLatitude).toArray(),
+                positions.stream().mapToDouble(Position::getLongitude).toArray()
+        );
+    }
+
+    public KdTree(double[] latitudes, double[] longitudes) {
+        int size = latitudes.length;
+        double meanLatitude = Arrays.stream(latitudes).average().orElse(0);
+
+        this.longitudeScale = Math.cos(Math.toRadians(meanLatitude));
+        this.x = new double[size];
+        this.y = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            this.x[i] = longitudes[i] * this.longitudeScale;
+            this.y[i] = latitudes[i];
+        }
+
+        this.nodes = IntStream.range(0, size).toArray();
+        this.build(0, size, 0);
+    }
+
+    // indexes (in the original list) of the k nearest positions to the one at the given index, itself excluded
+    // sorted from the closest to the farthest
+    public int[] nearest(int index, int k) {
+        int count = Math.min(k, this.x.length - 1);
+        Neighbours neighbours = new Neighbours(Math.max(count, 0));
+
+        if (count > 0) {
+            this.search(0, this.x.length, 0, this.x[index], this.y[index], index, neighbours);
+        }
+
+        return neighbours.sorted();
+    }
+
+    // index of the position closest to the given coordinates, -1 if the tree is empty
+    public int nearest(double latitude, double longitude) {
+        Neighbours neighbours = new Neighbours(1);
+
+        this.search(0, this.x.length, 0, longitude * this.longitudeScale, latitude, -1, neighbours);
+
+        int[] result = neighbours.sorted();
+
+        return result.length > 0 ? result[0] : -1;
+    }
+
+    private void build(int from, int to, int depth) {
+        if (to - from <= 1) {
+            return;
+        }
+
+        int median = (from + to) >>> 1;
+        this.select(from, to - 1, median, depth % 2 == 0 ? this.x : this.y);
+        this.build(from, median, depth + 1);
+        this.build(median + 1, to, depth + 1);
+    }
+
+    // quickselect so that nodes[k] is the median along the axis of the range
+    private void select(int left, int right, int k, double[] axis) {
+        while (left < right) {
+            double pivot = axis[this.nodes[(left + right) >>> 1]];
+            int i = left;
+            int j = right;
+
+            while (i <= j) {
+                while (axis[this.nodes[i]] < pivot) i++;
+                while (axis[this.nodes[j]] > pivot) j--;
+
+                if (i <= j) {
+                    int tmp = this.nodes[i];
+                    this.nodes[i] = this.nodes[j];
+                    this.nodes[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void search(int from, int to, int depth, double qx, double qy, int exclude, Neighbours neighbours) {
+        if (from >= to) {
+            return;
+        }
+
+        int median = (from + to) >>> 1;
+        int node = this.nodes[median];
+        double dx = this.x[node] - qx;
+        double dy = this.y[node] - qy;
+
+        if (node != exclude) {
+            neighbours.offer(node, dx * dx + dy * dy);
+        }
+
+        double delta = depth % 2 == 0 ? dx : dy;
+        boolean queryIsBefore = delta > 0;
+
+        this.search(queryIsBefore ? from : median + 1, queryIsBefore ? median : to, depth + 1, qx, qy, exclude, neighbours);
+
+        // visit the other side only if the splitting plane is closer than the current worst neighbour
+        if (!neighbours.isFull() || delta * delta < neighbours.worst()) {
+            this.search(queryIsBefore ? median + 1 : from, queryIsBefore ? to : median, depth + 1, qx, qy, exclude, neighbours);
+        }
+    }
+
+    // bounded max-heap on the squared distance
+    private static class Neighbours {
+        private final int[] indexes;
+        private final double[] distances;
+        private int size = 0;
+
+        Neighbours(int capacity) {
+            this.indexes = new int[capacity];
+            this.distances = new double[capacity];
+        }
+
+        boolean isFull() {
+            return this.size == this.indexes.length;
+        }
+
+        double worst() {
+            return this.distances[0];
+        }
+
+        void offer(int index, double distance) {
+            if (this.indexes.length == 0) {
+                return;
+            }
+
+            if (!this.isFull()) {
+                int i = this.size++;
+
+                // sift up
+                while (i > 0 && this.distances[(i - 1) / 2] < distance) {
+                    this.indexes[i] = this.indexes[(i - 1) / 2];
+                    this.distances[i] = this.distances[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+
+                this.indexes[i] = index;
+                this.distances[i] = distance;
+            } else if (distance < this.distances[0]) {
+                int i = 0;
+
+                // sift down
+                while (true) {
+                    int child = 2 * i + 1;
+
+                    if (child >= this.size) {
+                        break;
+                    }
+
+                    if (child + 1 < this.size && this.distances[child + 1] > this.distances[child]) {
+                        child++;
+                    }
+
+                    if (this.distances[child] <= distance) {
+                        break;
+                    }
+
+                    this.indexes[i] = this.indexes[child];
+                    this.distances[i] = this.distances[child];
+                    i = child;
+                }
+
+                this.indexes[i] = index;
+                this.distances[i] = distance;
+            }
+        }
+
+        int[] sorted() {
+            Integer[] order = IntStream.range(0, this.size).boxed().toArray(Integer[]::new);
+            Arrays.sort(order, (a, b) -> Double.compare(this.distances[a], this.distances[b]));
+
+            return Arrays.stream(order).mapToInt(i -> this.indexes[i]).toArray();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.LazyDistanceMatrix;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+// no road distance is requested up front: the matrix serves estimates and the exact values
+// are fetched while solving (see LazyDistanceResolver) for the pairs the solver actually explores,
+// so that the number of cells grows with the routes instead of quadratically with the problem
+public class LazyRoadDistance implements DistanceCalculator, LazyDistanceMatrix.Fetcher {
+    private static final Logger logger = LogManager.getLogger(LazyRoadDistance.class);
+
+    // departures grouped in a single request, the pairs of close departures are requested together
+    private static final int MAX_BATCH_ROWS = 10;
+
+    private final RoadDistance roadDistance;
+
+    private List<Visit> byIndex = List.of();
+
+    public LazyRoadDistance(RoadDistance roadDistance) {
+        this.roadDistance = roadDistance;
+    }
+
+    @Override
+    public DistanceAndTime calculateDistanceAndTime(Visit from, Visit to) {
+        return this.roadDistance.calculateDistanceAndTime(from, to);
+    }
+
+    @Override
+    public void calculateBulkDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations, DistanceMatrix matrix) {
+        this.roadDistance.calculateBulkDistanceAndTime(fromLocations, toLocations, matrix);
+    }
+
+    @Override
+    public DistanceMatrix createDistanceAndTimeMatrix(List<Visit> locationList, MatrixRequestPlan plan) {
+        Visit[] visits = new Visit[locationList.size()];
+        locationList.forEach(l -> visits[l.getMatrixIndex()] = l);
+
+        this.byIndex = Arrays.asList(visits);
+
+        logger.info("Lazy distance matrix for {} locations, road distances are fetched while solving", visits.length);
+
+        return new LazyDistanceMatrix(this.byIndex, this);
+    }
+
+    @Override
+    public CompletableFuture<Void> fetch(int[] from, int[] to, DistanceMatrix target) {
+        // destinations grouped by departure, departures sorted by position so that a batch covers a small area
+        Map<Integer, Set<Visit>> destinations = new TreeMap<>();
+
+        for (int i = 0; i < from.length; i++) {
+            destinations.computeIfAbsent(from[i], k -> new LinkedHashSet<>()).add(this.byIndex.get(to[i]));
+        }
+
+        List<Visit> departures = destinations.keySet().stream()
+                .map(this.byIndex::get)
+                .sorted(Comparator.comparingDouble(Visit::getLatitude).thenComparingDouble(Visit::getLongitude))
+                .toList();
+
+        List<CompletableFuture<Void>> bulks = new ArrayList<>();
+
+        for (int start = 0; start < departures.size(); start += MAX_BATCH_ROWS) {
+            List<Visit> rows = departures.subList(start, Math.min(start + MAX_BATCH_ROWS, departures.size()));
+            Set<Visit> columns = new LinkedHashSet<>();
+
+            rows.forEach(row -> columns.addAll(destinations.get(row.getMatrixIndex())));
+
+            bulks.add(this.roadDistance.fillBulkDistanceAndTime(rows, new ArrayList<>(columns), target));
+        }
+
+        logger.debug("Fetching {} road distances in {} batches", from.length, bulks.size());
+
+        return CompletableFuture.allOf(bulks.toArray(CompletableFuture[]::new));
+    }
+
+    @Override
+    public void await(CompletableFuture<Void> fetch) {
+        this.roadDistance.awaitBulk(fetch);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.solver.domain.Depot;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// assigns the rows/columns of the distance matrix: orders whose coordinates are the same once rounded
+// to `precision` decimals (e.g. different apartments of the same building) share a matrix index,
+// while keeping their own Visit. Depots always get their own index, so that the MatrixRequestPlan
+// can still tell the depot rows apart from the order ones
+public class MatrixIndexer {
+    private MatrixIndexer() {}
+
+    // returns one location per matrix index (in index order), to be given to the DistanceCalculator
+    // every location of the list gets its index, the matrix has to be assigned to all of them once computed
+    public static List<Visit> assign(List<Visit> locations, int precision) {
+        double scale = Math.pow(10, precision);
+        Map<Position, Visit> shared = new HashMap<>();
+        List<Visit> indexed = new ArrayList<>();
+
+        for (Visit location : locations) {
+            Visit representative = location instanceof Depot ? location : shared.computeIfAbsent(
+                    new Position(Math.round(location.getLatitude() * scale), Math.round(location.getLongitude() * scale)),
+                    k -> location
+            );
+
+            if (representative == location) {
+                location.setMatrixIndex(indexed.size());
+                indexed.add(location);
+            } else {
+                location.setMatrixIndex(representative.getMatrixIndex());
+            }
+        }
+
+        return indexed;
+    }
+
+    // one location per matrix index (in index order) out of locations already indexed by assign()
+    public static List<Visit> indexed(List<Visit> locations) {
+        Visit[] indexed = new Visit[(int) locations.stream().mapToInt(Visit::getMatrixIndex).distinct().count()];
+
+        locations.forEach(location -> {
+            if (indexed[location.getMatrixIndex()] == null) {
+                indexed[location.getMatrixIndex()] = location;
+            }
+        });
+
+        return List.of(indexed);
+    }
+
+    private record Position(long latitude, long longitude) { }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.data.input.enums.MatrixStorage;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Depot;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrixFactory;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+// cells of the distance matrix that can be read by a solution:
+//  - depots -> orders, every route starts from the vehicle depot
+//  - orders -> orders, excluding the diagonal
+//  - orders -> depots, only for the depots of vehicles going back to origin
+// depot -> depot and order -> depot for one-way routes are never read and are not computed
+// the storage defines how the cells are kept in memory by the calculators allocating a full matrix
+// the reused matrix indexes have their cells with each other already filled (e.g. by a previous request),
+// only the rows/columns of the other locations are computed
+public record MatrixRequestPlan(List<Visit> depots, List<Visit> orders, List<Visit> returnDepots, MatrixStorage storage, BitSet reused) {
+    public record Block(List<Visit> fromLocations, List<Visit> toLocations) {}
+
+    public static MatrixRequestPlan from(List<Visit> locations, List<Vehicle> vehicles) {
+        return from(locations, vehicles, MatrixStorage.DENSE);
+    }
+
+    public static MatrixRequestPlan from(List<Visit> locations, List<Vehicle> vehicles, MatrixStorage storage) {
+        return new MatrixRequestPlan(
+                locations.stream().filter(t -> t instanceof Depot).toList(),
+                locations.stream().filter(t -> !(t instanceof Depot)).toList(),
+                vehicles.stream().filter(Vehicle::isBackToOrigin).map(t -> (Visit) t.getDepot()).distinct().toList(),
+                storage,
+                new BitSet()
+        );
+    }
+
+    // same plan without the cells between the reused matrix indexes
+    public MatrixRequestPlan reusing(BitSet reused) {
+        return new MatrixRequestPlan(this.depots, this.orders, this.returnDepots, this.storage, (BitSet) reused.clone());
+    }
+
+    // empty matrix of the given size in the storage of the plan, a symmetric calculator allows to store only one triangle
+    public DistanceMatrix createMatrix(int size, boolean symmetric) {
+        return DistanceMatrixFactory.create(size, this.storage, symmetric);
+    }
+
+    public List<Block> blocks() {
+        Stream<Block> blocks = Stream.of(
+                new Block(this.depots, this.orders),
+                new Block(this.orders, this.orders),
+                new Block(this.orders, this.returnDepots)
+        );
+
+        // the new rows to every column, then the reused rows to the new columns
+        if (!this.reused.isEmpty()) {
+            blocks = blocks.flatMap(t -> Stream.of(
+                    new Block(this.filter(t.fromLocations(), false), t.toLocations()),
+                    new Block(this.filter(t.fromLocations(), true), this.filter(t.toLocations(), false))
+            ));
+        }
+
+        return blocks.filter(t -> !t.fromLocations().isEmpty() && !t.toLocations().isEmpty()).toList();
+    }
+
+    // number of cells to compute, the diagonal is excluded
+    public long cellCount() {
+        if (!this.reused.isEmpty()) {
+            return this.blocks().stream().mapToLong(t -> {
+                BitSet columns = new BitSet();
+                t.toLocations().forEach(l -> columns.set(l.getMatrixIndex()));
+
+                return (long) t.fromLocations().size() * t.toLocations().size()
+                        - t.fromLocations().stream().filter(l -> columns.get(l.getMatrixIndex())).count();
+            }).sum();
+        }
+
+        return (long) this.depots.size() * this.orders.size()
+                + (long) this.orders.size() * Math.max(this.orders.size() - 1, 0)
+                + (long) this.orders.size() * this.returnDepots.size();
+    }
+
+    private List<Visit> filter(List<Visit> locations, boolean reused) {
+        return locations.stream().filter(t -> this.reused.get(t.getMatrixIndex()) == reused).toList();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.MappedDistanceMatrix;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+// distance matrix supplied with the request (e.g. exported from a TMS), nothing is computed:
+// the locations are indexed on the rows/columns of the matrix file, which is used as it is by the solver
+public class PrecomputedDistance implements DistanceCalculator {
+    private static final Logger logger = LogManager.getLogger(PrecomputedDistance.class);
+
+    private final MappedDistanceMatrix matrix;
+
+    public PrecomputedDistance(MappedDistanceMatrix matrix) {
+        this.matrix = matrix;
+    }
+
+    public static PrecomputedDistance open(Path file) {
+        try {
+            MappedDistanceMatrix matrix = MappedDistanceMatrix.open(file);
+            logger.info("Precomputed distance matrix {} mapped with {} locations", file, matrix.size());
+
+            return new PrecomputedDistance(matrix);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to open the precomputed distance matrix " + file, e);
+        }
+    }
+
+    @Override
+    public DistanceAndTime calculateDistanceAndTime(Visit from, Visit to) {
+        int fromIndex = this.indexOf(from);
+        int toIndex = this.indexOf(to);
+
+        return new DistanceAndTime(this.matrix.getDistance(fromIndex, toIndex) / 1000.0, Duration.ofSeconds(this.matrix.getTime(fromIndex, toIndex)));
+    }
+
+    @Override
+    public void calculateBulkDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations, DistanceMatrix matrix) {
+        int[] toIndexes = toLocations.stream().mapToInt(this::indexOf).toArray();
+
+        for (Visit from : fromLocations) {
+            int fromIndex = this.indexOf(from);
+
+            for (int j = 0; j < toIndexes.length; j++) {
+                matrix.set(from.getMatrixIndex(), toLocations.get(j).getMatrixIndex(), this.matrix.getDistance(fromIndex, toIndexes[j]), this.matrix.getTime(fromIndex, toIndexes[j]));
+            }
+        }
+    }
+
+    // zero copy: every location takes the row/column of its id in the file and reads the mapped matrix directly
+    // (createDistanceAndTimeMatrix() still copies the cells, the locations must keep their indexes there)
+    @Override
+    public DistanceMatrix initDistanceAndTimeMatrix(List<Visit> locationList, MatrixRequestPlan plan) {
+        locationList.forEach(location -> location.setMatrixIndex(this.indexOf(location)));
+        locationList.forEach(location -> location.setDistanceMatrix(this.matrix));
+
+        logger.info("Using the precomputed distance matrix for {} locations out of {}", locationList.size(), this.matrix.size());
+
+        return this.matrix;
+    }
+
+    private int indexOf(Visit location) {
+        int index = this.matrix.indexOf(location.getId());
+
+        if (index < 0) {
+            throw new RuntimeException(String.format("Location %s is not part of the precomputed distance matrix", location.getId()));
+        }
+
+        return index;
+    }
+}
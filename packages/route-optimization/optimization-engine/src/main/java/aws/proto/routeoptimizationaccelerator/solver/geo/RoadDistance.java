@@ -6,16 +6,20 @@ package aws.proto.routeoptimizationaccelerator.solver.geo;
 
 import aws.proto.routeoptimizationaccelerator.aws.LocationHelper;
 import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.geo.cache.RoadMatrixCache;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
 import lombok.AllArgsConstructor;
-import org.apache.commons.collections4.ListUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -27,17 +31,39 @@ public class RoadDistance implements DistanceCalculator {
     // that does not require additional logic to be handled
     private static final int MAX_SUPPORTED_MATRIX_SIZE = 10;
 
+    // when every position of the request is within the local routing diameter (in km)
+    // the providers accept up to 350 departures and 350 destinations in a single request
+    // More information: https://docs.aws.amazon.com/location/latest/developerguide/calculate-route-matrix.html
+    private static final int MAX_LOCAL_MATRIX_SIZE = 350;
+    private static final double LOCAL_ROUTING_DIAMETER = 180;
+
+    private static final SpatialTiler tiler = new SpatialTiler(MAX_LOCAL_MATRIX_SIZE, MAX_SUPPORTED_MATRIX_SIZE, LOCAL_ROUTING_DIAMETER);
+
     // if you increase the MAX_SUPPORTED_MATRIX_SIZE more than 10 certain map providers
     // might still execute the request but provide an error on certain items if the
     // routing distance goes beyond a certain number of KMs
+    // failed cells are first requested again in smaller sub-matrices, the cells that still fail
+    // as a single cell make the whole matrix fail.
     // turn on this flag should you prefer to provide a distance filler
     // and increase the MAX_SUPPORTED_MATRIX_SIZE value to reduce API calls
     // it would work well on local routing use-cases (e.g. last mile)
     // but less ideal for global routing (e.g. mid-mile)
     private static final boolean USE_DISTANCE_FILLER = false;
 
+    // checkpoints are persisted at most once per interval while the tiles complete
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 5_000;
+
     private LocationHelper locationHelper;
 
+    // cells fetched by previous runs, only the missing ones are requested to the service
+    private RoadMatrixCache cache;
+
+    // cells fetched for the current problem, persisted while the matrix is built so that
+    // a retry of the same problem (e.g. after a crash) resumes from the completed tiles
+    private RoadMatrixCache checkpoint;
+
+    private final AtomicLong lastCheckpoint = new AtomicLong(System.currentTimeMillis());
+
     @Override
     public DistanceAndTime calculateDistanceAndTime(Visit from, Visit to) {
         LocationHelper.DistanceAndTime result = this.locationHelper.suggestRoute(from, to);
@@ -46,102 +72,202 @@ public class RoadDistance implements DistanceCalculator {
     }
 
     @Override
-    public DistanceAndTimeMap calculateBulkDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations) {
-        // partition the locations based on the supported matrix size
-        List<List<Visit>> aPartitions = ListUtils.partition(fromLocations, MAX_SUPPORTED_MATRIX_SIZE);
-        List<List<Visit>> bPartitions = ListUtils.partition(toLocations, MAX_SUPPORTED_MATRIX_SIZE);
-
-        Map<Visit, Map<Visit, Double>> distanceMap = new ConcurrentHashMap<>();
-        Map<Visit, Map<Visit, Duration>> timeMap = new ConcurrentHashMap<>();
-
-        aPartitions.parallelStream().forEach(a ->
-            bPartitions.parallelStream().forEach(b ->
-                mergeMaps(distanceMap, timeMap, this.getSupportedDistanceAndTime(a, b))
-            )
+    public void calculateBulkDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations, DistanceMatrix matrix) {
+        this.awaitBulk(this.fillBulkDistanceAndTime(fromLocations, toLocations, matrix));
+    }
+
+    @Override
+    public void calculatePlannedDistanceAndTime(MatrixRequestPlan plan, DistanceMatrix matrix) {
+        this.awaitBulk(CompletableFuture.allOf(plan.blocks().stream()
+                .map(block -> this.fillBulkDistanceAndTime(block.fromLocations(), block.toLocations(), matrix))
+                .toArray(CompletableFuture[]::new)
+        ));
+    }
+
+    // fills the cells without persisting the cache, callers issuing several bulks
+    // (e.g. one per visit neighbourhood) wait for all of them with awaitBulk()
+    CompletableFuture<Void> fillBulkDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations, DistanceMatrix matrix) {
+        // partition the locations in geographic tiles sized for local or long haul routing
+        List<SpatialTiler.Tile> tiles = tiler.tiles(fromLocations, toLocations);
+
+        logger.debug("{}x{} locations split in {} tiles", fromLocations.size(), toLocations.size(), tiles.size());
+
+        // every tile writes a disjoint set of cells, no further synchronization needed
+        // requests are throttled by the LocationHelper without blocking the caller
+        return CompletableFuture.allOf(tiles.stream()
+                .map(t -> this.getSupportedDistanceAndTime(t.fromLocations(), t.toLocations(), matrix)
+                        .thenRun(this::checkpointIfDue)
+                )
+                .toArray(CompletableFuture[]::new)
         );
+    }
+
+    // waits for the cells to be filled, the checkpoint is dropped once the matrix is complete
+    // and kept (with the cells completed so far) if it fails
+    void awaitBulk(CompletableFuture<Void> bulk) {
+        try {
+            LocationHelper.await(bulk);
+        } catch (RuntimeException ex) {
+            this.checkpoint.flush();
 
-        return new DistanceAndTimeMap(distanceMap, timeMap);
+            throw ex;
+        }
+
+        this.cache.flush();
+        this.checkpoint.discard();
+
+        logger.info("Location route cache statistics {}", this.locationHelper.getRouteCache());
+        logger.info("Location rate limiter statistics {}", LocationHelper.getRateLimiterStatistics());
+    }
+
+    private void checkpointIfDue() {
+        long last = this.lastCheckpoint.get();
+        long now = System.currentTimeMillis();
+
+        if (now - last >= CHECKPOINT_INTERVAL_MILLIS && this.lastCheckpoint.compareAndSet(last, now)) {
+            this.checkpoint.flush();
+        }
+    }
+
+    private RoadMatrixCache.CachedRoute getCachedRoute(Visit from, Visit to) {
+        RoadMatrixCache.CachedRoute cached = this.cache.get(from, to);
+
+        return cached != null ? cached : this.checkpoint.get(from, to);
     }
 
-    private DistanceAndTimeMap getSupportedDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations) {
-        LocationHelper.DistanceAndTimeMatrix response = this.locationHelper.distanceDistanceMatrix(
-                fromLocations.stream()
-                        .map(t -> Arrays.asList(t.getLongitude(), t.getLatitude()))
+    private CompletableFuture<Void> getSupportedDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations, DistanceMatrix matrix) {
+        boolean[][] known = new boolean[fromLocations.size()][toLocations.size()];
+
+        for (int i = 0; i < fromLocations.size(); i++) {
+            for (int j = 0; j < toLocations.size(); j++) {
+                // the diagonal is never requested
+                if (fromLocations.get(i).getMatrixIndex() == toLocations.get(j).getMatrixIndex()) {
+                    matrix.set(fromLocations.get(i).getMatrixIndex(), toLocations.get(j).getMatrixIndex(), 0, 0);
+                    known[i][j] = true;
+
+                    continue;
+                }
+
+                RoadMatrixCache.CachedRoute cached = this.getCachedRoute(fromLocations.get(i), toLocations.get(j));
+
+                if (cached != null) {
+                    matrix.set(fromLocations.get(i).getMatrixIndex(), toLocations.get(j).getMatrixIndex(), cached.distance(), cached.time());
+                    known[i][j] = true;
+                }
+            }
+        }
+
+        // request only the rows and columns that still have at least one missing cell
+        List<Integer> rows = IntStream.range(0, fromLocations.size())
+                .filter(i -> IntStream.range(0, toLocations.size()).anyMatch(j -> !known[i][j]))
+                .boxed()
+                .toList();
+        List<Integer> columns = IntStream.range(0, toLocations.size())
+                .filter(j -> rows.stream().anyMatch(i -> !known[i][j]))
+                .boxed()
+                .toList();
+
+        if (rows.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return this.locationHelper.distanceDistanceMatrixAsync(
+                rows.stream()
+                        .map(i -> Arrays.asList(fromLocations.get(i).getLongitude(), fromLocations.get(i).getLatitude()))
                         .collect(Collectors.toList()),
-                toLocations.stream()
-                        .map(t -> Arrays.asList(t.getLongitude(), t.getLatitude()))
+                columns.stream()
+                        .map(j -> Arrays.asList(toLocations.get(j).getLongitude(), toLocations.get(j).getLatitude()))
                         .collect(Collectors.toList())
-        );
-        List<List<Double>> distance = response.distance();
-        List<List<Double>> time = response.time();
-        Map<Visit, Map<Visit, Double>> distanceMap = new ConcurrentHashMap<>();
-        Map<Visit, Map<Visit, Duration>> timeMap = new ConcurrentHashMap<>();
-
-        IntStream.range(0, fromLocations.size()).forEach(i -> {
-            Map<Visit, Double> itemDistance = new ConcurrentHashMap<>();
-            Map<Visit, Duration> itemTime = new ConcurrentHashMap<>();
-
-            IntStream.range(0, toLocations.size()).forEach(j -> {
-                Double dst = distance.get(i).get(j);
-                Double tme = time.get(i).get(j);
-                Duration drn = Duration.ofSeconds(tme.longValue());
-
-                if (tme == -1.0 && dst == -1.0) {
-                    logger.warn("Calculation for route departure={},arrival={} goes in error. Use Distance filler={}",
-                            fromLocations.get(i),
-                            toLocations.get(j),
-                            USE_DISTANCE_FILLER
-                    );
-
-                    if (USE_DISTANCE_FILLER) {
-                        logger.info("Running distance filler to get individual missing route");
-                        LocationHelper.DistanceAndTime distanceAndTime = this.locationHelper.suggestRoute(
-                                fromLocations.get(i),
-                                toLocations.get(j)
-                        );
-
-                        dst = distanceAndTime.distance();
-                        drn = Duration.ofSeconds(distanceAndTime.time().longValue());
-                    } else {
-                        logger.info("Distance filler is not enabled and route is missing, throwing an error");
-
-                        throw new RuntimeException(String.format("Missing routing details from %s to %s", fromLocations.get(i), toLocations.get(j))) ;
+        ).thenCompose(response -> {
+            List<List<Double>> distance = response.distance();
+            List<List<Double>> time = response.time();
+            Set<Visit> failedFrom = new LinkedHashSet<>();
+            Set<Visit> failedTo = new LinkedHashSet<>();
+
+            IntStream.range(0, rows.size()).forEach(r ->
+                IntStream.range(0, columns.size()).forEach(c -> {
+                    Visit from = fromLocations.get(rows.get(r));
+                    Visit to = toLocations.get(columns.get(c));
+
+                    if (known[rows.get(r)][columns.get(c)]) {
+                        return;
                     }
-                }
 
-                itemDistance.put(toLocations.get(j), dst);
-                itemTime.put(toLocations.get(j), drn);
-            });
+                    Double dst = distance.get(r).get(c);
+                    Double tme = time.get(r).get(c);
 
-            distanceMap.put(fromLocations.get(i), itemDistance);
-            timeMap.put(fromLocations.get(i), itemTime);
-        });
+                    if (tme == -1.0 && dst == -1.0) {
+                        failedFrom.add(from);
+                        failedTo.add(to);
 
-        return new DistanceAndTimeMap(distanceMap, timeMap);
-    }
+                        return;
+                    }
 
-    private void mergeMaps(
-            Map<Visit, Map<Visit, Double>> distanceMap,
-            Map<Visit, Map<Visit, Duration>> timeMap,
-            DistanceAndTimeMap distanceAndTime
-    ) {
-        Map<Visit, Map<Visit, Double>> currentDistanceMap = distanceAndTime.distanceMap();
-        Map<Visit, Map<Visit, Duration>> currentTimeMap = distanceAndTime.timeMap();
-
-        currentDistanceMap.keySet().forEach(q -> {
-            if (distanceMap.get(q) != null) {
-                distanceMap.get(q).putAll(currentDistanceMap.get(q));
-            } else {
-                distanceMap.put(q, currentDistanceMap.get(q));
-            }
-        });
+                    this.setCell(from, to, dst, tme, matrix);
+                })
+            );
 
-        currentTimeMap.keySet().forEach(q -> {
-            if (timeMap.get(q) != null) {
-                timeMap.get(q).putAll(currentTimeMap.get(q));
-            }else {
-                timeMap.put(q, currentTimeMap.get(q));
+            if (failedFrom.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
             }
+
+            return this.recoverFailedCells(new ArrayList<>(failedFrom), new ArrayList<>(failedTo), rows.size() == 1 && columns.size() == 1, matrix);
         });
     }
+
+    // cells in error are often caused by the size of the request (e.g. routes too long for the tile size):
+    // the failed rows/columns are requested again in smaller sub-matrices, halving them down to a single cell,
+    // a single failed cell of a larger request is requested once on its own.
+    // the cells already computed are served by the caches and are not requested again
+    private CompletableFuture<Void> recoverFailedCells(List<Visit> fromLocations, List<Visit> toLocations, boolean requestedAlone, DistanceMatrix matrix) {
+        if (fromLocations.size() > 1 || toLocations.size() > 1 || !requestedAlone) {
+            logger.debug("Recovering failed cells in {}x{} sub-matrices", fromLocations.size(), toLocations.size());
+
+            List<List<Visit>> fromHalves = halves(fromLocations);
+            List<List<Visit>> toHalves = halves(toLocations);
+
+            return CompletableFuture.allOf(fromHalves.stream()
+                    .flatMap(a -> toHalves.stream().map(b -> this.getSupportedDistanceAndTime(a, b, matrix)))
+                    .toArray(CompletableFuture[]::new)
+            );
+        }
+
+        Visit from = fromLocations.get(0);
+        Visit to = toLocations.get(0);
+
+        logger.warn("Calculation for route departure={},arrival={} goes in error. Use Distance filler={}",
+                from,
+                to,
+                USE_DISTANCE_FILLER
+        );
+
+        if (USE_DISTANCE_FILLER) {
+            logger.info("Running distance filler to get individual missing route");
+
+            return this.locationHelper.suggestRouteAsync(from, to)
+                    .thenAccept(distanceAndTime -> this.setCell(from, to, distanceAndTime.distance(), distanceAndTime.time(), matrix));
+        }
+
+        logger.info("Distance filler is not enabled and route is missing, throwing an error");
+
+        throw new RuntimeException(String.format("Missing routing details from %s to %s", from, to)) ;
+    }
+
+    private static List<List<Visit>> halves(List<Visit> locations) {
+        if (locations.size() == 1) {
+            return List.of(locations);
+        }
+
+        return List.of(locations.subList(0, locations.size() / 2), locations.subList(locations.size() / 2, locations.size()));
+    }
+
+    private void setCell(Visit from, Visit to, Double dst, Double tme, DistanceMatrix matrix) {
+        // convert it in meters
+        long meters = (long) (dst * 1000);
+        long seconds = tme.longValue();
+
+        matrix.set(from.getMatrixIndex(), to.getMatrixIndex(), meters, seconds);
+        this.cache.put(from, to, meters, seconds);
+        this.checkpoint.put(from, to, meters, seconds);
+    }
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.common.Position;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.geo.graph.RoadGraph;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+// road distances computed offline on a local road graph (see RoadGraphBuilder), no calls to external services.
+// every location is snapped to the closest graph node, the access legs between the location and the node
+// are added as straight lines at a low speed
+public class RoadGraphDistance implements DistanceCalculator {
+    private static final double EARTH_RADIUS = 6378137.0;
+    // in m/s, 20 km/h
+    private static final double ACCESS_SPEED = 20 / 3.6;
+
+    // the graph is memory mapped once and shared by every problem
+    private static final Map<Path, RoadGraph> graphs = new ConcurrentHashMap<>();
+
+    private final RoadGraph graph;
+
+    public RoadGraphDistance(RoadGraph graph) {
+        this.graph = graph;
+    }
+
+    public static RoadGraphDistance open(Path file) {
+        return new RoadGraphDistance(graphs.computeIfAbsent(file, t -> {
+            try {
+                return RoadGraph.open(t);
+            } catch (IOException ex) {
+                throw new RuntimeException(String.format("Unable to load the road graph %s", t), ex);
+            }
+        }));
+    }
+
+    @Override
+    public DistanceAndTime calculateDistanceAndTime(Visit from, Visit to) {
+        DistanceMatrixCell cell = this.calculate(List.of(from), List.of(to))[0][0];
+
+        return new DistanceAndTime(cell.distance / 1000.0, Duration.ofSeconds(cell.time));
+    }
+
+    @Override
+    public void calculateBulkDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations, DistanceMatrix matrix) {
+        DistanceMatrixCell[][] cells = this.calculate(fromLocations, toLocations);
+
+        for (int i = 0; i < fromLocations.size(); i++) {
+            for (int j = 0; j < toLocations.size(); j++) {
+                matrix.set(fromLocations.get(i).getMatrixIndex(), toLocations.get(j).getMatrixIndex(), cells[i][j].distance, cells[i][j].time);
+            }
+        }
+    }
+
+    // meters and seconds
+    private record DistanceMatrixCell(long distance, long time) {}
+
+    private DistanceMatrixCell[][] calculate(List<Visit> fromLocations, List<Visit> toLocations) {
+        int[] sources = fromLocations.stream().mapToInt(t -> this.graph.nearestNode(t.getLatitude(), t.getLongitude())).toArray();
+        int[] targets = toLocations.stream().mapToInt(t -> this.graph.nearestNode(t.getLatitude(), t.getLongitude())).toArray();
+        double[] sourceAccess = IntStream.range(0, sources.length).mapToDouble(i -> this.accessDistance(fromLocations.get(i), sources[i])).toArray();
+        double[] targetAccess = IntStream.range(0, targets.length).mapToDouble(j -> this.accessDistance(toLocations.get(j), targets[j])).toArray();
+
+        RoadGraph.PathMatrix paths = this.graph.manyToMany(sources, targets);
+        DistanceMatrixCell[][] cells = new DistanceMatrixCell[fromLocations.size()][toLocations.size()];
+
+        for (int i = 0; i < fromLocations.size(); i++) {
+            for (int j = 0; j < toLocations.size(); j++) {
+                if (fromLocations.get(i).getMatrixIndex() == toLocations.get(j).getMatrixIndex()) {
+                    cells[i][j] = new DistanceMatrixCell(0, 0);
+
+                    continue;
+                }
+
+                long time = paths.times()[i][j];
+
+                if (time == RoadGraph.UNREACHABLE) {
+                    throw new RuntimeException(String.format("Missing routing details from %s to %s", fromLocations.get(i), toLocations.get(j)));
+                }
+
+                double access = sourceAccess[i] + targetAccess[j];
+
+                cells[i][j] = new DistanceMatrixCell(
+                        paths.distances()[i][j] + (long) access,
+                        Math.round(time / 1000.0 + access / ACCESS_SPEED)
+                );
+            }
+        }
+
+        return cells;
+    }
+
+    // straight line between the location and its graph node, in meters
+    private double accessDistance(Position position, int node) {
+        double p1 = Math.toRadians(position.getLatitude());
+        double p2 = Math.toRadians(this.graph.getLatitude(node));
+        double deltaP = p2 - p1;
+        double deltaC = Math.toRadians(this.graph.getLongitude(node) - position.getLongitude());
+        double a = Math.sin(deltaP / 2) * Math.sin(deltaP / 2) + Math.cos(p1) * Math.cos(p2) * Math.sin(deltaC / 2) * Math.sin(deltaC / 2);
+
+        return 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a)) * EARTH_RADIUS;
+    }
+}
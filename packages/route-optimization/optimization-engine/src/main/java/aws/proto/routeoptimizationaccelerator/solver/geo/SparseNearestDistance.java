@@ -0,0 +1,113 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.solver.domain.Depot;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.SparseDistanceMatrix;
+import lombok.AllArgsConstructor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+// road distances are requested only for the depots rows/columns and for the k nearest
+// neighbours of every visit: the number of cells (and API calls) grows linearly with the problem
+// instead of quadratically, the other pairs are estimated by the SparseDistanceMatrix
+@AllArgsConstructor
+public class SparseNearestDistance implements DistanceCalculator {
+    private static final Logger logger = LogManager.getLogger(SparseNearestDistance.class);
+
+    private RoadDistance roadDistance;
+
+    private int nearestNeighbours;
+
+    @Override
+    public DistanceAndTime calculateDistanceAndTime(Visit from, Visit to) {
+        return this.roadDistance.calculateDistanceAndTime(from, to);
+    }
+
+    @Override
+    public void calculateBulkDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations, DistanceMatrix matrix) {
+        this.roadDistance.calculateBulkDistanceAndTime(fromLocations, toLocations, matrix);
+    }
+
+    @Override
+    public DistanceMatrix createDistanceAndTimeMatrix(List<Visit> locationList, MatrixRequestPlan plan) {
+        int size = locationList.size();
+        boolean[] dense = new boolean[size];
+        locationList.forEach(l -> dense[l.getMatrixIndex()] = l instanceof Depot);
+
+        List<Visit> depots = locationList.stream().filter(l -> dense[l.getMatrixIndex()]).toList();
+        List<Visit> byIndex = Arrays.asList(new Visit[size]);
+        locationList.forEach(l -> byIndex.set(l.getMatrixIndex(), l));
+
+        logger.info("Sparse distance matrix for {} locations ({} depots, {} nearest neighbours): ~{} MB instead of ~{} MB for the full matrix",
+                size,
+                depots.size(),
+                this.nearestNeighbours,
+                SparseDistanceMatrix.estimateBytes(size, depots.size(), this.nearestNeighbours) / (1024 * 1024),
+                (long) size * size * (8 + 4) / (1024 * 1024)
+        );
+
+        KdTree index = new KdTree(byIndex);
+        int[][] nearest = IntStream.range(0, size)
+                .parallel()
+                .mapToObj(i -> dense[i] ? new int[0] : index.nearest(i, this.nearestNeighbours + depots.size()))
+                .toArray(int[][]::new);
+
+        // depots are part of the full rows/columns, the neighbours are picked among the other visits
+        for (int i = 0; i < size; i++) {
+            nearest[i] = Arrays.stream(nearest[i]).filter(t -> !dense[t]).limit(this.nearestNeighbours).toArray();
+        }
+
+        SparseDistanceMatrix matrix = new SparseDistanceMatrix(byIndex, dense, nearest);
+
+        List<CompletableFuture<Void>> bulks = new ArrayList<>();
+
+        // depots rows/columns are requested only where the plan needs them
+        if (!plan.depots().isEmpty() && !plan.orders().isEmpty()) {
+            bulks.add(this.roadDistance.fillBulkDistanceAndTime(plan.depots(), plan.orders(), matrix));
+        }
+        if (!plan.returnDepots().isEmpty() && !plan.orders().isEmpty()) {
+            bulks.add(this.roadDistance.fillBulkDistanceAndTime(plan.orders(), plan.returnDepots(), matrix));
+        }
+
+        // close visits share most of their neighbours: the visits are grouped geographically and every group is
+        // requested with the union of the neighbours of its visits as columns, one request per group instead of
+        // one per visit. Groups of nearestNeighbours visits keep the cells requested within about three times the
+        // cells of the sparse structure, the other cells are ignored by the matrix (and kept by the road matrix cache)
+        List<Visit> visits = IntStream.range(0, size)
+                .filter(i -> !dense[i] && matrix.getNeighbours(i).length > 0)
+                .mapToObj(byIndex::get)
+                .toList();
+        SpatialTiler grouping = new SpatialTiler(this.nearestNeighbours, this.nearestNeighbours, 0);
+        List<List<Visit>> groups = visits.isEmpty() ? List.of() : grouping.cluster(visits);
+
+        logger.info("Nearest neighbours of {} visits requested in {} groups", visits.size(), groups.size());
+
+        for (List<Visit> group : groups) {
+            List<Visit> neighbours = group.stream()
+                    .flatMapToInt(v -> Arrays.stream(matrix.getNeighbours(v.getMatrixIndex())))
+                    .distinct()
+                    .mapToObj(byIndex::get)
+                    .toList();
+
+            bulks.add(this.roadDistance.fillBulkDistanceAndTime(group, neighbours, matrix));
+        }
+
+        this.roadDistance.awaitBulk(CompletableFuture.allOf(bulks.toArray(CompletableFuture[]::new)));
+
+        matrix.calibrate();
+        logger.info("Sparse distance matrix calibrated: detour factor={}, speed={} m/s", matrix.getDetourFactor(), matrix.getSpeed());
+
+        return matrix;
+    }
+}
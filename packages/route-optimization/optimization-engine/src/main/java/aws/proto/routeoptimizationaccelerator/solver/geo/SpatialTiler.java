@@ -0,0 +1,114 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.common.Position;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import org.apache.commons.collections4.ListUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
+
+// splits a from/to matrix in the tiles requested to the routing service:
+// locations are clustered geographically (recursive bisection on the widest axis) so that every
+// cluster is compact, then every pair of clusters is requested with the largest tile allowed by the provider:
+//  - local routing (every position within the local routing diameter): up to localMatrixSize x localMatrixSize
+//  - otherwise (long haul): up to globalMatrixSize x globalMatrixSize
+public class SpatialTiler {
+    private static final double EARTH_RADIUS = 6378.1370;
+
+    private final int localMatrixSize;
+    private final int globalMatrixSize;
+    // in kilometers
+    private final double localRoutingDiameter;
+
+    public SpatialTiler(int localMatrixSize, int globalMatrixSize, double localRoutingDiameter) {
+        this.localMatrixSize = localMatrixSize;
+        this.globalMatrixSize = globalMatrixSize;
+        this.localRoutingDiameter = localRoutingDiameter;
+    }
+
+    public record Tile(List<Visit> fromLocations, List<Visit> toLocations) {}
+
+    public List<Tile> tiles(List<Visit> fromLocations, List<Visit> toLocations) {
+        List<List<Visit>> fromClusters = this.cluster(fromLocations);
+        List<List<Visit>> toClusters = fromLocations == toLocations ? fromClusters : this.cluster(toLocations);
+        List<Tile> tiles = new ArrayList<>();
+
+        for (List<Visit> a : fromClusters) {
+            for (List<Visit> b : toClusters) {
+                boolean local = this.diameter(Stream.concat(a.stream(), b.stream()).toList()) <= this.localRoutingDiameter;
+                int size = local ? this.localMatrixSize : this.globalMatrixSize;
+
+                for (List<Visit> from : ListUtils.partition(a, size)) {
+                    for (List<Visit> to : ListUtils.partition(b, size)) {
+                        tiles.add(new Tile(from, to));
+                    }
+                }
+            }
+        }
+
+        return tiles;
+    }
+
+    // clusters of at most localMatrixSize locations that fit in the local routing diameter
+    // (or of at most globalMatrixSize locations for sparse areas)
+    List<List<Visit>> cluster(List<Visit> locations) {
+        List<List<Visit>> clusters = new ArrayList<>();
+
+        this.bisect(locations, clusters);
+
+        return clusters;
+    }
+
+    private void bisect(List<Visit> locations, List<List<Visit>> clusters) {
+        if (locations.isEmpty()) {
+            return;
+        }
+
+        // clusters are not split below the long haul tile size
+        if (locations.size() <= this.globalMatrixSize || (locations.size() <= this.localMatrixSize && this.diameter(locations) <= this.localRoutingDiameter)) {
+            clusters.add(locations);
+
+            return;
+        }
+
+        double latitudeSpan = span(locations, Position::getLatitude);
+        double longitudeSpan = span(locations, Position::getLongitude) * Math.cos(Math.toRadians(locations.get(0).getLatitude()));
+        Comparator<Visit> axis = latitudeSpan >= longitudeSpan ?
+                Comparator.comparingDouble(Position::getLatitude) :
+                Comparator.comparingDouble(Position::getLongitude);
+        List<Visit> sorted = locations.stream().sorted(axis).toList();
+        // the split is aligned to the long haul tile size so that only one cluster is not a multiple of it
+        int median = (int) Math.ceil(sorted.size() / 2.0 / this.globalMatrixSize) * this.globalMatrixSize;
+
+        this.bisect(sorted.subList(0, median), clusters);
+        this.bisect(sorted.subList(median, sorted.size()), clusters);
+    }
+
+    // diagonal of the bounding box (in km), a conservative estimate of the largest distance between two positions
+    double diameter(List<? extends Position> positions) {
+        double minLatitude = positions.stream().mapToDouble(Position::getLatitude).min().orElse(0);
+        double maxLatitude = positions.stream().mapToDouble(Position::getLatitude).max().orElse(0);
+        double minLongitude = positions.stream().mapToDouble(Position::getLongitude).min().orElse(0);
+        double maxLongitude = positions.stream().mapToDouble(Position::getLongitude).max().orElse(0);
+
+        double p1 = Math.toRadians(minLatitude);
+        double p2 = Math.toRadians(maxLatitude);
+        double deltaC = Math.toRadians(maxLongitude - minLongitude);
+        // the parallel closest to the equator is the longest one
+        double cosine = Math.max(Math.cos(p1), Math.cos(p2));
+        double a = Math.sin((p2 - p1) / 2) * Math.sin((p2 - p1) / 2) + cosine * cosine * Math.sin(deltaC / 2) * Math.sin(deltaC / 2);
+
+        return 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a)) * EARTH_RADIUS;
+    }
+
+    private static double span(List<Visit> locations, ToDoubleFunction<Position> coordinate) {
+        return locations.stream().mapToDouble(coordinate).max().orElse(0) - locations.stream().mapToDouble(coordinate).min().orElse(0);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrixFactory;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.TimeSlicedDistanceMatrix;
+import lombok.AllArgsConstructor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+
+// travel times depending on the departure time: the matrix of the base calculator is wrapped in a
+// TimeSlicedDistanceMatrix whose buckets are either fetched (one road calculator departing in the middle
+// of every bucket) or derived from a traffic profile applied to every cell
+@AllArgsConstructor
+public class TimeSlicedDistance implements DistanceCalculator {
+    private static final Logger logger = LogManager.getLogger(TimeSlicedDistance.class);
+
+    private DistanceCalculator base;
+
+    private int buckets;
+
+    // one calculator per bucket, empty to use the traffic profile
+    private List<DistanceCalculator> bucketCalculators;
+
+    // multiplier of the base times per bucket, null to keep the base times
+    private double[] trafficProfile;
+
+    // heap of the road matrix caches of the bucket calculators, 0 without
+    private long cacheBytes;
+
+    @Override
+    public DistanceAndTime calculateDistanceAndTime(Visit from, Visit to) {
+        return this.base.calculateDistanceAndTime(from, to);
+    }
+
+    @Override
+    public void calculateBulkDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations, DistanceMatrix matrix) {
+        this.base.calculateBulkDistanceAndTime(fromLocations, toLocations, matrix);
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return this.base.isSymmetric();
+    }
+
+    @Override
+    public DistanceMatrix createDistanceAndTimeMatrix(List<Visit> locationList, MatrixRequestPlan plan) {
+        boolean perCell = !this.bucketCalculators.isEmpty();
+        long factorBytes = TimeSlicedDistanceMatrix.footprint(locationList.size(), this.buckets, perCell, this.isSymmetric());
+
+        // the buckets (and the caches of their calculators) are kept on the heap along with the base matrix,
+        // everything has to fit before the base is computed
+        DistanceMatrixFactory.checkFootprint(locationList.size(), plan.storage(), this.isSymmetric(), factorBytes + this.cacheBytes);
+
+        DistanceMatrix baseMatrix = this.base.createDistanceAndTimeMatrix(locationList, plan);
+        TimeSlicedDistanceMatrix matrix = new TimeSlicedDistanceMatrix(baseMatrix, this.buckets, perCell, this.isSymmetric());
+
+        logger.info("Time sliced distance matrix of {} buckets: {} MB on top of the base matrix", this.buckets, factorBytes / (1024 * 1024));
+
+        if (perCell) {
+            for (int bucket = 0; bucket < this.buckets; bucket++) {
+                logger.info("Fetching the travel times of the time bucket {}/{}", bucket + 1, this.buckets);
+
+                this.bucketCalculators.get(bucket).calculatePlannedDistanceAndTime(plan, bucketCells(matrix, bucket));
+            }
+        } else if (this.trafficProfile != null) {
+            matrix.setProfile(this.trafficProfile);
+        }
+
+        return matrix;
+    }
+
+    // view of a single bucket: the fetched times are stored as factors of the base times
+    private static DistanceMatrix bucketCells(TimeSlicedDistanceMatrix matrix, int bucket) {
+        return new DistanceMatrix() {
+            @Override
+            public int size() {
+                return matrix.size();
+            }
+
+            @Override
+            public long getDistance(int from, int to) {
+                return matrix.getDistance(from, to);
+            }
+
+            @Override
+            public long getTime(int from, int to) {
+                return matrix.getTime(from, to, matrix.getBucketCenter(bucket));
+            }
+
+            @Override
+            public void set(int from, int to, long distance, long time) {
+                matrix.setBucketTime(from, to, bucket, time);
+            }
+        };
+    }
+}
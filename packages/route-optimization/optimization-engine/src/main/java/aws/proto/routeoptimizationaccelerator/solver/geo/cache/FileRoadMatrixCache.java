@@ -0,0 +1,345 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo.cache;
+
+import aws.proto.routeoptimizationaccelerator.common.Position;
+import aws.proto.routeoptimizationaccelerator.utils.EnvVariables;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// append-only segment file of route cells
+//
+// layout (big endian):
+//   header: int magic, int version
+//   record: long fromKey, long toKey, long value (distance in meters << 32 | time in seconds)
+//
+// keys are the coordinates quantized to 5 decimals (~1m), packed as (latitude << 32 | longitude)
+// one file per routing profile (calculator, travel mode, toll avoidance) so that cells computed
+// with different options are never mixed up. The file is memory mapped once when opened and
+// new cells are appended on flush, which allows several tasks to share it on a network file system.
+//
+// the records are in the order the cells were first added: when the file holds more than maxCells records
+// only the most recent ones are loaded (the oldest cells are evicted). The file is compacted when it is opened
+// if cells were evicted or if it holds too many duplicated records (cells appended by concurrent tasks)
+//
+// the lookups of the parallel matrix tiles share a read lock, adding cells (put, flush, discard) takes the write lock
+public class FileRoadMatrixCache implements RoadMatrixCache {
+    private static final Logger logger = LogManager.getLogger(FileRoadMatrixCache.class);
+
+    private static final int MAGIC = 0x524D4331;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int RECORD_SIZE = 3 * Long.BYTES;
+    private static final double COORDINATE_SCALE = 100_000;
+
+    // records a single memory mapping can read
+    public static final int MAX_CELLS = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+    private final Path file;
+    private final RouteCellTable table;
+
+    // cells added since the last flush as (fromKey, toKey, value) triples
+    private long[] pending = new long[3 * 1024];
+    private int pendingSize = 0;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private FileRoadMatrixCache(Path file, RouteCellTable table) {
+        this.file = file;
+        this.table = table;
+    }
+
+    public static RoadMatrixCache open(Path directory, String namespace) {
+        return open(directory, namespace, EnvVariables.getRoadMatrixCacheMaxCells());
+    }
+
+    public static RoadMatrixCache open(Path directory, String namespace, int maxCells) {
+        Path file = fileOf(directory, namespace);
+
+        try {
+            Files.createDirectories(directory);
+
+            RouteCellTable table = load(file, Math.min(maxCells, MAX_CELLS));
+            logger.info("Road matrix cache {} loaded with {} cells", file, table.size());
+
+            return new FileRoadMatrixCache(file, table);
+        } catch (Exception ex) {
+            // the cache must never prevent the optimization from running, but every road matrix is requested in full
+            // until the file is fixed or removed
+            logger.error("Unable to open the road matrix cache {}, the cache is disabled", file, ex);
+
+            return new NoOpRoadMatrixCache();
+        }
+    }
+
+    // heap taken by a cache holding maxCells cells
+    public static long footprint(int maxCells) {
+        return RouteCellTable.footprint(Math.min(maxCells, MAX_CELLS));
+    }
+
+    // file where the cells of the namespace are persisted
+    public static Path fileOf(Path directory, String namespace) {
+        return directory.resolve("road-matrix-" + namespace.replaceAll("[^A-Za-z0-9_-]", "_") + ".bin");
+    }
+
+    // records of the file (duplicates included, until compacted) without loading it, 0 if missing
+    public static long records(Path directory, String namespace) throws IOException {
+        Path file = fileOf(directory, namespace);
+
+        if (!Files.exists(file) || Files.size(file) < HEADER_SIZE) {
+            return 0;
+        }
+
+        return (Files.size(file) - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    @Override
+    public CachedRoute get(Position from, Position to) {
+        long fromKey = toKey(from);
+        long toKey = toKey(to);
+        long value;
+        Lock readLock = this.lock.readLock();
+
+        readLock.lock();
+
+        try {
+            value = this.table.get(fromKey, toKey);
+        } finally {
+            readLock.unlock();
+        }
+
+        if (RouteCellTable.isEmpty(value)) {
+            this.misses.incrementAndGet();
+
+            return null;
+        }
+
+        this.hits.incrementAndGet();
+
+        return new CachedRoute(RouteCellTable.unpackDistance(value), RouteCellTable.unpackTime(value));
+    }
+
+    @Override
+    public void put(Position from, Position to, long distance, long time) {
+        long fromKey = toKey(from);
+        long toKey = toKey(to);
+        long value = RouteCellTable.pack(distance, time);
+        Lock writeLock = this.lock.writeLock();
+
+        writeLock.lock();
+
+        try {
+            if (this.table.put(fromKey, toKey, value)) {
+                if (this.pendingSize + 3 > this.pending.length) {
+                    this.pending = Arrays.copyOf(this.pending, this.pending.length * 2);
+                }
+
+                this.pending[this.pendingSize++] = fromKey;
+                this.pending[this.pendingSize++] = toKey;
+                this.pending[this.pendingSize++] = value;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void flush() {
+        Lock writeLock = this.lock.writeLock();
+
+        writeLock.lock();
+
+        try {
+            this.flushPending();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void flushPending() {
+        logger.debug("Road matrix cache: {} hits, {} misses, {} new cells", this.hits, this.misses, this.pendingSize / 3);
+
+        if (this.pendingSize == 0) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+             FileLock ignored = channel.lock()) {
+            ByteBuffer buffer = ByteBuffer.allocate((channel.size() == 0 ? HEADER_SIZE : 0) + this.pendingSize * Long.BYTES);
+
+            if (channel.size() == 0) {
+                buffer.putInt(MAGIC).putInt(VERSION);
+            }
+
+            for (int i = 0; i < this.pendingSize; i++) {
+                buffer.putLong(this.pending[i]);
+            }
+
+            buffer.flip();
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            this.pendingSize = 0;
+        } catch (IOException ex) {
+            logger.warn("Unable to persist the road matrix cache {}", this.file, ex);
+        }
+    }
+
+    @Override
+    public void discard() {
+        Lock writeLock = this.lock.writeLock();
+
+        writeLock.lock();
+
+        try {
+            this.pendingSize = 0;
+
+            Files.deleteIfExists(this.file);
+        } catch (IOException ex) {
+            logger.warn("Unable to delete the road matrix cache {}", this.file, ex);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void forEach(CellConsumer consumer) {
+        Lock readLock = this.lock.readLock();
+
+        readLock.lock();
+
+        try {
+            this.table.forEach((fromKey, toKey, value) -> consumer.accept(
+                    latitudeOf(fromKey),
+                    longitudeOf(fromKey),
+                    latitudeOf(toKey),
+                    longitudeOf(toKey),
+                    RouteCellTable.unpackDistance(value),
+                    RouteCellTable.unpackTime(value)
+            ));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // the file is locked while it is loaded, the other tasks wait to append their cells
+    private static RouteCellTable load(Path file, int maxCells) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER_SIZE) {
+            return new RouteCellTable(0);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Unsupported road matrix cache format");
+            }
+
+            // a trailing partial record (e.g. task killed while writing) is ignored
+            long records = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+            int loaded = (int) Math.min(records, maxCells);
+            long start = HEADER_SIZE + (records - loaded) * RECORD_SIZE;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, (long) loaded * RECORD_SIZE);
+            RouteCellTable table = new RouteCellTable(loaded);
+
+            for (int i = 0; i < loaded; i++) {
+                table.put(buffer.getLong(), buffer.getLong(), buffer.getLong());
+            }
+
+            if (records > loaded || records > table.size() + table.size() / 4) {
+                logger.info("Compacting the road matrix cache {}: {} records, {} cells", file, records, table.size());
+
+                compact(channel, buffer, table);
+            }
+
+            return table;
+        }
+    }
+
+    // rewrites the cells in place from the start of the file, in the order they were first added and with their last
+    // value, then truncates the file. The records are always written behind the ones still to be read (a cell is
+    // written once at most), a task killed while compacting leaves old records after the new ones: duplicates only
+    private static void compact(FileChannel channel, MappedByteBuffer records, RouteCellTable table) throws IOException {
+        boolean[] written = new boolean[table.capacity()];
+        ByteBuffer buffer = ByteBuffer.allocate(4096 * RECORD_SIZE);
+        long position = 0;
+
+        buffer.putInt(MAGIC).putInt(VERSION);
+        records.rewind();
+
+        while (records.hasRemaining()) {
+            long fromKey = records.getLong();
+            long toKey = records.getLong();
+            records.getLong();
+
+            int slot = table.slotOf(fromKey, toKey);
+
+            if (written[slot]) {
+                continue;
+            }
+
+            written[slot] = true;
+            buffer.putLong(fromKey).putLong(toKey).putLong(table.get(fromKey, toKey));
+
+            if (!buffer.hasRemaining()) {
+                position += write(channel, buffer, position);
+            }
+        }
+
+        position += write(channel, buffer, position);
+        channel.truncate(position);
+    }
+
+    private static long write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+
+        long written = 0;
+
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+
+        buffer.clear();
+
+        return written;
+    }
+
+    private static long toKey(Position position) {
+        long latitude = Math.round(position.getLatitude() * COORDINATE_SCALE);
+        long longitude = Math.round(position.getLongitude() * COORDINATE_SCALE);
+
+        return (latitude << 32) | (longitude & 0xFFFFFFFFL);
+    }
+
+    private static double latitudeOf(long key) {
+        return (key >> 32) / COORDINATE_SCALE;
+    }
+
+    private static double longitudeOf(long key) {
+        return ((int) key) / COORDINATE_SCALE;
+    }
+}
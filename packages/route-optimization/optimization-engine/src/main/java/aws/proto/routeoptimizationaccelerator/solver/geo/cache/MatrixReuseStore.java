@@ -0,0 +1,231 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo.cache;
+
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.geo.MatrixRequestPlan;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.MappedDistanceMatrix;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+// last distance matrix computed for a routing profile, kept to compute only the new rows/columns of the next
+// request (e.g. a re-plan of the same day adding a few orders). The locations are keyed by their role in the
+// plan and their position, so that only the cells computed by the previous plan are reused:
+//   o: orders (orders -> orders, depots -> orders, orders -> return depots)
+//   d: depots (depots -> orders)
+//   r: depots of vehicles going back to origin (depots -> orders, orders -> depots)
+// the matrix is kept in memory and, when a directory is configured, persisted in the precomputed matrix file layout
+// so that it survives a restart of the worker. Matrices older than maxAge are not reused (the travel times change),
+// and the matrix kept in memory counts in the heap: it is dropped when it does not fit along with the matrix of
+// the next request, which reloads it from its file (memory mapped, outside of the heap) if any
+public class MatrixReuseStore {
+    private static final Logger logger = LogManager.getLogger(MatrixReuseStore.class);
+
+    // bigger matrices are not kept in memory between requests (they would double the matrix footprint)
+    private static final int MAX_RETAINED_SIZE = 10_000;
+
+    // one matrix per routing profile for the whole lifetime of the worker
+    private static final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // heapBytes is 0 for the matrices outside of the heap
+    private record Entry(Map<String, Integer> indexes, DistanceMatrix matrix, long heapBytes, Instant savedAt) { }
+
+    private final String profileName;
+
+    // null when the matrix is kept in memory only
+    private final Path file;
+
+    private final Duration maxAge;
+
+    public MatrixReuseStore(String profileName, Path directory, Duration maxAge) {
+        this.profileName = profileName;
+        this.file = directory != null ? directory.resolve("reuse-matrix-" + profileName.replaceAll("[^A-Za-z0-9_-]", "_") + ".bin") : null;
+        this.maxAge = maxAge;
+    }
+
+    // heap taken by the matrices kept in memory
+    public static long retainedHeapBytes() {
+        return entries.values().stream().mapToLong(Entry::heapBytes).sum();
+    }
+
+    // called before the matrix of a request is allocated: the matrix kept in memory is dropped if both do not fit in the heap
+    public void reserve(long heapBytes) {
+        long retained = retainedHeapBytes();
+        long available = Runtime.getRuntime().maxMemory();
+
+        if (retained > 0 && retained + heapBytes > available) {
+            logger.info("Dropping the {} MB of previous matrices kept in memory, {} MB are needed out of {} MB of heap",
+                    retained / (1024 * 1024), heapBytes / (1024 * 1024), available / (1024 * 1024));
+
+            clear();
+        }
+    }
+
+    // fills the cells between the locations already part of the previous matrix, returns their matrix indexes
+    public BitSet fill(List<Visit> locations, MatrixRequestPlan plan, DistanceMatrix matrix) {
+        BitSet reused = new BitSet();
+        Entry previous = this.load();
+
+        if (previous == null) {
+            return reused;
+        }
+
+        BitSet returnDepots = indexes(plan.returnDepots());
+        BitSet depots = indexes(plan.depots());
+        int[] previousIndexes = new int[matrix.size()];
+
+        for (Visit location : locations) {
+            int index = location.getMatrixIndex();
+            String position = position(location);
+            Integer previousIndex;
+
+            if (returnDepots.get(index)) {
+                previousIndex = previous.indexes().get("r:" + position);
+            } else if (depots.get(index)) {
+                // a depot going back to origin has its row to the orders as well
+                previousIndex = previous.indexes().getOrDefault("d:" + position, previous.indexes().get("r:" + position));
+            } else {
+                previousIndex = previous.indexes().get("o:" + position);
+            }
+
+            if (previousIndex != null) {
+                previousIndexes[index] = previousIndex;
+                reused.set(index);
+            }
+        }
+
+        int[] rows = reused.stream().toArray();
+        DistanceMatrix cells = previous.matrix();
+
+        // every row writes its own cells (the triangle of a symmetric matrix gets the same value twice)
+        Arrays.stream(rows).parallel().forEach(from -> {
+            for (int to : rows) {
+                if (from != to) {
+                    matrix.set(from, to, cells.getDistance(previousIndexes[from], previousIndexes[to]), cells.getTime(previousIndexes[from], previousIndexes[to]));
+                }
+            }
+        });
+
+        logger.info("Reusing {} of {} locations from the previous {} matrix", rows.length, matrix.size(), this.profileName);
+
+        return reused;
+    }
+
+    // keeps the matrix for the next request
+    public void save(List<Visit> locations, MatrixRequestPlan plan, DistanceMatrix matrix, long heapBytes) {
+        BitSet returnDepots = indexes(plan.returnDepots());
+        BitSet depots = indexes(plan.depots());
+        String[] keys = new String[matrix.size()];
+        Map<String, Integer> indexes = new HashMap<>();
+
+        for (Visit location : locations) {
+            int index = location.getMatrixIndex();
+            String role = returnDepots.get(index) ? "r:" : depots.get(index) ? "d:" : "o:";
+            String key = role + position(location);
+
+            // depots sharing the same position, only the first one is looked up
+            if (indexes.putIfAbsent(key, index) != null) {
+                key = key + "#" + index;
+            }
+
+            keys[index] = key;
+        }
+
+        if (matrix.size() <= MAX_RETAINED_SIZE) {
+            entries.put(this.profileName, new Entry(indexes, matrix, heapBytes, Instant.now()));
+        } else {
+            entries.remove(this.profileName);
+        }
+
+        if (this.file == null) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(this.file.getParent());
+
+            // written aside and moved so that a previous mapping of the file stays valid
+            Path temporary = Files.createTempFile(this.file.getParent(), "reuse-matrix", ".tmp");
+            MappedDistanceMatrix.write(temporary, Arrays.asList(keys), matrix);
+            Files.move(temporary, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception ex) {
+            // the store must never prevent the optimization from running
+            logger.warn("Unable to persist the matrix {}", this.file, ex);
+        }
+    }
+
+    private Entry load() {
+        Entry entry = entries.get(this.profileName);
+
+        if (entry != null && this.isExpired(entry.savedAt())) {
+            logger.info("The previous {} matrix is older than {}, computing every cell", this.profileName, this.maxAge);
+
+            entries.remove(this.profileName, entry);
+            entry = null;
+        } else if (entry != null) {
+            return entry;
+        }
+
+        if (this.file == null || !Files.exists(this.file)) {
+            return null;
+        }
+
+        try {
+            if (this.isExpired(Files.getLastModifiedTime(this.file).toInstant())) {
+                logger.info("The persisted {} matrix {} is older than {}, computing every cell", this.profileName, this.file, this.maxAge);
+
+                return null;
+            }
+
+            MappedDistanceMatrix matrix = MappedDistanceMatrix.open(this.file);
+            Map<String, Integer> indexes = new HashMap<>();
+
+            IntStream.range(0, matrix.size()).forEach(i -> indexes.put(matrix.getLocationIds().get(i), i));
+            logger.info("Loaded the previous {} matrix of {} locations from {}", this.profileName, matrix.size(), this.file);
+
+            // memory mapped, outside of the heap
+            return new Entry(indexes, matrix, 0, Files.getLastModifiedTime(this.file).toInstant());
+        } catch (Exception ex) {
+            logger.warn("Unable to load the matrix {}, computing every cell", this.file, ex);
+
+            return null;
+        }
+    }
+
+    private boolean isExpired(Instant savedAt) {
+        return savedAt.plus(this.maxAge).isBefore(Instant.now());
+    }
+
+    // drops every matrix kept in memory
+    public static void clear() {
+        entries.clear();
+    }
+
+    private static BitSet indexes(List<Visit> locations) {
+        BitSet indexes = new BitSet();
+        locations.forEach(t -> indexes.set(t.getMatrixIndex()));
+
+        return indexes;
+    }
+
+    private static String position(Visit location) {
+        return String.format(Locale.ROOT, "%.6f,%.6f", location.getLatitude(), location.getLongitude());
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo.cache;
+
+import aws.proto.routeoptimizationaccelerator.common.Position;
+
+// used when no cache location has been configured
+public class NoOpRoadMatrixCache implements RoadMatrixCache {
+    @Override
+    public CachedRoute get(Position from, Position to) {
+        return null;
+    }
+
+    @Override
+    public void put(Position from, Position to, long distance, long time) {
+
+    }
+
+    @Override
+    public void flush() {
+
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo.cache;
+
+import aws.proto.routeoptimizationaccelerator.common.Position;
+
+// persistent store of road matrix cells, consulted before calling the routing service
+// values are expressed in meters and seconds like the DistanceMatrix
+public interface RoadMatrixCache {
+    // returns null if the cell has never been fetched
+    CachedRoute get(Position from, Position to);
+
+    void put(Position from, Position to, long distance, long time);
+
+    // persist the cells added since the last flush
+    void flush();
+
+    // drop the persisted cells (e.g. a per-problem checkpoint no longer needed)
+    default void discard() { }
+
+    // visits every cell of the cache (e.g. to learn from the routes fetched so far), the consumer must not add cells
+    default void forEach(CellConsumer consumer) { }
+
+    record CachedRoute(long distance, long time) { }
+
+    interface CellConsumer {
+        void accept(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude, long distance, long time);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo.cache;
+
+import java.util.Arrays;
+
+// open addressing hash table of route cells keyed by quantized coordinates
+// everything is kept in primitive arrays (3 longs per cell) so millions of cells
+// can be held in memory without one object per entry (not thread safe, the callers lock it)
+public class RouteCellTable {
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final double MAX_LOAD_FACTOR = 0.6;
+
+    private long[] fromKeys;
+    private long[] toKeys;
+    private long[] values;
+    private int size;
+
+    public RouteCellTable(int expectedSize) {
+        this.allocate(capacityFor(expectedSize));
+    }
+
+    // slots of a table holding the given number of cells
+    public static int capacityFor(int expectedSize) {
+        return Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD_FACTOR)) - 1) << 1;
+    }
+
+    // bytes of a table holding the given number of cells
+    public static long footprint(int expectedSize) {
+        return (long) capacityFor(expectedSize) * 3 * Long.BYTES;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    int capacity() {
+        return this.fromKeys.length;
+    }
+
+    // returns EMPTY if not found, otherwise the packed (distance, time) value
+    public long get(long fromKey, long toKey) {
+        int slot = this.slotOf(fromKey, toKey);
+
+        return slot < 0 ? EMPTY : this.values[slot];
+    }
+
+    // position of the cell in the table (stable until the next put), -1 if not found
+    int slotOf(long fromKey, long toKey) {
+        int mask = this.fromKeys.length - 1;
+        int slot = hash(fromKey, toKey) & mask;
+
+        while (this.fromKeys[slot] != EMPTY) {
+            if (this.fromKeys[slot] == fromKey && this.toKeys[slot] == toKey) {
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    // returns true if the cell was not present
+    public boolean put(long fromKey, long toKey, long value) {
+        if (this.size + 1 > this.fromKeys.length * MAX_LOAD_FACTOR) {
+            this.resize();
+        }
+
+        int mask = this.fromKeys.length - 1;
+        int slot = hash(fromKey, toKey) & mask;
+
+        while (this.fromKeys[slot] != EMPTY) {
+            if (this.fromKeys[slot] == fromKey && this.toKeys[slot] == toKey) {
+                this.values[slot] = value;
+
+                return false;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        this.fromKeys[slot] = fromKey;
+        this.toKeys[slot] = toKey;
+        this.values[slot] = value;
+        this.size++;
+
+        return true;
+    }
+
+    void forEach(CellVisitor visitor) {
+        for (int i = 0; i < this.fromKeys.length; i++) {
+            if (this.fromKeys[i] != EMPTY) {
+                visitor.visit(this.fromKeys[i], this.toKeys[i], this.values[i]);
+            }
+        }
+    }
+
+    public static boolean isEmpty(long value) {
+        return value == EMPTY;
+    }
+
+    // distance in meters (high 32 bits) and time in seconds (low 32 bits)
+    public static long pack(long distance, long time) {
+        return (distance << 32) | (time & 0xFFFFFFFFL);
+    }
+
+    public static long unpackDistance(long value) {
+        return value >>> 32;
+    }
+
+    public static long unpackTime(long value) {
+        return value & 0xFFFFFFFFL;
+    }
+
+    private void allocate(int capacity) {
+        this.fromKeys = new long[capacity];
+        this.toKeys = new long[capacity];
+        this.values = new long[capacity];
+
+        Arrays.fill(this.fromKeys, EMPTY);
+    }
+
+    private void resize() {
+        long[] oldFromKeys = this.fromKeys;
+        long[] oldToKeys = this.toKeys;
+        long[] oldValues = this.values;
+
+        this.allocate(oldFromKeys.length << 1);
+        this.size = 0;
+
+        for (int i = 0; i < oldFromKeys.length; i++) {
+            if (oldFromKeys[i] != EMPTY) {
+                this.put(oldFromKeys[i], oldToKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    interface CellVisitor {
+        void visit(long fromKey, long toKey, long value);
+    }
+
+    private static int hash(long fromKey, long toKey) {
+        long h = fromKey * 0x9E3779B97F4A7C15L + toKey;
+        h ^= (h >>> 32);
+        h *= 0xC2B2AE3D27D4EB4FL;
+
+        return (int) (h ^ (h >>> 29));
+    }
+}
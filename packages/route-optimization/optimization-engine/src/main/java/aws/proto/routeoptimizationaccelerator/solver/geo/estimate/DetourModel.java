@@ -0,0 +1,239 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo.estimate;
+
+import aws.proto.routeoptimizationaccelerator.data.mapper.CustomObjectMapper;
+import aws.proto.routeoptimizationaccelerator.solver.geo.cache.RoadMatrixCache;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+// road distance and travel time estimated from the air distance:
+//   distance = air distance * detour factor
+//   time = distance / speed
+// the detour factor and the speed are fitted on the road matrix cells fetched so far,
+// by region (grid of regionSize degrees, on the departure) and by distance band (e.g. urban vs highway trips).
+// every fitted band reports the error of the estimate on the cells it was fitted on (relative error percentiles),
+// bands without enough cells fall back on the same band for every region, and then on the defaults
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class DetourModel {
+    // upper bounds (in km) of the distance bands, the last one is open
+    static final double[] BAND_LIMITS = { 1, 3, 10, 30, 100, 300 };
+
+    // cells needed to fit a band
+    static final int MIN_SAMPLES = 50;
+    // cells kept per band to compute the percentiles (reservoir sampling)
+    private static final int RESERVOIR_SIZE = 1024;
+    // pairs closer than this (in meters) are not meaningful to compute the detour factor
+    private static final double MIN_AIR_DISTANCE = 100;
+    private static final double DEFAULT_REGION_SIZE = 0.5;
+    private static final double DEFAULT_DETOUR_FACTOR = 1.3;
+    // in m/s, 60 km/h
+    private static final double DEFAULT_SPEED = 60 / 3.6;
+    private static final double EARTH_RADIUS = 6378137.0;
+
+    private double regionSize;
+
+    // cells the model has been fitted on
+    private long samples;
+
+    // bands fitted on every region, indexed like BAND_LIMITS (plus the open one), null if not fitted
+    private Band[] global;
+
+    // bands fitted per region (see regionKey()), null if not fitted
+    private Map<String, Band[]> regions;
+
+    // records of the road matrix cache file when the model was fitted, to fit it again once enough cells changed
+    private long cacheRecords;
+
+    // distance and time relative errors (e.g. 0.1 for 10%), median and 90th percentile
+    public record Band(long samples, double detourFactor, double speed, double distanceErrorP50, double distanceErrorP90, double timeErrorP50, double timeErrorP90) { }
+
+    // model without fitted bands, i.e. fixed detour factor and speed
+    public static DetourModel defaults() {
+        return new DetourModel(DEFAULT_REGION_SIZE, 0, new Band[BAND_LIMITS.length + 1], new HashMap<>(), 0);
+    }
+
+    public static DetourModel fit(RoadMatrixCache cache) {
+        return fit(cache, DEFAULT_REGION_SIZE);
+    }
+
+    public static DetourModel fit(RoadMatrixCache cache, double regionSize) {
+        Map<String, Reservoir[]> regionReservoirs = new HashMap<>();
+        Reservoir[] globalReservoirs = newReservoirs();
+        Random random = new Random(0);
+        long[] samples = { 0 };
+
+        cache.forEach((fromLatitude, fromLongitude, toLatitude, toLongitude, distance, time) -> {
+            double air = airDistance(fromLatitude, fromLongitude, toLatitude, toLongitude);
+
+            if (air < MIN_AIR_DISTANCE || distance <= 0 || time <= 0) {
+                return;
+            }
+
+            int band = band(air);
+            String region = regionKey(fromLatitude, fromLongitude, regionSize);
+
+            globalReservoirs[band].add(distance / air, (double) distance / time, random);
+            regionReservoirs.computeIfAbsent(region, k -> newReservoirs())[band].add(distance / air, (double) distance / time, random);
+            samples[0]++;
+        });
+
+        Map<String, Band[]> regions = new HashMap<>();
+
+        regionReservoirs.forEach((region, reservoirs) -> {
+            Band[] bands = fitBands(reservoirs);
+
+            if (Arrays.stream(bands).anyMatch(b -> b != null)) {
+                regions.put(region, bands);
+            }
+        });
+
+        return new DetourModel(regionSize, samples[0], fitBands(globalReservoirs), regions, 0);
+    }
+
+    public static DetourModel load(Path file) throws IOException {
+        return new CustomObjectMapper().readValue(file.toFile(), DetourModel.class);
+    }
+
+    public void save(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+
+        // written aside and moved so that concurrent readers never see a partial file
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        new CustomObjectMapper().writerWithDefaultPrettyPrinter().writeValue(temporary.toFile(), this);
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // band used for a trip of the given air distance (in meters) departing from the given position
+    // null if neither the region nor the global band are fitted (the defaults apply)
+    public Band getBand(double fromLatitude, double fromLongitude, double airDistance) {
+        int band = band(airDistance);
+        Band[] regionBands = this.regions != null ? this.regions.get(regionKey(fromLatitude, fromLongitude, this.regionSize)) : null;
+
+        if (regionBands != null && regionBands[band] != null) {
+            return regionBands[band];
+        }
+
+        return this.global != null ? this.global[band] : null;
+    }
+
+    public static double getDetourFactor(Band band) {
+        return band != null ? band.detourFactor() : DEFAULT_DETOUR_FACTOR;
+    }
+
+    // in m/s
+    public static double getSpeed(Band band) {
+        return band != null ? band.speed() : DEFAULT_SPEED;
+    }
+
+    static int band(double airDistance) {
+        int band = 0;
+
+        while (band < BAND_LIMITS.length && airDistance >= BAND_LIMITS[band] * 1000) {
+            band++;
+        }
+
+        return band;
+    }
+
+    static String regionKey(double latitude, double longitude, double regionSize) {
+        return (long) Math.floor(latitude / regionSize) + ":" + (long) Math.floor(longitude / regionSize);
+    }
+
+    // haversine distance in meters
+    public static double airDistance(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude) {
+        double fromP = Math.toRadians(fromLatitude);
+        double toP = Math.toRadians(toLatitude);
+        double deltaP = toP - fromP;
+        double deltaC = Math.toRadians(toLongitude - fromLongitude);
+        double a = Math.sin(deltaP / 2) * Math.sin(deltaP / 2) + Math.cos(fromP) * Math.cos(toP) * Math.sin(deltaC / 2) * Math.sin(deltaC / 2);
+
+        return 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a)) * EARTH_RADIUS;
+    }
+
+    private static Reservoir[] newReservoirs() {
+        Reservoir[] reservoirs = new Reservoir[BAND_LIMITS.length + 1];
+
+        for (int i = 0; i < reservoirs.length; i++) {
+            reservoirs[i] = new Reservoir();
+        }
+
+        return reservoirs;
+    }
+
+    private static Band[] fitBands(Reservoir[] reservoirs) {
+        Band[] bands = new Band[reservoirs.length];
+
+        for (int i = 0; i < reservoirs.length; i++) {
+            bands[i] = reservoirs[i].seen >= MIN_SAMPLES ? reservoirs[i].fit() : null;
+        }
+
+        return bands;
+    }
+
+    // uniform sample of the (detour factor, speed) of the cells of a band
+    private static class Reservoir {
+        private final double[] detours = new double[RESERVOIR_SIZE];
+        private final double[] speeds = new double[RESERVOIR_SIZE];
+        private long seen = 0;
+
+        void add(double detour, double speed, Random random) {
+            long slot = this.seen < RESERVOIR_SIZE ? this.seen : (long) (random.nextDouble() * (this.seen + 1));
+
+            if (slot < RESERVOIR_SIZE) {
+                this.detours[(int) slot] = detour;
+                this.speeds[(int) slot] = speed;
+            }
+
+            this.seen++;
+        }
+
+        Band fit() {
+            int size = (int) Math.min(this.seen, RESERVOIR_SIZE);
+            double detourFactor = Math.max(1.0, percentile(Arrays.copyOf(this.detours, size), 0.5));
+            double speed = percentile(Arrays.copyOf(this.speeds, size), 0.5);
+
+            // the road distance is air * detour, the estimate is air * detourFactor
+            // the time is air * detour / speed, the estimate is air * detourFactor / fitted speed
+            double[] distanceErrors = new double[size];
+            double[] timeErrors = new double[size];
+
+            for (int i = 0; i < size; i++) {
+                distanceErrors[i] = Math.abs(detourFactor / this.detours[i] - 1);
+                timeErrors[i] = Math.abs((detourFactor / speed) / (this.detours[i] / this.speeds[i]) - 1);
+            }
+
+            return new Band(
+                    this.seen,
+                    detourFactor,
+                    speed,
+                    percentile(distanceErrors, 0.5),
+                    percentile(distanceErrors, 0.9),
+                    percentile(timeErrors, 0.5),
+                    percentile(timeErrors, 0.9)
+            );
+        }
+
+        private static double percentile(double[] values, double percentile) {
+            Arrays.sort(values);
+
+            return values[Math.min(values.length - 1, (int) (percentile * values.length))];
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo.estimate;
+
+import aws.proto.routeoptimizationaccelerator.solver.geo.cache.FileRoadMatrixCache;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// detour model of a routing profile, served right away to the requests:
+//  - the model is kept in memory for the lifetime of the worker, loaded from its file the first time
+//  - it is fitted again on the road matrix cache once refitCells cells have been added to (or evicted from) the cache
+//    since the last fit, in the background: the requests keep using the previous model (or the defaults) meanwhile
+public class DetourModelStore {
+    private static final Logger logger = LogManager.getLogger(DetourModelStore.class);
+
+    // one model per model file for the whole lifetime of the worker
+    private static final Map<Path, DetourModel> models = new ConcurrentHashMap<>();
+    private static final Map<Path, CompletableFuture<DetourModel>> fitting = new ConcurrentHashMap<>();
+
+    // the fit reads the whole road matrix cache, one at a time
+    private static final ExecutorService fitter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "detour-model-fitter");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private final String profileName;
+    private final Path modelFile;
+    // null when there is no road matrix cache to fit the model on
+    private final Path cacheDirectory;
+    private final long refitCells;
+
+    public DetourModelStore(String profileName, Path modelFile, Path cacheDirectory, long refitCells) {
+        this.profileName = profileName;
+        this.modelFile = modelFile.toAbsolutePath().normalize();
+        this.cacheDirectory = cacheDirectory;
+        this.refitCells = refitCells;
+    }
+
+    public DetourModel get() {
+        DetourModel model = models.computeIfAbsent(this.modelFile, t -> this.load());
+
+        this.refitIfDue(model);
+
+        if (model == null) {
+            logger.warn("No detour model available for {} yet, using the default detour factor and speed", this.profileName);
+
+            return DetourModel.defaults();
+        }
+
+        return model;
+    }
+
+    // starts a fit when the cache changed enough since the model was fitted,
+    // returns the running fit (e.g. to wait for it in the tests), null if none
+    CompletableFuture<DetourModel> refitIfDue(DetourModel model) {
+        CompletableFuture<DetourModel> running = fitting.get(this.modelFile);
+
+        if (running != null || this.cacheDirectory == null) {
+            return running;
+        }
+
+        long records;
+
+        try {
+            records = FileRoadMatrixCache.records(this.cacheDirectory, this.profileName);
+        } catch (IOException e) {
+            logger.warn("Unable to read the road matrix cache of {}: {}", this.profileName, e.getMessage());
+
+            return null;
+        }
+
+        if (records == 0 || (model != null && Math.abs(records - model.getCacheRecords()) < this.refitCells)) {
+            return null;
+        }
+
+        CompletableFuture<DetourModel> fit = new CompletableFuture<>();
+        running = fitting.putIfAbsent(this.modelFile, fit);
+
+        if (running != null) {
+            return running;
+        }
+
+        logger.info("Fitting the detour model of {} on {} road matrix cache records in the background", this.profileName, records);
+
+        fitter.execute(() -> {
+            try {
+                DetourModel fitted = this.fit(records);
+
+                fitting.remove(this.modelFile, fit);
+                fit.complete(fitted);
+            } catch (RuntimeException e) {
+                logger.warn("Unable to fit the detour model {}: {}", this.modelFile, e.getMessage());
+
+                fitting.remove(this.modelFile, fit);
+                fit.completeExceptionally(e);
+            }
+        });
+
+        return fit;
+    }
+
+    private DetourModel fit(long records) {
+        DetourModel model = DetourModel.fit(FileRoadMatrixCache.open(this.cacheDirectory, this.profileName));
+
+        model.setCacheRecords(records);
+
+        try {
+            model.save(this.modelFile);
+        } catch (IOException e) {
+            logger.warn("Unable to save the detour model {}: {}", this.modelFile, e.getMessage());
+        }
+
+        models.put(this.modelFile, model);
+
+        logger.info("Fitted the detour model on {} road matrix cells ({} regions), saved to {}", model.getSamples(), model.getRegions().size(), this.modelFile);
+
+        return model;
+    }
+
+    // null when the file is missing or unreadable
+    private DetourModel load() {
+        if (!Files.exists(this.modelFile)) {
+            return null;
+        }
+
+        try {
+            logger.info("Loading the detour model {}", this.modelFile);
+
+            return DetourModel.load(this.modelFile);
+        } catch (IOException e) {
+            logger.warn("Unable to load the detour model {}: {}", this.modelFile, e.getMessage());
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo.graph;
+
+import aws.proto.routeoptimizationaccelerator.solver.geo.KdTree;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// road graph preprocessed with contraction hierarchies (see RoadGraphBuilder), memory mapped from a file
+//
+// layout (big endian ints):
+//   header: magic, version, nodeCount, upwardEdgeCount, downwardEdgeCount
+//   nodes: latitudes[nodeCount], longitudes[nodeCount] (degrees * 1e6)
+//   upward graph: offsets[nodeCount + 1], targets[], times[], distances[]
+//      edges u -> w where w has a higher rank than u
+//   downward graph: offsets[nodeCount + 1], sources[], times[], distances[]
+//      edges u -> w where u has a higher rank than w, stored on w (explored backward from w)
+// times are in milliseconds, distances in meters. The fastest path is computed, its distance is reported.
+//
+// many-to-many queries use buckets: a backward upward search from every target stores its settled nodes
+// in per-node buckets, then a forward upward search from every source scans the buckets of the nodes it settles.
+// both phases run in parallel (one search per source/target)
+public class RoadGraph {
+    private static final Logger logger = LogManager.getLogger(RoadGraph.class);
+
+    static final int MAGIC = 0x52474348;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 5 * Integer.BYTES;
+
+    public static final long UNREACHABLE = Long.MAX_VALUE;
+
+    private final int nodeCount;
+    private final IntBuffer latitudes;
+    private final IntBuffer longitudes;
+    private final Adjacency upward;
+    private final Adjacency downward;
+
+    // built lazily, only needed to snap the locations to the graph
+    private volatile KdTree index;
+
+    private RoadGraph(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported road graph format");
+        }
+
+        this.nodeCount = buffer.getInt(8);
+        int upwardEdges = buffer.getInt(12);
+        int downwardEdges = buffer.getInt(16);
+
+        IntBuffer ints = buffer.position(HEADER_SIZE).slice().asIntBuffer();
+        int position = 0;
+
+        this.latitudes = slice(ints, position, this.nodeCount);
+        position += this.nodeCount;
+        this.longitudes = slice(ints, position, this.nodeCount);
+        position += this.nodeCount;
+
+        this.upward = new Adjacency(ints, position, this.nodeCount, upwardEdges);
+        position += this.nodeCount + 1 + 3 * upwardEdges;
+        this.downward = new Adjacency(ints, position, this.nodeCount, downwardEdges);
+    }
+
+    public static RoadGraph open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            RoadGraph graph = new RoadGraph(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+
+            logger.info("Road graph {} loaded: {} nodes, {} upward edges, {} downward edges",
+                    file, graph.nodeCount, graph.upward.edgeCount, graph.downward.edgeCount);
+
+            return graph;
+        }
+    }
+
+    static RoadGraph wrap(ByteBuffer buffer) throws IOException {
+        return new RoadGraph(buffer);
+    }
+
+    public int getNodeCount() {
+        return this.nodeCount;
+    }
+
+    public double getLatitude(int node) {
+        return this.latitudes.get(node) / 1e6;
+    }
+
+    public double getLongitude(int node) {
+        return this.longitudes.get(node) / 1e6;
+    }
+
+    public int nearestNode(double latitude, double longitude) {
+        if (this.index == null) {
+            synchronized (this) {
+                if (this.index == null) {
+                    double[] lat = IntStream.range(0, this.nodeCount).mapToDouble(this::getLatitude).toArray();
+                    double[] lon = IntStream.range(0, this.nodeCount).mapToDouble(this::getLongitude).toArray();
+
+                    this.index = new KdTree(lat, lon);
+                }
+            }
+        }
+
+        return this.index.nearest(latitude, longitude);
+    }
+
+    public record PathMatrix(long[][] times, long[][] distances) {}
+
+    // fastest paths between every source and target node, UNREACHABLE when there is no path
+    public PathMatrix manyToMany(int[] sources, int[] targets) {
+        // backward phase: the searches are independent, the buckets are merged afterwards
+        Settled[] backward = IntStream.range(0, targets.length)
+                .parallel()
+                .mapToObj(t -> this.search(this.downward, targets[t]))
+                .toArray(Settled[]::new);
+        Buckets buckets = new Buckets(this.nodeCount, backward);
+
+        long[][] times = new long[sources.length][];
+        long[][] distances = new long[sources.length][];
+
+        // forward phase: every source writes its own row
+        IntStream.range(0, sources.length).parallel().forEach(s -> {
+            long[] rowTimes = new long[targets.length];
+            long[] rowDistances = new long[targets.length];
+            Arrays.fill(rowTimes, UNREACHABLE);
+
+            Settled forward = this.search(this.upward, sources[s]);
+
+            for (int i = 0; i < forward.size; i++) {
+                int node = forward.nodes[i];
+
+                for (int b = buckets.offsets[node]; b < buckets.offsets[node + 1]; b++) {
+                    int target = buckets.targets[b];
+                    long time = forward.times[i] + buckets.times[b];
+
+                    if (time < rowTimes[target]) {
+                        rowTimes[target] = time;
+                        rowDistances[target] = forward.distances[i] + buckets.distances[b];
+                    }
+                }
+            }
+
+            times[s] = rowTimes;
+            distances[s] = rowDistances;
+        });
+
+        return new PathMatrix(times, distances);
+    }
+
+    // full dijkstra on the upward (or downward) graph from the node
+    private Settled search(Adjacency graph, int origin) {
+        SearchSpace space = new SearchSpace();
+        Settled settled = new Settled();
+
+        space.push(origin, 0, 0);
+
+        while (!space.isEmpty()) {
+            long entry = space.pop();
+            int node = (int) entry;
+            long time = entry >>> 32;
+
+            if (space.isSettled(node) || time > space.time(node)) {
+                continue;
+            }
+
+            space.settle(node);
+            settled.add(node, time, space.distance(node));
+
+            for (int e = graph.offsets.get(node); e < graph.offsets.get(node + 1); e++) {
+                space.push(graph.nodes.get(e), time + graph.times.get(e), space.distance(node) + graph.distances.get(e));
+            }
+        }
+
+        return settled;
+    }
+
+    private static IntBuffer slice(IntBuffer buffer, int position, int length) {
+        return buffer.slice(position, length);
+    }
+
+    private static class Adjacency {
+        private final int edgeCount;
+        private final IntBuffer offsets;
+        private final IntBuffer nodes;
+        private final IntBuffer times;
+        private final IntBuffer distances;
+
+        Adjacency(IntBuffer buffer, int position, int nodeCount, int edgeCount) {
+            this.edgeCount = edgeCount;
+            this.offsets = slice(buffer, position, nodeCount + 1);
+            this.nodes = slice(buffer, position + nodeCount + 1, edgeCount);
+            this.times = slice(buffer, position + nodeCount + 1 + edgeCount, edgeCount);
+            this.distances = slice(buffer, position + nodeCount + 1 + 2 * edgeCount, edgeCount);
+        }
+    }
+
+    // nodes settled by a search, in settle order
+    private static class Settled {
+        private int size = 0;
+        private int[] nodes = new int[64];
+        private long[] times = new long[64];
+        private long[] distances = new long[64];
+
+        void add(int node, long time, long distance) {
+            if (this.size == this.nodes.length) {
+                this.nodes = Arrays.copyOf(this.nodes, this.size * 2);
+                this.times = Arrays.copyOf(this.times, this.size * 2);
+                this.distances = Arrays.copyOf(this.distances, this.size * 2);
+            }
+
+            this.nodes[this.size] = node;
+            this.times[this.size] = time;
+            this.distances[this.size] = distance;
+            this.size++;
+        }
+    }
+
+    // entries of the backward searches grouped by node (counting sort)
+    private static class Buckets {
+        private final int[] offsets;
+        private final int[] targets;
+        private final long[] times;
+        private final long[] distances;
+
+        Buckets(int nodeCount, Settled[] searches) {
+            this.offsets = new int[nodeCount + 1];
+
+            for (Settled search : searches) {
+                for (int i = 0; i < search.size; i++) {
+                    this.offsets[search.nodes[i] + 1]++;
+                }
+            }
+            for (int i = 0; i < nodeCount; i++) {
+                this.offsets[i + 1] += this.offsets[i];
+            }
+
+            int total = this.offsets[nodeCount];
+            int[] next = Arrays.copyOf(this.offsets, nodeCount);
+
+            this.targets = new int[total];
+            this.times = new long[total];
+            this.distances = new long[total];
+
+            for (int t = 0; t < searches.length; t++) {
+                Settled search = searches[t];
+
+                for (int i = 0; i < search.size; i++) {
+                    int slot = next[search.nodes[i]]++;
+
+                    this.targets[slot] = t;
+                    this.times[slot] = search.times[i];
+                    this.distances[slot] = search.distances[i];
+                }
+            }
+        }
+    }
+
+    // dijkstra state of a search: contraction hierarchies search spaces are small (a few hundred nodes
+    // even on country sized graphs) so the state is kept in an open addressing table instead of per node arrays
+    private static class SearchSpace {
+        private int[] keys = new int[256];
+        private long[] times = new long[256];
+        private long[] distances = new long[256];
+        private boolean[] settled = new boolean[256];
+        private int size = 0;
+
+        // binary heap of (time << 32 | node), stale entries are skipped when popped
+        private long[] heap = new long[64];
+        private int heapSize = 0;
+
+        SearchSpace() {
+            Arrays.fill(this.keys, -1);
+        }
+
+        boolean isEmpty() {
+            return this.heapSize == 0;
+        }
+
+        boolean isSettled(int node) {
+            int slot = this.slot(node);
+
+            return this.keys[slot] == node && this.settled[slot];
+        }
+
+        long time(int node) {
+            int slot = this.slot(node);
+
+            return this.keys[slot] == node ? this.times[slot] : UNREACHABLE;
+        }
+
+        long distance(int node) {
+            return this.distances[this.slot(node)];
+        }
+
+        void settle(int node) {
+            this.settled[this.slot(node)] = true;
+        }
+
+        void push(int node, long time, long distance) {
+            int slot = this.slot(node);
+
+            if (this.keys[slot] == node) {
+                if (this.settled[slot] || time >= this.times[slot]) {
+                    return;
+                }
+            } else {
+                if (2 * (this.size + 1) > this.keys.length) {
+                    this.grow();
+                    slot = this.slot(node);
+                }
+
+                this.keys[slot] = node;
+                this.size++;
+            }
+
+            this.times[slot] = time;
+            this.distances[slot] = distance;
+
+            if (this.heapSize == this.heap.length) {
+                this.heap = Arrays.copyOf(this.heap, this.heapSize * 2);
+            }
+
+            long entry = (time << 32) | node;
+            int i = this.heapSize++;
+
+            while (i > 0 && this.heap[(i - 1) / 2] > entry) {
+                this.heap[i] = this.heap[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+
+            this.heap[i] = entry;
+        }
+
+        long pop() {
+            long top = this.heap[0];
+            long last = this.heap[--this.heapSize];
+            int i = 0;
+
+            while (true) {
+                int child = 2 * i + 1;
+
+                if (child >= this.heapSize) {
+                    break;
+                }
+                if (child + 1 < this.heapSize && this.heap[child + 1] < this.heap[child]) {
+                    child++;
+                }
+                if (this.heap[child] >= last) {
+                    break;
+                }
+
+                this.heap[i] = this.heap[child];
+                i = child;
+            }
+
+            this.heap[i] = last;
+
+            return top;
+        }
+
+        private int slot(int node) {
+            int mask = this.keys.length - 1;
+            int slot = (node * 0x9E3779B9) & mask;
+
+            while (this.keys[slot] != -1 && this.keys[slot] != node) {
+                slot = (slot + 1) & mask;
+            }
+
+            return slot;
+        }
+
+        private void grow() {
+            int[] oldKeys = this.keys;
+            long[] oldTimes = this.times;
+            long[] oldDistances = this.distances;
+            boolean[] oldSettled = this.settled;
+
+            this.keys = new int[oldKeys.length * 2];
+            this.times = new long[oldKeys.length * 2];
+            this.distances = new long[oldKeys.length * 2];
+            this.settled = new boolean[oldKeys.length * 2];
+            Arrays.fill(this.keys, -1);
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != -1) {
+                    int slot = this.slot(oldKeys[i]);
+
+                    this.keys[slot] = oldKeys[i];
+                    this.times[slot] = oldTimes[i];
+                    this.distances[slot] = oldDistances[i];
+                    this.settled[slot] = oldSettled[i];
+                }
+            }
+        }
+    }
+}
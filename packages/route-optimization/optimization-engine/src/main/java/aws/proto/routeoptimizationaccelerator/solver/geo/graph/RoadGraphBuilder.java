@@ -0,0 +1,401 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo.graph;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+// offline preprocessing of a road graph with contraction hierarchies, the output is read by RoadGraph
+//
+// nodes are contracted in order of importance (edge difference + contracted neighbours, lazily updated),
+// contracting a node adds a shortcut u -> w for every in/out neighbours pair unless a witness path
+// not going through the node is found by a bounded dijkstra search
+//
+// usage: java -cp <engine jar> aws.proto.routeoptimizationaccelerator.solver.geo.graph.RoadGraphBuilder nodes.csv edges.csv graph.bin
+//   nodes.csv: latitude,longitude (one node per line, the line number is the node id starting from 0)
+//   edges.csv: from,to,distance in meters,time in seconds (directed, two-way roads are listed in both directions)
+public class RoadGraphBuilder {
+    private static final Logger logger = LogManager.getLogger(RoadGraphBuilder.class);
+
+    // settled nodes limit of the witness searches, a missed witness only adds a superfluous shortcut
+    private static final int WITNESS_SETTLED_LIMIT = 500;
+
+    private final int nodeCount;
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    // every edge (original or shortcut) ever added, by index
+    private final IntList edgeFrom = new IntList();
+    private final IntList edgeTo = new IntList();
+    private final IntList edgeTime = new IntList();
+    private final IntList edgeDistance = new IntList();
+
+    // edges indexes by node, including the edges to contracted nodes (skipped while contracting)
+    private final List<IntList> outgoing = new ArrayList<>();
+    private final List<IntList> incoming = new ArrayList<>();
+
+    private final int[] rank;
+    private final int[] contractedNeighbours;
+
+    public RoadGraphBuilder(double[] latitudes, double[] longitudes) {
+        this.nodeCount = latitudes.length;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.rank = new int[this.nodeCount];
+        this.contractedNeighbours = new int[this.nodeCount];
+
+        Arrays.fill(this.rank, -1);
+
+        for (int i = 0; i < this.nodeCount; i++) {
+            this.outgoing.add(new IntList());
+            this.incoming.add(new IntList());
+        }
+    }
+
+    // time in milliseconds, distance in meters
+    public RoadGraphBuilder addEdge(int from, int to, int distance, int time) {
+        if (from == to) {
+            return this;
+        }
+
+        // parallel edges: keep the fastest one
+        IntList out = this.outgoing.get(from);
+
+        for (int i = 0; i < out.size(); i++) {
+            int edge = out.get(i);
+
+            if (this.edgeTo.get(edge) == to) {
+                if (time < this.edgeTime.get(edge)) {
+                    this.edgeTime.set(edge, time);
+                    this.edgeDistance.set(edge, distance);
+                }
+
+                return this;
+            }
+        }
+
+        int edge = this.edgeFrom.size();
+
+        this.edgeFrom.add(from);
+        this.edgeTo.add(to);
+        this.edgeTime.add(time);
+        this.edgeDistance.add(distance);
+        out.add(edge);
+        this.incoming.get(to).add(edge);
+
+        return this;
+    }
+
+    public ByteBuffer build() {
+        int originalEdges = this.edgeFrom.size();
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+
+        for (int node = 0; node < this.nodeCount; node++) {
+            queue.add(new long[]{this.priority(node), node});
+        }
+
+        int order = 0;
+
+        while (!queue.isEmpty()) {
+            long[] head = queue.poll();
+            int node = (int) head[1];
+
+            if (this.rank[node] >= 0) {
+                continue;
+            }
+
+            // lazy update: contract the node only if it is still the least important one
+            long priority = this.priority(node);
+
+            if (!queue.isEmpty() && priority > queue.peek()[0]) {
+                queue.add(new long[]{priority, node});
+
+                continue;
+            }
+
+            this.contract(node, false);
+            this.rank[node] = order++;
+        }
+
+        logger.info("Road graph contracted: {} nodes, {} edges, {} shortcuts", this.nodeCount, originalEdges, this.edgeFrom.size() - originalEdges);
+
+        return this.write();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("usage: RoadGraphBuilder nodes.csv edges.csv graph.bin");
+            System.exit(1);
+        }
+
+        List<double[]> nodes = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(args[0]))) {
+            reader.lines().filter(l -> !l.isBlank()).forEach(l -> {
+                String[] values = l.split(",");
+
+                nodes.add(new double[]{Double.parseDouble(values[0].trim()), Double.parseDouble(values[1].trim())});
+            });
+        }
+
+        RoadGraphBuilder builder = new RoadGraphBuilder(
+                nodes.stream().mapToDouble(t -> t[0]).toArray(),
+                nodes.stream().mapToDouble(t -> t[1]).toArray()
+        );
+
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(args[1]))) {
+            reader.lines().filter(l -> !l.isBlank()).forEach(l -> {
+                String[] values = l.split(",");
+
+                builder.addEdge(
+                        Integer.parseInt(values[0].trim()),
+                        Integer.parseInt(values[1].trim()),
+                        (int) Math.round(Double.parseDouble(values[2].trim())),
+                        (int) Math.round(Double.parseDouble(values[3].trim()) * 1000)
+                );
+            });
+        }
+
+        write(builder.build(), Path.of(args[2]));
+    }
+
+    // edge difference + contracted neighbours
+    private long priority(int node) {
+        int shortcuts = this.contract(node, true);
+        int edges = this.activeCount(this.incoming.get(node), true) + this.activeCount(this.outgoing.get(node), false);
+
+        return 2L * (shortcuts - edges) + this.contractedNeighbours[node];
+    }
+
+    // adds (or only counts when simulating) the shortcuts needed to contract the node
+    private int contract(int node, boolean simulate) {
+        IntList in = this.incoming.get(node);
+        IntList out = this.outgoing.get(node);
+        int shortcuts = 0;
+        List<int[]> added = new ArrayList<>();
+
+        for (int i = 0; i < in.size(); i++) {
+            int inEdge = in.get(i);
+            int source = this.edgeFrom.get(inEdge);
+
+            if (this.rank[source] >= 0) {
+                continue;
+            }
+
+            int maxTime = -1;
+
+            for (int j = 0; j < out.size(); j++) {
+                int target = this.edgeTo.get(out.get(j));
+
+                if (this.rank[target] < 0 && target != source) {
+                    maxTime = Math.max(maxTime, this.edgeTime.get(inEdge) + this.edgeTime.get(out.get(j)));
+                }
+            }
+
+            if (maxTime < 0) {
+                continue;
+            }
+
+            WitnessSearch witness = new WitnessSearch(source, node, maxTime);
+
+            for (int j = 0; j < out.size(); j++) {
+                int outEdge = out.get(j);
+                int target = this.edgeTo.get(outEdge);
+
+                if (this.rank[target] >= 0 || target == source) {
+                    continue;
+                }
+
+                int time = this.edgeTime.get(inEdge) + this.edgeTime.get(outEdge);
+
+                if (witness.time(target) <= time) {
+                    continue;
+                }
+
+                shortcuts++;
+
+                if (!simulate) {
+                    added.add(new int[]{source, target, this.edgeDistance.get(inEdge) + this.edgeDistance.get(outEdge), time});
+                }
+            }
+        }
+
+        if (!simulate) {
+            added.forEach(t -> this.addEdge(t[0], t[1], t[2], t[3]));
+
+            for (int i = 0; i < in.size(); i++) {
+                this.contractedNeighbours[this.edgeFrom.get(in.get(i))]++;
+            }
+            for (int i = 0; i < out.size(); i++) {
+                this.contractedNeighbours[this.edgeTo.get(out.get(i))]++;
+            }
+        }
+
+        return shortcuts;
+    }
+
+    private int activeCount(IntList edges, boolean incoming) {
+        int count = 0;
+
+        for (int i = 0; i < edges.size(); i++) {
+            int other = incoming ? this.edgeFrom.get(edges.get(i)) : this.edgeTo.get(edges.get(i));
+
+            if (this.rank[other] < 0) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private ByteBuffer write() {
+        int[] upwardCount = new int[this.nodeCount + 1];
+        int[] downwardCount = new int[this.nodeCount + 1];
+
+        for (int e = 0; e < this.edgeFrom.size(); e++) {
+            if (this.rank[this.edgeTo.get(e)] > this.rank[this.edgeFrom.get(e)]) {
+                upwardCount[this.edgeFrom.get(e) + 1]++;
+            } else {
+                downwardCount[this.edgeTo.get(e) + 1]++;
+            }
+        }
+        for (int i = 0; i < this.nodeCount; i++) {
+            upwardCount[i + 1] += upwardCount[i];
+            downwardCount[i + 1] += downwardCount[i];
+        }
+
+        int upwardEdges = upwardCount[this.nodeCount];
+        int downwardEdges = downwardCount[this.nodeCount];
+        int[] upward = new int[3 * upwardEdges];
+        int[] downward = new int[3 * downwardEdges];
+        int[] upwardNext = Arrays.copyOf(upwardCount, this.nodeCount);
+        int[] downwardNext = Arrays.copyOf(downwardCount, this.nodeCount);
+
+        for (int e = 0; e < this.edgeFrom.size(); e++) {
+            int from = this.edgeFrom.get(e);
+            int to = this.edgeTo.get(e);
+
+            if (this.rank[to] > this.rank[from]) {
+                int slot = upwardNext[from]++;
+
+                upward[slot] = to;
+                upward[upwardEdges + slot] = this.edgeTime.get(e);
+                upward[2 * upwardEdges + slot] = this.edgeDistance.get(e);
+            } else {
+                int slot = downwardNext[to]++;
+
+                downward[slot] = from;
+                downward[downwardEdges + slot] = this.edgeTime.get(e);
+                downward[2 * downwardEdges + slot] = this.edgeDistance.get(e);
+            }
+        }
+
+        int ints = 2 * this.nodeCount + (this.nodeCount + 1) + upward.length + (this.nodeCount + 1) + downward.length;
+        ByteBuffer buffer = ByteBuffer.allocate(RoadGraph.HEADER_SIZE + ints * Integer.BYTES);
+
+        buffer.putInt(RoadGraph.MAGIC).putInt(RoadGraph.VERSION).putInt(this.nodeCount).putInt(upwardEdges).putInt(downwardEdges);
+        Arrays.stream(this.latitudes).forEach(t -> buffer.putInt((int) Math.round(t * 1e6)));
+        Arrays.stream(this.longitudes).forEach(t -> buffer.putInt((int) Math.round(t * 1e6)));
+        Arrays.stream(upwardCount).forEach(buffer::putInt);
+        Arrays.stream(upward).forEach(buffer::putInt);
+        Arrays.stream(downwardCount).forEach(buffer::putInt);
+        Arrays.stream(downward).forEach(buffer::putInt);
+
+        return buffer.flip();
+    }
+
+    public static void write(ByteBuffer graph, Path file) throws IOException {
+        try (OutputStream output = Files.newOutputStream(file)) {
+            output.write(graph.array(), 0, graph.limit());
+        }
+    }
+
+    // bounded dijkstra from the source among the not contracted nodes, ignoring the node being contracted
+    private class WitnessSearch {
+        private final Map<Integer, Integer> times = new HashMap<>();
+
+        WitnessSearch(int source, int ignored, int maxTime) {
+            PriorityQueue<int[]> queue = new PriorityQueue<>((a, b) -> Integer.compare(a[0], b[0]));
+            Set<Integer> settled = new HashSet<>();
+
+            queue.add(new int[]{0, source});
+            this.times.put(source, 0);
+
+            while (!queue.isEmpty() && settled.size() < WITNESS_SETTLED_LIMIT) {
+                int[] head = queue.poll();
+
+                if (head[0] > maxTime) {
+                    break;
+                }
+                if (!settled.add(head[1])) {
+                    continue;
+                }
+
+                IntList out = outgoing.get(head[1]);
+
+                for (int i = 0; i < out.size(); i++) {
+                    int edge = out.get(i);
+                    int target = edgeTo.get(edge);
+
+                    if (target == ignored || rank[target] >= 0) {
+                        continue;
+                    }
+
+                    int time = head[0] + edgeTime.get(edge);
+
+                    if (time < this.times.getOrDefault(target, Integer.MAX_VALUE)) {
+                        this.times.put(target, time);
+                        queue.add(new int[]{time, target});
+                    }
+                }
+            }
+        }
+
+        int time(int node) {
+            return this.times.getOrDefault(node, Integer.MAX_VALUE);
+        }
+    }
+
+    // growable primitive int list
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size = 0;
+
+        void add(int value) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+
+            this.values[this.size++] = value;
+        }
+
+        int get(int index) {
+            return this.values[index];
+        }
+
+        void set(int index, int value) {
+            this.values[index] = value;
+        }
+
+        int size() {
+            return this.size;
+        }
+    }
+}
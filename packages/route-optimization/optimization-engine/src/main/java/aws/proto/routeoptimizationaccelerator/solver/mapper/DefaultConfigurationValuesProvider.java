@@ -7,11 +7,17 @@ package aws.proto.routeoptimizationaccelerator.solver.mapper;
 import aws.proto.routeoptimizationaccelerator.data.input.ConstraintData;
 import aws.proto.routeoptimizationaccelerator.data.input.ConstraintsConfiguration;
 import aws.proto.routeoptimizationaccelerator.data.input.enums.DistanceMatrixType;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.MatrixStorage;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.ScoreEngine;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.SolverProfile;
 
 public class DefaultConfigurationValuesProvider {
     // compute it using road distance with routing engine (ALS)
     public static DistanceMatrixType DISTANCE_MATRIX_TYPE = DistanceMatrixType.ROAD_DISTANCE;
 
+    // exact distances computed for each visit when using the SPARSE_NEAREST matrix
+    public static Integer NEAREST_NEIGHBOURS = 20;
+
     // no maximum orders by default
     public static Integer MAX_ORDERS = 0;
 
@@ -29,12 +35,47 @@ public class DefaultConfigurationValuesProvider {
     // cannot be improved. default 10 seconds
     public static Integer MAX_SOLVER_UNIMPROVED_DURATION = 10;
 
+    // in seconds, maximum time without improvement of the FAST and THOROUGH solver profiles
+    public static Integer FAST_SOLVER_UNIMPROVED_DURATION = 2;
+    public static Integer THOROUGH_SOLVER_UNIMPROVED_DURATION = 30;
+
     // no toll avoidance
     public static Boolean AVOID_TOLLS = false;
 
     // not explained by default
     public static Boolean EXPLAIN = false;
 
+    // the solver waits for the distance matrix before starting by default
+    public static Boolean TWO_STAGE_SOLVE = false;
+
+    // 64-bit distances and 32-bit times, the full matrix is stored
+    public static MatrixStorage MATRIX_STORAGE = MatrixStorage.DENSE;
+
+    // orders closer than ~10 cm (6 decimals) share their distance matrix row/column
+    public static Integer LOCATION_MERGE_PRECISION = 6;
+
+    // travel times do not depend on the departure time
+    public static Integer TIME_BUCKETS = 0;
+
+    // ROAD_DISTANCE is fetched once and the traffic profile applied, fetching every time bucket is opt-in
+    public static Boolean FETCH_TIME_BUCKETS = false;
+
+    // nearby list moves for the problems of 1000 orders or more, between each customer and its 40 nearest ones
+    public static Integer NEARBY_SELECTION_MIN_ORDERS = 1000;
+    public static Integer NEARBY_NEIGHBOURS = 40;
+
+    // default phases of the solver
+    public static SolverProfile SOLVER_PROFILE = SolverProfile.BALANCED;
+
+    // a single solver, the parallel solvers are opt-in (0 for one solver per CPU of the container quota)
+    public static Integer SOLVER_THREAD_COUNT = 1;
+
+    // the problem is solved as a whole
+    public static Integer PARTITION_SIZE = 0;
+
+    // constraint streams
+    public static ScoreEngine SCORE_ENGINE = ScoreEngine.CONSTRAINT_STREAMS;
+
     // back to origin
     public static Boolean BACK_TO_ORIGIN = true;
 
@@ -6,14 +6,20 @@ package aws.proto.routeoptimizationaccelerator.solver.mapper;
 
 import aws.proto.routeoptimizationaccelerator.data.input.*;
 import aws.proto.routeoptimizationaccelerator.data.input.base.BaseFleet;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.MatrixStorage;
 import aws.proto.routeoptimizationaccelerator.solver.constraints.VehicleRoutingConstraintConfiguration;
 import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
 import aws.proto.routeoptimizationaccelerator.solver.domain.Depot;
 import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
 import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.geo.DistanceCalculator;
 import aws.proto.routeoptimizationaccelerator.solver.geo.DistanceCalculatorFactory;
+import aws.proto.routeoptimizationaccelerator.solver.geo.MatrixIndexer;
+import aws.proto.routeoptimizationaccelerator.solver.geo.MatrixRequestPlan;
 import aws.proto.routeoptimizationaccelerator.solver.solution.VehicleRoutingSolution;
 import org.apache.commons.lang3.ObjectUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
@@ -21,9 +27,27 @@ import java.util.*;
 import java.util.stream.Stream;
 
 public class InputMapper {
+    private static final Logger logger = LogManager.getLogger(InputMapper.class);
+
     public InputMapper() {}
 
     public static VehicleRoutingSolution convertInputToSolution(OptimizationRequest input) {
+        return convertInputToSolution(input, DistanceCalculatorFactory.create(input.getProblemId(), input.getConfig()));
+    }
+
+    public static MatrixStorage getMatrixStorage(Configuration commonConfiguration) {
+        MatrixStorage defaultStorage = DefaultConfigurationValuesProvider.MATRIX_STORAGE;
+
+        return commonConfiguration != null ? ObjectUtils.defaultIfNull(commonConfiguration.getMatrixStorage(), defaultStorage) : defaultStorage;
+    }
+
+    private static int getLocationMergePrecision(Configuration commonConfiguration) {
+        Integer defaultPrecision = DefaultConfigurationValuesProvider.LOCATION_MERGE_PRECISION;
+
+        return commonConfiguration != null ? ObjectUtils.defaultIfNull(commonConfiguration.getLocationMergePrecision(), defaultPrecision) : defaultPrecision;
+    }
+
+    public static VehicleRoutingSolution convertInputToSolution(OptimizationRequest input, DistanceCalculator distanceCalculator) {
         Configuration commonConfiguration = input.getConfig();
         List<Visit> locations = Stream.concat(
                 Arrays.stream(input.getFleet()).map(t -> Depot.fromLocation(t.getStartingLocation())).distinct(),
@@ -75,11 +99,25 @@ public class InputMapper {
         boolean hasVirtualVehicles = commonConfiguration != null && commonConfiguration.getVirtualFleet() != null;
         boolean hasRequirements = customers.stream().anyMatch(t -> t.getRequirements() != null && t.getRequirements().size() > 0);
 
-        // execute distance matrix
+        // execute distance matrix, orders at the same coordinates share a row/column
+        // only the cells that can be part of a route are computed
+        List<Visit> matrixLocations = MatrixIndexer.assign(locations, getLocationMergePrecision(commonConfiguration));
+        List<Visit> sharedLocations = locations.stream().map(l -> matrixLocations.get(l.getMatrixIndex())).toList();
+
+        if (matrixLocations.size() < locations.size()) {
+            logger.info("{} locations share {} distance matrix rows/columns", locations.size(), matrixLocations.size());
+        }
 
-        DistanceCalculatorFactory
-                .create(commonConfiguration)
-                .initDistanceAndTimeMaps(locations);
+        MatrixRequestPlan matrixRequestPlan = MatrixRequestPlan.from(matrixLocations, vehicles, getMatrixStorage(commonConfiguration));
+        logger.info("Distance matrix plan: {} cells out of {}", matrixRequestPlan.cellCount(), (long) matrixLocations.size() * matrixLocations.size());
+
+        distanceCalculator.initDistanceAndTimeMatrix(matrixLocations, matrixRequestPlan);
+
+        // the locations sharing a row/column follow the one given to the calculator (which can re-index it)
+        for (int i = 0; i < locations.size(); i++) {
+            locations.get(i).setMatrixIndex(sharedLocations.get(i).getMatrixIndex());
+            locations.get(i).setDistanceMatrix(sharedLocations.get(i).getDistanceMatrix());
+        }
 
         // constraint configuration: default weights are defined in this class
         VehicleRoutingConstraintConfiguration constraints = new VehicleRoutingConstraintConfiguration();
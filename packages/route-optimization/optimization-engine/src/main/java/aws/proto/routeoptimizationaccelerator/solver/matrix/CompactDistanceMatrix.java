@@ -0,0 +1,93 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.matrix;
+
+// matrix with quantized cells, meant for problems where the dense matrix does not fit in memory:
+//  - distances are 32-bit meters (up to ~2 million km)
+//  - times are 32-bit seconds, or 16-bit unsigned units of timeScale seconds (longer times are capped)
+//  - when triangular, only the lower triangle (diagonal included) is stored and [from][to] shares the cell of [to][from],
+//    to be used only when the distance calculator is symmetric
+public class CompactDistanceMatrix implements DistanceMatrix {
+    private static final int MAX_SHORT_TIME = Character.MAX_VALUE;
+
+    private final int size;
+    private final boolean triangular;
+    // seconds per unit of the 16-bit times, 0 when the times are 32-bit
+    private final int timeScale;
+
+    // in meters
+    private final int[] distances;
+
+    // in seconds, or in timeScale units (unsigned 16-bit), only one of them is allocated
+    private final int[] times;
+    private final char[] shortTimes;
+
+    public CompactDistanceMatrix(int size, boolean triangular, int timeScale) {
+        long cells = cellCount(size, triangular);
+
+        if (cells > Integer.MAX_VALUE - 8) {
+            throw new RuntimeException(String.format("Distance matrix of %d locations exceeds the maximum array size", size));
+        }
+
+        this.size = size;
+        this.triangular = triangular;
+        this.timeScale = timeScale;
+        this.distances = new int[(int) cells];
+        this.times = timeScale == 0 ? new int[(int) cells] : null;
+        this.shortTimes = timeScale == 0 ? null : new char[(int) cells];
+    }
+
+    // cells allocated for a matrix of the given size
+    public static long cellCount(int size, boolean triangular) {
+        return triangular ? (long) size * (size + 1) / 2 : (long) size * size;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public long getDistance(int from, int to) {
+        return this.distances[this.index(from, to)];
+    }
+
+    @Override
+    public long getTime(int from, int to) {
+        int index = this.index(from, to);
+
+        return this.shortTimes == null ? this.times[index] : (long) this.shortTimes[index] * this.timeScale;
+    }
+
+    @Override
+    public void set(int from, int to, long distance, long time) {
+        int index = this.index(from, to);
+
+        this.distances[index] = (int) Math.min(distance, Integer.MAX_VALUE);
+
+        if (this.shortTimes == null) {
+            this.times[index] = (int) Math.min(time, Integer.MAX_VALUE);
+        } else {
+            // rounded to the closest unit, so that the error is at most timeScale / 2 seconds
+            this.shortTimes[index] = (char) Math.min((time + this.timeScale / 2) / this.timeScale, MAX_SHORT_TIME);
+        }
+    }
+
+    public boolean isTriangular() {
+        return this.triangular;
+    }
+
+    private int index(int from, int to) {
+        if (!this.triangular) {
+            return from * this.size + to;
+        }
+
+        // row r of the lower triangle starts after r * (r + 1) / 2 cells
+        int row = Math.max(from, to);
+        int column = Math.min(from, to);
+
+        return (int) ((long) row * (row + 1) / 2) + column;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.matrix;
+
+// row-major matrix backed by flat primitive arrays, reading a cell in the
+// score calculation hot path is a plain array access (no hashing, boxing or allocation)
+public class DenseDistanceMatrix implements DistanceMatrix {
+    private final int size;
+
+    // in meters
+    private final long[] distances;
+
+    // in seconds
+    private final int[] times;
+
+    public DenseDistanceMatrix(int size) {
+        if ((long) size * size > Integer.MAX_VALUE - 8) {
+            throw new RuntimeException(String.format("Distance matrix of %d locations exceeds the maximum array size", size));
+        }
+
+        this.size = size;
+        this.distances = new long[size * size];
+        this.times = new int[size * size];
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public long getDistance(int from, int to) {
+        return this.distances[from * this.size + to];
+    }
+
+    @Override
+    public long getTime(int from, int to) {
+        return this.times[from * this.size + to];
+    }
+
+    @Override
+    public void set(int from, int to, long distance, long time) {
+        this.distances[from * this.size + to] = distance;
+        this.times[from * this.size + to] = (int) Math.min(time, Integer.MAX_VALUE);
+    }
+}
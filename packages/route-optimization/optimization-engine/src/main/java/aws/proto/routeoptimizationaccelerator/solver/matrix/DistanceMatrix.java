@@ -0,0 +1,26 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.matrix;
+
+// distance and travel time between every pair of matrix indexes
+// every Visit holds its own index, distances are in meters and travel times in seconds
+public interface DistanceMatrix {
+    int size();
+
+    long getDistance(int from, int to);
+
+    long getTime(int from, int to);
+
+    // travel time when departing at the given second of the day, the same at any time unless time dependent
+    default long getTime(int from, int to, int secondOfDay) {
+        return this.getTime(from, to);
+    }
+
+    default boolean isTimeDependent() {
+        return false;
+    }
+
+    void set(int from, int to, long distance, long time);
+}
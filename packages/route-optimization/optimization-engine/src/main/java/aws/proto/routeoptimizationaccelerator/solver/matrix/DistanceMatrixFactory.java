@@ -0,0 +1,95 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.matrix;
+
+import aws.proto.routeoptimizationaccelerator.data.input.enums.MatrixStorage;
+import com.sun.management.HotSpotDiagnosticMXBean;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+
+public class DistanceMatrixFactory {
+    private static final Logger logger = LogManager.getLogger(DistanceMatrixFactory.class);
+
+    // seconds per unit of the COMPACT_16 times
+    static final int SHORT_TIME_SCALE = 2;
+
+    // the footprint is reported (and checked against the heap) before anything is allocated,
+    // a problem that cannot fit fails right away instead of running out of memory while the matrix is computed
+    public static DistanceMatrix create(int size, MatrixStorage storage, boolean symmetric) {
+        boolean triangular = isTriangular(storage, symmetric);
+
+        checkFootprint(size, storage, symmetric, 0);
+
+        return switch (storage) {
+            case DENSE -> new DenseDistanceMatrix(size);
+            case COMPACT -> new CompactDistanceMatrix(size, triangular, 0);
+            case COMPACT_16 -> new CompactDistanceMatrix(size, triangular, SHORT_TIME_SCALE);
+            case OFF_HEAP -> new OffHeapDistanceMatrix(size, triangular);
+        };
+    }
+
+    // the matrix and what is kept on the heap along with it (e.g. the time buckets of a TimeSlicedDistanceMatrix)
+    // have to fit together, checked by the wrappers before the base matrix is computed
+    public static void checkFootprint(int size, MatrixStorage storage, boolean symmetric, long extraHeapBytes) {
+        boolean triangular = isTriangular(storage, symmetric);
+        long bytes = footprint(size, storage, triangular);
+        boolean offHeap = storage == MatrixStorage.OFF_HEAP;
+        long available = offHeap ? maxDirectMemory() : Runtime.getRuntime().maxMemory();
+        long heap = Runtime.getRuntime().maxMemory();
+
+        logger.info("Distance matrix storage {}{} for {} locations: {} bytes (~{} MB){}, max {} ~{} MB",
+                storage,
+                triangular ? " (triangle)" : "",
+                size,
+                bytes,
+                bytes / (1024 * 1024),
+                extraHeapBytes > 0 ? String.format(" and %d MB of heap on top of it", extraHeapBytes / (1024 * 1024)) : "",
+                offHeap ? "direct memory" : "heap",
+                available / (1024 * 1024)
+        );
+
+        if (bytes + (offHeap ? 0 : extraHeapBytes) > available) {
+            throw new RuntimeException(String.format(
+                    "Distance matrix of %d locations requires %d MB with the %s storage, more than the %d MB of %s available",
+                    size, (bytes + (offHeap ? 0 : extraHeapBytes)) / (1024 * 1024), storage, available / (1024 * 1024), offHeap ? "direct memory (-XX:MaxDirectMemorySize)" : "heap"
+            ));
+        }
+
+        if (offHeap && extraHeapBytes > heap) {
+            throw new RuntimeException(String.format(
+                    "Distance matrix of %d locations requires %d MB of heap on top of the direct memory, more than the %d MB of heap available",
+                    size, extraHeapBytes / (1024 * 1024), heap / (1024 * 1024)
+            ));
+        }
+    }
+
+    // the dense storage is kept as it is, the other ones store a single triangle of symmetric matrices
+    public static boolean isTriangular(MatrixStorage storage, boolean symmetric) {
+        return symmetric && storage != MatrixStorage.DENSE;
+    }
+
+    // -XX:MaxDirectMemorySize, the JVM defaults it to the max heap when not set
+    static long maxDirectMemory() {
+        try {
+            HotSpotDiagnosticMXBean diagnostic = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            long value = Long.parseLong(diagnostic.getVMOption("MaxDirectMemorySize").getValue());
+
+            return value > 0 ? value : Runtime.getRuntime().maxMemory();
+        } catch (RuntimeException e) {
+            return Runtime.getRuntime().maxMemory();
+        }
+    }
+
+    // bytes of the cells arrays (the object headers are negligible)
+    public static long footprint(int size, MatrixStorage storage, boolean triangular) {
+        return switch (storage) {
+            case DENSE -> (long) size * size * (Long.BYTES + Integer.BYTES);
+            case COMPACT, OFF_HEAP -> CompactDistanceMatrix.cellCount(size, triangular) * (Integer.BYTES + Integer.BYTES);
+            case COMPACT_16 -> CompactDistanceMatrix.cellCount(size, triangular) * (Integer.BYTES + Character.BYTES);
+        };
+    }
+}
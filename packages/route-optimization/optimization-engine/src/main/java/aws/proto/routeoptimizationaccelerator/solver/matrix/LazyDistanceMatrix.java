@@ -0,0 +1,393 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.matrix;
+
+import aws.proto.routeoptimizationaccelerator.common.Position;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// matrix that starts without any exact value: every pair is estimated from the air distance
+// (scaled with a detour factor and an average speed) and the exact values are resolved on demand
+// by the fetcher, only for the pairs that the solver actually uses.
+// the pairs to resolve are requested explicitly (e.g. the edges of the best solution) or detected while
+// the solver reads the matrix (pairs estimated over and over by the moves it evaluates).
+// reads and updates happen on the solver thread: the fetched values are staged by the fetcher threads
+// and applied with applyResolved() between solver steps, so that the values never change during a step
+public class LazyDistanceMatrix implements DistanceMatrix {
+    // used until the first exact values are resolved
+    private static final double DEFAULT_DETOUR_FACTOR = 1.3;
+    // in m/s, 60 km/h
+    private static final double DEFAULT_SPEED = 60 / 3.6;
+    // pairs closer than this (in meters) are not meaningful to calibrate the estimate
+    private static final double MIN_CALIBRATION_DISTANCE = 100;
+    private static final double EARTH_RADIUS = 6378137.0;
+
+    // one estimated read out of SAMPLE_RATE (power of 2) is counted to detect the hot pairs
+    private static final int SAMPLE_RATE = 64;
+    // sampled reads after which a pair is requested
+    private static final int HOT_THRESHOLD = 4;
+    private static final int HOT_TABLE_SIZE = 4096;
+
+    private static final long EMPTY = -1L;
+    private static final byte PENDING = 1;
+    private static final byte EXACT = 2;
+
+    private final int size;
+    private final Fetcher fetcher;
+
+    // in radians, used by the estimate
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    // requested and resolved pairs (open addressing on from * size + to)
+    private long[] keys;
+    private long[] distances;
+    private int[] times;
+    private byte[] states;
+    private int entries = 0;
+    private int exactEntries = 0;
+
+    // cells written by the fetcher threads, waiting to be applied
+    private final ConcurrentLinkedQueue<long[]> staged = new ConcurrentLinkedQueue<>();
+    private final DistanceMatrix staging = new StagingMatrix();
+
+    // hot pairs detection: direct mapped table of the sampled pairs, decremented on collision
+    private final long[] hotKeys = new long[HOT_TABLE_SIZE];
+    private final int[] hotCounts = new int[HOT_TABLE_SIZE];
+    private long[] hotPairs = new long[64];
+    private int hotPairsCount = 0;
+    // xorshift state, the reads are sampled randomly to avoid aliasing with the moves read patterns
+    private int sampling = 0x2545F491;
+
+    private double detourFactor = DEFAULT_DETOUR_FACTOR;
+    private double speed = DEFAULT_SPEED;
+    private double calibrationExactDistance = 0;
+    private double calibrationAirDistance = 0;
+    private double calibrationTime = 0;
+
+    public LazyDistanceMatrix(List<? extends Position> positions, Fetcher fetcher) {
+        this.size = positions.size();
+        this.fetcher = fetcher;
+        this.latitudes = new double[this.size];
+        this.longitudes = new double[this.size];
+
+        for (int i = 0; i < this.size; i++) {
+            this.latitudes[i] = Math.toRadians(positions.get(i).getLatitude());
+            this.longitudes[i] = Math.toRadians(positions.get(i).getLongitude());
+        }
+
+        this.allocate(1024);
+        Arrays.fill(this.hotKeys, EMPTY);
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public long getDistance(int from, int to) {
+        if (from == to) {
+            return 0;
+        }
+
+        int slot = this.find(this.pair(from, to));
+
+        if (slot >= 0 && this.states[slot] == EXACT) {
+            return this.distances[slot];
+        }
+
+        this.sample(from, to, slot);
+
+        return this.estimateDistance(from, to);
+    }
+
+    @Override
+    public long getTime(int from, int to) {
+        if (from == to) {
+            return 0;
+        }
+
+        int slot = this.find(this.pair(from, to));
+
+        if (slot >= 0 && this.states[slot] == EXACT) {
+            return this.times[slot];
+        }
+
+        this.sample(from, to, slot);
+
+        return (long) (this.estimateDistance(from, to) / this.speed);
+    }
+
+    @Override
+    public void set(int from, int to, long distance, long time) {
+        if (from == to) {
+            return;
+        }
+
+        long key = this.pair(from, to);
+        int slot = this.find(key);
+
+        if (slot < 0) {
+            slot = this.insert(key);
+        }
+
+        if (this.states[slot] != EXACT) {
+            this.exactEntries++;
+        }
+
+        this.states[slot] = EXACT;
+        this.distances[slot] = distance;
+        this.times[slot] = (int) time;
+
+        double air = this.airDistance(from, to);
+
+        if (air >= MIN_CALIBRATION_DISTANCE && distance > 0) {
+            this.calibrationExactDistance += distance;
+            this.calibrationAirDistance += air;
+            this.calibrationTime += time;
+        }
+    }
+
+    public boolean isExact(int from, int to) {
+        int slot = this.find(this.pair(from, to));
+
+        return from == to || (slot >= 0 && this.states[slot] == EXACT);
+    }
+
+    // marks the pair as requested, returns false if it is already exact or requested
+    public boolean request(int from, int to) {
+        if (from == to) {
+            return false;
+        }
+
+        long key = this.pair(from, to);
+
+        if (this.find(key) >= 0) {
+            return false;
+        }
+
+        int slot = this.insert(key);
+
+        this.states[slot] = PENDING;
+
+        return true;
+    }
+
+    // pairs (from * size + to) detected as hot since the last call, already marked as requested
+    public long[] drainHotPairs() {
+        long[] pairs = Arrays.copyOf(this.hotPairs, this.hotPairsCount);
+
+        this.hotPairsCount = 0;
+
+        return pairs;
+    }
+
+    // matrix the fetcher writes into, safe to be used from any thread
+    public DistanceMatrix getStaging() {
+        return this.staging;
+    }
+
+    public Fetcher getFetcher() {
+        return this.fetcher;
+    }
+
+    // applies the staged cells and calibrates the estimate on every exact value resolved so far
+    // returns the number of cells applied
+    public int applyResolved() {
+        int applied = 0;
+        long[] cell;
+
+        while ((cell = this.staged.poll()) != null) {
+            this.set((int) cell[0], (int) cell[1], cell[2], cell[3]);
+            applied++;
+        }
+
+        if (applied > 0 && this.calibrationAirDistance > 0) {
+            this.detourFactor = Math.max(1.0, this.calibrationExactDistance / this.calibrationAirDistance);
+
+            if (this.calibrationTime > 0) {
+                this.speed = this.calibrationExactDistance / this.calibrationTime;
+            }
+        }
+
+        return applied;
+    }
+
+    public int getExactCount() {
+        return this.exactEntries;
+    }
+
+    public double getDetourFactor() {
+        return this.detourFactor;
+    }
+
+    // in m/s
+    public double getSpeed() {
+        return this.speed;
+    }
+
+    // pairs are encoded as from * size + to
+    public long pair(int from, int to) {
+        return (long) from * this.size + to;
+    }
+
+    public int fromOf(long pair) {
+        return (int) (pair / this.size);
+    }
+
+    public int toOf(long pair) {
+        return (int) (pair % this.size);
+    }
+
+    private void sample(int from, int to, int slot) {
+        // pairs already requested are not counted
+        if (slot >= 0) {
+            return;
+        }
+
+        this.sampling ^= this.sampling << 13;
+        this.sampling ^= this.sampling >>> 17;
+        this.sampling ^= this.sampling << 5;
+
+        if ((this.sampling & (SAMPLE_RATE - 1)) != 0) {
+            return;
+        }
+
+        long key = this.pair(from, to);
+        int h = (int) (mix(key) & (HOT_TABLE_SIZE - 1));
+
+        if (this.hotKeys[h] == key) {
+            if (++this.hotCounts[h] >= HOT_THRESHOLD && this.request(from, to)) {
+                if (this.hotPairsCount == this.hotPairs.length) {
+                    this.hotPairs = Arrays.copyOf(this.hotPairs, this.hotPairs.length * 2);
+                }
+
+                this.hotPairs[this.hotPairsCount++] = key;
+                this.hotKeys[h] = EMPTY;
+                this.hotCounts[h] = 0;
+            }
+        } else if (this.hotCounts[h] <= 1) {
+            this.hotKeys[h] = key;
+            this.hotCounts[h] = 1;
+        } else {
+            this.hotCounts[h]--;
+        }
+    }
+
+    private int find(long key) {
+        int mask = this.keys.length - 1;
+
+        for (int slot = (int) (mix(key) & mask); ; slot = (slot + 1) & mask) {
+            if (this.keys[slot] == key) {
+                return slot;
+            }
+            if (this.keys[slot] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private int insert(long key) {
+        if (2 * (this.entries + 1) > this.keys.length) {
+            this.grow();
+        }
+
+        int mask = this.keys.length - 1;
+        int slot = (int) (mix(key) & mask);
+
+        while (this.keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+
+        this.keys[slot] = key;
+        this.entries++;
+
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = this.keys;
+        long[] oldDistances = this.distances;
+        int[] oldTimes = this.times;
+        byte[] oldStates = this.states;
+
+        this.allocate(oldKeys.length * 2);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = this.insert(oldKeys[i]);
+
+                this.distances[slot] = oldDistances[i];
+                this.times[slot] = oldTimes[i];
+                this.states[slot] = oldStates[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.distances = new long[capacity];
+        this.times = new int[capacity];
+        this.states = new byte[capacity];
+        this.entries = 0;
+
+        Arrays.fill(this.keys, EMPTY);
+    }
+
+    private static long mix(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+
+        return key ^ (key >>> 32);
+    }
+
+    private long estimateDistance(int from, int to) {
+        return (long) (this.airDistance(from, to) * this.detourFactor);
+    }
+
+    // haversine distance in meters
+    private double airDistance(int from, int to) {
+        double deltaP = this.latitudes[to] - this.latitudes[from];
+        double deltaC = this.longitudes[to] - this.longitudes[from];
+        double a = Math.sin(deltaP / 2) * Math.sin(deltaP / 2)
+                + Math.cos(this.latitudes[from]) * Math.cos(this.latitudes[to]) * Math.sin(deltaC / 2) * Math.sin(deltaC / 2);
+
+        return 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a)) * EARTH_RADIUS;
+    }
+
+    // resolves the exact values of the pairs from[i] -> to[i]
+    public interface Fetcher {
+        // the values are written in the target matrix (from any thread), more pairs than the requested ones can be written
+        CompletableFuture<Void> fetch(int[] from, int[] to, DistanceMatrix target);
+
+        // waits for a fetch to complete, failing if some of the pairs could not be resolved
+        void await(CompletableFuture<Void> fetch);
+    }
+
+    private class StagingMatrix implements DistanceMatrix {
+        @Override
+        public int size() {
+            return LazyDistanceMatrix.this.size;
+        }
+
+        @Override
+        public long getDistance(int from, int to) {
+            throw new UnsupportedOperationException("The staging matrix is write only");
+        }
+
+        @Override
+        public long getTime(int from, int to) {
+            throw new UnsupportedOperationException("The staging matrix is write only");
+        }
+
+        @Override
+        public void set(int from, int to, long distance, long time) {
+            LazyDistanceMatrix.this.staged.add(new long[] { from, to, distance, time });
+        }
+    }
+}
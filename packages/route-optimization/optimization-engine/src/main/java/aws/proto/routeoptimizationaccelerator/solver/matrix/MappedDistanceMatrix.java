@@ -0,0 +1,169 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.matrix;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// read-only matrix backed by a precomputed matrix file mapped in memory:
+// the cells are read straight from the page cache, nothing is copied on the heap
+//
+// file layout, every number is little-endian:
+//   int32    magic "RMTX" (0x58544D52)
+//   int32    version (1)
+//   int32    n, number of locations
+//   int32    size in bytes of the location ids section
+//   ids      n x (uint16 length, UTF-8 bytes of the location id), the position of an id is its row/column
+//   padding  zeros up to the next multiple of 8 bytes
+//   int32    n x n distances in meters, row-major (row = from, column = to)
+//   int32    n x n travel times in seconds, row-major
+public class MappedDistanceMatrix implements DistanceMatrix {
+    private static final int MAGIC = 0x58544D52;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+    private final int size;
+    private final List<String> locationIds;
+    private final Map<String, Integer> indexes;
+
+    private final IntBuffer distances;
+    private final IntBuffer times;
+
+    private MappedDistanceMatrix(List<String> locationIds, IntBuffer distances, IntBuffer times) {
+        this.size = locationIds.size();
+        this.locationIds = Collections.unmodifiableList(locationIds);
+        this.indexes = new HashMap<>();
+        this.distances = distances;
+        this.times = times;
+
+        for (int i = 0; i < this.size; i++) {
+            if (this.indexes.put(locationIds.get(i), i) != null) {
+                throw new RuntimeException(String.format("Location %s is listed twice in the matrix file", locationIds.get(i)));
+            }
+        }
+    }
+
+    public static MappedDistanceMatrix open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            header.flip();
+
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("Not a distance matrix file: " + file);
+            }
+
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(String.format("Unsupported distance matrix file version %d: %s", version, file));
+            }
+
+            int size = header.getInt();
+            int idsSize = header.getInt();
+
+            ByteBuffer ids = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, idsSize).order(ByteOrder.LITTLE_ENDIAN);
+            List<String> locationIds = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                byte[] id = new byte[Short.toUnsignedInt(ids.getShort())];
+                ids.get(id);
+                locationIds.add(new String(id, StandardCharsets.UTF_8));
+            }
+
+            long cellsBytes = (long) size * size * Integer.BYTES;
+            long cellsOffset = cellsOffset(idsSize);
+
+            // a single mapping is limited to 2 GB, i.e. ~23k locations
+            if (cellsBytes > Integer.MAX_VALUE) {
+                throw new IOException(String.format("Distance matrix file of %d locations exceeds the 2 GB mapping limit: %s", size, file));
+            }
+            if (channel.size() < cellsOffset + 2 * cellsBytes) {
+                throw new IOException("Truncated distance matrix file: " + file);
+            }
+
+            // the mappings stay valid once the channel is closed
+            IntBuffer distances = channel.map(FileChannel.MapMode.READ_ONLY, cellsOffset, cellsBytes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            IntBuffer times = channel.map(FileChannel.MapMode.READ_ONLY, cellsOffset + cellsBytes, cellsBytes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+
+            return new MappedDistanceMatrix(locationIds, distances, times);
+        }
+    }
+
+    // writes the matrix in the layout read by open(), the ids are given in matrix index order
+    public static void write(Path file, List<String> locationIds, DistanceMatrix matrix) throws IOException {
+        int size = locationIds.size();
+        List<byte[]> ids = locationIds.stream().map(id -> id.getBytes(StandardCharsets.UTF_8)).toList();
+        int idsSize = ids.stream().mapToInt(id -> Short.BYTES + id.length).sum();
+
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            ByteBuffer header = ByteBuffer.allocate((int) cellsOffset(idsSize)).order(ByteOrder.LITTLE_ENDIAN);
+
+            header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(idsSize);
+            ids.forEach(id -> header.putShort((short) id.length).put(id));
+            output.write(header.array());
+
+            ByteBuffer row = ByteBuffer.allocate(size * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+            for (int section = 0; section < 2; section++) {
+                for (int from = 0; from < size; from++) {
+                    row.clear();
+
+                    for (int to = 0; to < size; to++) {
+                        row.putInt((int) (section == 0 ? matrix.getDistance(from, to) : matrix.getTime(from, to)));
+                    }
+
+                    output.write(row.array());
+                }
+            }
+        }
+    }
+
+    private static long cellsOffset(int idsSize) {
+        return (HEADER_SIZE + idsSize + 7) & ~7L;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public long getDistance(int from, int to) {
+        return this.distances.get(from * this.size + to);
+    }
+
+    @Override
+    public long getTime(int from, int to) {
+        return this.times.get(from * this.size + to);
+    }
+
+    @Override
+    public void set(int from, int to, long distance, long time) {
+        throw new UnsupportedOperationException("The precomputed distance matrix is read only");
+    }
+
+    public List<String> getLocationIds() {
+        return this.locationIds;
+    }
+
+    // row/column of the location, -1 if the location is not part of the matrix
+    public int indexOf(String locationId) {
+        return this.indexes.getOrDefault(locationId, -1);
+    }
+}
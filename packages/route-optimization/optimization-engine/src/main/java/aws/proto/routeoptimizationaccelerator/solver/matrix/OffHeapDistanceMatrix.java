@@ -0,0 +1,92 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.matrix;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+// matrix stored outside of the heap in direct buffers: the garbage collector never traces nor copies the cells,
+// so the heap can be sized for the solver only. The memory is released when the matrix is collected.
+// cells are 32-bit meters and 32-bit seconds like the COMPACT storage, and only the lower triangle
+// is stored when triangular (symmetric distance calculators)
+public class OffHeapDistanceMatrix implements DistanceMatrix {
+    // a direct buffer is limited to 2 GB, the cells are split in chunks of 2^27 ints (512 MB)
+    private static final int CHUNK_BITS = 27;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private final int size;
+    private final boolean triangular;
+
+    // in meters
+    private final IntBuffer[] distances;
+
+    // in seconds
+    private final IntBuffer[] times;
+
+    public OffHeapDistanceMatrix(int size, boolean triangular) {
+        this.size = size;
+        this.triangular = triangular;
+
+        long cells = CompactDistanceMatrix.cellCount(size, triangular);
+        int chunks = (int) ((cells + CHUNK_MASK) >>> CHUNK_BITS);
+
+        this.distances = new IntBuffer[chunks];
+        this.times = new IntBuffer[chunks];
+
+        for (int i = 0; i < chunks; i++) {
+            int chunkCells = (int) Math.min(cells - ((long) i << CHUNK_BITS), 1 << CHUNK_BITS);
+
+            this.distances[i] = allocate(chunkCells);
+            this.times[i] = allocate(chunkCells);
+        }
+    }
+
+    private static IntBuffer allocate(int cells) {
+        return ByteBuffer.allocateDirect(cells * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public long getDistance(int from, int to) {
+        long index = this.index(from, to);
+
+        return this.distances[(int) (index >>> CHUNK_BITS)].get((int) index & CHUNK_MASK);
+    }
+
+    @Override
+    public long getTime(int from, int to) {
+        long index = this.index(from, to);
+
+        return this.times[(int) (index >>> CHUNK_BITS)].get((int) index & CHUNK_MASK);
+    }
+
+    @Override
+    public void set(int from, int to, long distance, long time) {
+        long index = this.index(from, to);
+        int chunk = (int) (index >>> CHUNK_BITS);
+
+        this.distances[chunk].put((int) index & CHUNK_MASK, (int) Math.min(distance, Integer.MAX_VALUE));
+        this.times[chunk].put((int) index & CHUNK_MASK, (int) Math.min(time, Integer.MAX_VALUE));
+    }
+
+    public boolean isTriangular() {
+        return this.triangular;
+    }
+
+    private long index(int from, int to) {
+        if (!this.triangular) {
+            return (long) from * this.size + to;
+        }
+
+        int row = Math.max(from, to);
+
+        return (long) row * (row + 1) / 2 + Math.min(from, to);
+    }
+}
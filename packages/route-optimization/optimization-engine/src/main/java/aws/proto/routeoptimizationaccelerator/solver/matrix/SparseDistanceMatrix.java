@@ -0,0 +1,217 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.matrix;
+
+import aws.proto.routeoptimizationaccelerator.common.Position;
+
+import java.util.Arrays;
+import java.util.List;
+
+// matrix that keeps exact values only for:
+//  - full rows and columns of the "dense" indexes (depots), every route starts/ends there
+//  - the k nearest neighbours of every other index
+// any other pair is estimated from the air distance, scaled with a detour factor and an average speed
+// that are calibrated on the exact cells (see calibrate())
+public class SparseDistanceMatrix implements DistanceMatrix {
+    // used until the matrix is calibrated or if there are no exact cells to calibrate on
+    private static final double DEFAULT_DETOUR_FACTOR = 1.3;
+    // in m/s, 60 km/h
+    private static final double DEFAULT_SPEED = 60 / 3.6;
+    // pairs closer than this (in meters) are not meaningful to compute the detour factor
+    private static final double MIN_CALIBRATION_DISTANCE = 100;
+    private static final double EARTH_RADIUS = 6378137.0;
+
+    private final int size;
+
+    // slot of the index in the dense rows/columns, -1 if the index is not dense
+    private final int[] denseSlots;
+    private final long[][] denseRowDistances;
+    private final int[][] denseRowTimes;
+    private final long[][] denseColumnDistances;
+    private final int[][] denseColumnTimes;
+
+    // for every non dense row, the neighbour indexes sorted ascending (binary searched on read)
+    private final int[][] neighbours;
+    private final long[][] neighbourDistances;
+    private final int[][] neighbourTimes;
+
+    // in radians, used by the estimate
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    private double detourFactor = DEFAULT_DETOUR_FACTOR;
+    private double speed = DEFAULT_SPEED;
+
+    public SparseDistanceMatrix(List<? extends Position> positions, boolean[] dense, int[][] nearest) {
+        this.size = positions.size();
+        this.denseSlots = new int[this.size];
+        this.neighbours = new int[this.size][];
+        this.neighbourDistances = new long[this.size][];
+        this.neighbourTimes = new int[this.size][];
+        this.latitudes = new double[this.size];
+        this.longitudes = new double[this.size];
+
+        int denseCount = 0;
+
+        for (int i = 0; i < this.size; i++) {
+            this.denseSlots[i] = dense[i] ? denseCount++ : -1;
+            this.latitudes[i] = Math.toRadians(positions.get(i).getLatitude());
+            this.longitudes[i] = Math.toRadians(positions.get(i).getLongitude());
+
+            if (!dense[i]) {
+                this.neighbours[i] = Arrays.stream(nearest[i]).filter(t -> !dense[t]).sorted().distinct().toArray();
+                this.neighbourDistances[i] = new long[this.neighbours[i].length];
+                this.neighbourTimes[i] = new int[this.neighbours[i].length];
+            }
+        }
+
+        this.denseRowDistances = new long[denseCount][this.size];
+        this.denseRowTimes = new int[denseCount][this.size];
+        this.denseColumnDistances = new long[denseCount][this.size];
+        this.denseColumnTimes = new int[denseCount][this.size];
+    }
+
+    // bytes used by the matrix storage, computed before allocating it so that it can be reported up front
+    public static long estimateBytes(int size, int denseCount, int nearestNeighbours) {
+        long neighbourCells = (long) (size - denseCount) * Math.min(nearestNeighbours, Math.max(size - 1, 0));
+        long denseCells = 2L * denseCount * size;
+        // index, distance and time for every neighbour, distance and time for the dense cells, coordinates and slots
+        return neighbourCells * (4 + 8 + 4) + denseCells * (8 + 4) + (long) size * (4 + 8 + 8);
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public long getDistance(int from, int to) {
+        if (this.denseSlots[from] >= 0) {
+            return this.denseRowDistances[this.denseSlots[from]][to];
+        }
+        if (this.denseSlots[to] >= 0) {
+            return this.denseColumnDistances[this.denseSlots[to]][from];
+        }
+
+        int position = Arrays.binarySearch(this.neighbours[from], to);
+
+        return position >= 0 ? this.neighbourDistances[from][position] : this.estimateDistance(from, to);
+    }
+
+    @Override
+    public long getTime(int from, int to) {
+        if (this.denseSlots[from] >= 0) {
+            return this.denseRowTimes[this.denseSlots[from]][to];
+        }
+        if (this.denseSlots[to] >= 0) {
+            return this.denseColumnTimes[this.denseSlots[to]][from];
+        }
+
+        int position = Arrays.binarySearch(this.neighbours[from], to);
+
+        return position >= 0 ? this.neighbourTimes[from][position] : (long) (this.estimateDistance(from, to) / this.speed);
+    }
+
+    // cells that are not part of the sparse structure are ignored, they will be estimated
+    @Override
+    public void set(int from, int to, long distance, long time) {
+        if (this.denseSlots[from] >= 0) {
+            this.denseRowDistances[this.denseSlots[from]][to] = distance;
+            this.denseRowTimes[this.denseSlots[from]][to] = (int) time;
+        }
+        if (this.denseSlots[to] >= 0) {
+            this.denseColumnDistances[this.denseSlots[to]][from] = distance;
+            this.denseColumnTimes[this.denseSlots[to]][from] = (int) time;
+        }
+        if (this.denseSlots[from] < 0 && this.denseSlots[to] < 0) {
+            int position = Arrays.binarySearch(this.neighbours[from], to);
+
+            if (position >= 0) {
+                this.neighbourDistances[from][position] = distance;
+                this.neighbourTimes[from][position] = (int) time;
+            }
+        }
+    }
+
+    public boolean isExact(int from, int to) {
+        return this.denseSlots[from] >= 0 || this.denseSlots[to] >= 0 || Arrays.binarySearch(this.neighbours[from], to) >= 0;
+    }
+
+    // neighbour indexes (sorted ascending) of a non dense row, null for dense rows
+    public int[] getNeighbours(int from) {
+        return this.neighbours[from];
+    }
+
+    // the detour factor is the median ratio between the exact and the air distance
+    // the speed is the overall exact distance divided by the overall exact time
+    // to be called once the exact cells are filled
+    public void calibrate() {
+        int sample = 0;
+        double[] ratios = new double[1024];
+        double totalDistance = 0;
+        double totalTime = 0;
+
+        for (int from = 0; from < this.size; from++) {
+            int[] columns = this.denseSlots[from] >= 0 ? null : this.neighbours[from];
+            int count = columns != null ? columns.length : this.size;
+
+            for (int c = 0; c < count; c++) {
+                int to = columns != null ? columns[c] : c;
+                double air = this.airDistance(from, to);
+                long exact = this.getDistance(from, to);
+
+                if (air < MIN_CALIBRATION_DISTANCE || exact <= 0) {
+                    continue;
+                }
+
+                if (sample == ratios.length) {
+                    ratios = Arrays.copyOf(ratios, ratios.length * 2);
+                }
+
+                ratios[sample++] = exact / air;
+                totalDistance += exact;
+                totalTime += this.getTime(from, to);
+            }
+        }
+
+        if (sample == 0) {
+            return;
+        }
+
+        Arrays.sort(ratios, 0, sample);
+        this.detourFactor = Math.max(1.0, ratios[sample / 2]);
+
+        if (totalTime > 0) {
+            this.speed = totalDistance / totalTime;
+        }
+    }
+
+    public double getDetourFactor() {
+        return this.detourFactor;
+    }
+
+    // in m/s
+    public double getSpeed() {
+        return this.speed;
+    }
+
+    private long estimateDistance(int from, int to) {
+        return (long) (this.airDistance(from, to) * this.detourFactor);
+    }
+
+    // haversine distance in meters
+    private double airDistance(int from, int to) {
+        if (from == to) {
+            return 0;
+        }
+
+        double deltaP = this.latitudes[to] - this.latitudes[from];
+        double deltaC = this.longitudes[to] - this.longitudes[from];
+        double a = Math.sin(deltaP / 2) * Math.sin(deltaP / 2)
+                + Math.cos(this.latitudes[from]) * Math.cos(this.latitudes[to]) * Math.sin(deltaC / 2) * Math.sin(deltaC / 2);
+
+        return 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a)) * EARTH_RADIUS;
+    }
+}
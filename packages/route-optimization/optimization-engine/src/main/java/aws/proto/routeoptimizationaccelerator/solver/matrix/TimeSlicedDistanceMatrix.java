@@ -0,0 +1,165 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.matrix;
+
+import java.util.Arrays;
+
+// travel times depending on the departure time of the day: the day is split in `buckets` slices and every
+// cell keeps a congestion factor per slice, applied to the time of the base matrix (distances do not change).
+// factors are unsigned bytes in 1/64 units (1.6% resolution, up to ~4x) so that N x N x T stays compact,
+// and the time at a given second of the day is interpolated between the centers of the two closest slices.
+// the factors are either per cell (e.g. fetched for every slice) or shared by every cell (a traffic profile).
+// per cell factors are allocated one row at a time (no single array of N x N x T bytes), and only the lower
+// triangle is kept when triangular, i.e. when the times from A to B are always the same as from B to A
+public class TimeSlicedDistanceMatrix implements DistanceMatrix {
+    private static final int FACTOR_UNIT = 64;
+    private static final int MAX_FACTOR = 255;
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private final DistanceMatrix base;
+    private final int buckets;
+    private final int bucketSeconds;
+    private final boolean triangular;
+
+    // factors of the cells [row][column * buckets + bucket], null when the factors are shared
+    private final byte[][] rows;
+    // factors shared by every cell, null when the factors are per cell
+    private final byte[] shared;
+
+    public TimeSlicedDistanceMatrix(DistanceMatrix base, int buckets, boolean perCell) {
+        this(base, buckets, perCell, false);
+    }
+
+    public TimeSlicedDistanceMatrix(DistanceMatrix base, int buckets, boolean perCell, boolean triangular) {
+        if (SECONDS_PER_DAY % buckets != 0) {
+            throw new RuntimeException(String.format("%d time buckets do not split the day evenly", buckets));
+        }
+
+        if ((long) base.size() * buckets > Integer.MAX_VALUE - 8) {
+            throw new RuntimeException(String.format("Time sliced matrix of %d locations and %d buckets exceeds the maximum array size", base.size(), buckets));
+        }
+
+        this.base = base;
+        this.buckets = buckets;
+        this.bucketSeconds = SECONDS_PER_DAY / buckets;
+        this.triangular = perCell && triangular;
+
+        if (perCell) {
+            this.rows = new byte[base.size()][];
+            this.shared = null;
+
+            for (int row = 0; row < base.size(); row++) {
+                this.rows[row] = new byte[(this.triangular ? row + 1 : base.size()) * buckets];
+                Arrays.fill(this.rows[row], (byte) FACTOR_UNIT);
+            }
+        } else {
+            this.rows = null;
+            this.shared = new byte[buckets];
+            Arrays.fill(this.shared, (byte) FACTOR_UNIT);
+        }
+    }
+
+    // bytes of the factors, on top of the base matrix
+    public static long footprint(int size, int buckets, boolean perCell, boolean triangular) {
+        if (!perCell) {
+            return buckets;
+        }
+
+        return (triangular ? (long) size * (size + 1) / 2 : (long) size * size) * buckets;
+    }
+
+    @Override
+    public int size() {
+        return this.base.size();
+    }
+
+    @Override
+    public long getDistance(int from, int to) {
+        return this.base.getDistance(from, to);
+    }
+
+    // time without the departure time (e.g. to suggest a departure), as in the base matrix
+    @Override
+    public long getTime(int from, int to) {
+        return this.base.getTime(from, to);
+    }
+
+    @Override
+    public long getTime(int from, int to, int secondOfDay) {
+        // position relative to the bucket centers, in 1/64 of bucket
+        int position = (int) (((long) secondOfDay * FACTOR_UNIT) / this.bucketSeconds) - FACTOR_UNIT / 2;
+        int first = Math.floorDiv(position, FACTOR_UNIT);
+        int weight = position - first * FACTOR_UNIT;
+        byte[] factors = this.shared != null ? this.shared : this.rows[this.row(from, to)];
+        int offset = this.shared != null ? 0 : this.column(from, to) * this.buckets;
+
+        int firstFactor = factors[offset + Math.floorMod(first, this.buckets)] & 0xFF;
+        int secondFactor = factors[offset + Math.floorMod(first + 1, this.buckets)] & 0xFF;
+        int factor = firstFactor * (FACTOR_UNIT - weight) + secondFactor * weight;
+
+        return this.base.getTime(from, to) * factor / (FACTOR_UNIT * FACTOR_UNIT);
+    }
+
+    @Override
+    public boolean isTimeDependent() {
+        return true;
+    }
+
+    @Override
+    public void set(int from, int to, long distance, long time) {
+        this.base.set(from, to, distance, time);
+    }
+
+    // travel time of the cell when departing in the middle of the bucket, the base time has to be set already
+    public void setBucketTime(int from, int to, int bucket, long time) {
+        long baseTime = this.base.getTime(from, to);
+
+        if (this.rows == null) {
+            throw new IllegalStateException("The time buckets are shared by every cell");
+        }
+        if (baseTime <= 0 || time < 0) {
+            return;
+        }
+
+        int factor = (int) Math.min(Math.max(Math.round((double) time * FACTOR_UNIT / baseTime), 1), MAX_FACTOR);
+
+        this.rows[this.row(from, to)][this.column(from, to) * this.buckets + bucket] = (byte) factor;
+    }
+
+    // multiplier of the base time per bucket, shared by every cell (or applied to every cell)
+    public void setProfile(double[] multipliers) {
+        if (multipliers.length != this.buckets) {
+            throw new RuntimeException(String.format("Traffic profile of %d values for %d time buckets", multipliers.length, this.buckets));
+        }
+
+        for (int bucket = 0; bucket < this.buckets; bucket++) {
+            byte factor = (byte) Math.min(Math.max(Math.round(multipliers[bucket] * FACTOR_UNIT), 1), MAX_FACTOR);
+
+            for (byte[] factors : this.shared != null ? new byte[][] { this.shared } : this.rows) {
+                for (int i = bucket; i < factors.length; i += this.buckets) {
+                    factors[i] = factor;
+                }
+            }
+        }
+    }
+
+    public int getBuckets() {
+        return this.buckets;
+    }
+
+    // second of the day at the center of the bucket, where the bucket time is exact
+    public int getBucketCenter(int bucket) {
+        return bucket * this.bucketSeconds + this.bucketSeconds / 2;
+    }
+
+    // the lower triangle holds [max][min] when triangular
+    private int row(int from, int to) {
+        return this.triangular ? Math.max(from, to) : from;
+    }
+
+    private int column(int from, int to) {
+        return this.triangular ? Math.min(from, to) : to;
+    }
+}
@@ -0,0 +1,16 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.move;
+
+import ai.timefold.solver.core.impl.heuristic.selector.common.nearby.NearbyDistanceMeter;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
+
+// travel time from a customer to another one read from the distance matrix (the static time, regardless of the departure)
+public class CustomerNearbyDistanceMeter implements NearbyDistanceMeter<Customer, Customer> {
+    @Override
+    public double getNearbyDistance(Customer origin, Customer destination) {
+        return origin.getVisit().getTimeTo(destination.getVisit());
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.move;
+
+import ai.timefold.solver.core.api.score.director.ScoreDirector;
+import ai.timefold.solver.core.impl.heuristic.move.AbstractMove;
+import ai.timefold.solver.core.impl.heuristic.selector.move.factory.MoveIteratorFactory;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
+import aws.proto.routeoptimizationaccelerator.solver.mapper.DefaultConfigurationValuesProvider;
+import aws.proto.routeoptimizationaccelerator.solver.solution.VehicleRoutingSolution;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Iterator;
+import java.util.Random;
+
+// list moves between a customer and one of its nearest customers (change, swap, sub list change and 2-opt):
+// the default selectors pick the destination uniformly, on large problems almost every move they evaluate
+// puts a customer next to a far away one. The neighbours are read from the distance matrix once per phase,
+// the closer neighbours are picked more often (linear distribution).
+// nearby selection of the solver configuration requires the enterprise edition, this factory provides the same
+// moves to the community edition
+public class NearbyListMoveIteratorFactory implements MoveIteratorFactory<VehicleRoutingSolution, AbstractMove<VehicleRoutingSolution>> {
+    private static final Logger logger = LogManager.getLogger(NearbyListMoveIteratorFactory.class);
+
+    // longest sub list moved at once
+    private static final int MAX_SUB_LIST_SIZE = 8;
+
+    // set from the custom properties of the move selector configuration
+    private int nearbyNeighbours = DefaultConfigurationValuesProvider.NEARBY_NEIGHBOURS;
+
+    private NearbyNeighbours neighbours;
+
+    public void setNearbyNeighbours(int nearbyNeighbours) {
+        this.nearbyNeighbours = nearbyNeighbours;
+    }
+
+    @Override
+    public void phaseStarted(ScoreDirector<VehicleRoutingSolution> scoreDirector) {
+        long start = System.currentTimeMillis();
+
+        this.neighbours = NearbyNeighbours.build(scoreDirector.getWorkingSolution().getCustomers(), new CustomerNearbyDistanceMeter(), this.nearbyNeighbours);
+
+        logger.info("Nearest {} neighbours of {} customers computed in {} ms", this.nearbyNeighbours, this.neighbours.size(), System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public void phaseEnded(ScoreDirector<VehicleRoutingSolution> scoreDirector) {
+        this.neighbours = null;
+    }
+
+    @Override
+    public long getSize(ScoreDirector<VehicleRoutingSolution> scoreDirector) {
+        return (long) scoreDirector.getWorkingSolution().getCustomers().size() * this.nearbyNeighbours;
+    }
+
+    @Override
+    public Iterator<AbstractMove<VehicleRoutingSolution>> createOriginalMoveIterator(ScoreDirector<VehicleRoutingSolution> scoreDirector) {
+        throw new UnsupportedOperationException("The nearby list moves support only the random selection order");
+    }
+
+    @Override
+    public Iterator<AbstractMove<VehicleRoutingSolution>> createRandomMoveIterator(ScoreDirector<VehicleRoutingSolution> scoreDirector, Random random) {
+        NearbyNeighbours neighbours = this.neighbours;
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return neighbours.size() > 1;
+            }
+
+            @Override
+            public AbstractMove<VehicleRoutingSolution> next() {
+                int originPosition = random.nextInt(neighbours.size());
+                int[] nearest = neighbours.neighboursOf(originPosition);
+
+                // linear distribution, the nearest is picked k times more often than the k-th
+                int rank = (int) (nearest.length * (1 - Math.sqrt(1 - random.nextDouble())));
+
+                return createMove(neighbours.get(originPosition), neighbours.get(nearest[Math.min(rank, nearest.length - 1)]), random);
+            }
+        };
+    }
+
+    static AbstractMove<VehicleRoutingSolution> createMove(Customer origin, Customer neighbour, Random random) {
+        Vehicle originVehicle = origin.getVehicle();
+        Vehicle neighbourVehicle = neighbour.getVehicle();
+        int originIndex = originVehicle != null ? originVehicle.getCustomers().indexOf(origin) : -1;
+        int neighbourIndex = neighbourVehicle != null ? neighbourVehicle.getCustomers().indexOf(neighbour) : -1;
+
+        switch (random.nextInt(4)) {
+            case 0:
+                return new SwapMove(originVehicle, originIndex, neighbourVehicle, neighbourIndex);
+            case 1:
+                return new TwoOptMove(originVehicle, originIndex, neighbourVehicle, neighbourIndex);
+            default:
+                // change move (single customer) or sub list change, before or after the neighbour
+                int length = originVehicle == null || random.nextBoolean() ? 1 : 1 + random.nextInt(Math.min(MAX_SUB_LIST_SIZE, originVehicle.getCustomers().size() - originIndex));
+                int destinationIndex = neighbourIndex + (random.nextBoolean() ? 1 : 0);
+
+                if (originVehicle == neighbourVehicle) {
+                    // the neighbour is part of the sub list, swapped instead
+                    if (neighbourIndex >= originIndex && neighbourIndex < originIndex + length) {
+                        return new SwapMove(originVehicle, originIndex, neighbourVehicle, neighbourIndex);
+                    }
+
+                    // positions after the sub list move back once it is removed
+                    if (neighbourIndex >= originIndex + length) {
+                        destinationIndex -= length;
+                    }
+                }
+
+                return new SubListChangeMove(originVehicle, originIndex, originIndex + length, neighbourVehicle, destinationIndex, length > 1 && random.nextBoolean());
+        }
+    }
+}
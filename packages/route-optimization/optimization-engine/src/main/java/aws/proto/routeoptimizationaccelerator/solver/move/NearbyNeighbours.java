@@ -0,0 +1,125 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.move;
+
+import ai.timefold.solver.core.impl.heuristic.selector.common.nearby.NearbyDistanceMeter;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// the k nearest customers of every customer, sorted from the nearest, as positions in the customers list
+// the rows are built in parallel with a bounded max-heap: O(n^2 log k) instead of sorting every row
+public class NearbyNeighbours {
+    private final List<Customer> customers;
+    private final int[][] neighbours;
+
+    private NearbyNeighbours(List<Customer> customers, int[][] neighbours) {
+        this.customers = customers;
+        this.neighbours = neighbours;
+    }
+
+    public static NearbyNeighbours build(List<Customer> customers, NearbyDistanceMeter<Customer, Customer> meter, int count) {
+        int size = Math.min(count, customers.size() - 1);
+
+        int[][] neighbours = IntStream.range(0, customers.size())
+                .parallel()
+                .mapToObj(i -> nearest(customers, meter, i, Math.max(size, 0)))
+                .toArray(int[][]::new);
+
+        return new NearbyNeighbours(customers, neighbours);
+    }
+
+    public int size() {
+        return this.customers.size();
+    }
+
+    public Customer get(int index) {
+        return this.customers.get(index);
+    }
+
+    // positions of the neighbours of the customer, from the nearest
+    public int[] neighboursOf(int index) {
+        return this.neighbours[index];
+    }
+
+    private static int[] nearest(List<Customer> customers, NearbyDistanceMeter<Customer, Customer> meter, int origin, int count) {
+        // max-heap of (distance, position) on the distance
+        double[] distances = new double[count];
+        int[] positions = new int[count];
+        int heapSize = 0;
+
+        for (int i = 0; i < customers.size() && count > 0; i++) {
+            if (i == origin) {
+                continue;
+            }
+
+            double distance = meter.getNearbyDistance(customers.get(origin), customers.get(i));
+
+            if (heapSize < count) {
+                distances[heapSize] = distance;
+                positions[heapSize] = i;
+                siftUp(distances, positions, heapSize++);
+            } else if (distance < distances[0]) {
+                distances[0] = distance;
+                positions[0] = i;
+                siftDown(distances, positions, heapSize);
+            }
+        }
+
+        // sorted from the nearest
+        Integer[] order = IntStream.range(0, heapSize).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, (a, b) -> Double.compare(distances[a], distances[b]));
+
+        return Arrays.stream(order).mapToInt(t -> positions[t]).toArray();
+    }
+
+    private static void siftUp(double[] distances, int[] positions, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+
+            if (distances[parent] >= distances[index]) {
+                return;
+            }
+
+            swap(distances, positions, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(double[] distances, int[] positions, int size) {
+        int index = 0;
+
+        while (true) {
+            int largest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+
+            if (left < size && distances[left] > distances[largest]) {
+                largest = left;
+            }
+            if (right < size && distances[right] > distances[largest]) {
+                largest = right;
+            }
+            if (largest == index) {
+                return;
+            }
+
+            swap(distances, positions, largest, index);
+            index = largest;
+        }
+    }
+
+    private static void swap(double[] distances, int[] positions, int a, int b) {
+        double distance = distances[a];
+        distances[a] = distances[b];
+        distances[b] = distance;
+
+        int position = positions[a];
+        positions[a] = positions[b];
+        positions[b] = position;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.move;
+
+import ai.timefold.solver.core.api.score.director.ScoreDirector;
+import ai.timefold.solver.core.impl.heuristic.move.AbstractMove;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
+import aws.proto.routeoptimizationaccelerator.solver.solution.VehicleRoutingSolution;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+// moves the customers [fromIndex, toIndex) of the source route to the destination route (a single customer is a change move),
+// destinationIndex is the position in the destination route once the customers are removed from the source one
+public class SubListChangeMove extends AbstractMove<VehicleRoutingSolution> {
+    static final String CUSTOMERS_FIELD = "customers";
+
+    private final Vehicle source;
+    private final int fromIndex;
+    private final int toIndex;
+    private final Vehicle destination;
+    private final int destinationIndex;
+    private final boolean reversed;
+
+    public SubListChangeMove(Vehicle source, int fromIndex, int toIndex, Vehicle destination, int destinationIndex, boolean reversed) {
+        this.source = source;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+        this.destination = destination;
+        this.destinationIndex = destinationIndex;
+        this.reversed = reversed;
+    }
+
+    @Override
+    public boolean isMoveDoable(ScoreDirector<VehicleRoutingSolution> scoreDirector) {
+        if (this.source == null || this.destination == null) {
+            return false;
+        }
+
+        // moved back where it was
+        return this.source != this.destination || this.destinationIndex != this.fromIndex || (this.reversed && this.toIndex - this.fromIndex > 1);
+    }
+
+    @Override
+    protected void doMoveOnGenuineVariables(ScoreDirector<VehicleRoutingSolution> scoreDirector) {
+        List<Customer> sourceCustomers = this.source.getCustomers();
+        List<Customer> subList = sourceCustomers.subList(this.fromIndex, this.toIndex);
+        List<Customer> moving = new ArrayList<>(subList);
+        int length = moving.size();
+
+        if (this.reversed) {
+            Collections.reverse(moving);
+        }
+
+        if (this.source == this.destination) {
+            int first = Math.min(this.fromIndex, this.destinationIndex);
+            int last = Math.max(this.toIndex, this.destinationIndex + length);
+
+            scoreDirector.beforeListVariableChanged(this.source, CUSTOMERS_FIELD, first, last);
+            subList.clear();
+            sourceCustomers.addAll(this.destinationIndex, moving);
+            scoreDirector.afterListVariableChanged(this.source, CUSTOMERS_FIELD, first, last);
+
+            return;
+        }
+
+        scoreDirector.beforeListVariableChanged(this.source, CUSTOMERS_FIELD, this.fromIndex, this.toIndex);
+        subList.clear();
+        scoreDirector.afterListVariableChanged(this.source, CUSTOMERS_FIELD, this.fromIndex, this.fromIndex);
+
+        scoreDirector.beforeListVariableChanged(this.destination, CUSTOMERS_FIELD, this.destinationIndex, this.destinationIndex);
+        this.destination.getCustomers().addAll(this.destinationIndex, moving);
+        scoreDirector.afterListVariableChanged(this.destination, CUSTOMERS_FIELD, this.destinationIndex, this.destinationIndex + length);
+    }
+
+    @Override
+    public SubListChangeMove rebase(ScoreDirector<VehicleRoutingSolution> destinationScoreDirector) {
+        return new SubListChangeMove(
+                destinationScoreDirector.lookUpWorkingObject(this.source),
+                this.fromIndex,
+                this.toIndex,
+                destinationScoreDirector.lookUpWorkingObject(this.destination),
+                this.destinationIndex,
+                this.reversed
+        );
+    }
+
+    @Override
+    public Collection<?> getPlanningEntities() {
+        return Stream.of(this.source, this.destination).distinct().toList();
+    }
+
+    @Override
+    public Collection<?> getPlanningValues() {
+        return new ArrayList<>(this.source.getCustomers().subList(this.fromIndex, this.toIndex));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%d..%d]%s -> %s[%d]", this.source.getId(), this.fromIndex, this.toIndex, this.reversed ? " reversed" : "", this.destination.getId(), this.destinationIndex);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.move;
+
+import ai.timefold.solver.core.api.score.director.ScoreDirector;
+import ai.timefold.solver.core.impl.heuristic.move.AbstractMove;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
+import aws.proto.routeoptimizationaccelerator.solver.solution.VehicleRoutingSolution;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static aws.proto.routeoptimizationaccelerator.solver.move.SubListChangeMove.CUSTOMERS_FIELD;
+
+// swaps the customer at the left index of the left route with the one at the right index of the right route
+public class SwapMove extends AbstractMove<VehicleRoutingSolution> {
+    private final Vehicle left;
+    private final int leftIndex;
+    private final Vehicle right;
+    private final int rightIndex;
+
+    public SwapMove(Vehicle left, int leftIndex, Vehicle right, int rightIndex) {
+        this.left = left;
+        this.leftIndex = leftIndex;
+        this.right = right;
+        this.rightIndex = rightIndex;
+    }
+
+    @Override
+    public boolean isMoveDoable(ScoreDirector<VehicleRoutingSolution> scoreDirector) {
+        return this.left != null && this.right != null && (this.left != this.right || this.leftIndex != this.rightIndex);
+    }
+
+    @Override
+    protected void doMoveOnGenuineVariables(ScoreDirector<VehicleRoutingSolution> scoreDirector) {
+        List<Customer> leftCustomers = this.left.getCustomers();
+        List<Customer> rightCustomers = this.right.getCustomers();
+        Customer leftCustomer = leftCustomers.get(this.leftIndex);
+        Customer rightCustomer = rightCustomers.get(this.rightIndex);
+
+        if (this.left == this.right) {
+            int first = Math.min(this.leftIndex, this.rightIndex);
+            int last = Math.max(this.leftIndex, this.rightIndex) + 1;
+
+            scoreDirector.beforeListVariableChanged(this.left, CUSTOMERS_FIELD, first, last);
+            leftCustomers.set(this.leftIndex, rightCustomer);
+            leftCustomers.set(this.rightIndex, leftCustomer);
+            scoreDirector.afterListVariableChanged(this.left, CUSTOMERS_FIELD, first, last);
+
+            return;
+        }
+
+        scoreDirector.beforeListVariableChanged(this.left, CUSTOMERS_FIELD, this.leftIndex, this.leftIndex + 1);
+        scoreDirector.beforeListVariableChanged(this.right, CUSTOMERS_FIELD, this.rightIndex, this.rightIndex + 1);
+        leftCustomers.set(this.leftIndex, rightCustomer);
+        rightCustomers.set(this.rightIndex, leftCustomer);
+        scoreDirector.afterListVariableChanged(this.left, CUSTOMERS_FIELD, this.leftIndex, this.leftIndex + 1);
+        scoreDirector.afterListVariableChanged(this.right, CUSTOMERS_FIELD, this.rightIndex, this.rightIndex + 1);
+    }
+
+    @Override
+    public SwapMove rebase(ScoreDirector<VehicleRoutingSolution> destinationScoreDirector) {
+        return new SwapMove(
+                destinationScoreDirector.lookUpWorkingObject(this.left),
+                this.leftIndex,
+                destinationScoreDirector.lookUpWorkingObject(this.right),
+                this.rightIndex
+        );
+    }
+
+    @Override
+    public Collection<?> getPlanningEntities() {
+        return Stream.of(this.left, this.right).distinct().toList();
+    }
+
+    @Override
+    public Collection<?> getPlanningValues() {
+        return List.of(this.left.getCustomers().get(this.leftIndex), this.right.getCustomers().get(this.rightIndex));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%d] <-> %s[%d]", this.left.getId(), this.leftIndex, this.right.getId(), this.rightIndex);
+    }
+}
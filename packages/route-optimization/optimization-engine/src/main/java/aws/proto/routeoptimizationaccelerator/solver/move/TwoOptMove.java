@@ -0,0 +1,107 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.move;
+
+import ai.timefold.solver.core.api.score.director.ScoreDirector;
+import ai.timefold.solver.core.impl.heuristic.move.AbstractMove;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
+import aws.proto.routeoptimizationaccelerator.solver.solution.VehicleRoutingSolution;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static aws.proto.routeoptimizationaccelerator.solver.move.SubListChangeMove.CUSTOMERS_FIELD;
+
+// connects the customer at the origin index to the one at the neighbour index (2-opt):
+//  - same route: the customers in between are reversed
+//  - different routes: the tails are exchanged, the origin route continues with the neighbour and
+//    the rest of its route, the neighbour route continues with the rest of the origin route (2-opt*)
+public class TwoOptMove extends AbstractMove<VehicleRoutingSolution> {
+    private final Vehicle origin;
+    private final int originIndex;
+    private final Vehicle neighbour;
+    private final int neighbourIndex;
+
+    public TwoOptMove(Vehicle origin, int originIndex, Vehicle neighbour, int neighbourIndex) {
+        this.origin = origin;
+        this.originIndex = originIndex;
+        this.neighbour = neighbour;
+        this.neighbourIndex = neighbourIndex;
+    }
+
+    @Override
+    public boolean isMoveDoable(ScoreDirector<VehicleRoutingSolution> scoreDirector) {
+        if (this.origin == null || this.neighbour == null) {
+            return false;
+        }
+
+        // already connected, or nothing to reverse
+        if (this.origin == this.neighbour) {
+            return Math.abs(this.neighbourIndex - this.originIndex) > 1;
+        }
+
+        return true;
+    }
+
+    @Override
+    protected void doMoveOnGenuineVariables(ScoreDirector<VehicleRoutingSolution> scoreDirector) {
+        List<Customer> originCustomers = this.origin.getCustomers();
+
+        if (this.origin == this.neighbour) {
+            int first = Math.min(this.originIndex + 1, this.neighbourIndex);
+            int last = Math.max(this.originIndex, this.neighbourIndex + 1);
+
+            scoreDirector.beforeListVariableChanged(this.origin, CUSTOMERS_FIELD, first, last);
+            Collections.reverse(originCustomers.subList(first, last));
+            scoreDirector.afterListVariableChanged(this.origin, CUSTOMERS_FIELD, first, last);
+
+            return;
+        }
+
+        List<Customer> neighbourCustomers = this.neighbour.getCustomers();
+        List<Customer> originTail = new ArrayList<>(originCustomers.subList(this.originIndex + 1, originCustomers.size()));
+        List<Customer> neighbourTail = new ArrayList<>(neighbourCustomers.subList(this.neighbourIndex, neighbourCustomers.size()));
+
+        scoreDirector.beforeListVariableChanged(this.origin, CUSTOMERS_FIELD, this.originIndex + 1, originCustomers.size());
+        scoreDirector.beforeListVariableChanged(this.neighbour, CUSTOMERS_FIELD, this.neighbourIndex, neighbourCustomers.size());
+
+        originCustomers.subList(this.originIndex + 1, originCustomers.size()).clear();
+        originCustomers.addAll(neighbourTail);
+        neighbourCustomers.subList(this.neighbourIndex, neighbourCustomers.size()).clear();
+        neighbourCustomers.addAll(originTail);
+
+        scoreDirector.afterListVariableChanged(this.origin, CUSTOMERS_FIELD, this.originIndex + 1, originCustomers.size());
+        scoreDirector.afterListVariableChanged(this.neighbour, CUSTOMERS_FIELD, this.neighbourIndex, neighbourCustomers.size());
+    }
+
+    @Override
+    public TwoOptMove rebase(ScoreDirector<VehicleRoutingSolution> destinationScoreDirector) {
+        return new TwoOptMove(
+                destinationScoreDirector.lookUpWorkingObject(this.origin),
+                this.originIndex,
+                destinationScoreDirector.lookUpWorkingObject(this.neighbour),
+                this.neighbourIndex
+        );
+    }
+
+    @Override
+    public Collection<?> getPlanningEntities() {
+        return Stream.of(this.origin, this.neighbour).distinct().toList();
+    }
+
+    @Override
+    public Collection<?> getPlanningValues() {
+        return List.of(this.origin.getCustomers().get(this.originIndex), this.neighbour.getCustomers().get(this.neighbourIndex));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("2-opt %s[%d] -> %s[%d]", this.origin.getId(), this.originIndex, this.neighbour.getId(), this.neighbourIndex);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.partition;
+
+import ai.timefold.solver.core.api.solver.SolverConfigOverride;
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import ai.timefold.solver.core.config.solver.termination.TerminationConfig;
+import aws.proto.routeoptimizationaccelerator.solver.SolverFactoryCache;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
+import aws.proto.routeoptimizationaccelerator.solver.solution.VehicleRoutingSolution;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+// partitioned search of a large problem (the partitioned search of the solver requires its enterprise edition):
+//  - the customers and the vehicles are split in geographic sectors by the SweepPartitioner
+//  - every sector is solved as a problem of its own, in parallel on a fork join pool
+//  - the solved sectors are merged in a single solution, which is improved by a last local search
+//    across the sectors for the remaining time (the construction heuristic has nothing left to assign)
+// a sector solution is a clone made by its solver: its vehicles and customers are consistent with each other,
+// shadow variables included, so they are merged as they are. The problem facts (and the distance matrix) are shared
+public class PartitionedSearch {
+    private static final Logger logger = LogManager.getLogger(PartitionedSearch.class);
+
+    // share of the maximum duration spent solving the sectors
+    private static final double PARTITION_TIME_SHARE = 0.75;
+
+    private final SolverFactory<VehicleRoutingSolution> solverFactory;
+    private final int partitionSize;
+    private final int threads;
+
+    public PartitionedSearch(SolverFactory<VehicleRoutingSolution> solverFactory, int partitionSize, int threads) {
+        this.solverFactory = solverFactory;
+        this.partitionSize = partitionSize;
+        this.threads = threads;
+    }
+
+    public VehicleRoutingSolution solve(VehicleRoutingSolution problem, Duration maxDuration, Duration unimprovedDuration) {
+        Instant start = Instant.now();
+        List<SweepPartitioner.Partition> partitions = SweepPartitioner.partition(problem.getVehicles(), problem.getCustomers(), this.partitionSize);
+
+        logger.info("Solving {} partitions of {} customers and {} vehicles on {} threads",
+                partitions.size(),
+                partitions.stream().map(p -> p.customers().size()).toList(),
+                partitions.stream().map(p -> p.vehicles().size()).toList(),
+                this.threads
+        );
+
+        TerminationConfig partitionTermination = termination(Duration.ofMillis((long) (maxDuration.toMillis() * PARTITION_TIME_SHARE)), unimprovedDuration);
+
+        ForkJoinPool pool = new ForkJoinPool(this.threads);
+        List<VehicleRoutingSolution> solutions;
+
+        try {
+            solutions = pool.submit(() -> partitions.parallelStream()
+                    .map(partition -> this.solverFactory
+                            .buildSolver(new SolverConfigOverride<VehicleRoutingSolution>().withTerminationConfig(partitionTermination))
+                            .solve(subProblem(problem, partition)))
+                    .toList()
+            ).get();
+        } catch (Exception ex) {
+            throw new RuntimeException("Error solving the partitions", ex);
+        } finally {
+            pool.shutdown();
+        }
+
+        logger.info("Scores of the partitions: {}", solutions.stream().map(VehicleRoutingSolution::getScore).toList());
+
+        VehicleRoutingSolution merged = merge(problem, partitions, solutions);
+
+        Duration elapsed = Duration.between(start, Instant.now()).truncatedTo(ChronoUnit.MILLIS);
+        Duration remaining = maxDuration.minus(elapsed);
+
+        TerminationConfig globalTermination = termination(remaining, unimprovedDuration);
+
+        // the maximum duration is the upper bound of the whole search, the merged solution is only scored
+        if (globalTermination == null) {
+            logger.warn("Partitions solved in {}, no time left to improve the merged solution across the partitions", elapsed);
+
+            SolverFactoryCache.getSolutionManager(this.solverFactory).update(merged);
+
+            return merged;
+        }
+
+        logger.info("Partitions solved in {}, improving the merged solution across the partitions", elapsed);
+
+        return this.solverFactory
+                .buildSolver(new SolverConfigOverride<VehicleRoutingSolution>().withTerminationConfig(globalTermination))
+                .solve(merged);
+    }
+
+    // spent limit of a stage, never longer than the time left: null when nothing is left
+    static TerminationConfig termination(Duration remaining, Duration unimprovedDuration) {
+        if (remaining.isNegative() || remaining.isZero()) {
+            return null;
+        }
+
+        return new TerminationConfig()
+                .withSpentLimit(remaining)
+                .withUnimprovedSpentLimit(unimprovedDuration.compareTo(remaining) < 0 ? unimprovedDuration : remaining);
+    }
+
+    // the same problem facts with the vehicles and customers of the partition only
+    static VehicleRoutingSolution subProblem(VehicleRoutingSolution problem, SweepPartitioner.Partition partition) {
+        return VehicleRoutingSolution.builder()
+                .id(problem.getId())
+                .visits(problem.getVisits())
+                .depots(problem.getDepots())
+                .vehicles(partition.vehicles())
+                .customers(partition.customers())
+                .constraintConfiguration(problem.getConstraintConfiguration())
+                .build();
+    }
+
+    // the solved vehicles and customers, in the order of the problem. The solution of a partition keeps
+    // the order of its vehicles and customers, its clones are looked up by their position in the partition
+    static VehicleRoutingSolution merge(VehicleRoutingSolution problem, List<SweepPartitioner.Partition> partitions, List<VehicleRoutingSolution> solutions) {
+        Map<Vehicle, Vehicle> vehicles = new IdentityHashMap<>();
+        Map<Customer, Customer> customers = new IdentityHashMap<>();
+
+        for (int i = 0; i < partitions.size(); i++) {
+            for (int j = 0; j < partitions.get(i).vehicles().size(); j++) {
+                vehicles.put(partitions.get(i).vehicles().get(j), solutions.get(i).getVehicles().get(j));
+            }
+            for (int j = 0; j < partitions.get(i).customers().size(); j++) {
+                customers.put(partitions.get(i).customers().get(j), solutions.get(i).getCustomers().get(j));
+            }
+        }
+
+        return VehicleRoutingSolution.builder()
+                .id(problem.getId())
+                .visits(problem.getVisits())
+                .depots(problem.getDepots())
+                .vehicles(problem.getVehicles().stream().map(vehicles::get).toList())
+                .customers(problem.getCustomers().stream().map(customers::get).toList())
+                .constraintConfiguration(problem.getConstraintConfiguration())
+                .build();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.partition;
+
+import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// splits a problem in geographic sectors (sweep): the customers are sorted by their angle around the center of the
+// depots and cut in sectors of the same number of customers, starting after the widest empty angle so that a
+// cluster of customers is not split by the first cut. The vehicles are sorted by the angle of their depot and cut
+// in the same number of groups, proportionally to the customers. Within a depot the real and the virtual vehicles
+// are spread evenly across the sectors
+public class SweepPartitioner {
+    public record Partition(List<Vehicle> vehicles, List<Customer> customers) { }
+
+    private SweepPartitioner() {}
+
+    // a single partition when the problem is not bigger than the partition size
+    public static List<Partition> partition(List<Vehicle> vehicles, List<Customer> customers, int partitionSize) {
+        int count = Math.min(vehicles.size(), (customers.size() + partitionSize - 1) / partitionSize);
+
+        if (count <= 1) {
+            return List.of(new Partition(vehicles, customers));
+        }
+
+        double centerLatitude = vehicles.stream().mapToDouble(v -> v.getDepot().getLatitude()).average().orElseThrow();
+        double centerLongitude = vehicles.stream().mapToDouble(v -> v.getDepot().getLongitude()).average().orElseThrow();
+        double longitudeScale = Math.cos(Math.toRadians(centerLatitude));
+
+        List<Customer> sortedCustomers = new ArrayList<>(customers);
+        sortedCustomers.sort(Comparator.comparingDouble(c -> angle(c.getVisit(), centerLatitude, centerLongitude, longitudeScale)));
+
+        double[] angles = sortedCustomers.stream().mapToDouble(c -> angle(c.getVisit(), centerLatitude, centerLongitude, longitudeScale)).toArray();
+        int startIndex = startIndex(angles);
+        double start = angles[startIndex];
+
+        Collections.rotate(sortedCustomers, -startIndex);
+
+        // position of every vehicle among the vehicles of the same depot and kind, to interleave the kinds
+        Map<String, List<Vehicle>> groups = new HashMap<>();
+        vehicles.forEach(v -> groups.computeIfAbsent(v.getDepot().getId() + "/" + v.isVirtual(), k -> new ArrayList<>()).add(v));
+
+        Map<Vehicle, Double> positions = new HashMap<>();
+        groups.values().forEach(group -> {
+            for (int i = 0; i < group.size(); i++) {
+                positions.put(group.get(i), (double) i / group.size());
+            }
+        });
+
+        List<Vehicle> sortedVehicles = new ArrayList<>(vehicles);
+        sortedVehicles.sort(Comparator
+                .comparingDouble((Vehicle v) -> relativeAngle(angle(v.getDepot(), centerLatitude, centerLongitude, longitudeScale), start))
+                .thenComparing(v -> v.getDepot().getId())
+                .thenComparingDouble(positions::get)
+        );
+
+        List<Partition> partitions = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            partitions.add(new Partition(
+                    cut(sortedVehicles, i, count),
+                    cut(sortedCustomers, i, count)
+            ));
+        }
+
+        return partitions;
+    }
+
+    // i-th of count consecutive slices of (almost) the same size
+    private static <T> List<T> cut(List<T> values, int i, int count) {
+        return new ArrayList<>(values.subList((int) ((long) values.size() * i / count), (int) ((long) values.size() * (i + 1) / count)));
+    }
+
+    // index following the widest gap between two consecutive angles (sorted), where the sweep starts
+    private static int startIndex(double[] angles) {
+        int start = 0;
+        double widestGap = angles[0] + 2 * Math.PI - angles[angles.length - 1];
+
+        for (int i = 1; i < angles.length; i++) {
+            if (angles[i] - angles[i - 1] > widestGap) {
+                widestGap = angles[i] - angles[i - 1];
+                start = i;
+            }
+        }
+
+        return start;
+    }
+
+    private static double relativeAngle(double angle, double start) {
+        double relative = angle - start;
+
+        return relative < 0 ? relative + 2 * Math.PI : relative;
+    }
+
+    // in radians, between -PI and PI, on the equirectangular projection around the center
+    private static double angle(Visit visit, double centerLatitude, double centerLongitude, double longitudeScale) {
+        return Math.atan2(visit.getLatitude() - centerLatitude, (visit.getLongitude() - centerLongitude) * longitudeScale);
+    }
+}
@@ -11,6 +11,7 @@ import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
 
 import java.time.LocalDateTime;
 import java.util.Objects;
+import java.util.function.BiConsumer;
 
 public class ArrivalTimeUpdatingVariableListener implements VariableListener<VehicleRoutingSolution, Customer> {
 
@@ -79,6 +80,36 @@ public class ArrivalTimeUpdatingVariableListener implements VariableListener<Veh
 
     }
 
+    // propagates the arrival times along the whole route, e.g. after the travel times changed
+    // (the listener is triggered only by the route changes), setter is called for the changed ones only
+    public static void updateArrivalTimes(Vehicle vehicle, BiConsumer<Customer, LocalDateTime> setter) {
+        if (vehicle.getCustomers().isEmpty()) {
+            return;
+        }
+
+        Customer first = vehicle.getCustomers().get(0);
+        LocalDateTime departureTime = vehicle.getPreferredDepartureTime();
+
+        // the departure time is suggested when the first customer is assigned, if missing
+        if (departureTime == null) {
+            if (first.getArrivalTime() == null) {
+                return;
+            }
+
+            departureTime = first.getArrivalTime().minusSeconds(first.getDrivingTimeFromPreviousStandstill());
+        }
+
+        for (Customer customer : vehicle.getCustomers()) {
+            LocalDateTime arrivalTime = departureTime.plusSeconds(customer.getDrivingTimeFromPreviousStandstill(departureTime));
+
+            if (!arrivalTime.equals(customer.getArrivalTime())) {
+                setter.accept(customer, arrivalTime);
+            }
+
+            departureTime = customer.getDepartureTime();
+        }
+    }
+
     // compute the departure date in case its not been set for the vehicle
     private LocalDateTime suggestLatestDepartureTime(Vehicle vehicle, Customer customer) {
         long timeToDestination = vehicle.getDepot().getTimeTo(customer.getVisit());
@@ -98,6 +129,6 @@ public class ArrivalTimeUpdatingVariableListener implements VariableListener<Veh
             return null;
         }
 
-        return previousDepartureTime.plusSeconds(customer.getDrivingTimeFromPreviousStandstill());
+        return previousDepartureTime.plusSeconds(customer.getDrivingTimeFromPreviousStandstill(previousDepartureTime));
     }
 }
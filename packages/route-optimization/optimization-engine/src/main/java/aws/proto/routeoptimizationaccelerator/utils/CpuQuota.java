@@ -0,0 +1,67 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// number of CPUs the worker can use according to the CPU quota of its cgroup (e.g. the vCPUs of the Fargate task).
+// The quota of the task can be set on a parent cgroup the JVM does not look at, in which case availableProcessors()
+// reports the CPUs of the host, while a fractional quota (e.g. 1.5 vCPU) is rounded down to whole CPUs
+public class CpuQuota {
+    private static final Logger logger = LogManager.getLogger(CpuQuota.class);
+
+    private static final Path CGROUP_ROOT = Path.of("/sys/fs/cgroup");
+
+    private CpuQuota() {}
+
+    public static int availableCpus() {
+        return availableCpus(CGROUP_ROOT, Runtime.getRuntime().availableProcessors());
+    }
+
+    static int availableCpus(Path cgroupRoot, int processors) {
+        Double quota = readQuota(cgroupRoot);
+
+        if (quota == null) {
+            return processors;
+        }
+
+        return Math.max(1, Math.min(processors, (int) Math.floor(quota)));
+    }
+
+    // quota in CPUs, null when the CPUs are not limited
+    private static Double readQuota(Path cgroupRoot) {
+        try {
+            // cgroup v2: "<quota> <period>" or "max <period>"
+            Path max = cgroupRoot.resolve("cpu.max");
+
+            if (Files.exists(max)) {
+                String[] values = Files.readString(max).trim().split("\\s+");
+
+                return values[0].equals("max") ? null : Double.parseDouble(values[0]) / Double.parseDouble(values[1]);
+            }
+
+            // cgroup v1: quota of -1 when not limited
+            for (Path controller : List.of(cgroupRoot.resolve("cpu"), cgroupRoot.resolve("cpu,cpuacct"))) {
+                Path quota = controller.resolve("cpu.cfs_quota_us");
+                Path period = controller.resolve("cpu.cfs_period_us");
+
+                if (Files.exists(quota) && Files.exists(period)) {
+                    long quotaMicros = Long.parseLong(Files.readString(quota).trim());
+
+                    return quotaMicros <= 0 ? null : (double) quotaMicros / Long.parseLong(Files.readString(period).trim());
+                }
+            }
+        } catch (Exception ex) {
+            logger.warn("Unable to read the CPU quota of the cgroup, using the available processors", ex);
+        }
+
+        return null;
+    }
+}
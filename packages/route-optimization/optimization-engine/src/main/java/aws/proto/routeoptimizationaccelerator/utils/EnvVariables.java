@@ -28,4 +28,96 @@ public class EnvVariables {
     public static String eventBusName() {
         return env.get("EVENT_BUS_NAME");
     }
+
+    // maximum number of route results kept in memory by the worker for each routing profile (default 250K, ~13MB per profile)
+    // the caches live as long as the worker: one per profile, and one per departure time when the time buckets are fetched
+    public static int getRouteCacheSize() {
+        return env.get("ROUTE_CACHE_SIZE") != null ? Integer.parseInt(env.get("ROUTE_CACHE_SIZE")) : 250_000;
+    }
+
+    // number of decimals the coordinates are rounded to before looking up the route cache
+    // default 5 (~1m), lower values consider close coordinates as the same location
+    public static int getRouteCachePrecision() {
+        return env.get("ROUTE_CACHE_PRECISION") != null ? Integer.parseInt(env.get("ROUTE_CACHE_PRECISION")) : 5;
+    }
+
+    // optional, directory (e.g. mounted EFS) where road matrix cells are persisted across runs
+    public static String getRoadMatrixCachePath() {
+        return env.get("ROAD_MATRIX_CACHE_PATH");
+    }
+
+    // maximum number of cells kept by the road matrix cache (default 5M, ~400MB in memory and 120MB on disk),
+    // the oldest cells are evicted
+    public static int getRoadMatrixCacheMaxCells() {
+        return env.get("ROAD_MATRIX_CACHE_MAX_CELLS") != null ? Integer.parseInt(env.get("ROAD_MATRIX_CACHE_MAX_CELLS")) : 5_000_000;
+    }
+
+    // road graph file built with the RoadGraphBuilder, used by the ROAD_GRAPH distance matrix
+    public static String getRoadGraphPath() {
+        return env.get("ROAD_GRAPH_PATH");
+    }
+
+    // detour model used by the ESTIMATED_ROAD distance matrix, fitted on the road matrix cache when missing or outdated
+    // default: a file per route calculator profile next to the road matrix cache (or in the temporary directory)
+    public static String getDetourModelPath(String profileName) {
+        if (env.get("DETOUR_MODEL_PATH") != null) {
+            return env.get("DETOUR_MODEL_PATH");
+        }
+
+        String directory = getRoadMatrixCachePath() != null ? getRoadMatrixCachePath() : System.getProperty("java.io.tmpdir");
+
+        return directory + "/detour-model-" + profileName + ".json";
+    }
+
+    // cells added to (or evicted from) the road matrix cache after which the detour model is fitted again,
+    // in the background while the previous model is still used (default 10k)
+    public static int getDetourModelRefitCells() {
+        return env.get("DETOUR_MODEL_REFIT_CELLS") != null ? Integer.parseInt(env.get("DETOUR_MODEL_REFIT_CELLS")) : 10_000;
+    }
+
+    // optional, directory (e.g. an S3 bucket mounted with Mountpoint or a local stand-in) where the precomputed matrix files are resolved
+    public static String getMatrixStorePath() {
+        return env.get("MATRIX_STORE_PATH");
+    }
+
+    // optional, directory where the last road matrix is persisted to be reused by the next requests after a restart
+    // (it is kept in memory as well while it fits in the heap along with the matrix of the next request)
+    public static String getMatrixReusePath() {
+        return env.get("MATRIX_REUSE_PATH");
+    }
+
+    // age after which the last road matrix is not reused anymore, in memory or persisted (default 12 hours, a working day)
+    public static long getMatrixReuseMaxAgeMinutes() {
+        return env.get("MATRIX_REUSE_MAX_AGE_MINUTES") != null ? Long.parseLong(env.get("MATRIX_REUSE_MAX_AGE_MINUTES")) : 12 * 60;
+    }
+
+    // directory where the road matrix of the running problem is checkpointed while it is built, it has to survive a
+    // restart of the task (e.g. mounted EFS). Default: next to the road matrix cache, null (no checkpoint) without it
+    public static String getRoadMatrixCheckpointPath() {
+        if (env.get("ROAD_MATRIX_CHECKPOINT_PATH") != null) {
+            return env.get("ROAD_MATRIX_CHECKPOINT_PATH");
+        }
+
+        return getRoadMatrixCachePath() != null && !getRoadMatrixCachePath().isBlank() ? getRoadMatrixCachePath() + "/checkpoints" : null;
+    }
+
+    // Amazon Location Service quota (transactions per second) for CalculateRouteMatrix, default 5
+    public static double getLocationMatrixTps() {
+        return env.get("LOCATION_MATRIX_TPS") != null ? Double.parseDouble(env.get("LOCATION_MATRIX_TPS")) : 5;
+    }
+
+    // Amazon Location Service quota (transactions per second) for CalculateRoute, default 10
+    public static double getLocationRouteTps() {
+        return env.get("LOCATION_ROUTE_TPS") != null ? Double.parseDouble(env.get("LOCATION_ROUTE_TPS")) : 10;
+    }
+
+    // maximum number of concurrent requests per Amazon Location Service API
+    public static int getLocationMaxInFlight() {
+        return env.get("LOCATION_MAX_IN_FLIGHT") != null ? Integer.parseInt(env.get("LOCATION_MAX_IN_FLIGHT")) : 50;
+    }
+
+    // attempts for a throttled or failed Amazon Location Service request before giving up
+    public static int getLocationMaxAttempts() {
+        return env.get("LOCATION_MAX_ATTEMPTS") != null ? Integer.parseInt(env.get("LOCATION_MAX_ATTEMPTS")) : 10;
+    }
 }
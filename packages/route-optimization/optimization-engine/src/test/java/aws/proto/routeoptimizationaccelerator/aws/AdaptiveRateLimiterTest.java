@@ -0,0 +1,53 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.aws;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AdaptiveRateLimiterTest {
+    @Test
+    public void shouldRetryThrottledCallsAndReduceTheRate() {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter("test", 100, 10, 5);
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = limiter.submit(() -> calls.incrementAndGet() < 3 ?
+                CompletableFuture.<String>failedFuture(SdkServiceException.builder().statusCode(429).build()) :
+                CompletableFuture.completedFuture("ok")
+        ).join();
+
+        assertEquals(result, "ok");
+        assertEquals(calls.get(), 3);
+        assertEquals(limiter.getRate() < 100, true);
+    }
+
+    @Test
+    public void shouldNotExceedTheInFlightLimit() {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter("test", 1000, 2, 1);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        List<CompletableFuture<Integer>> results = IntStream.range(0, 20).mapToObj(i -> limiter.submit(() -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+            return CompletableFuture.supplyAsync(() -> {
+                inFlight.decrementAndGet();
+
+                return i;
+            }, CompletableFuture.delayedExecutor(5, TimeUnit.MILLISECONDS));
+        })).toList();
+
+        assertEquals(results.stream().mapToInt(CompletableFuture::join).sum(), 190);
+        assertEquals(maxInFlight.get() <= 2, true);
+    }
+}
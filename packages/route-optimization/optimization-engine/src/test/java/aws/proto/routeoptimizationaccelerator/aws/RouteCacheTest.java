@@ -0,0 +1,74 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.aws;
+
+import aws.proto.routeoptimizationaccelerator.common.Position;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouteCacheTest {
+    private final Position depot = Position.from(-122.24411681313705, 47.58758077964066);
+
+    @Test
+    public void shouldMatchCoordinatesRoundedToThePrecision() {
+        RouteCache cache = new RouteCache(100, 4);
+        LocationHelper.DistanceAndTime route = new LocationHelper.DistanceAndTime(3.2, 420.0);
+
+        cache.put(depot, Position.from(-122.29313726917279, 47.59338774117188), route);
+
+        assertEquals(cache.get(depot, Position.from(-122.29314, 47.59339)), route);
+        assertNull(cache.get(depot, Position.from(-122.2935, 47.5935)));
+        assertEquals(cache.getHits(), 1);
+        assertEquals(cache.getMisses(), 1);
+    }
+
+    @Test
+    public void shouldEvictTheLeastRecentlyUsedRoutes() {
+        // single entry per segment
+        RouteCache cache = new RouteCache(16, 5);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put(depot, Position.from(-122.0 + i * 0.001, 47.0), new LocationHelper.DistanceAndTime((double) i, (double) i));
+        }
+
+        assertTrue(cache.getEvictions() >= 1000 - 16);
+        assertNotNull(cache.get(depot, Position.from(-122.0 + 999 * 0.001, 47.0)));
+    }
+
+    @Test
+    public void shouldKeepTheRoutesReadRecently() {
+        RouteCache cache = new RouteCache(1600, 5);
+        Position customer = Position.from(-122.29313726917279, 47.59338774117188);
+
+        cache.put(depot, customer, new LocationHelper.DistanceAndTime(3.2, 420.0));
+
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(depot, Position.from(-122.0 + i * 0.001, 47.0), new LocationHelper.DistanceAndTime((double) i, (double) i));
+
+            assertNotNull(cache.get(depot, customer));
+        }
+
+        assertTrue(cache.getEvictions() >= 10_000 - 1600);
+    }
+
+    @Test
+    public void shouldKeepTheRoutesInMetersAndSeconds() {
+        RouteCache cache = new RouteCache(100, 5);
+        Position customer = Position.from(-122.29313726917279, 47.59338774117188);
+
+        cache.put(depot, customer, new LocationHelper.DistanceAndTime(12.34567, 901.6));
+        cache.put(customer, depot, new LocationHelper.DistanceAndTime(-1.0, -1.0));
+
+        assertEquals(cache.get(depot, customer), new LocationHelper.DistanceAndTime(12.346, 902.0));
+        assertNull(cache.get(customer, depot));
+    }
+
+    @Test
+    public void shouldReportTheFootprintOfTheRoutes() {
+        // 16 segments of 2 generations of 31250 routes (65536 slots of 3 longs)
+        assertEquals(RouteCache.footprint(1_000_000), 16L * 2 * 65536 * 24);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver;
+
+import ai.timefold.solver.core.api.score.buildin.hardmediumsoftlong.HardMediumSoftLongScore;
+import ai.timefold.solver.core.api.solver.SolutionManager;
+import ai.timefold.solver.core.api.solver.Solver;
+import ai.timefold.solver.core.api.solver.SolverConfigOverride;
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import ai.timefold.solver.core.config.solver.termination.TerminationConfig;
+import aws.proto.routeoptimizationaccelerator.common.Location;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.ScoreEngine;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.SolverProfile;
+import aws.proto.routeoptimizationaccelerator.solver.constraints.VehicleRoutingConstraintConfiguration;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Depot;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.LazyDistanceMatrix;
+import aws.proto.routeoptimizationaccelerator.solver.solution.VehicleRoutingSolution;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LazyDistanceResolverTest {
+    private static final LocalDateTime TOMORROW_AT_0700 = LocalDateTime.of(LocalDate.now().plusDays(1), LocalTime.of(7, 0));
+
+    @Test
+    public void shouldKeepTheScoreOfTheWorkingSolutionWhenTheValuesAreApplied() {
+        for (ScoreEngine scoreEngine : ScoreEngine.values()) {
+            VehicleRoutingSolution problem = problem(new Random(0), 40, 4);
+            LazyDistanceMatrix matrix = LazyDistanceResolver.getLazyMatrix(problem);
+            SolverFactory<VehicleRoutingSolution> solverFactory = SolverFactoryCache.get(SolverProfile.BALANCED, false, scoreEngine);
+            SolutionManager<VehicleRoutingSolution, HardMediumSoftLongScore> solutionManager = SolverFactoryCache.getSolutionManager(solverFactory);
+            Solver<VehicleRoutingSolution> solver = solverFactory.buildSolver(new SolverConfigOverride<VehicleRoutingSolution>()
+                    .withTerminationConfig(new TerminationConfig().withSpentLimit(Duration.ofSeconds(3)))
+            );
+            List<String> corrupted = new ArrayList<>();
+            AtomicInteger compared = new AtomicInteger();
+
+            new LazyDistanceResolver(solver, matrix).attach();
+
+            // the best solution after the problem changes is the working solution, its score is computed
+            // again from scratch on the same matrix (every event is fired on the solver thread)
+            solver.addEventListener(event -> {
+                if (!event.isEveryProblemChangeProcessed() || !event.getNewBestScore().isSolutionInitialized()) {
+                    return;
+                }
+
+                HardMediumSoftLongScore score = (HardMediumSoftLongScore) event.getNewBestScore();
+                HardMediumSoftLongScore fromScratch = solutionManager.update(event.getNewBestSolution());
+
+                compared.incrementAndGet();
+
+                if (!score.equals(fromScratch)) {
+                    corrupted.add(String.format("%s: working score %s, from scratch %s", scoreEngine, score, fromScratch));
+                }
+            });
+
+            solver.solve(problem);
+
+            assertTrue(matrix.getExactCount() > 0, "road distances applied");
+            assertTrue(compared.get() > 1, "scores compared");
+            assertEquals(corrupted, List.of());
+        }
+    }
+
+    @Test
+    public void shouldStopFetchingInTheBackgroundOnceTheSolverIsTerminated() throws Exception {
+        // the fetches started while solving complete only once the gate is opened: the first one
+        // is in flight when the solver terminates and the next requests are queued behind it
+        AtomicInteger fetches = new AtomicInteger();
+        AtomicBoolean solving = new AtomicBoolean(true);
+        CompletableFuture<Void> gate = new CompletableFuture<>();
+        VehicleRoutingSolution problem = problem(new Random(0), 40, 4, fetches, () -> solving.get() ? gate : CompletableFuture.completedFuture(null));
+        LazyDistanceMatrix matrix = LazyDistanceResolver.getLazyMatrix(problem);
+        Solver<VehicleRoutingSolution> solver = SolverFactoryCache.get(SolverProfile.BALANCED, false, ScoreEngine.CONSTRAINT_STREAMS)
+                .buildSolver(new SolverConfigOverride<VehicleRoutingSolution>()
+                        .withTerminationConfig(new TerminationConfig().withSpentLimit(Duration.ofSeconds(2)))
+                );
+        LazyDistanceResolver resolver = new LazyDistanceResolver(solver, matrix);
+
+        resolver.attach();
+
+        VehicleRoutingSolution solution = solver.solve(problem);
+        solving.set(false);
+        resolver.resolveAll(solution);
+
+        // the fetch in flight completes, the queued batches are not fetched
+        int fetched = fetches.get();
+        gate.complete(null);
+        Thread.sleep(500);
+
+        assertTrue(fetched > 1, "fetched while solving and once terminated");
+        assertEquals(fetches.get(), fetched);
+    }
+
+    private static VehicleRoutingSolution problem(Random random, int customerCount, int vehicleCount) {
+        return problem(random, customerCount, vehicleCount, new AtomicInteger(), () -> CompletableFuture.completedFuture(null));
+    }
+
+    // random problem on a lazy matrix: the exact distances are 1.5x to 2.5x the air distance, the exact times stay
+    // close to the default estimate so that many arrival times do not change when the values are applied
+    private static VehicleRoutingSolution problem(Random random, int customerCount, int vehicleCount, AtomicInteger fetches, Supplier<CompletableFuture<Void>> gate) {
+        Depot depot = Depot.fromLocation(Location.builder().id("depot").latitude(47.6).longitude(-122.3).build());
+
+        List<Customer> customers = IntStream.range(0, customerCount).mapToObj(i -> Customer.builder()
+                .id("order-" + i)
+                .visit(Visit.fromLocation(Location.builder()
+                        .id("customer-" + i)
+                        .latitude(47.5 + random.nextDouble() * 0.2)
+                        .longitude(-122.4 + random.nextDouble() * 0.2)
+                        .build()
+                ))
+                .serviceDuration(Duration.ofMinutes(5 + random.nextInt(10)))
+                .requirements(List.of())
+                .build()
+        ).toList();
+
+        List<Vehicle> vehicles = IntStream.range(0, vehicleCount).mapToObj(i -> Vehicle.builder()
+                .id("vehicle-" + i)
+                .depot(depot)
+                .customers(new ArrayList<>())
+                .backToOrigin(i % 2 == 0)
+                .preferredDepartureTime(TOMORROW_AT_0700)
+                .maximumOrders(12)
+                .maximumDistance(60_000L)
+                .attributes(List.of())
+                .isVirtual(i == vehicleCount - 1)
+                .build()
+        ).toList();
+
+        List<Visit> locations = Stream.concat(Stream.of(depot), customers.stream().map(Customer::getVisit)).toList();
+        LazyDistanceMatrix matrix = new LazyDistanceMatrix(locations, fetcher(locations, fetches, gate));
+
+        for (int i = 0; i < locations.size(); i++) {
+            locations.get(i).setMatrixIndex(i);
+            locations.get(i).setDistanceMatrix(matrix);
+        }
+
+        return VehicleRoutingSolution.builder()
+                .id("problem")
+                .visits(customers.stream().map(Customer::getVisit).toList())
+                .depots(List.of(depot))
+                .vehicles(vehicles)
+                .customers(customers)
+                .constraintConfiguration(new VehicleRoutingConstraintConfiguration())
+                .build();
+    }
+
+    // counts the fetches, each one completing once its gate is complete
+    private static LazyDistanceMatrix.Fetcher fetcher(List<Visit> locations, AtomicInteger fetches, Supplier<CompletableFuture<Void>> gate) {
+        return new LazyDistanceMatrix.Fetcher() {
+            @Override
+            public CompletableFuture<Void> fetch(int[] from, int[] to, DistanceMatrix target) {
+                fetches.incrementAndGet();
+
+                return gate.get().thenRunAsync(() -> IntStream.range(0, from.length).forEach(i -> {
+                    double air = airDistance(locations.get(from[i]), locations.get(to[i]));
+
+                    target.set(from[i], to[i], (long) (air * (1.5 + (from[i] * 7 + to[i]) % 5 / 4.0)), Math.round(air * 1.3 / (60 / 3.6)));
+                }));
+            }
+
+            @Override
+            public void await(CompletableFuture<Void> fetch) {
+                fetch.join();
+            }
+        };
+    }
+
+    // equirectangular approximation in meters, good enough for a few km
+    private static double airDistance(Visit from, Visit to) {
+        double latitude = Math.toRadians((from.getLatitude() + to.getLatitude()) / 2);
+        double x = Math.toRadians(to.getLongitude() - from.getLongitude()) * Math.cos(latitude);
+        double y = Math.toRadians(to.getLatitude() - from.getLatitude());
+
+        return Math.sqrt(x * x + y * y) * 6378137.0;
+    }
+}
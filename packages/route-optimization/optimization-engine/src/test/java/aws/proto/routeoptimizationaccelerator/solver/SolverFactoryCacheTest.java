@@ -0,0 +1,39 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver;
+
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.ScoreEngine;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.SolverProfile;
+import aws.proto.routeoptimizationaccelerator.solver.constraints.VehicleRoutingIncrementalScoreCalculator;
+import aws.proto.routeoptimizationaccelerator.solver.solution.VehicleRoutingSolution;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class SolverFactoryCacheTest {
+    @Test
+    public void shouldReuseTheFactoriesAcrossRequests() {
+        SolverFactoryCache.clear();
+
+        SolverFactory<VehicleRoutingSolution> factory = SolverFactoryCache.get(SolverProfile.BALANCED, false, ScoreEngine.CONSTRAINT_STREAMS);
+
+        assertSame(SolverFactoryCache.get(SolverProfile.BALANCED, false, ScoreEngine.CONSTRAINT_STREAMS), factory);
+        assertSame(SolverFactoryCache.getSolutionManager(factory), SolverFactoryCache.getSolutionManager(factory));
+
+        assertNotSame(SolverFactoryCache.get(SolverProfile.FAST, false, ScoreEngine.CONSTRAINT_STREAMS), factory);
+        assertNotSame(SolverFactoryCache.get(SolverProfile.BALANCED, true, ScoreEngine.CONSTRAINT_STREAMS), factory);
+        assertNotSame(SolverFactoryCache.get(SolverProfile.BALANCED, false, ScoreEngine.INCREMENTAL), factory);
+    }
+
+    @Test
+    public void shouldCreateTheConfigOfTheProfile() {
+        assertEquals(SolverFactoryCache.createConfig(SolverProfile.BALANCED, false, ScoreEngine.CONSTRAINT_STREAMS).getPhaseConfigList(), null);
+        assertEquals(SolverFactoryCache.createConfig(SolverProfile.BALANCED, true, ScoreEngine.CONSTRAINT_STREAMS).getPhaseConfigList().size(), 2);
+        assertEquals(SolverFactoryCache.createConfig(SolverProfile.BALANCED, false, ScoreEngine.INCREMENTAL).getScoreDirectorFactoryConfig().getIncrementalScoreCalculatorClass(), VehicleRoutingIncrementalScoreCalculator.class);
+    }
+}
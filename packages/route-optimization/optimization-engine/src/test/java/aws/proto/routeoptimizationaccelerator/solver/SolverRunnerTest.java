@@ -4,28 +4,43 @@
  */
 package aws.proto.routeoptimizationaccelerator.solver;
 
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import ai.timefold.solver.core.config.solver.termination.TerminationConfig;
 import aws.proto.routeoptimizationaccelerator.common.Location;
 import aws.proto.routeoptimizationaccelerator.common.Position;
 import aws.proto.routeoptimizationaccelerator.data.input.*;
 import aws.proto.routeoptimizationaccelerator.data.input.enums.DistanceMatrixType;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.ScoreEngine;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.SolverProfile;
 import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
 import aws.proto.routeoptimizationaccelerator.solver.domain.Depot;
 import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
 import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.geo.DistanceCalculator;
+import aws.proto.routeoptimizationaccelerator.solver.geo.HaversineDistance;
+import aws.proto.routeoptimizationaccelerator.solver.geo.MatrixRequestPlan;
+import aws.proto.routeoptimizationaccelerator.solver.mapper.InputMapper;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
 import aws.proto.routeoptimizationaccelerator.solver.solution.VehicleRoutingSolution;
 import org.apache.commons.lang3.ObjectUtils;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.HashSet;
+import java.util.List;
 import java.util.PrimitiveIterator;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class SolverRunnerTest {
@@ -253,6 +268,105 @@ public class SolverRunnerTest {
         assertEquals(solution.getScore().hardScore(), 0);
     }
 
+    @Test
+    public void shouldRunTheVehicleRoutingWithNearbyMoves() throws Exception {
+        RandomData data = generateRandomData(RandomDataInitializer.withServiceWindow(30, 5, 0));
+        OptimizationRequest message = OptimizationRequest.builder()
+                .config(Configuration.builder().distanceMatrixType(DistanceMatrixType.AIR_DISTANCE).nearbySelection(true).build())
+                .orders(data.orders)
+                .fleet(data.fleet)
+                .build();
+
+        VehicleRoutingSolution solution = runner.processMessage(message).solution();
+
+        assertEquals(solution.getScore().hardScore(), 0);
+        assertEquals(solution.getVehicles().stream().mapToInt(v -> v.getCustomers().size()).sum(), 30);
+    }
+
+    @Test
+    public void shouldRunTheVehicleRoutingWithEverySolverProfile() throws Exception {
+        RandomData data = generateRandomData(RandomDataInitializer.withServiceWindow(30, 5, 0));
+
+        for (SolverProfile profile : SolverProfile.values()) {
+            OptimizationRequest message = OptimizationRequest.builder()
+                    .config(Configuration.builder().distanceMatrixType(DistanceMatrixType.AIR_DISTANCE).solverProfile(profile).maxUnimprovedSolverDuration(2).build())
+                    .orders(data.orders)
+                    .fleet(data.fleet)
+                    .build();
+
+            VehicleRoutingSolution solution = runner.processMessage(message).solution();
+
+            assertEquals(solution.getScore().hardScore(), 0);
+            assertEquals(solution.getVehicles().stream().mapToInt(v -> v.getCustomers().size()).sum(), 30);
+        }
+    }
+
+    @Test
+    public void shouldRunTheVehicleRoutingWithParallelSolvers() throws Exception {
+        RandomData data = generateRandomData(RandomDataInitializer.withServiceWindow(30, 5, 0));
+        OptimizationRequest message = OptimizationRequest.builder()
+                .config(Configuration.builder().distanceMatrixType(DistanceMatrixType.AIR_DISTANCE).solverThreadCount(3).maxUnimprovedSolverDuration(2).build())
+                .orders(data.orders)
+                .fleet(data.fleet)
+                .build();
+
+        VehicleRoutingSolution solution = runner.processMessage(message).solution();
+
+        assertEquals(solution.getScore().hardScore(), 0);
+        assertEquals(solution.getVehicles().stream().mapToInt(v -> v.getCustomers().size()).sum(), 30);
+        assertTrue(solution.getCustomers().stream().allMatch(customer -> customer.getVehicle() != null && customer.getArrivalTime() != null));
+    }
+
+    @Test
+    public void shouldStartTheParallelSolversFromDifferentCustomerOrders() throws Exception {
+        RandomData data = generateRandomData(RandomDataInitializer.withServiceWindow(30, 5, 0));
+        VehicleRoutingSolution problem = InputMapper.convertInputToSolution(OptimizationRequest.builder()
+                .config(Configuration.builder().distanceMatrixType(DistanceMatrixType.AIR_DISTANCE).build())
+                .orders(data.orders)
+                .fleet(data.fleet)
+                .build());
+
+        VehicleRoutingSolution shuffled = SolverRunner.withShuffledCustomers(problem, 1);
+
+        assertSame(SolverRunner.withShuffledCustomers(problem, 0), problem);
+        assertSame(shuffled.getVehicles(), problem.getVehicles());
+        assertSame(shuffled.getConstraintConfiguration(), problem.getConstraintConfiguration());
+        assertTrue(!shuffled.getCustomers().equals(problem.getCustomers()));
+        assertEquals(new HashSet<>(shuffled.getCustomers()), new HashSet<>(problem.getCustomers()));
+    }
+
+    @Test
+    public void shouldRunTheVehicleRoutingWithTheIncrementalScoreEngine() throws Exception {
+        RandomData data = generateRandomData(RandomDataInitializer.withServiceWindowAndVehicleLimits(10, 3));
+        OptimizationRequest message = OptimizationRequest.builder()
+                .config(Configuration.builder().distanceMatrixType(DistanceMatrixType.AIR_DISTANCE).scoreEngine(ScoreEngine.INCREMENTAL).solverThreadCount(1).maxUnimprovedSolverDuration(2).explain(true).build())
+                .orders(data.orders)
+                .fleet(data.fleet)
+                .build();
+
+        VehicleRoutingSolution solution = runner.processMessage(message).solution();
+
+        assertEquals(solution.getScore().hardScore(), 0);
+        assertEquals(solution.getVehicles().stream().mapToInt(v -> v.getCustomers().size()).sum(), 10);
+    }
+
+    @Test
+    public void shouldRunTheVehicleRoutingWithPartitionedSearch() throws Exception {
+        RandomData data = generateRandomData(RandomDataInitializer.withServiceWindow(60, 6, 0));
+        OptimizationRequest message = OptimizationRequest.builder()
+                .config(Configuration.builder().distanceMatrixType(DistanceMatrixType.AIR_DISTANCE).partitionSize(20).solverThreadCount(3).maxUnimprovedSolverDuration(2).build())
+                .orders(data.orders)
+                .fleet(data.fleet)
+                .build();
+
+        VehicleRoutingSolution solution = runner.processMessage(message).solution();
+
+        assertEquals(solution.getScore().hardScore(), 0);
+        assertEquals(solution.getVehicles().size(), 6);
+        assertEquals(solution.getVehicles().stream().mapToInt(v -> v.getCustomers().size()).sum(), 60);
+        assertTrue(solution.getCustomers().stream().allMatch(customer -> customer.getVehicle() != null && customer.getVehicle().getCustomers().contains(customer)));
+    }
+
     @Test
     public void shouldRunTheVehicleRoutingWithFleetLimitsAndRequirements() throws Exception {
         RandomData data = generateRandomData(RandomDataInitializer.withServiceWindowAndVehicleLimits(10, 4));
@@ -415,4 +529,150 @@ public class SolverRunnerTest {
             }
         }
     }
+
+    @Test
+    public void shouldRestartTheSolverOnTheRoadDistanceOfTheTwoStageSolve() throws Exception {
+        RandomData data = generateRandomData(RandomDataInitializer.withServiceWindow(30, 5, 0));
+        OptimizationRequest message = OptimizationRequest.builder()
+                .config(Configuration.builder().distanceMatrixType(DistanceMatrixType.ROAD_DISTANCE).twoStageSolve(true).maxSolverDuration(6).maxUnimprovedSolverDuration(2).build())
+                .orders(data.orders)
+                .fleet(data.fleet)
+                .build();
+
+        // road distances twice the air distance, slower, the matrix completes 2 seconds after the solver starts
+        AtomicReference<DistanceMatrix> roadMatrix = new AtomicReference<>();
+        DistanceCalculator roadCalculator = slowRoadCalculator(roadMatrix, 2000);
+
+        AtomicReference<VehicleRoutingSolution> airSolution = new AtomicReference<>();
+        AtomicReference<Duration> airStage = new AtomicReference<>();
+        Instant start = Instant.now();
+        SolverRunner twoStageRunner = new SolverRunner() {
+            @Override
+            DistanceCalculator createRoadCalculator(OptimizationRequest request) {
+                return roadCalculator;
+            }
+
+            @Override
+            VehicleRoutingSolution solveOnRoadDistance(SolverFactory<VehicleRoutingSolution> solverFactory, VehicleRoutingSolution solution, TerminationConfig roadTermination) {
+                airSolution.set(solution);
+                airStage.set(Duration.between(start, Instant.now()));
+                // checked before the road solver changes the solution
+                assertArrivalTimesOn(solution, roadMatrix.get());
+
+                return super.solveOnRoadDistance(solverFactory, solution, roadTermination);
+            }
+        };
+
+        VehicleRoutingSolution solution = twoStageRunner.processMessage(message).solution();
+        Duration total = Duration.between(start, Instant.now());
+
+        // the air distance solver stops once the matrix is complete, with every customer assigned
+        assertTrue(airStage.get().compareTo(Duration.ofSeconds(4)) < 0, "air distance stage of " + airStage.get());
+        assertTrue(airSolution.get().getScore() != null && airSolution.get().getScore().isSolutionInitialized(), "air distance solution initialized");
+        assertTrue(airSolution.get().getCustomers().stream().allMatch(customer -> customer.getVehicle() != null));
+
+        assertEquals(solution.getScore().hardScore(), 0);
+        assertEquals(solution.getVehicles().stream().mapToInt(v -> v.getCustomers().size()).sum(), 30);
+        assertArrivalTimesOn(solution, roadMatrix.get());
+
+        // the matrix time is not added to the solving time
+        assertTrue(total.compareTo(Duration.ofSeconds(7)) < 0, "two stage solve of " + total);
+    }
+
+    @Test
+    public void shouldNotRunTheRoadStagePastTheMaxSolverDuration() throws Exception {
+        RandomData data = generateRandomData(RandomDataInitializer.withServiceWindow(30, 5, 0));
+        OptimizationRequest message = OptimizationRequest.builder()
+                .config(Configuration.builder().distanceMatrixType(DistanceMatrixType.ROAD_DISTANCE).twoStageSolve(true).maxSolverDuration(2).maxUnimprovedSolverDuration(2).build())
+                .orders(data.orders)
+                .fleet(data.fleet)
+                .build();
+
+        // the matrix completes after the max solver duration
+        AtomicReference<DistanceMatrix> roadMatrix = new AtomicReference<>();
+        DistanceCalculator roadCalculator = slowRoadCalculator(roadMatrix, 3000);
+        AtomicReference<TerminationConfig> roadStage = new AtomicReference<>();
+        Instant start = Instant.now();
+        SolverRunner twoStageRunner = new SolverRunner() {
+            @Override
+            DistanceCalculator createRoadCalculator(OptimizationRequest request) {
+                return roadCalculator;
+            }
+
+            @Override
+            VehicleRoutingSolution solveOnRoadDistance(SolverFactory<VehicleRoutingSolution> solverFactory, VehicleRoutingSolution solution, TerminationConfig roadTermination) {
+                roadStage.set(roadTermination);
+
+                return super.solveOnRoadDistance(solverFactory, solution, roadTermination);
+            }
+        };
+
+        VehicleRoutingSolution solution = twoStageRunner.processMessage(message).solution();
+        Duration total = Duration.between(start, Instant.now());
+
+        // the air distance solution is kept, scored on the road distances
+        assertTrue(roadStage.get() == null, "road distance stage after the max solver duration");
+        assertArrivalTimesOn(solution, roadMatrix.get());
+        assertEquals(solution.getScore(), SolverFactoryCache.getSolutionManager(SolverFactoryCache.get(SolverProfile.BALANCED, false, ScoreEngine.CONSTRAINT_STREAMS)).update(solution));
+        assertTrue(total.compareTo(Duration.ofMillis(4500)) < 0, "two stage solve of " + total);
+    }
+
+    // road distances twice the air distance and 3 times slower, the matrix completes after the given delay
+    private static DistanceCalculator slowRoadCalculator(AtomicReference<DistanceMatrix> roadMatrix, long matrixMillis) {
+        return new DistanceCalculator() {
+            private final HaversineDistance air = new HaversineDistance();
+
+            @Override
+            public DistanceAndTime calculateDistanceAndTime(Visit from, Visit to) {
+                DistanceAndTime distanceAndTime = this.air.calculateDistanceAndTime(from, to);
+
+                return new DistanceAndTime(distanceAndTime.distance() * 2, distanceAndTime.time().multipliedBy(3));
+            }
+
+            @Override
+            public void calculateBulkDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations, DistanceMatrix matrix) {
+                this.air.calculateBulkDistanceAndTime(fromLocations, toLocations, matrix);
+
+                for (Visit from : fromLocations) {
+                    for (Visit to : toLocations) {
+                        int i = from.getMatrixIndex();
+                        int j = to.getMatrixIndex();
+
+                        matrix.set(i, j, matrix.getDistance(i, j) * 2, matrix.getTime(i, j) * 3);
+                    }
+                }
+            }
+
+            @Override
+            public DistanceMatrix createDistanceAndTimeMatrix(List<Visit> locationList, MatrixRequestPlan plan) {
+                try {
+                    Thread.sleep(matrixMillis);
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+
+                roadMatrix.set(DistanceCalculator.super.createDistanceAndTimeMatrix(locationList, plan));
+
+                return roadMatrix.get();
+            }
+        };
+    }
+
+    // every location reads the given matrix and the arrival times follow its travel times
+    private static void assertArrivalTimesOn(VehicleRoutingSolution solution, DistanceMatrix matrix) {
+        for (Vehicle vehicle : solution.getVehicles()) {
+            assertTrue(vehicle.getDepot().getDistanceMatrix() == matrix);
+
+            LocalDateTime departureTime = vehicle.getPreferredDepartureTime();
+            Visit previous = vehicle.getDepot();
+
+            for (Customer customer : vehicle.getCustomers()) {
+                assertTrue(customer.getVisit().getDistanceMatrix() == matrix);
+                assertEquals(customer.getArrivalTime(), departureTime.plusSeconds(matrix.getTime(previous.getMatrixIndex(), customer.getVisit().getMatrixIndex())));
+
+                departureTime = customer.getDepartureTime();
+                previous = customer.getVisit();
+            }
+        }
+    }
 }
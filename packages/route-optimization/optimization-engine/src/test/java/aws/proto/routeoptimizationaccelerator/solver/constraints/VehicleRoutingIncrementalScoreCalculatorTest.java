@@ -0,0 +1,213 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.constraints;
+
+import ai.timefold.solver.core.api.score.buildin.hardmediumsoftlong.HardMediumSoftLongScore;
+import ai.timefold.solver.core.api.solver.SolutionManager;
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import ai.timefold.solver.core.config.phase.PhaseConfig;
+import ai.timefold.solver.core.config.solver.EnvironmentMode;
+import ai.timefold.solver.core.config.solver.SolverConfig;
+import ai.timefold.solver.core.config.solver.termination.TerminationConfig;
+import aws.proto.routeoptimizationaccelerator.common.Location;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.ConstraintType;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.ScoreEngine;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.SolverProfile;
+import aws.proto.routeoptimizationaccelerator.solver.SolverFactoryCache;
+import aws.proto.routeoptimizationaccelerator.solver.SolverProfiles;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Depot;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DenseDistanceMatrix;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.TimeSlicedDistanceMatrix;
+import aws.proto.routeoptimizationaccelerator.solver.solution.VehicleRoutingSolution;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// both score engines are kept in lock-step: every constraint of the VehicleRoutingConstraintProvider has to give
+// the same score in the VehicleRoutingIncrementalScoreCalculator
+public class VehicleRoutingIncrementalScoreCalculatorTest {
+    private static final LocalDateTime TOMORROW_AT_0700 = LocalDateTime.of(LocalDate.now().plusDays(1), LocalTime.of(7, 0));
+    private static final List<String> ATTRIBUTES = List.of("electrician", "fridge");
+
+    @Test
+    public void shouldComputeTheScoreOfTheConstraintProvider() {
+        SolutionManager<VehicleRoutingSolution, HardMediumSoftLongScore> constraintStreams = SolverFactoryCache.getSolutionManager(
+                SolverFactoryCache.get(SolverProfile.BALANCED, false, ScoreEngine.CONSTRAINT_STREAMS)
+        );
+        SolutionManager<VehicleRoutingSolution, HardMediumSoftLongScore> incremental = SolverFactoryCache.getSolutionManager(
+                SolverFactoryCache.get(SolverProfile.BALANCED, false, ScoreEngine.INCREMENTAL)
+        );
+
+        for (int seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            VehicleRoutingSolution solution = problem(random, 40, 6, seed % 2 == 1);
+
+            // every customer on a random vehicle, most of the limits are exceeded
+            solution.getCustomers().forEach(c -> solution.getVehicles().get(random.nextInt(solution.getVehicles().size())).getCustomers().add(c));
+
+            assertEquals(incremental.update(solution), constraintStreams.update(solution));
+        }
+    }
+
+    @Test
+    public void shouldKeepTheScoreOfTheConstraintProviderWhileSolving() {
+        // every move is checked against the score of the constraint streams computed from scratch
+        SolverConfig config = new SolverConfig()
+                .withSolutionClass(VehicleRoutingSolution.class)
+                .withEntityClasses(Vehicle.class, Customer.class)
+                .withEnvironmentMode(EnvironmentMode.FULL_ASSERT)
+                .withScoreDirectorFactory(SolverFactoryCache.createScoreDirectorFactoryConfig(ScoreEngine.INCREMENTAL)
+                        .withAssertionScoreDirectorFactory(SolverFactoryCache.createScoreDirectorFactoryConfig(ScoreEngine.CONSTRAINT_STREAMS))
+                )
+                .withTerminationConfig(new TerminationConfig().withSpentLimit(Duration.ofSeconds(5)));
+
+        for (boolean timeDependent : new boolean[] { false, true }) {
+            VehicleRoutingSolution solution = SolverFactory.<VehicleRoutingSolution>create(config)
+                    .buildSolver()
+                    .solve(problem(new Random(0), 15, 3, timeDependent));
+
+            assertEquals(solution.getCustomers().stream().filter(c -> c.getVehicle() != null).count(), 15L);
+        }
+    }
+
+    @Test
+    public void shouldKeepTheScoreOfTheConstraintProviderWithTheNearbyMoves() {
+        // the custom moves (nearby change, swap, sub list change and 2-opt) are checked as well: every move
+        // and its undo move against the score computed from scratch
+        SolverConfig config = new SolverConfig()
+                .withSolutionClass(VehicleRoutingSolution.class)
+                .withEntityClasses(Vehicle.class, Customer.class)
+                .withEnvironmentMode(EnvironmentMode.FULL_ASSERT)
+                .withScoreDirectorFactory(SolverFactoryCache.createScoreDirectorFactoryConfig(ScoreEngine.INCREMENTAL)
+                        .withAssertionScoreDirectorFactory(SolverFactoryCache.createScoreDirectorFactoryConfig(ScoreEngine.CONSTRAINT_STREAMS))
+                )
+                .withPhases(SolverProfiles.createPhases(SolverProfile.THOROUGH, true).toArray(PhaseConfig[]::new))
+                .withTerminationConfig(new TerminationConfig().withSpentLimit(Duration.ofSeconds(5)));
+
+        for (boolean timeDependent : new boolean[] { false, true }) {
+            VehicleRoutingSolution solution = SolverFactory.<VehicleRoutingSolution>create(config)
+                    .buildSolver()
+                    .solve(problem(new Random(1), 15, 3, timeDependent));
+
+            assertEquals(solution.getCustomers().stream().filter(c -> c.getVehicle() != null).count(), 15L);
+        }
+    }
+
+    // random problem with every constraint weight set and every vehicle limit, the distances are random too
+    private static VehicleRoutingSolution problem(Random random, int customerCount, int vehicleCount, boolean timeDependent) {
+        Depot depot = Depot.fromLocation(Location.builder().id("depot").latitude(47.6).longitude(-122.3).build());
+
+        List<Customer> customers = IntStream.range(0, customerCount).mapToObj(i -> {
+            boolean morning = random.nextBoolean();
+            Visit visit = Visit.fromLocation(Location.builder().id("customer-" + i).latitude(47.6).longitude(-122.3).build());
+
+            return Customer.builder()
+                    .id("order-" + i)
+                    .visit(visit)
+                    .readyTime(TOMORROW_AT_0700.plusHours(morning ? 0 : 5))
+                    .dueTime(TOMORROW_AT_0700.plusHours(morning ? 2 + random.nextInt(3) : 11))
+                    .serviceDuration(Duration.ofMinutes(15 + random.nextInt(45)))
+                    .weight(random.nextInt(4) == 0 ? null : 10 + random.nextInt(40) + 0.1)
+                    .volume(random.nextInt(4) == 0 ? null : 0.3 + random.nextInt(3))
+                    .requirements(random.nextBoolean() ? List.of() : List.of(ATTRIBUTES.get(random.nextInt(ATTRIBUTES.size()))))
+                    .build();
+        }).toList();
+
+        List<Vehicle> vehicles = IntStream.range(0, vehicleCount).mapToObj(i -> Vehicle.builder()
+                .id("vehicle-" + i)
+                .depot(depot)
+                .customers(new ArrayList<>())
+                .backToOrigin(random.nextBoolean())
+                .preferredDepartureTime(TOMORROW_AT_0700)
+                .maximumOrders(random.nextBoolean() ? null : 3 + random.nextInt(5))
+                .maximumTime(random.nextBoolean() ? null : 3600L * (2 + random.nextInt(4)))
+                .maximumDistance(random.nextBoolean() ? null : 20_000L + random.nextInt(60_000))
+                .maximumWeight(random.nextBoolean() ? null : 100.0 + random.nextInt(100))
+                .maximumVolume(random.nextBoolean() ? null : 3.0 + random.nextInt(4))
+                .attributes(random.nextBoolean() ? ATTRIBUTES : List.of(ATTRIBUTES.get(0)))
+                .isVirtual(i == vehicleCount - 1)
+                .build()
+        ).toList();
+
+        List<Visit> locations = Stream.concat(Stream.of(depot), customers.stream().map(Customer::getVisit)).toList();
+        DistanceMatrix matrix = matrix(random, locations.size(), timeDependent);
+
+        for (int i = 0; i < locations.size(); i++) {
+            locations.get(i).setMatrixIndex(i);
+            locations.get(i).setDistanceMatrix(matrix);
+        }
+
+        return VehicleRoutingSolution.builder()
+                .id("problem")
+                .visits(customers.stream().map(Customer::getVisit).toList())
+                .depots(List.of(depot))
+                .vehicles(vehicles)
+                .customers(customers)
+                .constraintConfiguration(weights())
+                .build();
+    }
+
+    // a distinct weight per constraint (some on another level than their default one), a constraint
+    // penalized with the weight of another one does not give the same score
+    private static VehicleRoutingConstraintConfiguration weights() {
+        VehicleRoutingConstraintConfiguration weights = new VehicleRoutingConstraintConfiguration();
+
+        weights.setTravelTimeWeight(2, ConstraintType.Soft);
+        weights.setTravelDistanceWeight(3, ConstraintType.Soft);
+        weights.setEarlyArrivalWeight(5, ConstraintType.Medium);
+        weights.setLateDepartureWeight(7, ConstraintType.Soft);
+        weights.setVirtualVehicleWeight(11, ConstraintType.Medium);
+        weights.setLateArrivalWeight(13, ConstraintType.Hard);
+        weights.setVehicleCapacityWeight(17, ConstraintType.Hard);
+        weights.setVehicleVolumeWeight(19, ConstraintType.Medium);
+        weights.setMaximumOrdersWeight(23, ConstraintType.Hard);
+        weights.setMaximumDistanceWeight(29, ConstraintType.Hard);
+        weights.setMaximumTimeWeight(31, ConstraintType.Medium);
+        weights.setOrderRequirementsWeight(37, ConstraintType.Hard);
+
+        return weights;
+    }
+
+    private static DistanceMatrix matrix(Random random, int size, boolean timeDependent) {
+        DenseDistanceMatrix base = new DenseDistanceMatrix(size);
+
+        for (int from = 0; from < size; from++) {
+            for (int to = 0; to < size; to++) {
+                long distance = from == to ? 0 : 500 + random.nextInt(20_000);
+
+                base.set(from, to, distance, distance / 10);
+            }
+        }
+
+        if (!timeDependent) {
+            return base;
+        }
+
+        // the rush hours are slower
+        TimeSlicedDistanceMatrix matrix = new TimeSlicedDistanceMatrix(base, 4, true);
+
+        for (int from = 0; from < size; from++) {
+            for (int to = 0; to < size; to++) {
+                matrix.setBucketTime(from, to, 1, base.getTime(from, to) * (1 + random.nextInt(3)));
+            }
+        }
+
+        return matrix;
+    }
+}
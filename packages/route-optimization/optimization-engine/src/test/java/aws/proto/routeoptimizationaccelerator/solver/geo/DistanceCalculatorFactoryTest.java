@@ -0,0 +1,34 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DistanceCalculatorFactoryTest {
+    private final String store = Path.of("/mnt/matrices").toAbsolutePath().toString();
+
+    @Test
+    public void shouldResolveTheMatrixFileInTheStore() {
+        assertEquals(DistanceCalculatorFactory.resolveMatrixFile("s3://bucket/day-1/matrix.bin", store), Path.of(store, "bucket", "day-1", "matrix.bin"));
+        assertEquals(DistanceCalculatorFactory.resolveMatrixFile("bucket/./day-1/../day-2/matrix.bin", store), Path.of(store, "bucket", "day-2", "matrix.bin"));
+    }
+
+    @Test
+    public void shouldRejectTheMatrixFilesOutsideOfTheStore() {
+        assertThrows(RuntimeException.class, () -> DistanceCalculatorFactory.resolveMatrixFile("/etc/passwd", store));
+        assertThrows(RuntimeException.class, () -> DistanceCalculatorFactory.resolveMatrixFile("s3:///etc/passwd", store));
+        assertThrows(RuntimeException.class, () -> DistanceCalculatorFactory.resolveMatrixFile("../secrets/matrix.bin", store));
+        assertThrows(RuntimeException.class, () -> DistanceCalculatorFactory.resolveMatrixFile("s3://bucket/../../matrix.bin", store));
+        assertThrows(RuntimeException.class, () -> DistanceCalculatorFactory.resolveMatrixFile("bucket/..", store));
+        // a sibling directory sharing the prefix of the store
+        assertThrows(RuntimeException.class, () -> DistanceCalculatorFactory.resolveMatrixFile("../matrices-other/matrix.bin", store));
+        assertThrows(RuntimeException.class, () -> DistanceCalculatorFactory.resolveMatrixFile("bucket/matrix.bin", null));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.common.Location;
+import aws.proto.routeoptimizationaccelerator.data.input.enums.MatrixStorage;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrixFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HaversineDistanceTest {
+    private final HaversineDistance haversine = new HaversineDistance();
+
+    @Test
+    public void shouldComputeTheSameMatrixAsThePairsFromASingleList() {
+        List<Visit> locations = locations(120);
+
+        for (MatrixStorage storage : List.of(MatrixStorage.DENSE, MatrixStorage.COMPACT, MatrixStorage.OFF_HEAP)) {
+            DistanceMatrix matrix = DistanceMatrixFactory.create(locations.size(), storage, true);
+
+            this.haversine.calculateBulkDistanceAndTime(locations, locations, matrix);
+
+            this.assertSameAsThePairs(matrix, locations, locations);
+        }
+    }
+
+    @Test
+    public void shouldComputeTheSameMatrixAsThePairsFromDistinctLists() {
+        List<Visit> locations = locations(120);
+        // the lists overlap, as the rows and columns of a request plan
+        List<Visit> from = locations.subList(0, 80);
+        List<Visit> to = locations.subList(40, 120);
+
+        for (MatrixStorage storage : List.of(MatrixStorage.DENSE, MatrixStorage.COMPACT, MatrixStorage.OFF_HEAP)) {
+            DistanceMatrix matrix = DistanceMatrixFactory.create(locations.size(), storage, true);
+
+            this.haversine.calculateBulkDistanceAndTime(from, to, matrix);
+
+            this.assertSameAsThePairs(matrix, from, to);
+        }
+    }
+
+    // the bulk computation precomputes the radians and the cosines, the values may differ by a rounding
+    private void assertSameAsThePairs(DistanceMatrix matrix, List<Visit> from, List<Visit> to) {
+        for (Visit origin : from) {
+            for (Visit destination : to) {
+                DistanceCalculator.DistanceAndTime pair = this.haversine.calculateDistanceAndTime(origin, destination);
+                long meters = matrix.getDistance(origin.getMatrixIndex(), destination.getMatrixIndex());
+                long seconds = matrix.getTime(origin.getMatrixIndex(), destination.getMatrixIndex());
+
+                assertTrue(Math.abs(meters - (long) (pair.distance() * 1000)) <= 1, origin.getId() + " -> " + destination.getId() + ": " + meters + " meters");
+                assertTrue(Math.abs(seconds - pair.time().getSeconds()) <= 1, origin.getId() + " -> " + destination.getId() + ": " + seconds + " seconds");
+            }
+        }
+
+        // the diagonal is always zero
+        assertEquals(matrix.getDistance(from.get(0).getMatrixIndex(), from.get(0).getMatrixIndex()), 0L);
+    }
+
+    private static List<Visit> locations(int count) {
+        Random random = new Random(11);
+        List<Visit> locations = new ArrayList<>();
+
+        IntStream.range(0, count).forEach(i -> locations.add(Visit.fromLocation(Location.builder()
+                .id("order-" + i)
+                .longitude(-122.6 + random.nextDouble() * 0.8)
+                .latitude(47.2 + random.nextDouble() * 0.8)
+                .build()
+        )));
+        IntStream.range(0, count).forEach(i -> locations.get(i).setMatrixIndex(i));
+
+        return locations;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.common.Location;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Depot;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.geo.cache.MatrixReuseStore;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DistanceMatrix;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class IncrementalDistanceTest {
+    @Test
+    public void shouldComputeOnlyTheNewRowsAndColumns() {
+        CountingDistance base = new CountingDistance();
+        IncrementalDistance calculator = new IncrementalDistance(base, new MatrixReuseStore("incremental-memory", null, Duration.ofHours(1)));
+
+        DistanceMatrix first = calculator.initDistanceAndTimeMatrix(request(20, 0), plan(request(20, 0)));
+        assertEquals(base.cells.get(), 20L + 20L * 19L + 20L);
+
+        // same depot, order-0 removed and order-20 added
+        base.cells.set(0);
+        List<Visit> next = request(21, 1);
+        DistanceMatrix second = calculator.initDistanceAndTimeMatrix(next, plan(next));
+
+        // depot -> new, new -> 19 others, 19 reused -> new, new -> depot
+        assertEquals(base.cells.get(), 1L + 19L + 19L + 1L);
+
+        // the reused cells are the ones of the previous matrix
+        assertEquals(second.getDistance(1, 2), first.getDistance(2, 3));
+        assertEquals(second.getTime(0, 1), first.getTime(0, 2));
+        assertEquals(second.getDistance(19, 20) > 0, true);
+    }
+
+    @Test
+    public void shouldReloadThePersistedMatrix() throws Exception {
+        Path directory = Files.createTempDirectory("reuse");
+        CountingDistance base = new CountingDistance();
+
+        new IncrementalDistance(base, new MatrixReuseStore("incremental-file", directory, Duration.ofHours(1))).initDistanceAndTimeMatrix(request(10, 0), plan(request(10, 0)));
+        MatrixReuseStore.clear();
+
+        // a one-way vehicle: the order -> depot cells are not needed anymore
+        base.cells.set(0);
+        List<Visit> next = request(10, 0);
+        new IncrementalDistance(base, new MatrixReuseStore("incremental-file", directory, Duration.ofHours(1))).initDistanceAndTimeMatrix(next, MatrixRequestPlan.from(next, List.of(
+                Vehicle.builder().id("one-way").depot((Depot) next.get(0)).backToOrigin(false).build()
+        )));
+
+        assertEquals(base.cells.get(), 0L);
+    }
+
+    @Test
+    public void shouldNotReuseTheExpiredMatrices() throws Exception {
+        Path directory = Files.createTempDirectory("reuse");
+        CountingDistance base = new CountingDistance();
+        IncrementalDistance calculator = new IncrementalDistance(base, new MatrixReuseStore("incremental-expired", directory, Duration.ZERO));
+
+        calculator.initDistanceAndTimeMatrix(request(10, 0), plan(request(10, 0)));
+        Thread.sleep(10);
+
+        // neither the matrix kept in memory nor its file
+        base.cells.set(0);
+        calculator.initDistanceAndTimeMatrix(request(10, 0), plan(request(10, 0)));
+        assertEquals(base.cells.get(), 10L + 10L * 9L + 10L);
+    }
+
+    @Test
+    public void shouldDropTheRetainedMatrixWhenTheHeapIsShort() {
+        CountingDistance base = new CountingDistance();
+        MatrixReuseStore store = new MatrixReuseStore("incremental-heap", null, Duration.ofHours(1));
+
+        new IncrementalDistance(base, store).initDistanceAndTimeMatrix(request(10, 0), plan(request(10, 0)));
+        assertEquals(MatrixReuseStore.retainedHeapBytes() > 0, true);
+
+        // a matrix taking the whole heap is about to be allocated
+        store.reserve(Runtime.getRuntime().maxMemory());
+        assertEquals(MatrixReuseStore.retainedHeapBytes(), 0L);
+
+        base.cells.set(0);
+        new IncrementalDistance(base, store).initDistanceAndTimeMatrix(request(10, 0), plan(request(10, 0)));
+        assertEquals(base.cells.get(), 10L + 10L * 9L + 10L);
+    }
+
+    // depot and orders [from, to) east of the depot, matrix indexes in list order
+    private static List<Visit> request(int to, int from) {
+        List<Visit> locations = new ArrayList<>();
+        locations.add(Depot.fromLocation(location("depot", -122.3, 47.6)));
+
+        IntStream.range(from, to).forEach(i -> locations.add(Visit.fromLocation(location("order-" + i, -122.3 + i * 0.001, 47.6 + i * 0.0005))));
+        IntStream.range(0, locations.size()).forEach(i -> locations.get(i).setMatrixIndex(i));
+
+        return locations;
+    }
+
+    private static MatrixRequestPlan plan(List<Visit> locations) {
+        return MatrixRequestPlan.from(locations, List.of(
+                Vehicle.builder().id("round-trip").depot((Depot) locations.get(0)).backToOrigin(true).build()
+        ));
+    }
+
+    private static Location location(String id, double longitude, double latitude) {
+        return Location.builder().id(id).longitude(longitude).latitude(latitude).build();
+    }
+
+    private static class CountingDistance extends HaversineDistance {
+        private final AtomicLong cells = new AtomicLong();
+
+        @Override
+        public void calculateBulkDistanceAndTime(List<Visit> fromLocations, List<Visit> toLocations, DistanceMatrix matrix) {
+            super.calculateBulkDistanceAndTime(fromLocations, toLocations, matrix);
+
+            cells.addAndGet(fromLocations.stream().mapToLong(f -> toLocations.stream().filter(t -> t != f).count()).sum());
+        }
+
+        @Override
+        public boolean isSymmetric() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.common.Location;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Depot;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MatrixIndexerTest {
+    private final Depot depot = Depot.fromLocation(location("depot", -122.3, 47.6));
+    private final Visit sameAsDepot = Visit.fromLocation(location("order-0", -122.3, 47.6));
+    private final Visit apartment1 = Visit.fromLocation(location("order-1", -122.31, 47.61));
+    private final Visit apartment2 = Visit.fromLocation(location("order-2", -122.31, 47.61));
+    private final Visit nextDoor = Visit.fromLocation(location("order-3", -122.31002, 47.61001));
+    private final List<Visit> locations = List.of(depot, sameAsDepot, apartment1, apartment2, nextDoor);
+
+    @Test
+    public void shouldShareTheIndexOfOrdersAtTheSamePosition() {
+        List<Visit> indexed = MatrixIndexer.assign(locations, 6);
+
+        assertEquals(indexed, List.of(depot, sameAsDepot, apartment1, nextDoor));
+        // depots keep their own index
+        assertEquals(depot.getMatrixIndex(), 0);
+        assertEquals(sameAsDepot.getMatrixIndex(), 1);
+        assertEquals(apartment1.getMatrixIndex(), 2);
+        assertEquals(apartment2.getMatrixIndex(), 2);
+        assertEquals(nextDoor.getMatrixIndex(), 3);
+
+        assertEquals(MatrixIndexer.indexed(locations), indexed);
+    }
+
+    @Test
+    public void shouldMergeCloseOrdersWithALowerPrecision() {
+        List<Visit> indexed = MatrixIndexer.assign(locations, 4);
+
+        assertEquals(indexed, List.of(depot, sameAsDepot, apartment1));
+        assertEquals(nextDoor.getMatrixIndex(), 2);
+    }
+
+    @Test
+    public void shouldReadTheSharedCells() {
+        List<Visit> indexed = MatrixIndexer.assign(locations, 6);
+        MatrixRequestPlan plan = MatrixRequestPlan.from(indexed, List.of());
+
+        new HaversineDistance().initDistanceAndTimeMatrix(indexed, plan);
+        apartment2.setDistanceMatrix(apartment1.getDistanceMatrix());
+
+        assertEquals(apartment2.getDistanceTo(nextDoor), apartment1.getDistanceTo(nextDoor));
+        assertEquals(apartment1.getDistanceTo(apartment2), 0L);
+        assertEquals(depot.getDistanceTo(apartment2) > 0, true);
+    }
+
+    private static Location location(String id, double longitude, double latitude) {
+        return Location.builder().id(id).longitude(longitude).latitude(latitude).build();
+    }
+}
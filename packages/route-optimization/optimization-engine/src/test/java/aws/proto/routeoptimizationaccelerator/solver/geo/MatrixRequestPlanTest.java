@@ -0,0 +1,71 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.common.Location;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Depot;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MatrixRequestPlanTest {
+    private final Depot northDepot = Depot.fromLocation(location("north", -122.24411681313705, 47.58758077964066));
+    private final Depot southDepot = Depot.fromLocation(location("south", -122.29313726917279, 47.49338774117188));
+    private final List<Visit> orders = IntStream.range(0, 4)
+            .mapToObj(i -> Visit.fromLocation(location("order-" + i, -122.3 + i * 0.01, 47.6)))
+            .toList();
+
+    @Test
+    public void shouldRequestReturnTripsOnlyForVehiclesGoingBackToOrigin() {
+        List<Visit> locations = List.of(northDepot, southDepot, orders.get(0), orders.get(1), orders.get(2), orders.get(3));
+        MatrixRequestPlan plan = MatrixRequestPlan.from(locations, List.of(
+                Vehicle.builder().id("one-way").depot(northDepot).backToOrigin(false).build(),
+                Vehicle.builder().id("round-trip").depot(southDepot).backToOrigin(true).build()
+        ));
+
+        assertEquals(plan.returnDepots(), List.of(southDepot));
+        assertEquals(plan.blocks().size(), 3);
+        // 2 depots -> 4 orders, 4 x 3 orders -> orders, 4 orders -> 1 depot
+        assertEquals(plan.cellCount(), 8L + 12L + 4L);
+    }
+
+    @Test
+    public void shouldSkipTheReturnBlockForOneWayRoutes() {
+        List<Visit> locations = List.of(northDepot, orders.get(0), orders.get(1));
+        MatrixRequestPlan plan = MatrixRequestPlan.from(locations, List.of(
+                Vehicle.builder().id("one-way").depot(northDepot).backToOrigin(false).build()
+        ));
+
+        assertEquals(plan.blocks().size(), 2);
+        assertEquals(plan.cellCount(), 2L + 2L);
+    }
+
+    @Test
+    public void shouldRequestOnlyTheRowsAndColumnsOfTheNewLocations() {
+        List<Visit> locations = List.of(northDepot, orders.get(0), orders.get(1), orders.get(2), orders.get(3));
+        IntStream.range(0, locations.size()).forEach(i -> locations.get(i).setMatrixIndex(i));
+
+        BitSet reused = new BitSet();
+        reused.set(0, 4);
+
+        MatrixRequestPlan plan = MatrixRequestPlan.from(locations, List.of(
+                Vehicle.builder().id("round-trip").depot(northDepot).backToOrigin(true).build()
+        )).reusing(reused);
+
+        // depot -> new order, new order -> 3 orders, 3 reused orders -> new order, new order -> depot
+        assertEquals(plan.cellCount(), 1L + 3L + 3L + 1L);
+        assertEquals(plan.blocks().stream().allMatch(t -> t.fromLocations().contains(orders.get(3)) || t.toLocations().contains(orders.get(3))), true);
+    }
+
+    private static Location location(String id, double longitude, double latitude) {
+        return Location.builder().id(id).longitude(longitude).latitude(latitude).build();
+    }
+}
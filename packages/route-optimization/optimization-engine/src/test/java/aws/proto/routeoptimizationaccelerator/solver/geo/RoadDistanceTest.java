@@ -0,0 +1,94 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.common.Location;
+import aws.proto.routeoptimizationaccelerator.common.Position;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.geo.cache.FileRoadMatrixCache;
+import aws.proto.routeoptimizationaccelerator.solver.geo.cache.NoOpRoadMatrixCache;
+import aws.proto.routeoptimizationaccelerator.solver.geo.cache.RoadMatrixCache;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.DenseDistanceMatrix;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RoadDistanceTest {
+    private final List<Visit> locations = IntStream.range(0, 20)
+            .mapToObj(i -> {
+                Visit visit = Visit.fromLocation(Location.builder().id("order-" + i).longitude(-122.3 + i * 0.01).latitude(47.6 + (i % 5) * 0.01).build());
+                visit.setMatrixIndex(i);
+
+                return visit;
+            })
+            .toList();
+
+    @Test
+    public void shouldRequestASingleFailedCellAgainOnItsOwn() {
+        // the cell 3 -> 7 fails in the 20x20 request only
+        AtomicInteger attempts = new AtomicInteger();
+        StubLocationHelper locationHelper = new StubLocationHelper("road-distance-retry", (from, to) ->
+                is(from, 3) && is(to, 7) && attempts.incrementAndGet() == 1
+        );
+        DenseDistanceMatrix matrix = new DenseDistanceMatrix(20);
+
+        new RoadDistance(locationHelper, new NoOpRoadMatrixCache(), new NoOpRoadMatrixCache()).calculateBulkDistanceAndTime(this.locations, this.locations, matrix);
+
+        assertEquals(locationHelper.requests.get(), 2);
+        assertEquals(attempts.get(), 2);
+        assertEquals(matrix.getDistance(3, 7), (long) (StubLocationHelper.kilometers(this.locations.get(3), this.locations.get(7)) * 1000));
+    }
+
+    @Test
+    public void shouldFailOnACellFailingOnItsOwn() {
+        StubLocationHelper locationHelper = new StubLocationHelper("road-distance-failure", this.failing(3, 7));
+        DenseDistanceMatrix matrix = new DenseDistanceMatrix(20);
+        RoadDistance roadDistance = new RoadDistance(locationHelper, new NoOpRoadMatrixCache(), new NoOpRoadMatrixCache());
+
+        assertThrows(RuntimeException.class, () -> roadDistance.calculateBulkDistanceAndTime(this.locations, this.locations, matrix));
+        // the whole matrix, then the cell on its own
+        assertEquals(locationHelper.requests.get(), 2);
+    }
+
+    @Test
+    public void shouldResumeFromTheCheckpoint() throws Exception {
+        Path directory = Files.createTempDirectory("road-matrix-checkpoint");
+
+        // the first run fails on a cell, the completed cells are checkpointed
+        RoadMatrixCache checkpoint = FileRoadMatrixCache.open(directory, "problem-1");
+        RoadDistance failing = new RoadDistance(new StubLocationHelper("road-distance-checkpoint-1", this.failing(3, 7)), new NoOpRoadMatrixCache(), checkpoint);
+
+        assertThrows(RuntimeException.class, () -> failing.calculateBulkDistanceAndTime(this.locations, this.locations, new DenseDistanceMatrix(20)));
+
+        // the retry (e.g. after a restart of the task) requests the missing cell only
+        StubLocationHelper locationHelper = new StubLocationHelper("road-distance-checkpoint-2");
+        DenseDistanceMatrix matrix = new DenseDistanceMatrix(20);
+
+        new RoadDistance(locationHelper, new NoOpRoadMatrixCache(), FileRoadMatrixCache.open(directory, "problem-1")).calculateBulkDistanceAndTime(this.locations, this.locations, matrix);
+
+        assertEquals(locationHelper.cells.get(), 1L);
+        assertEquals(matrix.getDistance(3, 7), (long) (StubLocationHelper.kilometers(this.locations.get(3), this.locations.get(7)) * 1000));
+        assertEquals(matrix.getDistance(12, 4), (long) (StubLocationHelper.kilometers(this.locations.get(12), this.locations.get(4)) * 1000));
+
+        // the checkpoint is dropped once the matrix is complete
+        assertEquals(Files.exists(FileRoadMatrixCache.fileOf(directory, "problem-1")), false);
+    }
+
+    private BiPredicate<Position, Position> failing(int from, int to) {
+        return (a, b) -> this.is(a, from) && this.is(b, to);
+    }
+
+    private boolean is(Position position, int index) {
+        return position.getLongitude() == this.locations.get(index).getLongitude() && position.getLatitude() == this.locations.get(index).getLatitude();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.common.Location;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Depot;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.geo.cache.NoOpRoadMatrixCache;
+import aws.proto.routeoptimizationaccelerator.solver.matrix.SparseDistanceMatrix;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SparseNearestDistanceTest {
+    @Test
+    public void shouldRequestTheNeighboursOfCloseVisitsTogether() {
+        Random random = new Random(7);
+        List<Visit> locations = new ArrayList<>();
+        locations.add(Depot.fromLocation(Location.builder().id("depot").longitude(-122.3).latitude(47.6).build()));
+
+        IntStream.range(0, 300).forEach(i -> locations.add(Visit.fromLocation(Location.builder()
+                .id("order-" + i)
+                .longitude(-122.4 + random.nextDouble() * 0.2)
+                .latitude(47.5 + random.nextDouble() * 0.2)
+                .build()
+        )));
+        IntStream.range(0, locations.size()).forEach(i -> locations.get(i).setMatrixIndex(i));
+
+        StubLocationHelper locationHelper = new StubLocationHelper("sparse-nearest-test");
+        RoadDistance roadDistance = new RoadDistance(locationHelper, new NoOpRoadMatrixCache(), new NoOpRoadMatrixCache());
+        MatrixRequestPlan plan = MatrixRequestPlan.from(locations, List.of(
+                Vehicle.builder().id("round-trip").depot((Depot) locations.get(0)).backToOrigin(true).build()
+        ));
+
+        SparseDistanceMatrix matrix = (SparseDistanceMatrix) new SparseNearestDistance(roadDistance, 10).createDistanceAndTimeMatrix(locations, plan);
+
+        // 300 visits in groups of 10: about 30 requests for the neighbours instead of 300
+        assertTrue(locationHelper.requests.get() <= 60, "requests: " + locationHelper.requests.get());
+        // the grouped requests stay within a few times the cells of the sparse structure
+        assertTrue(locationHelper.cells.get() <= 3L * 300 * 10 + 2 * 300, "cells: " + locationHelper.cells.get());
+
+        for (int i = 1; i < locations.size(); i++) {
+            assertEquals(matrix.getNeighbours(i).length, 10);
+
+            for (int j : matrix.getNeighbours(i)) {
+                assertTrue(matrix.isExact(i, j));
+                assertEquals(matrix.getDistance(i, j), (long) (StubLocationHelper.kilometers(locations.get(i), locations.get(j)) * 1000));
+            }
+
+            assertEquals(matrix.getDistance(0, i), (long) (StubLocationHelper.kilometers(locations.get(0), locations.get(i)) * 1000));
+            assertEquals(matrix.getDistance(i, 0), (long) (StubLocationHelper.kilometers(locations.get(i), locations.get(0)) * 1000));
+        }
+    }
+}
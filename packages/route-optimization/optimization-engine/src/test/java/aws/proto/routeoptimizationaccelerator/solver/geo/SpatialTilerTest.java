@@ -0,0 +1,58 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.common.Location;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SpatialTilerTest {
+    private final SpatialTiler tiler = new SpatialTiler(350, 10, 180);
+    private final Random random = new Random(7);
+
+    @Test
+    public void shouldUseLargeTilesForLastMile() {
+        List<Visit> seattle = around("sea", 1000, -122.3, 47.6);
+        List<SpatialTiler.Tile> tiles = tiler.tiles(seattle, seattle);
+
+        assertEquals(tiles.size() <= 16, true);
+        assertEquals(cells(tiles), 1000L * 1000L);
+    }
+
+    @Test
+    public void shouldUseSmallTilesOnlyForLongHaulPairs() {
+        List<Visit> locations = Stream.concat(
+                around("sea", 300, -122.3, 47.6).stream(),
+                around("nyc", 300, -74.0, 40.7).stream()
+        ).toList();
+        List<SpatialTiler.Tile> tiles = tiler.tiles(locations, locations);
+
+        // two local 300x300 tiles + 2 * (30 x 30) long haul tiles
+        assertEquals(tiles.size(), 2 + 2 * 30 * 30);
+        assertEquals(tiles.stream().filter(t -> t.fromLocations().size() > 10).count(), 2L);
+        assertEquals(cells(tiles), 600L * 600L);
+    }
+
+    private List<Visit> around(String prefix, int count, double longitude, double latitude) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> Visit.fromLocation(Location.builder()
+                        .id(prefix + "-" + i)
+                        .longitude(longitude + random.nextDouble() * 0.3)
+                        .latitude(latitude + random.nextDouble() * 0.3)
+                        .build()))
+                .toList();
+    }
+
+    private static long cells(List<SpatialTiler.Tile> tiles) {
+        return tiles.stream().mapToLong(t -> (long) t.fromLocations().size() * t.toLocations().size()).sum();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo;
+
+import aws.proto.routeoptimizationaccelerator.aws.LocationHelper;
+import aws.proto.routeoptimizationaccelerator.common.Position;
+import software.amazon.awssdk.services.location.LocationAsyncClient;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+
+// Amazon Location Service stand-in: the routes are the straight lines (in km, at 10 m/s), the cells matching
+// the failing predicate are returned in error (-1) as the service does. No client of the service is created.
+// Every calculator name has its own route cache, the tests use a unique one
+class StubLocationHelper extends LocationHelper {
+    final AtomicInteger requests = new AtomicInteger();
+    final AtomicLong cells = new AtomicLong();
+
+    private final BiPredicate<Position, Position> failing;
+
+    StubLocationHelper(String calculatorName) {
+        this(calculatorName, (from, to) -> false);
+    }
+
+    StubLocationHelper(String calculatorName, BiPredicate<Position, Position> failing) {
+        super((LocationAsyncClient) null, calculatorName, false, null);
+
+        this.failing = failing;
+    }
+
+    @Override
+    public CompletableFuture<DistanceAndTimeMatrix> distanceDistanceMatrixAsync(Collection<Collection<Double>> departingPositions, Collection<Collection<Double>> arrivalPositions) {
+        List<Position> departures = departingPositions.stream().map(Position::from).toList();
+        List<Position> arrivals = arrivalPositions.stream().map(Position::from).toList();
+        List<List<Double>> distance = new ArrayList<>();
+        List<List<Double>> time = new ArrayList<>();
+
+        this.requests.incrementAndGet();
+        this.cells.addAndGet((long) departures.size() * arrivals.size());
+
+        for (Position from : departures) {
+            List<Double> distanceRow = new ArrayList<>();
+            List<Double> timeRow = new ArrayList<>();
+
+            for (Position to : arrivals) {
+                boolean failed = this.failing.test(from, to);
+                double kilometers = kilometers(from, to);
+
+                distanceRow.add(failed ? -1.0 : kilometers);
+                timeRow.add(failed ? -1.0 : Math.floor(kilometers * 100));
+            }
+
+            distance.add(distanceRow);
+            time.add(timeRow);
+        }
+
+        return CompletableFuture.completedFuture(new DistanceAndTimeMatrix(distance, time));
+    }
+
+    static double kilometers(Position from, Position to) {
+        double dx = (to.getLongitude() - from.getLongitude()) * Math.cos(Math.toRadians(from.getLatitude())) * 111.32;
+        double dy = (to.getLatitude() - from.getLatitude()) * 111.32;
+
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo.cache;
+
+import aws.proto.routeoptimizationaccelerator.common.Position;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class FileRoadMatrixCacheTest {
+    private final Position depot = Position.from(-122.24411681313705, 47.58758077964066);
+    private final Position customer = Position.from(-122.29313726917279, 47.59338774117188);
+
+    @Test
+    public void shouldPersistCellsAcrossRuns() throws Exception {
+        Path directory = Files.createTempDirectory("road-matrix-cache");
+
+        RoadMatrixCache firstRun = FileRoadMatrixCache.open(directory, "calculator_CAR");
+        assertNull(firstRun.get(depot, customer));
+
+        firstRun.put(depot, customer, 4567, 321);
+        firstRun.flush();
+
+        RoadMatrixCache secondRun = FileRoadMatrixCache.open(directory, "calculator_CAR");
+        RoadMatrixCache.CachedRoute route = secondRun.get(depot, customer);
+
+        assertEquals(route.distance(), 4567);
+        assertEquals(route.time(), 321);
+        // the cache is directional
+        assertNull(secondRun.get(customer, depot));
+    }
+
+    @Test
+    public void shouldNotMixDifferentRoutingProfiles() throws Exception {
+        Path directory = Files.createTempDirectory("road-matrix-cache");
+
+        RoadMatrixCache withTolls = FileRoadMatrixCache.open(directory, "calculator_CAR");
+        withTolls.put(depot, customer, 4567, 321);
+        withTolls.flush();
+
+        assertNull(FileRoadMatrixCache.open(directory, "calculator_CAR_avoid-tolls").get(depot, customer));
+    }
+
+    @Test
+    public void shouldDiscardTheCheckpointOnceCompleted() throws Exception {
+        Path directory = Files.createTempDirectory("road-matrix-checkpoint");
+
+        RoadMatrixCache checkpoint = FileRoadMatrixCache.open(directory, "calculator_CAR_problem-1");
+        checkpoint.put(depot, customer, 4567, 321);
+        checkpoint.flush();
+
+        // a retry of the same problem resumes from the checkpoint
+        RoadMatrixCache resumed = FileRoadMatrixCache.open(directory, "calculator_CAR_problem-1");
+        assertEquals(resumed.get(depot, customer).distance(), 4567);
+
+        resumed.discard();
+
+        assertNull(FileRoadMatrixCache.open(directory, "calculator_CAR_problem-1").get(depot, customer));
+    }
+
+    @Test
+    public void shouldEvictTheOldestCellsAndCompactTheFile() throws Exception {
+        Path directory = Files.createTempDirectory("road-matrix-cache");
+        Path file = FileRoadMatrixCache.fileOf(directory, "calculator_CAR");
+
+        put(FileRoadMatrixCache.open(directory, "calculator_CAR", 100), 0, 50);
+
+        // two tasks opened the cache at the same time, both append the cells 50 to 79
+        RoadMatrixCache firstTask = FileRoadMatrixCache.open(directory, "calculator_CAR", 100);
+        RoadMatrixCache secondTask = FileRoadMatrixCache.open(directory, "calculator_CAR", 100);
+        put(firstTask, 0, 80);
+        put(secondTask, 0, 80);
+        assertEquals(Files.size(file), 8 + 110 * 24L);
+
+        // the 10 oldest records are evicted and the duplicates removed
+        RoadMatrixCache cache = FileRoadMatrixCache.open(directory, "calculator_CAR", 100);
+        assertEquals(Files.size(file), 8 + 70 * 24L);
+        assertNull(cache.get(depot, position(9)));
+        assertEquals(cache.get(depot, position(10)).distance(), 1010);
+        assertEquals(cache.get(depot, position(79)).time(), 179);
+
+        put(cache, 80, 110);
+        assertEquals(Files.size(file), 8 + 100 * 24L);
+
+        // the compacted file keeps the order the cells were added in
+        RoadMatrixCache smaller = FileRoadMatrixCache.open(directory, "calculator_CAR", 50);
+        assertEquals(Files.size(file), 8 + 50 * 24L);
+        assertNull(smaller.get(depot, position(59)));
+        assertEquals(smaller.get(depot, position(60)).distance(), 1060);
+        assertEquals(smaller.get(depot, position(109)).distance(), 1109);
+    }
+
+    @Test
+    public void shouldReportTheFootprintOfTheCells() {
+        // 3 longs per slot, at most 60% of the slots used
+        assertEquals(FileRoadMatrixCache.footprint(5_000_000), (1L << 23) * 24);
+        // the budget shared by 24 time buckets
+        assertEquals(24 * FileRoadMatrixCache.footprint(5_000_000 / 24), 24 * (1L << 19) * 24);
+    }
+
+    private void put(RoadMatrixCache cache, int from, int to) {
+        for (int i = from; i < to; i++) {
+            cache.put(depot, position(i), 1000 + i, 100 + i);
+        }
+
+        cache.flush();
+    }
+
+    private static Position position(int i) {
+        return Position.from(-122.3 + i * 0.001, 47.6);
+    }
+
+    @Test
+    public void shouldReadAndAddCellsFromSeveralThreads() throws Exception {
+        Path directory = Files.createTempDirectory("road-matrix-cache");
+        RoadMatrixCache cache = FileRoadMatrixCache.open(directory, "calculator_CAR");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<? extends Future<?>> tiles = IntStream.range(0, 4)
+                    .mapToObj(tile -> executor.submit(() -> {
+                        for (int i = 0; i < 5000; i++) {
+                            Position to = Position.from(-122.0 + (tile * 5000 + i) * 0.0001, 47.0);
+
+                            cache.put(depot, to, i, tile);
+                            assertEquals(cache.get(depot, to).distance(), (long) i);
+                        }
+                    }))
+                    .toList();
+
+            for (Future<?> tile : tiles) {
+                tile.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        cache.flush();
+
+        RoadMatrixCache reopened = FileRoadMatrixCache.open(directory, "calculator_CAR");
+
+        for (int tile = 0; tile < 4; tile++) {
+            assertEquals(reopened.get(depot, Position.from(-122.0 + (tile * 5000 + 4999) * 0.0001, 47.0)).time(), (long) tile);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo.estimate;
+
+import aws.proto.routeoptimizationaccelerator.common.Position;
+import aws.proto.routeoptimizationaccelerator.solver.geo.cache.FileRoadMatrixCache;
+import aws.proto.routeoptimizationaccelerator.solver.geo.cache.RoadMatrixCache;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DetourModelTest {
+    private final Random random = new Random(42);
+
+    @Test
+    public void shouldFitTheDetourFactorAndSpeedPerRegionAndBand() throws Exception {
+        RoadMatrixCache cache = FileRoadMatrixCache.open(Files.createTempDirectory("road-matrix-cache"), "calculator_CAR");
+
+        // Seattle: short urban trips 1.5x at 8 m/s, longer trips 1.2x at 20 m/s
+        this.addCells(cache, 47.5, -122.3, 0.005, 1.5, 8);
+        this.addCells(cache, 47.5, -122.3, 0.1, 1.2, 20);
+        // Denver: short trips only, 1.3x at 12 m/s
+        this.addCells(cache, 39.7, -105.0, 0.005, 1.3, 12);
+
+        DetourModel model = DetourModel.fit(cache);
+
+        assertEquals(model.getSamples(), 600L);
+        assertEquals(model.getRegions().size(), 2);
+
+        DetourModel.Band urban = model.getBand(47.6, -122.2, 700);
+        assertEquals(DetourModel.getDetourFactor(urban), 1.5, 0.01);
+        assertEquals(DetourModel.getSpeed(urban), 8, 0.1);
+        assertTrue(urban.distanceErrorP90() < 0.01);
+
+        DetourModel.Band longer = model.getBand(47.6, -122.2, 12_000);
+        assertEquals(DetourModel.getDetourFactor(longer), 1.2, 0.01);
+        assertEquals(DetourModel.getSpeed(longer), 20, 0.1);
+
+        assertEquals(DetourModel.getDetourFactor(model.getBand(39.8, -104.9, 700)), 1.3, 0.01);
+        // band not fitted in Denver: the one fitted on every region is used
+        assertEquals(DetourModel.getDetourFactor(model.getBand(39.8, -104.9, 12_000)), 1.2, 0.01);
+        // band not fitted anywhere: the defaults apply
+        assertNull(model.getBand(39.8, -104.9, 500_000));
+    }
+
+    @Test
+    public void shouldReportTheErrorOfNoisyCells() throws Exception {
+        RoadMatrixCache cache = FileRoadMatrixCache.open(Files.createTempDirectory("road-matrix-cache"), "calculator_CAR");
+
+        for (int i = 0; i < 500; i++) {
+            Position from = Position.from(-122.3 + random.nextDouble() * 0.2, 47.5 + random.nextDouble() * 0.2);
+            Position to = Position.from(from.getLongitude() + 0.005, from.getLatitude() + 0.005);
+            double air = DetourModel.airDistance(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+            // detour uniformly spread between 1.2 and 1.6
+            double distance = air * (1.2 + random.nextDouble() * 0.4);
+
+            cache.put(from, to, (long) distance, (long) (distance / 10));
+        }
+
+        DetourModel.Band band = DetourModel.fit(cache).getBand(47.6, -122.2, 700);
+
+        assertEquals(band.samples(), 500L);
+        assertEquals(band.detourFactor(), 1.4, 0.03);
+        assertTrue(band.distanceErrorP50() > 0.03 && band.distanceErrorP50() < 0.1);
+        assertTrue(band.distanceErrorP90() > band.distanceErrorP50() && band.distanceErrorP90() < 0.2);
+    }
+
+    @Test
+    public void shouldPersistTheModel() throws Exception {
+        RoadMatrixCache cache = FileRoadMatrixCache.open(Files.createTempDirectory("road-matrix-cache"), "calculator_CAR");
+        this.addCells(cache, 47.5, -122.3, 0.005, 1.5, 8);
+
+        DetourModel model = DetourModel.fit(cache);
+        Path file = Files.createTempDirectory("detour-model").resolve("detour-model.json");
+
+        model.save(file);
+
+        DetourModel loaded = DetourModel.load(file);
+
+        assertEquals(loaded.getSamples(), model.getSamples());
+        assertEquals(loaded.getBand(47.6, -122.2, 700), model.getBand(47.6, -122.2, 700));
+        assertNull(loaded.getBand(47.6, -122.2, 12_000));
+    }
+
+    @Test
+    public void shouldFitTheModelAgainInTheBackgroundOnceEnoughCellsChanged() throws Exception {
+        Path cacheDirectory = Files.createTempDirectory("road-matrix-cache");
+        Path file = Files.createTempDirectory("detour-model").resolve("detour-model.json");
+        DetourModelStore store = new DetourModelStore("calculator_CAR", file, cacheDirectory, 300);
+
+        // nothing fitted yet: the defaults are served while the model is fitted
+        assertNull(store.refitIfDue(store.get()));
+        RoadMatrixCache cache = FileRoadMatrixCache.open(cacheDirectory, "calculator_CAR");
+        this.addCells(cache, 47.5, -122.3, 0.005, 1.5, 8);
+        cache.flush();
+
+        DetourModel defaults = store.get();
+        assertEquals(defaults.getSamples(), 0L);
+        DetourModel first = store.refitIfDue(null).get();
+        assertEquals(first.getSamples(), 200L);
+        assertEquals(first.getCacheRecords(), 200L);
+        assertEquals(DetourModel.load(file).getSamples(), 200L);
+        assertTrue(store.get() == first);
+
+        // 200 more cells are not enough to fit it again
+        this.addCells(cache, 47.5, -122.3, 0.1, 1.2, 20);
+        cache.flush();
+        assertTrue(store.get() == first);
+        assertNull(store.refitIfDue(first));
+
+        // the previous model is served until the new one is fitted
+        this.addCells(cache, 39.7, -105.0, 0.005, 1.3, 12);
+        cache.flush();
+        DetourModel second = store.refitIfDue(first).get();
+        assertEquals(second.getSamples(), 600L);
+        assertTrue(store.get() == second);
+
+        // a worker started later loads the saved model
+        assertEquals(DetourModel.load(file).getCacheRecords(), 600L);
+    }
+
+    // 200 cells departing from a 0.2 degrees area, the destinations offset by delta degrees
+    private void addCells(RoadMatrixCache cache, double latitude, double longitude, double delta, double detour, double speed) {
+        for (int i = 0; i < 200; i++) {
+            Position from = Position.from(longitude + random.nextDouble() * 0.2, latitude + random.nextDouble() * 0.2);
+            Position to = Position.from(from.getLongitude() + delta, from.getLatitude() + delta);
+            double distance = DetourModel.airDistance(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude()) * detour;
+
+            cache.put(from, to, (long) distance, (long) (distance / speed));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.geo.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RoadGraphTest {
+    private static final int SIDE = 25;
+
+    private final Random random = new Random(11);
+    // from, to, distance, time
+    private final List<int[]> edges = new ArrayList<>();
+
+    @Test
+    public void shouldMatchDijkstraOnTheOriginalGraph() throws Exception {
+        RoadGraphBuilder builder = this.grid();
+        Path file = Files.createTempFile("road-graph", ".bin");
+
+        RoadGraphBuilder.write(builder.build(), file);
+        RoadGraph graph = RoadGraph.open(file);
+
+        int[] sources = IntStream.range(0, 20).map(i -> random.nextInt(SIDE * SIDE)).toArray();
+        int[] targets = IntStream.range(0, 30).map(i -> random.nextInt(SIDE * SIDE)).toArray();
+        RoadGraph.PathMatrix paths = graph.manyToMany(sources, targets);
+
+        for (int s = 0; s < sources.length; s++) {
+            long[] expected = this.dijkstra(sources[s]);
+
+            for (int t = 0; t < targets.length; t++) {
+                assertEquals(paths.times()[s][t], expected[targets[t]]);
+            }
+        }
+    }
+
+    @Test
+    public void shouldSnapToTheClosestNode() throws Exception {
+        RoadGraph graph = RoadGraph.wrap(this.grid().build());
+
+        assertEquals(graph.nearestNode(47.6 + 3 * 0.001 + 0.0002, -122.3 + 7 * 0.001 - 0.0001), 3 * SIDE + 7);
+    }
+
+    // two-way grid with random travel times, every 7th street is one-way
+    private RoadGraphBuilder grid() {
+        double[] latitudes = new double[SIDE * SIDE];
+        double[] longitudes = new double[SIDE * SIDE];
+
+        for (int r = 0; r < SIDE; r++) {
+            for (int c = 0; c < SIDE; c++) {
+                latitudes[r * SIDE + c] = 47.6 + r * 0.001;
+                longitudes[r * SIDE + c] = -122.3 + c * 0.001;
+            }
+        }
+
+        RoadGraphBuilder builder = new RoadGraphBuilder(latitudes, longitudes);
+        this.edges.clear();
+
+        for (int r = 0; r < SIDE; r++) {
+            for (int c = 0; c < SIDE; c++) {
+                int node = r * SIDE + c;
+
+                if (c + 1 < SIDE) {
+                    this.connect(builder, node, node + 1, r % 7 == 0);
+                }
+                if (r + 1 < SIDE) {
+                    this.connect(builder, node, node + SIDE, c % 7 == 0);
+                }
+            }
+        }
+
+        return builder;
+    }
+
+    private void connect(RoadGraphBuilder builder, int a, int b, boolean oneWay) {
+        int distance = 100;
+
+        this.edges.add(new int[]{a, b, distance, 1000 + random.nextInt(100_000)});
+        builder.addEdge(a, b, distance, this.edges.get(this.edges.size() - 1)[3]);
+
+        if (!oneWay) {
+            this.edges.add(new int[]{b, a, distance, 1000 + random.nextInt(100_000)});
+            builder.addEdge(b, a, distance, this.edges.get(this.edges.size() - 1)[3]);
+        }
+    }
+
+    private long[] dijkstra(int source) {
+        long[] times = new long[SIDE * SIDE];
+        Arrays.fill(times, RoadGraph.UNREACHABLE);
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+
+        times[source] = 0;
+        queue.add(new long[]{0, source});
+
+        while (!queue.isEmpty()) {
+            long[] head = queue.poll();
+
+            if (head[0] > times[(int) head[1]]) {
+                continue;
+            }
+
+            for (int[] edge : this.edges) {
+                if (edge[0] == head[1] && head[0] + edge[3] < times[edge[1]]) {
+                    times[edge[1]] = head[0] + edge[3];
+                    queue.add(new long[]{times[edge[1]], edge[1]});
+                }
+            }
+        }
+
+        return times;
+    }
+}
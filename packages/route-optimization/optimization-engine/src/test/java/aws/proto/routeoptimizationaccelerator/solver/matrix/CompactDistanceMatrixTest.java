@@ -0,0 +1,98 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.matrix;
+
+import aws.proto.routeoptimizationaccelerator.data.input.enums.MatrixStorage;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CompactDistanceMatrixTest {
+    @Test
+    public void shouldStoreTheFullMatrix() {
+        CompactDistanceMatrix matrix = new CompactDistanceMatrix(3, false, 0);
+
+        matrix.set(0, 1, 1234, 56);
+        matrix.set(1, 0, 4321, 65);
+        matrix.set(2, 2, 0, 0);
+
+        assertEquals(matrix.getDistance(0, 1), 1234L);
+        assertEquals(matrix.getTime(0, 1), 56L);
+        assertEquals(matrix.getDistance(1, 0), 4321L);
+        assertEquals(matrix.getTime(1, 0), 65L);
+    }
+
+    @Test
+    public void shouldShareTheCellsOfTheTriangle() {
+        CompactDistanceMatrix matrix = new CompactDistanceMatrix(100, true, 0);
+
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j <= i; j++) {
+                matrix.set(i, j, i * 1000L + j, i + j);
+            }
+        }
+
+        assertEquals(matrix.getDistance(42, 7), 42007L);
+        assertEquals(matrix.getDistance(7, 42), 42007L);
+        assertEquals(matrix.getTime(7, 42), 49L);
+        assertEquals(matrix.getDistance(99, 99), 99099L);
+        assertEquals(matrix.getDistance(0, 0), 0L);
+    }
+
+    @Test
+    public void shouldQuantizeTheShortTimes() {
+        CompactDistanceMatrix matrix = new CompactDistanceMatrix(2, false, 2);
+
+        matrix.set(0, 1, 1000, 101);
+        matrix.set(1, 0, 1000, 100);
+
+        // rounded to the closest 2 seconds
+        assertEquals(matrix.getTime(0, 1), 102L);
+        assertEquals(matrix.getTime(1, 0), 100L);
+
+        // capped to 65535 units
+        matrix.set(0, 1, 1000, 200_000);
+        assertEquals(matrix.getTime(0, 1), 131_070L);
+    }
+
+    @Test
+    public void shouldStoreTheCellsOffHeap() {
+        OffHeapDistanceMatrix full = new OffHeapDistanceMatrix(50, false);
+        OffHeapDistanceMatrix triangle = new OffHeapDistanceMatrix(50, true);
+
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 50; j++) {
+                full.set(i, j, i * 1000L + j, i + 2L * j);
+            }
+            for (int j = 0; j <= i; j++) {
+                triangle.set(i, j, i * 1000L + j, i + j);
+            }
+        }
+
+        assertEquals(full.getDistance(7, 42), 7042L);
+        assertEquals(full.getTime(42, 7), 56L);
+        assertEquals(triangle.getDistance(7, 42), 42007L);
+        assertEquals(triangle.getTime(42, 7), 49L);
+        assertEquals(triangle.getDistance(49, 49), 49049L);
+    }
+
+    @Test
+    public void shouldReportTheFootprint() {
+        assertEquals(DistanceMatrixFactory.footprint(20_000, MatrixStorage.DENSE, false), 4_800_000_000L);
+        assertEquals(DistanceMatrixFactory.footprint(20_000, MatrixStorage.COMPACT, false), 3_200_000_000L);
+        assertEquals(DistanceMatrixFactory.footprint(20_000, MatrixStorage.COMPACT_16, false), 2_400_000_000L);
+        assertEquals(DistanceMatrixFactory.footprint(20_000, MatrixStorage.COMPACT_16, true), 1_200_060_000L);
+        assertEquals(DistanceMatrixFactory.footprint(20_000, MatrixStorage.OFF_HEAP, false), 3_200_000_000L);
+
+        // dense never uses the triangle
+        assertEquals(DistanceMatrixFactory.create(10, MatrixStorage.DENSE, true) instanceof DenseDistanceMatrix, true);
+        assertEquals(((CompactDistanceMatrix) DistanceMatrixFactory.create(10, MatrixStorage.COMPACT, true)).isTriangular(), true);
+        assertEquals(((OffHeapDistanceMatrix) DistanceMatrixFactory.create(10, MatrixStorage.OFF_HEAP, true)).isTriangular(), true);
+
+        assertThrows(RuntimeException.class, () -> DistanceMatrixFactory.create(500_000, MatrixStorage.COMPACT, false));
+        assertThrows(RuntimeException.class, () -> DistanceMatrixFactory.create(500_000, MatrixStorage.OFF_HEAP, false));
+    }
+}
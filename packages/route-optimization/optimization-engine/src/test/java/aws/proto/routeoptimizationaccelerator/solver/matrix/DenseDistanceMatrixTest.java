@@ -0,0 +1,66 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.matrix;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DenseDistanceMatrixTest {
+    @Test
+    public void shouldStoreEveryCell() {
+        DenseDistanceMatrix matrix = new DenseDistanceMatrix(50);
+
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 50; j++) {
+                if (i != j) {
+                    matrix.set(i, j, i * 1000L + j, i + 2L * j);
+                }
+            }
+        }
+
+        assertEquals(matrix.size(), 50);
+        assertEquals(matrix.getDistance(7, 42), 7042L);
+        assertEquals(matrix.getTime(7, 42), 91L);
+        assertEquals(matrix.getDistance(42, 7), 42007L);
+        assertEquals(matrix.getTime(42, 7), 56L);
+        assertEquals(matrix.getDistance(49, 0), 49000L);
+        assertEquals(matrix.getDistance(0, 49), 49L);
+    }
+
+    @Test
+    public void shouldKeepTheDiagonalToZero() {
+        DenseDistanceMatrix matrix = new DenseDistanceMatrix(3);
+
+        matrix.set(0, 1, 1234, 56);
+        matrix.set(1, 2, 4321, 65);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(matrix.getDistance(i, i), 0L);
+            assertEquals(matrix.getTime(i, i), 0L);
+        }
+
+        matrix.set(1, 1, 10, 1);
+        assertEquals(matrix.getDistance(1, 1), 10L);
+        assertEquals(matrix.getDistance(0, 1), 1234L);
+    }
+
+    @Test
+    public void shouldClampTheTimesBeyondTheIntRange() {
+        DenseDistanceMatrix matrix = new DenseDistanceMatrix(2);
+
+        matrix.set(0, 1, 1234, Integer.MAX_VALUE + 10L);
+
+        assertEquals(matrix.getTime(0, 1), (long) Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void shouldRejectTheMatricesBeyondTheMaximumArraySize() {
+        // 46341 * 46341 cells overflow an int index
+        assertThrows(RuntimeException.class, () -> new DenseDistanceMatrix(46_341));
+        assertThrows(RuntimeException.class, () -> new DenseDistanceMatrix(100_000));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.matrix;
+
+import aws.proto.routeoptimizationaccelerator.common.Position;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LazyDistanceMatrixTest {
+    private final Random random = new Random(42);
+    private final List<Position> positions = IntStream.range(0, 200)
+            .mapToObj(i -> Position.from(-122.3 + random.nextDouble() * 0.2, 47.5 + random.nextDouble() * 0.2))
+            .toList();
+
+    // exact values twice the estimated ones with the default calibration
+    private final LazyDistanceMatrix.Fetcher fetcher = new LazyDistanceMatrix.Fetcher() {
+        @Override
+        public CompletableFuture<Void> fetch(int[] from, int[] to, DistanceMatrix target) {
+            return CompletableFuture.runAsync(() -> IntStream.range(0, from.length).forEach(i -> target.set(from[i], to[i], 1000L * (i + 1), 60L * (i + 1))));
+        }
+
+        @Override
+        public void await(CompletableFuture<Void> fetch) {
+            fetch.join();
+        }
+    };
+
+    @Test
+    public void shouldServeEstimatesUntilTheValuesAreApplied() {
+        LazyDistanceMatrix matrix = new LazyDistanceMatrix(positions, fetcher);
+        long estimate = matrix.getDistance(1, 2);
+
+        assertTrue(estimate > 0);
+        assertEquals(matrix.getDistance(3, 3), 0L);
+        assertEquals(matrix.isExact(1, 2), false);
+
+        assertEquals(matrix.request(1, 2), true);
+        assertEquals(matrix.request(1, 2), false);
+
+        fetcher.await(fetcher.fetch(new int[] { 1, 4 }, new int[] { 2, 5 }, matrix.getStaging()));
+
+        // staged values are visible only once applied
+        assertEquals(matrix.getDistance(1, 2), estimate);
+        assertEquals(matrix.applyResolved(), 2);
+
+        assertEquals(matrix.getDistance(1, 2), 1000L);
+        assertEquals(matrix.getTime(1, 2), 60L);
+        assertEquals(matrix.getDistance(4, 5), 2000L);
+        assertEquals(matrix.getTime(4, 5), 120L);
+        assertEquals(matrix.isExact(1, 2), true);
+        assertEquals(matrix.isExact(2, 1), false);
+        assertEquals(matrix.getExactCount(), 2);
+    }
+
+    @Test
+    public void shouldCalibrateTheEstimateOnTheExactValues() {
+        LazyDistanceMatrix reference = new LazyDistanceMatrix(positions, fetcher);
+        LazyDistanceMatrix matrix = new LazyDistanceMatrix(positions, fetcher);
+
+        // exact values 2x the default estimate, at 10 m/s
+        for (int i = 0; i < 50; i++) {
+            long distance = reference.getDistance(i, i + 1) * 2;
+
+            matrix.getStaging().set(i, i + 1, distance, distance / 10);
+        }
+
+        matrix.applyResolved();
+
+        assertEquals(matrix.getDetourFactor(), reference.getDetourFactor() * 2, 0.01);
+        assertEquals(matrix.getSpeed(), 10, 0.1);
+
+        long estimate = matrix.getDistance(100, 150);
+
+        assertEquals(estimate, reference.getDistance(100, 150) * 2, 2.0);
+        assertEquals(matrix.getTime(100, 150), estimate / 10, 2.0);
+    }
+
+    @Test
+    public void shouldDetectTheHotPairs() {
+        LazyDistanceMatrix matrix = new LazyDistanceMatrix(positions, fetcher);
+
+        matrix.request(7, 8);
+
+        // pairs read over and over while the others are read once
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 64; i++) {
+                matrix.getDistance(7, 8);
+                matrix.getTime(10, 11);
+                matrix.getDistance(20 + (round * 64 + i) % 150, 199);
+            }
+        }
+
+        long[] hot = matrix.drainHotPairs();
+
+        assertEquals(hot.length, 1);
+        assertEquals(matrix.fromOf(hot[0]), 10);
+        assertEquals(matrix.toOf(hot[0]), 11);
+        assertEquals(matrix.drainHotPairs().length, 0);
+
+        // hot pairs are marked as requested
+        assertEquals(matrix.request(10, 11), false);
+    }
+}
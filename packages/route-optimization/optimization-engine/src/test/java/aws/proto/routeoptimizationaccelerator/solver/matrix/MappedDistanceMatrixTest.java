@@ -0,0 +1,87 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.matrix;
+
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.geo.MatrixRequestPlan;
+import aws.proto.routeoptimizationaccelerator.solver.geo.PrecomputedDistance;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MappedDistanceMatrixTest {
+    private final List<String> ids = List.of("depot-1", "order-\u00e9", "order-2");
+
+    @Test
+    public void shouldMapTheMatrixFile() throws Exception {
+        MappedDistanceMatrix matrix = MappedDistanceMatrix.open(this.writeMatrix());
+
+        assertEquals(matrix.size(), 3);
+        assertEquals(matrix.getLocationIds(), ids);
+        assertEquals(matrix.indexOf("order-\u00e9"), 1);
+        assertEquals(matrix.indexOf("unknown"), -1);
+
+        assertEquals(matrix.getDistance(0, 1), 1000L);
+        assertEquals(matrix.getTime(0, 1), 60L);
+        assertEquals(matrix.getDistance(2, 1), 3200L);
+        assertEquals(matrix.getTime(2, 1), 182L);
+        assertEquals(matrix.getDistance(1, 1), 0L);
+    }
+
+    @Test
+    public void shouldIndexTheLocationsOnTheMatrixFile() throws Exception {
+        PrecomputedDistance calculator = PrecomputedDistance.open(this.writeMatrix());
+        Visit first = visit("order-2");
+        Visit second = visit("depot-1");
+        List<Visit> locations = List.of(first, second);
+
+        calculator.initDistanceAndTimeMatrix(locations, MatrixRequestPlan.from(locations, List.of()));
+
+        assertEquals(first.getMatrixIndex(), 2);
+        assertEquals(second.getMatrixIndex(), 0);
+        assertEquals(first.getDistanceTo(second), 2200L);
+        assertEquals(second.getTimeTo(first), 120L);
+
+        assertThrows(RuntimeException.class, () -> calculator.initDistanceAndTimeMatrix(List.of(visit("unknown")), null));
+    }
+
+    @Test
+    public void shouldRejectOtherFiles() throws Exception {
+        Path file = Files.createTempFile("matrix", ".bin");
+        Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 });
+
+        assertThrows(RuntimeException.class, () -> PrecomputedDistance.open(file));
+    }
+
+    // from i to j: 1000 * (i + j) + 100 * i meters, 60 * (i + j) + i seconds
+    private Path writeMatrix() throws Exception {
+        DenseDistanceMatrix matrix = new DenseDistanceMatrix(3);
+
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                if (i != j) {
+                    matrix.set(i, j, 1000L * (i + j) + 100L * i, 60L * (i + j) + i);
+                }
+            }
+        }
+
+        Path file = Files.createTempFile("matrix", ".bin");
+        MappedDistanceMatrix.write(file, ids, matrix);
+
+        return file;
+    }
+
+    private static Visit visit(String id) {
+        Visit visit = new Visit();
+        visit.setId(id);
+
+        return visit;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.matrix;
+
+import aws.proto.routeoptimizationaccelerator.common.Position;
+import aws.proto.routeoptimizationaccelerator.solver.geo.KdTree;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SparseDistanceMatrixTest {
+    private final Random random = new Random(42);
+    private final List<Position> positions = IntStream.range(0, 500)
+            .mapToObj(i -> Position.from(-122.3 + random.nextDouble() * 0.2, 47.5 + random.nextDouble() * 0.2))
+            .toList();
+
+    @Test
+    public void shouldFindTheSameNeighboursAsBruteForce() {
+        KdTree tree = new KdTree(positions);
+        double scale = Math.cos(Math.toRadians(47.6));
+
+        for (int i = 0; i < positions.size(); i += 25) {
+            Position from = positions.get(i);
+            int[] expected = IntStream.range(0, positions.size())
+                    .filter(j -> j != positions.indexOf(from))
+                    .boxed()
+                    .sorted(Comparator.comparingDouble(j -> {
+                        double dx = (positions.get(j).getLongitude() - from.getLongitude()) * scale;
+                        double dy = positions.get(j).getLatitude() - from.getLatitude();
+
+                        return dx * dx + dy * dy;
+                    }))
+                    .limit(10)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+
+            assertEquals(Arrays.toString(tree.nearest(i, 10)), Arrays.toString(expected));
+        }
+    }
+
+    @Test
+    public void shouldKeepExactCellsAndEstimateTheOthers() {
+        boolean[] dense = new boolean[positions.size()];
+        dense[0] = true;
+
+        KdTree tree = new KdTree(positions);
+        int[][] nearest = IntStream.range(0, positions.size()).mapToObj(i -> tree.nearest(i, 5)).toArray(int[][]::new);
+        SparseDistanceMatrix matrix = new SparseDistanceMatrix(positions, dense, nearest);
+
+        int neighbour = matrix.getNeighbours(1)[0];
+        matrix.set(1, neighbour, 1234, 56);
+        matrix.set(0, 7, 999, 88);
+        matrix.set(7, 0, 998, 87);
+        // not part of the sparse structure, ignored
+        int far = IntStream.range(2, positions.size()).filter(j -> !matrix.isExact(1, j)).findFirst().orElseThrow();
+        matrix.set(1, far, 1, 1);
+
+        assertEquals(matrix.getDistance(1, neighbour), 1234L);
+        assertEquals(matrix.getTime(1, neighbour), 56L);
+        assertEquals(matrix.getDistance(0, 7), 999L);
+        assertEquals(matrix.getDistance(7, 0), 998L);
+        assertEquals(matrix.getTime(7, 0), 87L);
+        assertEquals(matrix.isExact(1, far), false);
+        assertEquals(matrix.getDistance(1, far) > 1, true);
+        assertEquals(matrix.getDistance(1, 1), 0L);
+    }
+}
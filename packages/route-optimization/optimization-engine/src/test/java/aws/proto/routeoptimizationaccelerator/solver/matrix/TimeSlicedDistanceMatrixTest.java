@@ -0,0 +1,85 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.matrix;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TimeSlicedDistanceMatrixTest {
+    private static final int HOUR = 3600;
+
+    @Test
+    public void shouldInterpolateBetweenTheBuckets() {
+        DenseDistanceMatrix base = new DenseDistanceMatrix(2);
+        base.set(0, 1, 10_000, 600);
+        base.set(1, 0, 10_000, 600);
+
+        // 4 buckets of 6 hours, centered at 03:00, 09:00, 15:00 and 21:00
+        TimeSlicedDistanceMatrix matrix = new TimeSlicedDistanceMatrix(base, 4, true);
+        matrix.setBucketTime(0, 1, 1, 1200);
+
+        assertEquals(matrix.getTime(0, 1, 9 * HOUR), 1200L);
+        assertEquals(matrix.getTime(0, 1, 3 * HOUR), 600L);
+        assertEquals(matrix.getTime(0, 1, 6 * HOUR), 900L);
+        assertEquals(matrix.getTime(0, 1, 12 * HOUR), 900L);
+
+        // the other cells and the static time are left as they are
+        assertEquals(matrix.getTime(1, 0, 9 * HOUR), 600L);
+        assertEquals(matrix.getTime(0, 1), 600L);
+        assertEquals(matrix.getDistance(0, 1), 10_000L);
+    }
+
+    @Test
+    public void shouldWrapAroundMidnight() {
+        DenseDistanceMatrix base = new DenseDistanceMatrix(2);
+        base.set(0, 1, 10_000, 640);
+
+        TimeSlicedDistanceMatrix matrix = new TimeSlicedDistanceMatrix(base, 4, false);
+        matrix.setProfile(new double[] { 0.5, 1, 1.5, 1 });
+
+        // halfway between the 21:00 and the 03:00 centers
+        assertEquals(matrix.getTime(0, 1, 0), 480L);
+        assertEquals(matrix.getTime(0, 1, 3 * HOUR), 320L);
+        assertEquals(matrix.getTime(0, 1, 15 * HOUR), 960L);
+        assertEquals(matrix.getTime(0, 1, 24 * HOUR - 1) > 480L, true);
+
+        assertThrows(RuntimeException.class, () -> matrix.setProfile(new double[] { 1, 1 }));
+        assertThrows(IllegalStateException.class, () -> matrix.setBucketTime(0, 1, 0, 600));
+        assertThrows(RuntimeException.class, () -> new TimeSlicedDistanceMatrix(base, 7, false));
+    }
+
+    @Test
+    public void shouldKeepTheStaticTimesByDefault() {
+        DenseDistanceMatrix base = new DenseDistanceMatrix(2);
+        base.set(0, 1, 10_000, 600);
+
+        assertEquals(base.isTimeDependent(), false);
+        assertEquals(base.getTime(0, 1, 9 * HOUR), 600L);
+        assertEquals(new TimeSlicedDistanceMatrix(base, 24, true).getTime(0, 1, 9 * HOUR), 600L);
+    }
+
+    @Test
+    public void shouldKeepASingleTriangleOfTheBuckets() {
+        CompactDistanceMatrix base = new CompactDistanceMatrix(3, true, 0);
+        base.set(0, 2, 10_000, 600);
+
+        TimeSlicedDistanceMatrix matrix = new TimeSlicedDistanceMatrix(base, 4, true, true);
+        matrix.setBucketTime(0, 2, 1, 1200);
+
+        assertEquals(matrix.getTime(0, 2, 9 * HOUR), 1200L);
+        assertEquals(matrix.getTime(2, 0, 9 * HOUR), 1200L);
+        assertEquals(matrix.getTime(0, 1, 9 * HOUR), 0L);
+    }
+
+    @Test
+    public void shouldComputeTheFootprintOfLargeMatrices() {
+        // 20k locations and hourly buckets, more cells than an int can index
+        assertEquals(TimeSlicedDistanceMatrix.footprint(20_000, 24, true, false), 9_600_000_000L);
+        assertEquals(TimeSlicedDistanceMatrix.footprint(20_000, 24, true, true), 4_800_240_000L);
+        assertEquals(TimeSlicedDistanceMatrix.footprint(20_000, 24, false, false), 24L);
+    }
+}
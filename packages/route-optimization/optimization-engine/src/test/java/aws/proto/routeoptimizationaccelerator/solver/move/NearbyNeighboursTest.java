@@ -0,0 +1,41 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.move;
+
+import aws.proto.routeoptimizationaccelerator.common.Location;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import aws.proto.routeoptimizationaccelerator.solver.geo.HaversineDistance;
+import aws.proto.routeoptimizationaccelerator.solver.geo.MatrixRequestPlan;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NearbyNeighboursTest {
+    @Test
+    public void shouldSortTheNearestCustomers() {
+        // customers on a line, 0.01 degrees apart
+        List<Visit> visits = IntStream.range(0, 10)
+                .mapToObj(i -> Visit.fromLocation(Location.builder().id("v-" + i).longitude(-122.3 + i * 0.01).latitude(47.6).build()))
+                .toList();
+        IntStream.range(0, visits.size()).forEach(i -> visits.get(i).setMatrixIndex(i));
+        new HaversineDistance().initDistanceAndTimeMatrix(visits, MatrixRequestPlan.from(visits, List.of()));
+
+        List<Customer> customers = visits.stream().map(v -> Customer.builder().id(v.getId()).visit(v).build()).toList();
+        NearbyNeighbours neighbours = NearbyNeighbours.build(customers, new CustomerNearbyDistanceMeter(), 3);
+
+        assertArrayEquals(neighbours.neighboursOf(0), new int[] { 1, 2, 3 });
+        assertTrue(neighbours.neighboursOf(5)[2] == 3 || neighbours.neighboursOf(5)[2] == 7);
+        assertArrayEquals(neighbours.neighboursOf(9), new int[] { 8, 7, 6 });
+
+        // fewer customers than neighbours
+        assertEquals(NearbyNeighbours.build(customers.subList(0, 2), new CustomerNearbyDistanceMeter(), 3).neighboursOf(1).length, 1);
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.partition;
+
+import ai.timefold.solver.core.config.solver.termination.TerminationConfig;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class PartitionedSearchTest {
+    @Test
+    public void shouldNotRunPastTheRemainingTime() {
+        TerminationConfig termination = PartitionedSearch.termination(Duration.ofSeconds(3), Duration.ofSeconds(10));
+
+        assertEquals(termination.getSpentLimit(), Duration.ofSeconds(3));
+        assertEquals(termination.getUnimprovedSpentLimit(), Duration.ofSeconds(3));
+
+        termination = PartitionedSearch.termination(Duration.ofSeconds(30), Duration.ofSeconds(10));
+
+        assertEquals(termination.getSpentLimit(), Duration.ofSeconds(30));
+        assertEquals(termination.getUnimprovedSpentLimit(), Duration.ofSeconds(10));
+
+        // the sectors took the whole duration
+        assertNull(PartitionedSearch.termination(Duration.ZERO, Duration.ofSeconds(10)));
+        assertNull(PartitionedSearch.termination(Duration.ofMillis(-200), Duration.ofSeconds(10)));
+    }
+}
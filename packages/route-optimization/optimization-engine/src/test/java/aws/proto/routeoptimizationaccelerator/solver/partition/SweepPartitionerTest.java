@@ -0,0 +1,97 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.solver.partition;
+
+import aws.proto.routeoptimizationaccelerator.solver.domain.Customer;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Depot;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Vehicle;
+import aws.proto.routeoptimizationaccelerator.solver.domain.Visit;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SweepPartitionerTest {
+    private final Depot depot = depot();
+
+    @Test
+    public void shouldSplitTheCustomersInSectors() {
+        // 4 clusters of 10 customers at the north, east, south and west of the depot
+        double[][] clusters = { { 0.1, 0 }, { 0, 0.1 }, { -0.1, 0 }, { 0, -0.1 } };
+        List<Customer> customers = new ArrayList<>();
+
+        for (int i = 0; i < 40; i++) {
+            double[] cluster = clusters[i % 4];
+            customers.add(customer("c" + i, 47.6 + cluster[0] + (i / 4) * 0.001, -122.3 + cluster[1] + (i / 4) * 0.001));
+        }
+
+        List<Vehicle> vehicles = IntStream.range(0, 8).mapToObj(i -> vehicle("v" + i, i >= 6)).toList();
+        List<SweepPartitioner.Partition> partitions = SweepPartitioner.partition(vehicles, customers, 10);
+
+        assertEquals(partitions.size(), 4);
+
+        Set<Customer> partitionedCustomers = new HashSet<>();
+        Set<Vehicle> partitionedVehicles = new HashSet<>();
+
+        for (SweepPartitioner.Partition partition : partitions) {
+            assertEquals(partition.customers().size(), 10);
+            assertEquals(partition.vehicles().size(), 2);
+
+            // every sector is one of the clusters
+            assertEquals(partition.customers().stream().map(c -> Integer.parseInt(c.getId().substring(1)) % 4).distinct().count(), 1L);
+
+            partitionedCustomers.addAll(partition.customers());
+            partitionedVehicles.addAll(partition.vehicles());
+        }
+
+        assertEquals(partitionedCustomers.size(), 40);
+        assertEquals(partitionedVehicles.size(), 8);
+
+        // the 2 virtual vehicles are not in the same partition
+        assertEquals(partitions.stream().filter(p -> p.vehicles().stream().anyMatch(Vehicle::isVirtual)).count(), 2L);
+    }
+
+    @Test
+    public void shouldKeepSmallProblemsInASinglePartition() {
+        List<Customer> customers = IntStream.range(0, 30).mapToObj(i -> customer("c" + i, 47.6 + i * 0.01, -122.3)).toList();
+        List<Vehicle> vehicles = IntStream.range(0, 2).mapToObj(i -> vehicle("v" + i, false)).toList();
+
+        assertEquals(SweepPartitioner.partition(vehicles, customers, 30).size(), 1);
+
+        // never more partitions than vehicles
+        List<SweepPartitioner.Partition> partitions = SweepPartitioner.partition(vehicles, customers, 5);
+
+        assertEquals(partitions.size(), 2);
+        assertTrue(partitions.stream().allMatch(p -> p.vehicles().size() == 1 && p.customers().size() == 15));
+    }
+
+    private Vehicle vehicle(String id, boolean virtual) {
+        return Vehicle.builder().id(id).depot(this.depot).isVirtual(virtual).customers(new ArrayList<>()).build();
+    }
+
+    private static Customer customer(String id, double latitude, double longitude) {
+        Visit visit = new Visit();
+        visit.setId(id);
+        visit.setLatitude(latitude);
+        visit.setLongitude(longitude);
+
+        return Customer.builder().id(id).visit(visit).build();
+    }
+
+    private static Depot depot() {
+        Depot depot = new Depot();
+        depot.setId("depot");
+        depot.setLatitude(47.6);
+        depot.setLongitude(-122.3);
+
+        return depot;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: MIT-0
+ */
+package aws.proto.routeoptimizationaccelerator.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CpuQuotaTest {
+    @Test
+    public void shouldReadTheCgroupV2Quota() throws Exception {
+        Path root = Files.createTempDirectory("cgroup");
+
+        Files.writeString(root.resolve("cpu.max"), "400000 100000\n");
+        assertEquals(CpuQuota.availableCpus(root, 16), 4);
+
+        // fractional quotas are rounded down, at least one CPU
+        Files.writeString(root.resolve("cpu.max"), "150000 100000\n");
+        assertEquals(CpuQuota.availableCpus(root, 16), 1);
+        Files.writeString(root.resolve("cpu.max"), "50000 100000\n");
+        assertEquals(CpuQuota.availableCpus(root, 16), 1);
+
+        Files.writeString(root.resolve("cpu.max"), "max 100000\n");
+        assertEquals(CpuQuota.availableCpus(root, 16), 16);
+
+        // never more than the processors of the JVM
+        Files.writeString(root.resolve("cpu.max"), "800000 100000\n");
+        assertEquals(CpuQuota.availableCpus(root, 2), 2);
+    }
+
+    @Test
+    public void shouldReadTheCgroupV1Quota() throws Exception {
+        Path root = Files.createTempDirectory("cgroup");
+        Path controller = Files.createDirectories(root.resolve("cpu,cpuacct"));
+
+        Files.writeString(controller.resolve("cpu.cfs_quota_us"), "200000\n");
+        Files.writeString(controller.resolve("cpu.cfs_period_us"), "100000\n");
+        assertEquals(CpuQuota.availableCpus(root, 16), 2);
+
+        Files.writeString(controller.resolve("cpu.cfs_quota_us"), "-1\n");
+        assertEquals(CpuQuota.availableCpus(root, 16), 16);
+
+        // no cgroup CPU controller
+        assertEquals(CpuQuota.availableCpus(Files.createTempDirectory("cgroup"), 8), 8);
+    }
+}